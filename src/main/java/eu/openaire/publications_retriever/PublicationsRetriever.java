@@ -1,13 +1,25 @@
 package eu.openaire.publications_retriever;
 
+import eu.openaire.publications_retriever.crawler.BoilerplateLinks;
+import eu.openaire.publications_retriever.crawler.CandidateUrlsVerifier;
+import eu.openaire.publications_retriever.crawler.LinkTemplates;
 import eu.openaire.publications_retriever.crawler.MachineLearning;
 import eu.openaire.publications_retriever.crawler.MetaDocUrlsHandler;
 import eu.openaire.publications_retriever.crawler.PageCrawler;
+import eu.openaire.publications_retriever.crawler.PageFingerprints;
 import eu.openaire.publications_retriever.util.file.FileUtils;
+import eu.openaire.publications_retriever.util.http.BandwidthLimiter;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import eu.openaire.publications_retriever.util.http.SSLUtils;
 import eu.openaire.publications_retriever.util.signal.SignalUtils;
+import eu.openaire.publications_retriever.util.url.DomainRegistry;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.ParsedUrl;
+import eu.openaire.publications_retriever.util.url.RegexGuard;
+import eu.openaire.publications_retriever.util.url.UrlCanonicalizer;
+import eu.openaire.publications_retriever.util.url.UrlFingerprintSet;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -80,6 +92,10 @@ public class PublicationsRetriever
 			try {
 				FileUtils.numOfLines = Files.lines(Paths.get(PublicationsRetriever.inputFileFullPath)).count();
 				logger.info("The numOfLines in the inputFile is " + FileUtils.numOfLines);
+				if ( FileUtils.numOfLines >= UrlFingerprintSet.MIN_URLS_TO_USE_FINGERPRINTS ) {	// For the large runs, keep the fingerprints of the duplicateUrls, outside the heap.
+					UrlUtils.duplicateUrls = new UrlFingerprintSet(FileUtils.numOfLines * 2);	// Along with the sourceUrls, many internalLinks are added.
+					logger.info("The duplicateUrls will be kept as 64-bit fingerprints, outside the heap.");
+				}
 			} catch (Exception e) {
 				logger.error("Could not retrieve the numOfLines. " + e);
 			}
@@ -101,6 +117,8 @@ public class PublicationsRetriever
 		}
 		logger.info("Use " + workerThreadsCount + " worker-threads.");
 		executor = Executors.newFixedThreadPool(workerThreadsCount);
+		if ( PageCrawler.maxParallelCandidateChecksPerPage > 1 )
+			CandidateUrlsVerifier.initExecutor(workerThreadsCount, PageCrawler.maxParallelCandidateChecksPerPage);
 
 		try {
 			new LoaderAndChecker();
@@ -110,6 +128,7 @@ public class PublicationsRetriever
 			logger.error(errorMessage);
 			FileUtils.closeIO();
 			executor.shutdownNow();
+			CandidateUrlsVerifier.shutdownExecutor();
 			System.exit(-4);
 		}
 
@@ -122,6 +141,7 @@ public class PublicationsRetriever
 		} catch (InterruptedException e) {
 			PublicationsRetriever.executor.shutdownNow();
 		}
+		CandidateUrlsVerifier.shutdownExecutor();
 
 		showStatistics(startTime);
 
@@ -132,10 +152,10 @@ public class PublicationsRetriever
 
 	public static void parseArgs(String[] mainArgs)
 	{
-		String usageMessage = "\nUsage: java -jar publications_retriever-<VERSION>.jar -retrieveDataType <dataType: document | dataset | all> -inputFileFullPath inputFile -downloadDocFiles(OPTIONAL) -firstDocFileNum(OPTIONAL) 'num' -docFilesStorage(OPTIONAL) 'storageDir' -inputDataUrl 'inputUrl' < 'input' > 'output'";
+		String usageMessage = "\nUsage: java -jar publications_retriever-<VERSION>.jar -retrieveDataType <dataType: document | dataset | all> -inputFileFullPath inputFile -downloadDocFiles(OPTIONAL) -firstDocFileNum(OPTIONAL) 'num' -docFilesStorage(OPTIONAL) 'storageDir' -inputDataUrl 'inputUrl' -numOfThreads(OPTIONAL) 'threadsNum' -bandwidthLimitKBps(OPTIONAL) 'KBps' -parallelCandidateChecks(OPTIONAL) 'checksNum' -warmUpTopDomains(OPTIONAL) 'domainsNum' < 'input' > 'output'";
 
-		if ( mainArgs.length > 13 ) {
-			String errMessage = "\"PublicationsRetriever\" expected only up to 13 arguments, while you gave: " + mainArgs.length + "!" + usageMessage;
+		if ( mainArgs.length > 17 ) {
+			String errMessage = "\"PublicationsRetriever\" expected only up to 17 arguments, while you gave: " + mainArgs.length + "!" + usageMessage;
 			logger.error(errMessage);
 			System.err.println(errMessage);
 			System.exit(-1);
@@ -246,6 +266,49 @@ public class PublicationsRetriever
 							logger.error("Invalid \"workerThreadsCount\" was given: \"" + workerCountString + "\".\tContinue by using the system's available threads multiplied by " + threadsMultiplier);
 						}
 						break;
+					case "-bandwidthLimitKBps":
+						i++;
+						String bandwidthLimitString = mainArgs[i];
+						try {
+							long bandwidthLimitKBps = Long.parseLong(bandwidthLimitString);
+							if ( bandwidthLimitKBps > 0 ) {
+								BandwidthLimiter.maxBytesPerSecond = bandwidthLimitKBps * 1024;
+								logger.info("The bandwidth used for downloading the docFiles will be limited to " + bandwidthLimitKBps + " KBps.");
+							} else
+								logger.warn("The \"bandwidthLimitKBps\" given was less than < 1 > (" + bandwidthLimitKBps + "), continuing without limiting the bandwidth..");
+						} catch (NumberFormatException nfe) {
+							logger.error("Invalid \"bandwidthLimitKBps\" was given: \"" + bandwidthLimitString + "\".\tContinue without limiting the bandwidth.");
+						}
+						break;
+					case "-parallelCandidateChecks":
+						i++;
+						String parallelChecksString = mainArgs[i];
+						try {
+							int parallelChecks = Integer.parseInt(parallelChecksString);
+							if ( parallelChecks > 1 ) {
+								PageCrawler.maxParallelCandidateChecksPerPage = parallelChecks;
+								logger.info("The possibleDocOrDatasetUrls of each page will be verified by up to " + parallelChecks + " parallel checks (one per domain).");
+							} else
+								logger.warn("The \"parallelCandidateChecks\" given was less than < 2 > (" + parallelChecks + "), continuing with verifying the possibleDocOrDatasetUrls one after the other..");
+						} catch (NumberFormatException nfe) {
+							logger.error("Invalid \"parallelCandidateChecks\" was given: \"" + parallelChecksString + "\".\tContinue with verifying the possibleDocOrDatasetUrls one after the other.");
+						}
+						break;
+					case "-warmUpTopDomains":
+						i++;
+						String warmUpDomainsString = mainArgs[i];
+						try {
+							int warmUpDomains = Integer.parseInt(warmUpDomainsString);
+							if ( warmUpDomains > 0 ) {
+								SSLUtils.shouldWarmUpTopDomains = true;
+								SSLUtils.numOfTopDomainsToWarmUp = warmUpDomains;
+								logger.info("The TLS-sessions with up to " + warmUpDomains + " of the most frequent HTTPS-domains of each batch, will be opened before the batch is processed.");
+							} else
+								logger.warn("The \"warmUpTopDomains\" given was less than < 1 > (" + warmUpDomains + "), continuing without warming-up the TLS-sessions..");
+						} catch (NumberFormatException nfe) {
+							logger.error("Invalid \"warmUpTopDomains\" was given: \"" + warmUpDomainsString + "\".\tContinue without warming-up the TLS-sessions.");
+						}
+						break;
 					default:	// log & ignore the argument
 						String errMessage = "Argument: \"" + mainArgs[i] + "\" was not expected!" + usageMessage;
 						System.err.println(errMessage);
@@ -311,6 +374,13 @@ public class PublicationsRetriever
 					+ " The un-retrieved docFiles were either belonging to already-found docUrls or they had connection-issues.");
 		}
 		logger.debug("The metaDocUrl-handler is responsible for the discovery of " + MetaDocUrlsHandler.numOfMetaDocUrlsFound + " of the docUrls (" + df.format(MetaDocUrlsHandler.numOfMetaDocUrlsFound.get() * 100.0 / UrlUtils.sumOfDocUrlsFound.get()) + "%).");
+		logger.debug("The pages which were handled by the metaDocUrl of their \"head\", without downloading their \"body\", were " + MetaDocUrlsHandler.numOfPagesHandledByTheirHead.get() + ".");
+		logger.debug("The pages whose internalLinks were extracted with Jsoup, as their HTML was too malformed for the streaming link-tokenizer, were " + PageCrawler.numOfPagesParsedWithJsoup.get() + ".");
+		logger.debug("The boilerplate-links (appearing in most pages of their domain) which were skipped before being canonicalized, were " + BoilerplateLinks.numOfBoilerplateLinksSkipped.get() + ".");
+		logger.debug("The pages which were skipped, as they matched a template-page of their domain which has not given any docUrls (like a login-wall or a soft-404 page), were " + PageFingerprints.numOfPagesSkippedByFingerprint.get() + ".");
+		logger.debug("The links which were checked first, as they matched the learned link-template of their domain, gave " + LinkTemplates.timesTemplateHit.get() + " docUrls. The link-templates missed " + LinkTemplates.timesTemplateMissed.get() + " times.");
+		if ( PageCrawler.maxParallelCandidateChecksPerPage > 1 )
+			logger.debug("The pages whose possibleDocOrDatasetUrls were verified in parallel were " + CandidateUrlsVerifier.numOfPagesVerifiedInParallel.get() + ". The candidate-checks which were abandoned, after another candidate was verified first or the page was left, were " + CandidateUrlsVerifier.numOfCandidateChecksAbandoned.get() + ".");
 		logger.debug("The re-crossed docUrls (from all handlers) were " + ConnSupportUtils.reCrossedDocUrls.get() + ". That's about " + df.format(ConnSupportUtils.reCrossedDocUrls.get() * 100.0 / UrlUtils.sumOfDocUrlsFound.get()) + "% of the total docUrls found.");
 		if ( MachineLearning.useMLA )
 			logger.debug("The M.L.A. is responsible for the discovery of " + MachineLearning.docUrlsFoundByMLA.get() + " of the docUrls (" + df.format(MachineLearning.docUrlsFoundByMLA.get() * 100.0 / UrlUtils.sumOfDocUrlsFound.get()) + "%). The M.L.A.'s average success-rate was: " + df.format(MachineLearning.getAverageSuccessRate()) + "%. Gathered data for " + MachineLearning.timesGatheredData + " valid pageUrl-docUrl pairs.");
@@ -321,6 +391,11 @@ public class PublicationsRetriever
 		logger.debug("About " + df.format(UrlTypeChecker.pagesNotProvidingDocUrls.get() * 100.0 / inputCheckedUrlNum) + "% (" + UrlTypeChecker.pagesNotProvidingDocUrls.get() + " urls) were pages which did not provide docUrls.");
 		logger.debug("About " + df.format(UrlTypeChecker.longToRespondUrls.get() * 100.0 / inputCheckedUrlNum) + "% (" + UrlTypeChecker.longToRespondUrls.get() + " urls) were urls which belong to domains which take too long to respond.");
 		logger.debug("About " + df.format(PageCrawler.contentProblematicUrls.get() * 100.0 / inputCheckedUrlNum) + "% (" + PageCrawler.contentProblematicUrls.get() + " urls) were urls which had problematic content.");
+		logger.debug("The matches of the unwanted-type regex-rules, for the pageUrls: " + UrlTypeChecker.pageUrlRegexRules.getRuleMatchesStr() + " and for the internalLinks: " + UrlTypeChecker.internalLinkRegexRules.getRuleMatchesStr()
+				+ ". The internalLinks which matched the unwanted keywords were " + UrlTypeChecker.internalLinksMatchingKeywords.get() + ".");
+		logger.debug("The regex-matchings which were aborted by the \"RegexGuard\" (to avoid a catastrophic backtracking on a hostile input), were: " + RegexGuard.getStatistics() + ".");
+		logger.debug("The urls which needed the \"URL_TRIPLE\" regex to be parsed (instead of the hand-written parser), were " + ParsedUrl.numOfUrlsParsedWithRegex.get() + ".");
+		logger.debug("The canonicalizations which were reused (as the same url was canonicalized again by the same thread), were " + UrlCanonicalizer.numOfCanonicalizationsReused.get() + ".");
 
 		long problematicUrlsNum = LoaderAndChecker.connProblematicUrls.get() + UrlTypeChecker.pagesNotProvidingDocUrls.get() + UrlTypeChecker.longToRespondUrls.get() + PageCrawler.contentProblematicUrls.get();
 
@@ -350,14 +425,23 @@ public class PublicationsRetriever
 		logger.debug("The number of offline-redirects to HTTPS (reducing the online-redirection-overhead), was: " + HttpConnUtils.timesDidOfflineHTTPSredirect.get());
 		logger.debug("The number of domains blocked due to an \"SSL Exception\", was: " + HttpConnUtils.numOfDomainsBlockedDueToSSLException.get());
 		logger.debug("The number of domains blocked in total, was: " + HttpConnUtils.blacklistedDomains.size());
+		logger.debug("The duplicateUrls were kept in " + UrlUtils.duplicateUrls.getDescription() + ".");
 		logger.debug("The number of paths blocked -due to HTTP 403- in total, was: " + ConnSupportUtils.domainsMultimapWithPaths403BlackListed.values().size());
+		DomainCircuitBreaker.logStatistics();
+		SSLUtils.logStatistics();
+		logger.debug("The adaptive timeouts (derived from the latency-histograms of " + ConnSupportUtils.domainsWithLatencyData.size() + " domains) were used in " + ConnSupportUtils.timesUsedAdaptiveTimeouts.get() + " connections.");
 
-		calculateAndPrintElapsedTime(startTime, Instant.now());
+		Instant finishTime = Instant.now();
+		calculateAndPrintElapsedTime(startTime, finishTime);
 		logger.debug("Used " + workerThreadsCount + " worker threads.");
+		BandwidthLimiter.logBandwidthStatistics(Duration.between(startTime, finishTime).toMillis());
 
 		if ( logger.isDebugEnabled() )
 		{
-			sortHashTableByValueAndPrint(UrlUtils.domainsAndHits, true);
+			// The hits are counted per domain (the blocking-protection uses them per domain), but many domains may belong to the same site.
+			Map<String, Integer> domainsAndHits = DomainRegistry.getDomainsAndHits();
+			logger.debug("The docUrls were found in " + domainsAndHits.size() + " domains, which belong to " + DomainRegistry.getNumOfRegistrableDomainsWithHits() + " registrable domains (sites).");
+			sortHashTableByValueAndPrint(domainsAndHits, true);
 
 			// DEBUG! comment-out the following in production (even in debug-mode).
 			/*if ( MachineLearning.useMLA )
@@ -426,7 +510,7 @@ public class PublicationsRetriever
 	}
 
 
-	public static void sortHashTableByValueAndPrint(Hashtable<String, Integer> table, boolean descendingOrder)
+	public static void sortHashTableByValueAndPrint(Map<String, Integer> table, boolean descendingOrder)
 	{
 		List<Map.Entry<String, Integer>> list = new LinkedList<>(table.entrySet());
 		list.sort((o1, o2) -> {
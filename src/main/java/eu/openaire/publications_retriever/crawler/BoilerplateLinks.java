@@ -0,0 +1,123 @@
+package eu.openaire.publications_retriever.crawler;
+
+import eu.openaire.publications_retriever.util.url.DocOrDatasetUrlClassifier;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * This class tracks how many pages of each domain contain each link, in order to recognize the boilerplate-links (navigation, footer, licence, help, etc.), which appear in most pages of a domain.
+ * Such links are dropped before being canonicalized, filtered and checked, as they never lead to the docUrl of a specific page.
+ * The counts are kept in a count-min sketch, keyed by "domain + link", so the memory is fixed, no matter how many domains and links are encountered.
+ * The sketch may only over-estimate a count (when keys collide in all of its rows), so the threshold is high and a minimum number of pages is required for each domain, before any link is dropped.
+ * Also, as the sketch gets filled, the average count of its counters is subtracted from each estimation, so the links of the small domains stop being dropped, instead of being dropped wrongly.
+ * Only the links which do not depend on the path of the page (the absolute ones and the ones starting from the root) are counted, as the same relative link (like "fulltext.pdf") leads to a different url in each page.
+ * The links which look like docUrls or datasetUrls are never dropped, even if they appear in most pages of their domain.
+ * @author Lampros Smyrnaios
+ */
+public class BoilerplateLinks
+{
+	private static final int SKETCH_DEPTH = 4;	// The number of rows (hash-functions).
+	private static final int SKETCH_WIDTH = (1 << 19);	// The counters per row. In total, the sketch takes 8 MB.
+	private static final int SKETCH_WIDTH_MASK = (SKETCH_WIDTH - 1);
+
+	private static final AtomicIntegerArray sketch = new AtomicIntegerArray(SKETCH_DEPTH * SKETCH_WIDTH);
+	private static final int[] rowSeeds = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+	private static final LongAdder numOfCountedLinks = new LongAdder();	// Each counted link increments one counter in each row.
+
+	private static final ConcurrentHashMap<String, AtomicInteger> pagesPerDomain = new ConcurrentHashMap<>();
+
+	private static final int LEAST_PAGES_OF_DOMAIN = 10;	// Do not drop any links, until we have seen this number of pages from the domain.
+	private static final double LEAST_PERCENTAGE_OF_PAGES = 0.8;	// A link which appears in at least 80% of the pages of the domain, is considered boilerplate.
+
+	public static AtomicInteger numOfBoilerplateLinksSkipped = new AtomicInteger(0);
+
+
+	/**
+	 * This method registers a new page of the given domain, whose links are about to be checked with "isBoilerplate()".
+	 * @param pageDomain
+	 * @return The number of the previous pages of this domain.
+	 */
+	public static int registerPage(String pageDomain)
+	{
+		return pagesPerDomain.computeIfAbsent(pageDomain, k -> new AtomicInteger(0)).getAndIncrement();
+	}
+
+
+	/**
+	 * This method counts the given link for the current page of its domain and returns whether it has appeared in most of the previous pages of that domain.
+	 * It should be called only once per link in each page. The relative links are not counted and they are never considered boilerplate.
+	 * @param pageDomain
+	 * @param link	// The link as it appears in the page (non-canonicalized).
+	 * @param previousPagesOfDomain	// As returned by "registerPage()".
+	 * @return true / false
+	 */
+	public static boolean isBoilerplate(String pageDomain, String link, int previousPagesOfDomain)
+	{
+		if ( !isPathIndependent(link) )
+			return false;	// It leads to a different url in each page, even if it's written the same way.
+
+		int hash = (pageDomain.hashCode() * 31) + link.hashCode();
+		int previousCount = Integer.MAX_VALUE;
+		for ( int row = 0; row < SKETCH_DEPTH; row++ ) {
+			int index = (row * SKETCH_WIDTH) + (mix(hash ^ rowSeeds[row]) & SKETCH_WIDTH_MASK);
+			int count = sketch.getAndIncrement(index);
+			if ( count < previousCount )
+				previousCount = count;
+		}
+		numOfCountedLinks.increment();
+
+		if ( previousPagesOfDomain < LEAST_PAGES_OF_DOMAIN )
+			return false;
+
+		previousCount -= (int) (numOfCountedLinks.sum() / SKETCH_WIDTH);	// Remove the expected noise from the other keys.
+
+		if ( previousCount < (previousPagesOfDomain * LEAST_PERCENTAGE_OF_PAGES) )
+			return false;
+
+		String lowerCaseLink = link.toLowerCase();
+		if ( DocOrDatasetUrlClassifier.isPossibleDocUrl(lowerCaseLink) || DocOrDatasetUrlClassifier.isPossibleDatasetUrl(lowerCaseLink) || LinkRanker.hasPositivePathToken(lowerCaseLink) )
+			return false;	// A domain may have the same docUrl (e.g. a guide or a template) in most of its pages, but we do not risk dropping a docUrl which is specific to this page.
+
+		numOfBoilerplateLinksSkipped.incrementAndGet();
+		return true;
+	}
+
+
+	/**
+	 * @param link
+	 * @return true, if the link is absolute (it has a scheme) or if it starts from the root of its domain (with a single slash).
+	 */
+	private static boolean isPathIndependent(String link)
+	{
+		if ( link.startsWith("/") )
+			return !link.startsWith("//");	// Not a protocol-relative link (like "//cdn.example.org/..."), which is not counted.
+
+		int schemeEnd = link.indexOf("://");
+		if ( schemeEnd <= 0 )
+			return false;
+		for ( int i = 0; i < schemeEnd; i++ ) {
+			char c = link.charAt(i);
+			if ( !Character.isLetterOrDigit(c) && (c != '+') && (c != '-') && (c != '.') )
+				return false;	// The "://" is part of the path or of the parameters.
+		}
+		return true;
+	}
+
+
+	/**
+	 * The finalizer of the "MurmurHash3", which spreads the bits of the hash, so that each row uses different bits of it.
+	 */
+	private static int mix(int h)
+	{
+		h ^= (h >>> 16);
+		h *= 0x85EBCA6B;
+		h ^= (h >>> 13);
+		h *= 0xC2B2AE35;
+		h ^= (h >>> 16);
+		return h;
+	}
+}
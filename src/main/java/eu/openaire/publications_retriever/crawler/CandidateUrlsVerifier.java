@@ -0,0 +1,205 @@
+package eu.openaire.publications_retriever.crawler;
+
+import eu.openaire.publications_retriever.exceptions.ConnTimeoutException;
+import eu.openaire.publications_retriever.exceptions.DomainBlockedException;
+import eu.openaire.publications_retriever.exceptions.DomainWithUnsupportedHEADmethodException;
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker;
+import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.PublicSuffixes;
+import eu.openaire.publications_retriever.util.url.UrlUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * This class verifies the possibleDocOrDatasetUrls of a page concurrently, instead of one after the other.
+ * The candidates are grouped by their registrable domain (the same one the "politenessDelay" is applied to) and the candidates of each group are checked sequentially, so we never connect to the same domain in parallel.
+ * Up to "PageCrawler.maxParallelCandidateChecksPerPage" groups are checked at the same time.
+ * The first confirmed docUrl claims the page (see "HttpConnUtils.claimDocUrl()"), so it's the only one to be logged, while the other checks stop before their next connection.
+ * @author Lampros Smyrnaios
+ */
+public class CandidateUrlsVerifier
+{
+	private static final Logger logger = LoggerFactory.getLogger(CandidateUrlsVerifier.class);
+
+	public static ExecutorService executor = null;	// It's initialized in "PublicationsRetriever.main()", only when the parallel-verification is enabled.
+
+	/**
+	 * The step which connects to a candidate and checks its mimeType, logging it, if it's a docUrl (after claiming the page, see "HttpConnUtils.claimDocUrl()").
+	 */
+	public interface CandidateConnector
+	{
+		boolean connectAndCheckMimeType(String urlId, String sourceUrl, String pageUrl, String urlToCheck)
+				throws RuntimeException, ConnTimeoutException, DomainBlockedException, DomainWithUnsupportedHEADmethodException;
+	}
+
+	public static CandidateConnector candidateConnector = (urlId, sourceUrl, pageUrl, urlToCheck)	// Only the tests replace it, in order to control the timing and the outcome of each check.
+			-> HttpConnUtils.connectAndCheckMimeType(urlId, sourceUrl, pageUrl, urlToCheck, null, false, true);
+
+	public static AtomicInteger numOfPagesVerifiedInParallel = new AtomicInteger(0);	// The pages with candidates from more than one domain, thus being actually verified in parallel.
+	public static AtomicInteger numOfCandidateChecksAbandoned = new AtomicInteger(0);	// The candidates which were not connected, since another candidate was verified first, or the page was left.
+
+
+	/**
+	 * This class holds the state of the verification of the candidates of a page, which is shared among its checkers.
+	 */
+	private static class PageVerification
+	{
+		final AtomicBoolean docUrlClaim = new AtomicBoolean(false);
+		final AtomicReference<String> leavingComment = new AtomicReference<>(null);	// The output-comment of the first event which should make the page be left, like in the sequential-verification.
+		final ConcurrentLinkedQueue<List<String>> domainGroups;
+		final AtomicInteger runningCheckers;
+		final CountDownLatch finished = new CountDownLatch(1);	// It's released when a docUrl is found, or when all checkers have finished.
+
+		PageVerification(Collection<List<String>> domainGroups, int numOfCheckers)
+		{
+			this.domainGroups = new ConcurrentLinkedQueue<>(domainGroups);
+			this.runningCheckers = new AtomicInteger(numOfCheckers);
+		}
+
+		boolean shouldStop() {
+			return (docUrlClaim.get() || (leavingComment.get() != null));
+		}
+	}
+
+
+	public static void initExecutor(int workerThreadsCount, int maxParallelChecksPerPage)
+	{
+		// Each worker-thread may wait for up to "maxParallelChecksPerPage" checkers at a time. The checkers are I/O-bound, as the worker-threads are.
+		executor = Executors.newFixedThreadPool(workerThreadsCount * maxParallelChecksPerPage);
+	}
+
+
+	public static void shutdownExecutor()
+	{
+		if ( executor != null )
+			executor.shutdownNow();	// It is called after the worker-threads have stopped, so no page is waiting for its checkers anymore.
+	}
+
+
+	/**
+	 * This method verifies the given possibleDocOrDatasetUrls of a page, by checking the candidates of different domains in parallel.
+	 * The candidates are expected in the order in which the sequential-verification would check them.
+	 * @param urlId
+	 * @param sourceUrl
+	 * @param pageUrl
+	 * @param pageDomain
+	 * @param possibleDocOrDatasetUrls
+	 * @return "true", if the page was handled (a docUrl was found, or the page was left), otherwise, "false". In both cases, the necessary logging is handled inside.
+	 */
+	public static boolean verifyCandidates(String urlId, String sourceUrl, String pageUrl, String pageDomain, List<String> possibleDocOrDatasetUrls)
+	{
+		// Group the candidates by their domain, keeping their order inside each group.
+		LinkedHashMap<String, List<String>> domainGroups = new LinkedHashMap<>();
+		for ( String candidate : possibleDocOrDatasetUrls ) {
+			String candidateDomain = UrlUtils.getDomainStr(candidate, null);
+			if ( candidateDomain != null )
+				candidateDomain = PublicSuffixes.getRegistrableDomain(candidateDomain);	// The same key as the politeness-delay uses.
+			// The candidates without a domain are grouped together, they will be rejected by the "HttpConnUtils.connectAndCheckMimeType()".
+			domainGroups.computeIfAbsent(candidateDomain, k -> new ArrayList<>()).add(candidate);
+		}
+
+		int numOfCheckers = Math.min(domainGroups.size(), PageCrawler.maxParallelCandidateChecksPerPage);
+		PageVerification verification = new PageVerification(domainGroups.values(), numOfCheckers);
+
+		if ( numOfCheckers == 1 )	// All the candidates belong to the same domain, so the politeness-delay makes them be checked one after the other anyway.
+			runChecker(urlId, sourceUrl, pageUrl, pageDomain, verification);
+		else {
+			numOfPagesVerifiedInParallel.incrementAndGet();
+			List<Future<?>> futures = new ArrayList<>(numOfCheckers);
+			for ( int i = 0; i < numOfCheckers; i++ )
+				futures.add(executor.submit(() -> runChecker(urlId, sourceUrl, pageUrl, pageDomain, verification)));
+			try {
+				verification.finished.await();
+			} catch (InterruptedException ie) {
+				logger.warn("Interrupted while waiting for the candidates of pageUrl \"" + pageUrl + "\" to be verified.");
+				verification.leavingComment.compareAndSet(null, "Logged in 'PageCrawler.visit()' method, as the verification of its possibleDocOrDatasetUrls was interrupted.");	// Make the running checkers stop.
+				Thread.currentThread().interrupt();	// Keep the interrupt-status, so that the worker-thread can see it (e.g. during the shutdown).
+			}
+			// Cancel the checkers which have not started yet. The running ones will stop before their next connection, as they will see the claimed docUrl.
+			for ( Future<?> future : futures )
+				future.cancel(false);
+		}
+
+		if ( verification.docUrlClaim.get() ) {
+			PageFingerprints.registerDocUrlOfCurrentPage();	// The checker-threads do not record it.
+			return true;	// The docUrl is already logged by its checker.
+		}
+
+		String leavingComment = verification.leavingComment.get();
+		if ( leavingComment != null ) {
+			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", leavingComment, null, true, "true", "true", "false", "false");
+			LoaderAndChecker.connProblematicUrls.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+
+	private static void runChecker(String urlId, String sourceUrl, String pageUrl, String pageDomain, PageVerification verification)
+	{
+		HttpConnUtils.docUrlClaim.set(verification.docUrlClaim);	// Only the first docUrl of this page will be logged.
+		try {
+			List<String> candidates;
+			while ( (candidates = verification.domainGroups.poll()) != null )
+			{
+				for ( String urlToCheck : candidates )
+				{
+					if ( verification.shouldStop() ) {
+						numOfCandidateChecksAbandoned.incrementAndGet();
+						continue;
+					}
+					if ( checkCandidate(urlId, sourceUrl, pageUrl, pageDomain, urlToCheck, verification) ) {
+						verification.finished.countDown();	// This or another docUrl of this page is already logged.
+						return;
+					}
+				}
+			}
+		} finally {
+			HttpConnUtils.docUrlClaim.remove();
+			if ( verification.runningCheckers.decrementAndGet() == 0 )
+				verification.finished.countDown();
+		}
+	}
+
+
+	/**
+	 * This method checks a single candidate, handling its exceptions the same way as the sequential-verification in "PageCrawler.visit()" does.
+	 * The page-leaving events are only recorded here, the page gets logged by the calling thread, after all checkers have finished.
+	 * @return "true", if a docUrl was found, otherwise, "false".
+	 */
+	private static boolean checkCandidate(String urlId, String sourceUrl, String pageUrl, String pageDomain, String urlToCheck, PageVerification verification)
+	{
+		try {
+			if ( candidateConnector.connectAndCheckMimeType(urlId, sourceUrl, pageUrl, urlToCheck) ) {	// We log the docUrl inside this method.
+				PageCrawler.registerDocUrlLink(pageDomain, urlToCheck);
+				return true;
+			}
+			else if ( !verification.docUrlClaim.get() )	// If another docUrl was claimed before this one got verified, then this one may be a docUrl too, so don't block it.
+				UrlUtils.duplicateUrls.add(urlToCheck);
+		} catch (RuntimeException re) {
+			UrlUtils.duplicateUrls.add(urlToCheck);    // Don't check it ever again..
+		} catch (DomainBlockedException dbe) {
+			String blockedDomain = dbe.getMessage();
+			if ( (blockedDomain != null) && blockedDomain.contains(pageDomain) ) {
+				if ( verification.leavingComment.compareAndSet(null, "Logged in 'PageCrawler.visit()' method, as its domain was blocked during crawling." + DomainCircuitBreaker.getStateComment(pageDomain)) )
+					logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after it's domain was blocked.");
+			}
+		} catch (ConnTimeoutException cte) {
+			if ( urlToCheck.contains(pageDomain) ) {	// In this case, it's unworthy to stay and check other internalLinks here.
+				if ( verification.leavingComment.compareAndSet(null, "Logged in 'PageCrawler.visit()' method, as an internalLink of this page caused 'ConnTimeoutException'.") )
+					logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after a potentialDocUrl caused a ConnTimeoutException.");
+			}
+		} catch (Exception e) {	// The exception: "DomainWithUnsupportedHEADmethodException" should never be caught here, as we use "GET" for possibleDocOrDatasetUrls.
+			logger.error("" + e);
+		}
+		return false;
+	}
+}
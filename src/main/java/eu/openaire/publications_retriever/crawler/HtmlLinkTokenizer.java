@@ -0,0 +1,1049 @@
+package eu.openaire.publications_retriever.crawler;
+
+import org.jsoup.parser.Parser;
+
+import java.util.*;
+
+
+/**
+ * This class extracts the "a" and the "link[href][type*=pdf]" elements from the HTML-code, with a single streaming pass, without building the DOM-tree of the page (like "Jsoup.parse()" does).
+ * It returns the elements one by one, in document-order. In the same pass, it finds the first metaDocUrl of the page (see "getMetaDocUrl()"), so the HTML does not have to be scanned again for its metaTags,
+ * and it computes the fingerprint of the page (see "getFingerprint()").
+ * The tokenization follows the one of "Jsoup" (tags, attributes, comments, raw-text elements and character-references), so the same attribute-values and anchor-texts are produced.
+ * The whitespace of the anchor-texts is normalized, except inside the "pre", "title" and "textarea" elements, where Jsoup preserves it.
+ * A "frameset"-tag makes the page be reported as malformed, as Jsoup either switches to its "frameset"-mode (where it drops the anchors) or ignores the tag, depending on what preceded it.
+ * Only the names of the open elements are kept (not a tree), in order to apply the same implicit-closing rules with the Jsoup's tree-builder.
+ * When the HTML is malformed in a way that the tree-builder would re-arrange or re-create the anchors (e.g. an unclosed "a" inside a "li", an "a" directly inside a "table", misnested formatting-tags, an unclosed comment or quote),
+ * the iteration stops and "isMalformed()" returns "true", so that the caller can fall back to Jsoup for the whole page.
+ * @author Lampros Smyrnaios
+ */
+public class HtmlLinkTokenizer implements Iterator<LinkElement>
+{
+	// The following sets are taken from the "Tag", the "HtmlTreeBuilder" and the "HtmlTreeBuilderState" classes of Jsoup, in order to produce the same results.
+	private static final Set<String> voidElements = newSet("meta", "link", "base", "frame", "img", "image", "br", "wbr", "embed", "hr", "input", "keygen", "col", "command",
+			"device", "area", "basefont", "bgsound", "menuitem", "param", "source", "track");
+
+	private static final Set<String> blockElements = newSet("html", "head", "body", "frameset", "script", "noscript", "style", "meta", "link", "title", "frame",
+			"noframes", "section", "nav", "aside", "hgroup", "header", "footer", "p", "h1", "h2", "h3", "h4", "h5", "h6", "ul", "ol", "pre", "div", "blockquote", "hr",
+			"address", "figure", "figcaption", "form", "fieldset", "ins", "del", "dl", "dt", "dd", "li", "table", "caption", "thead", "tfoot", "tbody", "colgroup", "col",
+			"tr", "th", "td", "video", "audio", "canvas", "details", "menu", "plaintext", "template", "article", "main", "svg", "math", "center");	// Jsoup separates their text with a space.
+
+	private static final Set<String> specialElements = newSet("address", "applet", "area", "article", "aside", "base", "basefont", "bgsound", "blockquote", "body", "br",
+			"button", "caption", "center", "col", "colgroup", "command", "dd", "details", "dir", "div", "dl", "dt", "embed", "fieldset", "figcaption", "figure", "footer", "form",
+			"frame", "frameset", "h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hgroup", "hr", "html", "iframe", "img", "input", "isindex", "li", "link", "listing",
+			"marquee", "menu", "meta", "nav", "noembed", "noframes", "noscript", "object", "ol", "p", "param", "plaintext", "pre", "script", "section", "select", "style",
+			"summary", "table", "tbody", "td", "textarea", "tfoot", "th", "thead", "title", "tr", "ul", "wbr", "xmp");
+
+	private static final Set<String> formattingElements = newSet("a", "b", "big", "code", "em", "font", "i", "nobr", "s", "small", "strike", "strong", "tt", "u");	// Jsoup re-opens them, when they were closed implicitly.
+	private static final Set<String> markerElements = newSet("applet", "marquee", "object", "td", "th", "caption");	// The formatting-elements opened before them, are not re-opened inside them.
+
+	private static final Set<String> paragraphClosingElements = newSet("address", "article", "aside", "blockquote", "center", "details", "dir", "div", "dl",
+			"fieldset", "figcaption", "figure", "footer", "header", "hgroup", "menu", "nav", "ol", "p", "section", "summary", "ul",
+			"h1", "h2", "h3", "h4", "h5", "h6", "pre", "listing", "form", "plaintext", "table", "hr", "xmp");	// Their start-tags close the "p" which is in scope.
+
+	private static final Set<String> headingElements = newSet("h1", "h2", "h3", "h4", "h5", "h6");
+	private static final Set<String> nonReconstructingElements = newSet("html", "body", "frameset", "li", "dd", "dt", "form", "plaintext", "table", "hr", "isindex", "textarea",
+			"iframe", "noembed", "h1", "h2", "h3", "h4", "h5", "h6", "pre", "listing", "param", "source", "track", "rp", "rt", "base", "basefont", "bgsound", "command", "link",
+			"meta", "noframes", "script", "style", "title");	// Along with the "paragraphClosingElements", they do not re-open the formatting-elements.
+	private static final Set<String> listItemBreakingElements = newSet("address", "div", "p");	// They do not stop the search for an open list-item.
+
+	private static final Set<String> scopeBoundaryElements = newSet("applet", "caption", "html", "table", "td", "th", "marquee", "object");
+	private static final Set<String> buttonScopeBoundaryElements = newSet("applet", "caption", "html", "table", "td", "th", "marquee", "object", "button");
+	private static final Set<String> listItemScopeBoundaryElements = newSet("applet", "caption", "html", "table", "td", "th", "marquee", "object", "ol", "ul");
+	private static final Set<String> tableScopeBoundaryElements = newSet("html", "table");
+	private static final int maxScopeSearchDepth = 100;	// Like in Jsoup.
+
+	private static final Set<String> rawTextElements = newSet("script", "style", "title", "textarea", "xmp", "iframe", "noembed", "noframes");	// Their content is not tokenized.
+	private static final Set<String> dataElements = newSet("script", "style");	// Their content is not part of the text.
+	private static final Set<String> escapableRawTextElements = newSet("title", "textarea");	// Their content may have character-references.
+	private static final Set<String> whitespacePreservingElements = newSet("pre", "plaintext", "title", "textarea");	// Jsoup keeps the whitespace of the text inside them (up to 5 levels deeper).
+	private static final int maxWhitespacePreservingDepth = 6;	// Like in Jsoup: the parent of the text and five more levels up.
+
+	private static final Set<String> documentStructureElements = newSet("html", "head", "body");	// Jsoup merges or ignores their tags, after the first time.
+	private static final Set<String> headElements = newSet("html", "head", "base", "basefont", "bgsound", "command", "link", "meta", "title", "noframes", "style", "noscript", "script");	// Any other start-tag opens the "body".
+	private static final Set<String> headNoscriptElements = newSet("basefont", "bgsound", "link", "meta", "noframes", "style");	// Inside a "noscript" of the "head", Jsoup keeps any other tag as text.
+
+	private static final Set<String> tableStructureElements = newSet("table", "caption", "colgroup", "tbody", "thead", "tfoot", "tr", "td", "th");
+	private static final Set<String> tableOnlyElements = newSet("caption", "col", "colgroup", "frame", "tbody", "td", "tfoot", "th", "thead", "tr");	// Jsoup ignores them outside of a table.
+	private static final Set<String> fosterParentingElements = newSet("table", "tbody", "thead", "tfoot", "tr");	// The content directly inside them is moved before the table, by Jsoup.
+	private static final Set<String> tableContentElements = newSet("table", "caption", "colgroup", "col", "tbody", "thead", "tfoot", "tr", "td", "th", "script", "style", "form", "input");
+
+	private static final Set<String> cellClosingElements = newSet("td", "th");	// The elements closed by a new cell, row or table-section.
+	private static final Set<String> rowClosingElements = newSet("tr", "td", "th", "caption");
+	private static final Set<String> sectionClosingElements = newSet("tbody", "thead", "tfoot", "tr", "td", "th", "caption", "colgroup");
+
+	private static final int maxOpenElements = 1000;
+
+	private final String html;
+	private final int length;
+	private final boolean shouldCollectText;
+	private int index = 0;
+
+	private boolean isFinished = false;
+	private boolean isMalformed = false;
+
+	private final ArrayDeque<LinkElement> readyLinkElements = new ArrayDeque<>();
+	private final ArrayList<String> openElements = new ArrayList<>();	// The names of the open elements, like the "stack" of the Jsoup's tree-builder.
+	private final ArrayList<FormattingElement> activeFormattingElements = new ArrayList<>();	// Like the "formattingElements" of the Jsoup's tree-builder.
+
+	private LinkElement openAnchor = null;
+	private int anchorPosition = -1;	// The position of the open anchor in the "openElements".
+	private final StringBuilder anchorText = new StringBuilder(100);
+	private final ArrayList<LinkElement> linkElementsInsideAnchor = new ArrayList<>();	// They are returned after the anchor, to keep the document-order.
+	private boolean isBlockSpacePending = false;
+
+	private boolean isInHead = true;
+	private boolean isInHeadNoscript = false;
+	private boolean isInSelect = false;
+	private boolean isFormOpen = false;
+
+	// The data of the current tag.
+	private boolean isSelfClosing;
+	private String hrefAttr, titleAttr, typeAttr, dataPopupAttr;
+	private String nameAttr, contentAttr;	// The raw values of the metaTags' attributes, like the "MetaTagScanner" takes them.
+	private int attributesStart, attributesEnd;
+
+	private String metaDocUrl = null;
+	private final PageFingerprints.Accumulator fingerprintAccumulator = new PageFingerprints.Accumulator();
+
+
+	/**
+	 * This class holds an entry of the "active formatting elements" (or a marker, when the "name" is null).
+	 */
+	private static class FormattingElement
+	{
+		String name;
+		String attributes;	// The raw attributes, used to find the identical elements.
+		int stackPosition;	// The position in the "openElements", or "-1", when it was closed implicitly.
+
+		FormattingElement(String name, String attributes, int stackPosition)
+		{
+			this.name = name;
+			this.attributes = attributes;
+			this.stackPosition = stackPosition;
+		}
+	}
+
+
+	/**
+	 * @param html the HTML-code of the page
+	 * @param shouldCollectText whether the anchor-texts should be collected (they are not needed when checking for datasets)
+	 */
+	public HtmlLinkTokenizer(String html, boolean shouldCollectText)
+	{
+		this.html = html;
+		this.length = html.length();
+		this.shouldCollectText = shouldCollectText;
+	}
+
+
+	@Override
+	public boolean hasNext()
+	{
+		while ( readyLinkElements.isEmpty() && !isFinished )
+			tokenizeNext();
+		return !readyLinkElements.isEmpty();
+	}
+
+
+	@Override
+	public LinkElement next()
+	{
+		if ( !hasNext() )
+			throw new NoSuchElementException();
+		return readyLinkElements.poll();
+	}
+
+
+	/**
+	 * @return the "content" of the first supported metaTag which was tokenized so far, or "null". It is final, after the iteration has ended without the page being malformed.
+	 */
+	public String getMetaDocUrl()
+	{
+		return metaDocUrl;
+	}
+
+
+	/**
+	 * @return the fingerprint of the tags and the title which were tokenized so far (see "PageFingerprints"). It is final, after the iteration has ended without the page being malformed.
+	 */
+	public long getFingerprint()
+	{
+		return fingerprintAccumulator.getFingerprint();
+	}
+
+
+	/**
+	 * @return true, if the tokenization stopped before the end of the page, because Jsoup could give different elements.
+	 */
+	public boolean isMalformed()
+	{
+		return isMalformed;
+	}
+
+
+	private void tokenizeNext()
+	{
+		int tagStart = html.indexOf('<', index);
+		int textEnd = (tagStart != -1) ? tagStart : length;
+		if ( (textEnd > index) && !handleText(index, textEnd, true) )
+			return;
+
+		if ( (tagStart == -1) || ((tagStart + 1) >= length) ) {
+			if ( (tagStart != -1) && !handleText(tagStart, length, false) )	// A trailing "<".
+				return;
+			finish();
+			return;
+		}
+
+		index = tagStart + 1;
+		char c = html.charAt(index);
+		if ( c == '!' )
+			skipMarkupDeclaration();
+		else if ( c == '/' )
+			handleEndTag();
+		else if ( c == '?' ) {
+			isBlockSpacePending = false;	// The comment is the next node.
+			skipBogusComment(index);
+		} else if ( Character.isLetter(c) )
+			handleStartTag();
+		else	// This "<" does not start a tag, so it is part of the text.
+			handleText(tagStart, index, false);
+	}
+
+
+	/**
+	 * This method handles a text-node, re-opening the formatting-elements which were closed implicitly, like Jsoup does.
+	 * @return false, if the page is malformed.
+	 */
+	private boolean handleText(int start, int end, boolean shouldUnescape)
+	{
+		boolean hasNonWhitespace = hasNonWhitespace(start, end);
+		if ( isInHead && !isInHeadNoscript && hasNonWhitespace )
+			isInHead = false;	// The text opens the "body".
+		if ( !isInHead && !isInSelect && (hasNonWhitespace || !isFosterParentingContext()) && !reconstructFormattingElements() ) {
+			setMalformed();
+			return false;
+		}
+		appendText(start, end, shouldUnescape);
+		return true;
+	}
+
+
+	private void handleStartTag()
+	{
+		String tagName = getTagName();
+		fingerprintAccumulator.addTag(tagName);
+		boolean isLinkElement = (tagName.equals("a") || tagName.equals("link"));
+		boolean isMetaElement = tagName.equals("meta");
+		if ( !parseAttributes(isLinkElement || isMetaElement) ) {
+			setMalformed();
+			return;
+		}
+		if ( isMetaElement && (metaDocUrl == null) )	// The metaTags are accepted anywhere in the page, like the "MetaTagScanner" does.
+			metaDocUrl = MetaTagScanner.getMetaDocUrl(nameAttr, contentAttr);
+		if ( tagName.equals("frameset") ) {	// Jsoup either drops the rest of the anchors (in its "frameset"-mode), or ignores this tag, depending on the preceding content.
+			setMalformed();
+			return;
+		}
+
+		if ( isInHeadNoscript ) {
+			if ( !headNoscriptElements.contains(tagName) )
+				return;	// Jsoup keeps it as text.
+		} else if ( isInHead && !headElements.contains(tagName) )
+			isInHead = false;	// This tag opens the "body".
+
+		if ( documentStructureElements.contains(tagName) )
+			return;
+		else if ( isInHead && tagName.equals("noscript") ) {
+			isInHeadNoscript = !isSelfClosing;
+			return;
+		} else if ( isInSelect ) {
+			if ( isLinkElement ) {	// Jsoup ignores these elements inside a "select".
+				setMalformed();
+				return;
+			} else if ( tagName.equals("select") ) {	// It just closes the open "select".
+				closeSelect();
+				return;
+			} else if ( tagName.equals("input") || tagName.equals("keygen") || tagName.equals("textarea") )
+				closeSelect();
+			else if ( !tagName.equals("script") )
+				return;	// Jsoup ignores any other tag inside a "select" (so the content of the raw-text elements is tokenized as well).
+		} else if ( tagName.equals("form") && isFormOpen )
+			return;	// Jsoup ignores the nested forms.
+		else if ( tableOnlyElements.contains(tagName) && !openElements.contains("table") )
+			return;
+
+		if ( !closeElementsBeforeStartTag(tagName)
+				|| (!paragraphClosingElements.contains(tagName) && !nonReconstructingElements.contains(tagName) && !reconstructFormattingElements()) ) {
+			setMalformed();
+			return;
+		}
+		isBlockSpacePending = false;	// A new node follows the closed elements.
+
+		if ( tagName.equals("a") ) {
+			openAnchor = new LinkElement(hrefAttr, titleAttr, typeAttr, dataPopupAttr, null);
+			anchorPosition = openElements.size();
+			pushActiveFormattingElement(tagName);
+			openElements.add(tagName);
+			if ( isSelfClosing )
+				closeAnchor(true);
+			return;
+		} else if ( tagName.equals("link") ) {
+			if ( (hrefAttr != null) && (typeAttr != null) && typeAttr.toLowerCase().contains("pdf") ) {
+				if ( isFosterParentingContext() ) {
+					setMalformed();
+					return;
+				}
+				LinkElement linkElement = new LinkElement(hrefAttr, titleAttr, typeAttr, dataPopupAttr, null);
+				if ( openAnchor != null )
+					linkElementsInsideAnchor.add(linkElement);
+				else
+					readyLinkElements.add(linkElement);
+			}
+			appendBlockSpace(tagName);
+			return;
+		} else if ( tagName.equals("br") ) {
+			appendTextSpace();
+			return;
+		} else if ( tagName.equals("plaintext") ) {	// All the rest of the page is text.
+			setMalformed();
+			return;
+		} else if ( tagName.equals("form") ) {
+			isFormOpen = true;
+			if ( isFosterParentingContext() )
+				return;	// Jsoup does not keep it open inside a table.
+		}
+
+		appendBlockSpace(tagName);
+		if ( !voidElements.contains(tagName) ) {
+			if ( isSelfClosing )	// Jsoup closes it immediately.
+				isBlockSpacePending = ((openAnchor != null) && blockElements.contains(tagName));
+			else if ( openElements.size() < maxOpenElements ) {
+				if ( formattingElements.contains(tagName) )
+					pushActiveFormattingElement(tagName);
+				openElements.add(tagName);
+				if ( markerElements.contains(tagName) )
+					activeFormattingElements.add(new FormattingElement(null, null, -1));
+				if ( tagName.equals("select") )
+					isInSelect = true;
+			} else {
+				setMalformed();
+				return;
+			}
+		}
+
+		if ( (tagName.equals("pre") || tagName.equals("listing")) && (index < length) && (html.charAt(index) == '\n') )
+			index++;	// Jsoup ignores the newline right after these start-tags.
+
+		if ( rawTextElements.contains(tagName) ) {
+			if ( isSelfClosing ) {	// Jsoup handles the self-closing raw-text elements inconsistently.
+				setMalformed();
+				return;
+			}
+			skipRawText(tagName);
+		}
+	}
+
+
+	/**
+	 * This method closes the elements which are closed implicitly by the given start-tag, like the Jsoup's tree-builder does.
+	 * @return false, if the open anchor would be affected in a way that Jsoup re-arranges or re-creates it.
+	 */
+	private boolean closeElementsBeforeStartTag(String tagName)
+	{
+		if ( isFosterParentingContext() && !tableContentElements.contains(tagName) && !voidElements.contains(tagName) )
+			return false;	// Jsoup moves this element (along with its content) before the table, so the document-order changes.
+
+		if ( tagName.equals("a") )
+			return ((openAnchor == null) || closeAnchor(true));	// Jsoup closes the open anchor (with the "adoption agency" algorithm).
+		else if ( (openAnchor != null) && (tableStructureElements.contains(tagName) || tagName.equals("select")) )
+			return false;	// The content of the anchor could be re-arranged.
+
+		if ( paragraphClosingElements.contains(tagName) && !closeParagraph() )
+			return false;
+
+		int size = openElements.size();
+		if ( headingElements.contains(tagName) ) {
+			if ( (size > 0) && headingElements.contains(openElements.get(size - 1)) )
+				return closeElementsFrom(size - 1);
+		} else if ( tagName.equals("li") )
+			return (closeListItem("li", null) && closeParagraph());
+		else if ( tagName.equals("dd") || tagName.equals("dt") )
+			return (closeListItem("dd", "dt") && closeParagraph());
+		else if ( tagName.equals("button") ) {
+			int buttonPosition = getPositionInScope("button", scopeBoundaryElements);
+			if ( buttonPosition != -1 )
+				return closeElementsFrom(buttonPosition);
+		} else if ( tagName.equals("nobr") ) {
+			FormattingElement nobrElement = getActiveFormattingElement("nobr");
+			if ( (nobrElement != null) && (getPositionInScope("nobr", scopeBoundaryElements) != -1) )
+				return closeFormattingElement(nobrElement);
+		} else if ( tagName.equals("option") || tagName.equals("optgroup") ) {
+			if ( (size > 0) && openElements.get(size - 1).equals("option") )
+				return closeElementsFrom(size - 1);
+		} else if ( tableStructureElements.contains(tagName) )
+			closeTableElementsBefore(tagName);
+		return true;
+	}
+
+
+	private boolean closeParagraph()
+	{
+		int paragraphPosition = getPositionInScope("p", buttonScopeBoundaryElements);
+		return ((paragraphPosition == -1) || closeElementsFrom(paragraphPosition));
+	}
+
+
+	private boolean closeListItem(String tagName1, String tagName2)
+	{
+		for ( int i = (openElements.size() - 1); i >= 0; --i ) {
+			String element = openElements.get(i);
+			if ( element.equals(tagName1) || element.equals(tagName2) )
+				return closeElementsFrom(i);
+			else if ( specialElements.contains(element) && !listItemBreakingElements.contains(element) )
+				break;
+		}
+		return true;
+	}
+
+
+	private void closeTableElementsBefore(String tagName)
+	{
+		int tablePosition = openElements.lastIndexOf("table");
+		if ( tagName.equals("table") ) {
+			if ( isFosterParentingContext() )	// A "table" directly inside a "table" closes the previous one.
+				popElementsFrom(tablePosition);
+			return;
+		}
+		Set<String> closedElements;
+		if ( tagName.equals("td") || tagName.equals("th") )
+			closedElements = cellClosingElements;
+		else if ( tagName.equals("tr") )
+			closedElements = rowClosingElements;
+		else
+			closedElements = sectionClosingElements;
+
+		for ( int i = (tablePosition + 1); i < openElements.size(); ++i )
+			if ( closedElements.contains(openElements.get(i)) ) {
+				popElementsFrom(i);	// There is no anchor open, at this point.
+				return;
+			}
+	}
+
+
+	private void handleEndTag()
+	{
+		int tagStart = index - 1;
+		index++;	// Skip the "/".
+		if ( index >= length ) {
+			if ( handleText(tagStart, length, false) )
+				finish();
+			return;
+		}
+		char c = html.charAt(index);
+		if ( c == '>' ) {	// The "</>" is ignored.
+			index++;
+			return;
+		} else if ( !Character.isLetter(c) ) {
+			isBlockSpacePending = false;	// The comment is the next node.
+			skipBogusComment(index);
+			return;
+		}
+
+		String tagName = getTagName();
+		if ( !parseAttributes(false) ) {	// Jsoup tokenizes the attributes of the end-tags too (and then ignores them).
+			setMalformed();
+			return;
+		}
+
+		if ( isInHeadNoscript ) {
+			if ( tagName.equals("noscript") )
+				isInHeadNoscript = false;
+			return;	// Jsoup ignores any other end-tag there.
+		} else if ( isInHead && (tagName.equals("head") || tagName.equals("body") || tagName.equals("html") || tagName.equals("br")) )
+			isInHead = false;
+
+		if ( isInSelect ) {
+			if ( tagName.equals("select") )
+				closeSelect();
+			return;	// Jsoup ignores any other end-tag inside a "select".
+		} else if ( documentStructureElements.contains(tagName) )
+			return;	// Jsoup does not close the open elements on these end-tags.
+		else if ( tagName.equals("a") ) {
+			if ( (openAnchor != null) && !closeAnchor(true) )
+				setMalformed();
+			return;	// Without an open anchor, Jsoup ignores it.
+		} else if ( tagName.equals("br") ) {	// Jsoup treats the "</br>" as a "<br>".
+			if ( !reconstructFormattingElements() ) {
+				setMalformed();
+				return;
+			}
+			isBlockSpacePending = false;
+			appendTextSpace();
+			return;
+		} else if ( voidElements.contains(tagName) )
+			return;	// Jsoup ignores it.
+		else if ( tagName.equals("form") ) {
+			closeForm();
+			return;
+		} else if ( tagName.equals("p") && (getPositionInScope("p", buttonScopeBoundaryElements) == -1) ) {	// Jsoup inserts an empty paragraph.
+			appendBlockSpace(tagName);
+			isBlockSpacePending = (openAnchor != null);
+			return;
+		} else if ( formattingElements.contains(tagName) ) {
+			FormattingElement formattingElement = getActiveFormattingElement(tagName);
+			if ( formattingElement != null ) {	// Otherwise, it is handled like any other end-tag.
+				if ( !closeFormattingElement(formattingElement) )
+					setMalformed();
+				return;
+			}
+		}
+
+		int position = -1;
+		if ( headingElements.contains(tagName) ) {	// Any heading closes the open one.
+			for ( int i = (openElements.size() - 1); (i >= 0) && (position == -1); --i )
+				if ( headingElements.contains(openElements.get(i)) )
+					position = i;
+		} else
+			position = openElements.lastIndexOf(tagName);
+		if ( position == -1 )
+			return;	// Jsoup ignores the stray end-tags.
+
+		if ( specialElements.contains(tagName) ) {
+			Set<String> boundaryElements = tableStructureElements.contains(tagName) ? tableScopeBoundaryElements
+					: (tagName.equals("p") ? buttonScopeBoundaryElements : (tagName.equals("li") ? listItemScopeBoundaryElements : scopeBoundaryElements));
+			if ( !isInScope(position, boundaryElements) )
+				return;	// Jsoup ignores it.
+		} else if ( hasSpecialElementAfter(position) )
+			return;	// Jsoup ignores it.
+
+		if ( !closeElementsFrom(position) )
+			setMalformed();
+	}
+
+
+	/**
+	 * This method removes the open "form" from the "openElements", but it keeps its content open, like Jsoup does.
+	 */
+	private void closeForm()
+	{
+		int formPosition = openElements.lastIndexOf("form");
+		boolean wasFormOpen = isFormOpen;
+		isFormOpen = false;
+		if ( !wasFormOpen || (formPosition == -1) || !isInScope(formPosition, scopeBoundaryElements) )
+			return;	// Jsoup ignores it.
+
+		if ( formPosition == (openElements.size() - 1) )	// The next node will follow the "form".
+			isBlockSpacePending = (openAnchor != null);
+		openElements.remove(formPosition);
+		for ( FormattingElement formattingElement : activeFormattingElements )
+			if ( formattingElement.stackPosition > formPosition )
+				formattingElement.stackPosition--;
+		if ( anchorPosition > formPosition )
+			anchorPosition--;
+	}
+
+
+	/**
+	 * This method closes the given formatting-element, like the "adoption agency" algorithm of Jsoup does.
+	 * @return false, if the algorithm would re-arrange the open elements, or if it would close the anchor implicitly.
+	 */
+	private boolean closeFormattingElement(FormattingElement formattingElement)
+	{
+		int position = formattingElement.stackPosition;
+		if ( position == -1 ) {	// It was already closed implicitly.
+			activeFormattingElements.remove(formattingElement);
+			return true;
+		} else if ( !isInScope(position, scopeBoundaryElements) )
+			return true;	// Jsoup ignores it.
+		else if ( hasSpecialElementAfter(position) )	// Jsoup would move the special elements which are open inside the formatting-element.
+			return false;
+		else if ( !closeElementsFrom(position) )
+			return false;
+		activeFormattingElements.remove(formattingElement);
+		return true;
+	}
+
+
+	private FormattingElement getActiveFormattingElement(String tagName)
+	{
+		for ( int i = (activeFormattingElements.size() - 1); i >= 0; --i ) {
+			FormattingElement formattingElement = activeFormattingElements.get(i);
+			if ( formattingElement.name == null )
+				break;	// The marker.
+			else if ( formattingElement.name.equals(tagName) )
+				return formattingElement;
+		}
+		return null;
+	}
+
+
+	private void pushActiveFormattingElement(String tagName)
+	{
+		String attributes = html.substring(attributesStart, attributesEnd).trim();
+		int numOfIdentical = 0;
+		for ( int i = (activeFormattingElements.size() - 1); i >= 0; --i ) {	// Jsoup keeps up to three identical elements.
+			FormattingElement formattingElement = activeFormattingElements.get(i);
+			if ( formattingElement.name == null )
+				break;
+			else if ( formattingElement.name.equals(tagName) && formattingElement.attributes.equals(attributes) && (++numOfIdentical == 3) ) {
+				activeFormattingElements.remove(i);
+				break;
+			}
+		}
+		activeFormattingElements.add(new FormattingElement(tagName, attributes, openElements.size()));
+	}
+
+
+	/**
+	 * This method re-opens the formatting-elements which were closed implicitly, like the Jsoup's tree-builder does before inserting a text or most of the elements.
+	 * @return false, if an anchor would be re-created, or if the elements would be moved before a table.
+	 */
+	private boolean reconstructFormattingElements()
+	{
+		int size = activeFormattingElements.size();
+		if ( (size == 0) || isOpenOrMarker(activeFormattingElements.get(size - 1)) )
+			return true;
+		else if ( isFosterParentingContext() )
+			return false;
+
+		int i = size - 1;
+		while ( (i > 0) && !isOpenOrMarker(activeFormattingElements.get(i - 1)) )
+			i--;
+		for ( ; i < size; ++i ) {
+			FormattingElement formattingElement = activeFormattingElements.get(i);
+			if ( formattingElement.name.equals("a") || (openElements.size() >= maxOpenElements) )
+				return false;
+			formattingElement.stackPosition = openElements.size();
+			openElements.add(formattingElement.name);
+		}
+		isBlockSpacePending = false;	// The re-opened elements follow the closed elements.
+		return true;
+	}
+
+
+	private static boolean isOpenOrMarker(FormattingElement formattingElement)
+	{
+		return ((formattingElement.name == null) || (formattingElement.stackPosition != -1));
+	}
+
+
+	/**
+	 * This method closes the elements from the given position of the "openElements" and on.
+	 * @return false, if the open anchor would be closed implicitly (Jsoup would then re-create it around the following content).
+	 */
+	private boolean closeElementsFrom(int position)
+	{
+		if ( (anchorPosition != -1) && (position <= anchorPosition) )
+			return false;
+
+		boolean isBlock = popElementsFrom(position);
+		isBlockSpacePending = (isBlock && (openAnchor != null));	// Jsoup adds a space after a block-element, only if a text follows it.
+		return true;
+	}
+
+
+	/**
+	 * @return true, if the outermost closed element is a block-element.
+	 */
+	private boolean popElementsFrom(int position)
+	{
+		boolean isBlock = blockElements.contains(openElements.get(position));
+		for ( int i = (openElements.size() - 1); i >= position; --i ) {
+			if ( markerElements.contains(openElements.remove(i)) ) {	// Clear the formatting-elements up to the last marker.
+				int lastIndex;
+				while ( ((lastIndex = (activeFormattingElements.size() - 1)) >= 0) && (activeFormattingElements.remove(lastIndex).name != null) )
+					;
+			}
+		}
+		for ( FormattingElement formattingElement : activeFormattingElements )
+			if ( formattingElement.stackPosition >= position )
+				formattingElement.stackPosition = -1;
+		return isBlock;
+	}
+
+
+	/**
+	 * This method returns the open anchor, along with the "link"-elements found inside it.
+	 * @param isClosedByTag whether the anchor is closed by a tag, or by the end of the page.
+	 * @return false, if Jsoup would split the anchor in two (when it is closed by a tag, while a special element is still open inside it).
+	 */
+	private boolean closeAnchor(boolean isClosedByTag)
+	{
+		if ( isClosedByTag && hasSpecialElementAfter(anchorPosition) )
+			return false;
+
+		if ( shouldCollectText )
+			openAnchor.text = anchorText.toString().trim();
+		readyLinkElements.add(openAnchor);
+		readyLinkElements.addAll(linkElementsInsideAnchor);
+
+		activeFormattingElements.remove(getActiveFormattingElement("a"));
+		popElementsFrom(anchorPosition);
+		openAnchor = null;
+		anchorPosition = -1;
+		anchorText.setLength(0);
+		linkElementsInsideAnchor.clear();
+		isBlockSpacePending = false;
+		return true;
+	}
+
+
+	private void closeSelect()
+	{
+		int selectPosition = openElements.lastIndexOf("select");
+		if ( selectPosition != -1 )
+			popElementsFrom(selectPosition);	// The "select" cannot contain an anchor.
+		isInSelect = false;
+	}
+
+
+	private void finish()
+	{
+		if ( openAnchor != null )
+			closeAnchor(false);	// Jsoup keeps the text until the end of the page.
+		index = length;
+		isFinished = true;
+	}
+
+
+	private void setMalformed()
+	{
+		isMalformed = true;
+		isFinished = true;
+	}
+
+
+	private int getPositionInScope(String tagName, Set<String> boundaryElements)
+	{
+		int bottom = openElements.size() - 1;
+		int top = Math.max((bottom - maxScopeSearchDepth), 0);
+		for ( int i = bottom; i >= top; --i ) {
+			String element = openElements.get(i);
+			if ( element.equals(tagName) )
+				return i;
+			else if ( boundaryElements.contains(element) )
+				return -1;
+		}
+		return -1;
+	}
+
+
+	private boolean isInScope(int position, Set<String> boundaryElements)
+	{
+		int bottom = openElements.size() - 1;
+		if ( (bottom - position) > maxScopeSearchDepth )
+			return false;
+		for ( int i = bottom; i > position; --i )
+			if ( boundaryElements.contains(openElements.get(i)) )
+				return false;
+		return true;
+	}
+
+
+	private boolean hasSpecialElementAfter(int position)
+	{
+		for ( int i = (position + 1); i < openElements.size(); ++i )
+			if ( specialElements.contains(openElements.get(i)) )
+				return true;
+		return false;
+	}
+
+
+	private boolean isFosterParentingContext()
+	{
+		int size = openElements.size();
+		return ((size > 0) && fosterParentingElements.contains(openElements.get(size - 1)));
+	}
+
+
+	private void skipMarkupDeclaration()
+	{
+		int declarationStart = index + 1;	// After the "!".
+		if ( html.startsWith("--", declarationStart) )
+		{
+			isBlockSpacePending = false;	// The comment is the next node.
+			int commentStart = declarationStart + 2;
+			if ( html.startsWith(">", commentStart) ) {	// The "<!-->".
+				index = commentStart + 1;
+				return;
+			} else if ( html.startsWith("->", commentStart) ) {	// The "<!--->".
+				index = commentStart + 2;
+				return;
+			}
+			int commentEnd = html.indexOf("-->", commentStart);
+			int bangCommentEnd = html.indexOf("--!>", commentStart);
+			if ( (bangCommentEnd != -1) && ((commentEnd == -1) || (bangCommentEnd < commentEnd)) )
+				index = bangCommentEnd + 4;
+			else if ( commentEnd != -1 )
+				index = commentEnd + 3;
+			else
+				setMalformed();	// Jsoup treats all the rest of the page as a comment.
+		}
+		else if ( html.regionMatches(true, declarationStart, "DOCTYPE", 0, 7) )
+			skipBogusComment(declarationStart);
+		else if ( html.startsWith("[CDATA[", declarationStart) ) {
+			int dataStart = declarationStart + 7;
+			int dataEnd = html.indexOf("]]>", dataStart);
+			if ( dataEnd == -1 ) {
+				setMalformed();
+				return;
+			}
+			if ( handleText(dataStart, dataEnd, false) )	// Jsoup keeps it as text.
+				index = dataEnd + 3;
+		} else {
+			isBlockSpacePending = false;
+			skipBogusComment(declarationStart);
+		}
+	}
+
+
+	private void skipBogusComment(int fromIndex)
+	{
+		int end = html.indexOf('>', fromIndex);
+		if ( end == -1 )
+			setMalformed();
+		else
+			index = end + 1;
+	}
+
+
+	private void skipRawText(String tagName)
+	{
+		int end = index;
+		while ( (end = html.indexOf("</", end)) != -1 )
+		{
+			int nameEnd = end + 2 + tagName.length();
+			if ( html.regionMatches(true, (end + 2), tagName, 0, tagName.length()) && (nameEnd < length) ) {
+				char c = html.charAt(nameEnd);
+				if ( isWhitespace(c) || (c == '/') || (c == '>') )
+					break;
+			}
+			end += 2;
+		}
+		if ( end == -1 ) {	// Jsoup treats all the rest of the page as the content of this element.
+			setMalformed();
+			return;
+		}
+		if ( (openAnchor != null) && !dataElements.contains(tagName) )
+			appendText(index, end, escapableRawTextElements.contains(tagName));
+		if ( tagName.equals("title") )
+			fingerprintAccumulator.addTitle(html.substring(index, end));
+		index = end;	// The end-tag will be handled normally.
+	}
+
+
+	private String getTagName()
+	{
+		int nameStart = index;
+		char c;
+		while ( (index < length) && !isWhitespace(c = html.charAt(index)) && (c != '/') && (c != '>') && (c != '<') )
+			index++;
+		return html.substring(nameStart, index).toLowerCase(Locale.ENGLISH);
+	}
+
+
+	/**
+	 * This method parses the attributes of the current tag, until its end, like the Jsoup's tokenizer does.
+	 * @param shouldKeepValues whether the values of the link-attributes should be kept
+	 * @return false, if the tag does not end, or it contains a "<" (a case where Jsoup recovers in its own way).
+	 */
+	private boolean parseAttributes(boolean shouldKeepValues)
+	{
+		isSelfClosing = false;
+		hrefAttr = titleAttr = typeAttr = dataPopupAttr = nameAttr = contentAttr = null;
+		attributesStart = attributesEnd = index;
+
+		while ( index < length )
+		{
+			char c = html.charAt(index);
+			if ( c == '>' ) {
+				attributesEnd = index++;
+				return true;
+			} else if ( c == '<' )
+				return false;
+			else if ( isWhitespace(c) ) {
+				index++;
+				continue;
+			} else if ( c == '/' ) {
+				index++;
+				if ( (index < length) && (html.charAt(index) == '>') ) {
+					isSelfClosing = true;
+					attributesEnd = index++ - 1;
+					return true;
+				}
+				continue;
+			}
+
+			int nameStart = index;
+			index++;	// The first char is always part of the name, even if it is a "=" or a quote.
+			while ( (index < length) && !isAttributeNameEnd(html.charAt(index)) )
+				index++;
+			int nameEnd = index;
+			while ( (index < length) && isWhitespace(html.charAt(index)) )
+				index++;
+
+			int valueStart = -1, valueEnd = -1;
+			if ( (index < length) && (html.charAt(index) == '=') )
+			{
+				index++;
+				while ( (index < length) && isWhitespace(html.charAt(index)) )
+					index++;
+				if ( index >= length )
+					return false;
+				char quote = html.charAt(index);
+				if ( (quote == '"') || (quote == '\'') ) {
+					valueStart = index + 1;
+					if ( (valueEnd = html.indexOf(quote, valueStart)) == -1 )
+						return false;
+					index = valueEnd + 1;
+				} else {
+					valueStart = index;
+					while ( (index < length) && !isWhitespace(c = html.charAt(index)) && (c != '>') ) {
+						if ( c == '<' )
+							return false;
+						index++;
+					}
+					valueEnd = index;
+				}
+			}
+			if ( shouldKeepValues )
+				keepAttribute(nameStart, nameEnd, valueStart, valueEnd);
+		}
+		return false;
+	}
+
+
+	private void keepAttribute(int nameStart, int nameEnd, int valueStart, int valueEnd)
+	{
+		while ( (nameStart < nameEnd) && (html.charAt(nameStart) <= ' ') )	// Jsoup trims the names.
+			nameStart++;
+		while ( (nameEnd > nameStart) && (html.charAt(nameEnd - 1) <= ' ') )
+			nameEnd--;
+
+		int nameLength = nameEnd - nameStart;
+		if ( (nameLength != 4) && (nameLength != 5) && (nameLength != 7) && (nameLength != 10) )
+			return;
+
+		// Jsoup keeps the first one of the duplicate attributes.
+		if ( (hrefAttr == null) && (nameLength == 4) && html.regionMatches(true, nameStart, "href", 0, 4) )
+			hrefAttr = getAttributeValue(valueStart, valueEnd);
+		else if ( (typeAttr == null) && (nameLength == 4) && html.regionMatches(true, nameStart, "type", 0, 4) )
+			typeAttr = getAttributeValue(valueStart, valueEnd);
+		else if ( (titleAttr == null) && (nameLength == 5) && html.regionMatches(true, nameStart, "title", 0, 5) )
+			titleAttr = getAttributeValue(valueStart, valueEnd);
+		else if ( (dataPopupAttr == null) && (nameLength == 10) && html.regionMatches(true, nameStart, "data-popup", 0, 10) )
+			dataPopupAttr = getAttributeValue(valueStart, valueEnd);
+		else if ( (valueStart != -1) && (nameAttr == null) && (nameLength == 4) && html.regionMatches(true, nameStart, "name", 0, 4) )	// The "MetaTagScanner" ignores the attributes without a value.
+			nameAttr = html.substring(valueStart, valueEnd);
+		else if ( (valueStart != -1) && (contentAttr == null) && (nameLength == 7) && html.regionMatches(true, nameStart, "content", 0, 7) )
+			contentAttr = html.substring(valueStart, valueEnd);
+	}
+
+
+	private String getAttributeValue(int valueStart, int valueEnd)
+	{
+		if ( valueStart == -1 )
+			return "";
+		String value = html.substring(valueStart, valueEnd);
+		return (value.indexOf('&') != -1) ? Parser.unescapeEntities(value, true) : value;
+	}
+
+
+	/**
+	 * This method appends the given text to the anchor-text, normalizing its whitespace, like the "Element.text()" of Jsoup does.
+	 */
+	private void appendText(int start, int end, boolean shouldUnescape)
+	{
+		if ( (openAnchor == null) || !shouldCollectText || (start >= end) )
+			return;
+
+		if ( isBlockSpacePending && !isLastCharSpace() )
+			anchorText.append(' ');
+		isBlockSpacePending = false;
+
+		String text = html.substring(start, end);
+		if ( shouldUnescape && (text.indexOf('&') != -1) )
+			text = Parser.unescapeEntities(text, false);
+
+		if ( isWhitespacePreserved() ) {
+			anchorText.append(text);
+			return;
+		}
+		boolean isLastWhitespace = isLastCharSpace();
+		for ( int i = 0; i < text.length(); ++i ) {
+			char c = text.charAt(i);
+			if ( isWhitespace(c) || (c == 160) ) {
+				if ( !isLastWhitespace ) {
+					anchorText.append(' ');
+					isLastWhitespace = true;
+				}
+			} else if ( (c != 8203) && (c != 173) ) {	// Jsoup skips the zero-width-spaces and the soft-hyphens.
+				anchorText.append(c);
+				isLastWhitespace = false;
+			}
+		}
+	}
+
+
+	private void appendTextSpace()
+	{
+		if ( (openAnchor != null) && shouldCollectText && (anchorText.length() > 0) && !isLastCharSpace() )
+			anchorText.append(' ');
+	}
+
+
+	private void appendBlockSpace(String tagName)
+	{
+		if ( (openAnchor != null) && blockElements.contains(tagName) ) {
+			appendTextSpace();
+			if ( voidElements.contains(tagName) )
+				isBlockSpacePending = true;
+		}
+	}
+
+
+	private boolean isWhitespacePreserved()
+	{
+		for ( int i = (openElements.size() - 1), lowestPosition = Math.max(0, (openElements.size() - maxWhitespacePreservingDepth)); i >= lowestPosition; --i )
+			if ( whitespacePreservingElements.contains(openElements.get(i)) )
+				return true;
+		return false;
+	}
+
+
+	private boolean isLastCharSpace()
+	{
+		int textLength = anchorText.length();
+		return ((textLength > 0) && (anchorText.charAt(textLength - 1) == ' '));
+	}
+
+
+	private boolean hasNonWhitespace(int start, int end)
+	{
+		for ( int i = start; i < end; ++i )
+			if ( !isWhitespace(html.charAt(i)) )
+				return true;
+		return false;
+	}
+
+
+	private static boolean isWhitespace(char c)
+	{
+		return ((c == ' ') || (c == '\t') || (c == '\n') || (c == '\r') || (c == '\f'));
+	}
+
+
+	private static boolean isAttributeNameEnd(char c)
+	{
+		return (isWhitespace(c) || (c == '=') || (c == '>') || (c == '/') || (c == '<'));
+	}
+
+
+	private static Set<String> newSet(String... elements)
+	{
+		return new HashSet<>(Arrays.asList(elements));
+	}
+
+}
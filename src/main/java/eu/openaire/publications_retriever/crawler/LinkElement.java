@@ -0,0 +1,26 @@
+package eu.openaire.publications_retriever.crawler;
+
+
+/**
+ * This class holds the attributes of an "a" or a "link[href][type*=pdf]" element, which are used upon the internalLinks-extraction.
+ * The missing attributes are kept as empty strings, like "Jsoup" returns them.
+ * @author Lampros Smyrnaios
+ */
+public class LinkElement
+{
+	public String href;
+	public String title;
+	public String type;
+	public String dataPopup;
+	public String text;	// The normalized anchor-text. It is empty for the "link"-elements, or when it was not requested.
+
+
+	LinkElement(String href, String title, String type, String dataPopup, String text)
+	{
+		this.href = (href != null) ? href : "";
+		this.title = (title != null) ? title : "";
+		this.type = (type != null) ? type : "";
+		this.dataPopup = (dataPopup != null) ? dataPopup : "";
+		this.text = (text != null) ? text : "";
+	}
+}
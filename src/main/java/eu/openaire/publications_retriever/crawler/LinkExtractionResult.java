@@ -0,0 +1,35 @@
+package eu.openaire.publications_retriever.crawler;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+
+/**
+ * This class holds the outcome of the internalLinks-extraction from a page.
+ * It signals the docLinks (valid or invalid) and the dynamic-links, which were previously signaled by exceptions, through the returned value.
+ * @author Lampros Smyrnaios
+ */
+public class LinkExtractionResult
+{
+	public enum Type {
+		INTERNAL_LINKS,	// The "internalLinks" are available (they may be empty, if none was acceptable).
+		DOC_LINK_FOUND,	// A docLink was found, so the rest of the links were not checked.
+		DOC_LINK_INVALID,	// A docLink-element was found, but its link was empty or an anchor.
+		DYNAMIC_LINKS_FOUND,	// The page has dynamic-links, so its domain should be blocked.
+		NO_LINKS	// The page has no link-elements at all.
+	}
+
+	public Type type;
+	public HashSet<String> internalLinks;	// Only for the "INTERNAL_LINKS" type. The links are kept in the order they appear in the page.
+	public HashMap<String, String> anchorTexts;	// Only for the "INTERNAL_LINKS" type. The (non-empty) anchor-text of the first element of each internalLink, used by the "LinkRanker".
+	public String docLink;	// Only for the "DOC_LINK_FOUND" and "DOC_LINK_INVALID" types.
+
+
+	LinkExtractionResult(Type type, HashSet<String> internalLinks, HashMap<String, String> anchorTexts, String docLink)
+	{
+		this.type = type;
+		this.internalLinks = internalLinks;
+		this.anchorTexts = anchorTexts;
+		this.docLink = docLink;
+	}
+}
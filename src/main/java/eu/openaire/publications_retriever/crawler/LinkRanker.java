@@ -0,0 +1,143 @@
+package eu.openaire.publications_retriever.crawler;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class scores the internalLinks of a page, so that the most promising ones are connected first, within the limited number of connections allowed per page.
+ * The score is a sum of cheap features: the path-tokens of the link, its anchor-text, whether it's in the same domain as the page, its position in the page and whether similar paths of its domain have given docUrls before.
+ * The weights are small integers, chosen by hand. A link with no known features gets a score of zero, so the links of equal scores keep their order in the page.
+ * @author Lampros Smyrnaios
+ */
+public class LinkRanker
+{
+	private static final String[] POSITIVE_PATH_TOKENS = {".pdf", "/bitstream/", "/download", "/pdf", "fulltext", "full-text", "viewcontent.cgi", "/files/", "/retrieve/", "/view/", "/article/"};
+	private static final int[] POSITIVE_PATH_WEIGHTS = {40, 30, 25, 20, 20, 20, 20, 10, 10, 5, 5};
+
+	private static final String[] NEGATIVE_PATH_TOKENS = {"/search", "/login", "/signin", "/register", "/browse", "/author", "/tag/", "/category/", "/feed", "/rss", "/share", "/cart", "/contact", "/about", "/help"};
+	private static final int NEGATIVE_PATH_WEIGHT = -20;	// It's applied only once, even if many negative tokens exist.
+
+	private static final String[] POSITIVE_TEXT_TOKENS = {"download", "full text", "fulltext", "full-text", "texto completo", "texte intégral", "volltext", "view", "read", "open"};
+	private static final int[] POSITIVE_TEXT_WEIGHTS = {25, 25, 25, 25, 25, 25, 25, 5, 5, 5};
+
+	private static final String[] NEGATIVE_TEXT_TOKENS = {"login", "log in", "sign in", "register", "cookie", "privacy", "contact", "about", "help", "faq", "twitter", "facebook", "linkedin"};
+	private static final int NEGATIVE_TEXT_WEIGHT = -15;
+
+	private static final int SAME_DOMAIN_WEIGHT = 10;
+	private static final int NAVIGATION_POSITION_WEIGHT = -5;	// For the links in the first tenth of the page, which is usually the navigation-menu.
+	private static final int PATH_HIT_WEIGHT = 10;	// For each previous docUrl of the same path-directory in the same domain, up to 3 of them.
+	private static final int MAX_PATH_HITS_TO_COUNT = 3;
+
+	private static final ConcurrentHashMap<String, AtomicInteger> docUrlPathHits = new ConcurrentHashMap<>();	// Keys: "<domain>/<firstPathDirectory>" of the links which gave docUrls.
+
+
+	/**
+	 * This method scores the given link. All the given strings are expected in lowerCase.
+	 * @param lowerCaseLink
+	 * @param lowerCaseAnchorText	// It may be empty or null.
+	 * @param pageDomain
+	 * @param position	// The position of the link in the page, starting from zero.
+	 * @param numOfLinks
+	 * @return The score of the link, higher is better.
+	 */
+	public static int scoreLink(String lowerCaseLink, String lowerCaseAnchorText, String pageDomain, int position, int numOfLinks)
+	{
+		int score = 0;
+
+		for ( int i = 0; i < POSITIVE_PATH_TOKENS.length; i++ )
+			if ( lowerCaseLink.contains(POSITIVE_PATH_TOKENS[i]) )
+				score += POSITIVE_PATH_WEIGHTS[i];
+		for ( String token : NEGATIVE_PATH_TOKENS )
+			if ( lowerCaseLink.contains(token) ) {
+				score += NEGATIVE_PATH_WEIGHT;
+				break;
+			}
+
+		if ( (lowerCaseAnchorText != null) && !lowerCaseAnchorText.isEmpty() ) {
+			for ( int i = 0; i < POSITIVE_TEXT_TOKENS.length; i++ )
+				if ( lowerCaseAnchorText.contains(POSITIVE_TEXT_TOKENS[i]) )
+					score += POSITIVE_TEXT_WEIGHTS[i];
+			for ( String token : NEGATIVE_TEXT_TOKENS )
+				if ( lowerCaseAnchorText.contains(token) ) {
+					score += NEGATIVE_TEXT_WEIGHT;
+					break;
+				}
+		}
+
+		if ( lowerCaseLink.contains(pageDomain) )
+			score += SAME_DOMAIN_WEIGHT;
+
+		if ( (numOfLinks >= 10) && (position < (numOfLinks / 10)) )
+			score += NAVIGATION_POSITION_WEIGHT;
+
+		String pathKey = getPathKey(lowerCaseLink);
+		if ( pathKey != null ) {
+			AtomicInteger hits = docUrlPathHits.get(pathKey);
+			if ( hits != null )
+				score += (PATH_HIT_WEIGHT * Math.min(hits.get(), MAX_PATH_HITS_TO_COUNT));
+		}
+		return score;
+	}
+
+
+	/**
+	 * @param lowerCaseLink
+	 * @return true, if the link has any of the path-tokens which are common in the docUrls (like ".pdf" or "/bitstream/").
+	 */
+	public static boolean hasPositivePathToken(String lowerCaseLink)
+	{
+		for ( String token : POSITIVE_PATH_TOKENS )
+			if ( lowerCaseLink.contains(token) )
+				return true;
+		return false;
+	}
+
+
+	/**
+	 * This method sorts the given links by their score, in descending order. The sort is stable, so the links with equal scores keep their order in the page.
+	 * @param scoredLinks
+	 */
+	public static void sortByScore(List<ScoredLink> scoredLinks)
+	{
+		scoredLinks.sort((link1, link2) -> Integer.compare(link2.score, link1.score));
+	}
+
+
+	/**
+	 * This method records that the given internalLink gave a docUrl, so the links with similar paths in its domain will be preferred in the future.
+	 * @param internalLink
+	 */
+	public static void registerDocUrlLink(String internalLink)
+	{
+		String pathKey = getPathKey(internalLink.toLowerCase());
+		if ( pathKey != null )
+			docUrlPathHits.computeIfAbsent(pathKey, k -> new AtomicInteger(0)).incrementAndGet();
+	}
+
+
+	/**
+	 * This method returns the domain of the given url, along with its first path-directory (like "example.com/bitstream"), or "null", if the url has no path-directory.
+	 * The url is expected to be canonicalized and in lowerCase.
+	 * @param lowerCaseUrl
+	 * @return The pathKey or null
+	 */
+	private static String getPathKey(String lowerCaseUrl)
+	{
+		int domainStart = lowerCaseUrl.indexOf("://");
+		if ( domainStart == -1 )
+			return null;
+		domainStart += 3;
+		int pathStart = lowerCaseUrl.indexOf('/', domainStart);
+		if ( pathStart == -1 )
+			return null;
+		int directoryEnd = lowerCaseUrl.indexOf('/', pathStart + 1);
+		if ( directoryEnd == -1 )
+			return null;	// It's a file (or a page) directly under the root, not inside a directory.
+		int paramsStart = lowerCaseUrl.indexOf('?', pathStart);
+		if ( (paramsStart != -1) && (paramsStart < directoryEnd) )
+			return null;
+		return lowerCaseUrl.substring(domainStart, directoryEnd);
+	}
+}
@@ -0,0 +1,217 @@
+package eu.openaire.publications_retriever.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class learns, per domain, the templates of the internalLinks which gave docUrls.
+ * The repositories which are built on the same software (like DSpace, OJS or EPrints) put the docUrl in the same structural place in every page,
+ * so, after a template has proved itself a few times, its matching link is tried first and the generic crawling of the page is skipped, when that link is a docUrl.
+ * A template is the "domain/path?query" part of the link, with its numbers generalized (like "repository\.example\.org/bitstream/\d+/\d+/[^/?]*\.pdf").
+ * @author Lampros Smyrnaios
+ */
+public class LinkTemplates
+{
+	private static final Logger logger = LoggerFactory.getLogger(LinkTemplates.class);
+
+	private static final int MAX_TEMPLATES_PER_DOMAIN = 3;	// Keep the learning-effort small. A domain needing more templates is not structured enough to benefit from them.
+	private static final int MAX_DOMAINS_TO_LEARN = 50000;
+	private static final int LEAST_SUCCESSES_TO_USE_TEMPLATE = 3;
+	private static final int SUCCESSES_PER_FAILURE_TO_USE_TEMPLATE = 4;	// The template is used as long as its success-rate is at least 80%.
+	private static final int LEAST_FAILURES_TO_REMOVE_TEMPLATE = 3;
+
+	private static final ConcurrentHashMap<String, List<LinkTemplate>> domainsWithTemplates = new ConcurrentHashMap<>();
+
+	public static AtomicInteger timesTemplateHit = new AtomicInteger(0);
+	public static AtomicInteger timesTemplateMissed = new AtomicInteger(0);
+
+
+	private static class LinkTemplate
+	{
+		final String templateStr;
+		final Pattern pattern;
+		final AtomicInteger successes = new AtomicInteger(0);
+		final AtomicInteger failures = new AtomicInteger(0);
+
+		LinkTemplate(String templateStr)
+		{
+			this.templateStr = templateStr;
+			this.pattern = Pattern.compile(templateStr);
+		}
+
+		boolean matches(String lowerCaseLink) {
+			int domainStart = lowerCaseLink.indexOf("://");
+			return ((domainStart != -1) && pattern.matcher(lowerCaseLink).region(domainStart + 3, lowerCaseLink.length()).matches());
+		}
+
+		boolean isConfident() {
+			int successesNum = successes.get();
+			return ((successesNum >= LEAST_SUCCESSES_TO_USE_TEMPLATE) && (successesNum >= (SUCCESSES_PER_FAILURE_TO_USE_TEMPLATE * failures.get())));
+		}
+	}
+
+
+	/**
+	 * This method records that the given internalLink of a page from the given domain, gave a docUrl.
+	 * @param pageDomain
+	 * @param internalLink
+	 */
+	public static void registerDocUrlLink(String pageDomain, String internalLink)
+	{
+		String templateStr = getTemplate(internalLink.toLowerCase());
+		if ( templateStr == null )
+			return;
+
+		List<LinkTemplate> templates = domainsWithTemplates.get(pageDomain);
+		if ( templates == null ) {
+			if ( domainsWithTemplates.size() >= MAX_DOMAINS_TO_LEARN )
+				return;
+			templates = domainsWithTemplates.computeIfAbsent(pageDomain, k -> new CopyOnWriteArrayList<>());
+		}
+
+		for ( LinkTemplate template : templates )
+			if ( template.templateStr.equals(templateStr) ) {
+				template.successes.incrementAndGet();
+				return;
+			}
+
+		synchronized ( templates ) {	// Make sure the limit is respected, when many threads learn a new template for the same domain.
+			if ( templates.size() < MAX_TEMPLATES_PER_DOMAIN ) {
+				LinkTemplate newTemplate = new LinkTemplate(templateStr);
+				newTemplate.successes.incrementAndGet();
+				templates.add(newTemplate);
+			}
+		}
+	}
+
+
+	/**
+	 * This method returns the first of the given links, which matches a confident template of the given domain, or "null", if there is no such link.
+	 * When the domain has a confident template, but none of the links matches it, then that's counted as a failure of the template.
+	 * @param pageDomain
+	 * @param scoredLinks	// They are expected in the order in which they will be checked.
+	 * @return The url of the matching link, or null.
+	 */
+	public static String findTemplateLink(String pageDomain, List<ScoredLink> scoredLinks)
+	{
+		List<LinkTemplate> templates = domainsWithTemplates.get(pageDomain);
+		if ( templates == null )
+			return null;
+
+		for ( LinkTemplate template : templates )
+		{
+			if ( !template.isConfident() )
+				continue;
+			for ( ScoredLink scoredLink : scoredLinks )
+				if ( template.matches(scoredLink.lowerCaseUrl) )
+					return scoredLink.url;
+			registerFailure(pageDomain, templates, template);
+		}
+		return null;
+	}
+
+
+	/**
+	 * This method records the outcome of checking a link which was returned by "findTemplateLink()".
+	 * @param pageDomain
+	 * @param templateLink
+	 * @param wasDocUrl
+	 */
+	public static void registerTemplateLinkResult(String pageDomain, String templateLink, boolean wasDocUrl)
+	{
+		List<LinkTemplate> templates = domainsWithTemplates.get(pageDomain);
+		if ( templates == null )
+			return;
+
+		String lowerCaseLink = templateLink.toLowerCase();
+		for ( LinkTemplate template : templates ) {
+			if ( !template.isConfident() || !template.matches(lowerCaseLink) )
+				continue;
+			if ( wasDocUrl ) {
+				template.successes.incrementAndGet();
+				timesTemplateHit.incrementAndGet();
+			} else
+				registerFailure(pageDomain, templates, template);
+			return;
+		}
+	}
+
+
+	private static void registerFailure(String pageDomain, List<LinkTemplate> templates, LinkTemplate template)
+	{
+		timesTemplateMissed.incrementAndGet();
+		if ( (template.failures.incrementAndGet() >= LEAST_FAILURES_TO_REMOVE_TEMPLATE) && !template.isConfident() ) {
+			templates.remove(template);	// It can be learned again, if the domain keeps giving docUrls with it.
+			logger.debug("The link-template \"" + template.templateStr + "\" of domain \"" + pageDomain + "\" was removed, after failing " + template.failures.get() + " times.");
+		}
+	}
+
+
+	/**
+	 * This method generalizes the given link into a template. The numbers are replaced by "\d+" and the name of the file at the end of the path (if any) is replaced by "[^/?]*", keeping its extension.
+	 * The scheme is not included in the template, since the same docUrls may be served over both "http" and "https".
+	 * @param lowerCaseLink
+	 * @return The template-regex, or null, if the link has no path.
+	 */
+	public static String getTemplate(String lowerCaseLink)
+	{
+		int domainStart = lowerCaseLink.indexOf("://");
+		if ( domainStart == -1 )
+			return null;
+		domainStart += 3;
+		int pathStart = lowerCaseLink.indexOf('/', domainStart);
+		if ( (pathStart == -1) || (pathStart == (lowerCaseLink.length() -1)) )
+			return null;
+
+		int queryStart = lowerCaseLink.indexOf('?', pathStart);
+		int pathEnd = (queryStart != -1) ? queryStart : lowerCaseLink.length();
+		int lastSegmentStart = lowerCaseLink.lastIndexOf('/', pathEnd -1) + 1;
+
+		StringBuilder strB = new StringBuilder(lowerCaseLink.length() + 20);
+		appendGeneralized(strB, lowerCaseLink, domainStart, lastSegmentStart);
+
+		// The name of the file may be different in every docUrl, but its extension is usually the same.
+		int extensionStart = lowerCaseLink.lastIndexOf('.', pathEnd -1);
+		boolean hasNonNumericName = false;
+		for ( int i = lastSegmentStart; i < pathEnd; i++ )
+			if ( !Character.isDigit(lowerCaseLink.charAt(i)) ) {
+				hasNonNumericName = true;
+				break;
+			}
+		if ( hasNonNumericName ) {
+			strB.append("[^/?]*");
+			if ( extensionStart > lastSegmentStart )
+				appendGeneralized(strB, lowerCaseLink, extensionStart, pathEnd);
+		} else
+			appendGeneralized(strB, lowerCaseLink, lastSegmentStart, pathEnd);
+
+		if ( queryStart != -1 )
+			appendGeneralized(strB, lowerCaseLink, queryStart, lowerCaseLink.length());
+		return strB.toString();
+	}
+
+
+	private static void appendGeneralized(StringBuilder strB, String str, int start, int end)
+	{
+		for ( int i = start; i < end; i++ )
+		{
+			char c = str.charAt(i);
+			if ( Character.isDigit(c) ) {
+				while ( ((i + 1) < end) && Character.isDigit(str.charAt(i + 1)) )
+					i ++;
+				strB.append("\\d+");
+			}
+			else if ( "\\.[]{}()<>*+-=!?^$|".indexOf(c) != -1 )
+				strB.append('\\').append(c);
+			else
+				strB.append(c);
+		}
+	}
+}
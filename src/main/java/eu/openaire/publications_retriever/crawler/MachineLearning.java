@@ -8,14 +8,17 @@ import eu.openaire.publications_retriever.PublicationsRetriever;
 import eu.openaire.publications_retriever.util.file.FileUtils;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import eu.openaire.publications_retriever.util.http.TimesCounter;
+import eu.openaire.publications_retriever.util.url.DomainRegistry;
+import eu.openaire.publications_retriever.util.url.DomainSet;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.ParsedUrl;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -60,12 +63,12 @@ public class MachineLearning
 	public static AtomicInteger docUrlsFoundByMLA = new AtomicInteger(0);
 	// If we later want to show statistics, we should take into account only the number of the urls to which the MLA was tested against, not all of the urls in the inputFile.
 
-	private static final Set<String> domainsBlockedFromMLA = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());;
+	private static final Set<String> domainsBlockedFromMLA = new DomainSet(DomainRegistry.FLAG_BLOCKED_FROM_MLA);
 	static {	// These domain is not compatible with the MLA.
 		domainsBlockedFromMLA.add("sciencedirect.com");
 	}
 
-	private static final Hashtable<String, Integer> timesDomainsFailedInMLA = new Hashtable<String, Integer>();
+	private static final TimesCounter<String> timesDomainsFailedInMLA = new TimesCounter<>();
 	private static final int timesToFailBeforeBlockedFromMLA = 10;
 
 	private static final List<Double> successRateList = Collections.synchronizedList(new ArrayList<>());
@@ -124,32 +127,32 @@ public class MachineLearning
 		if ( docPage.equals(docUrl) )	// It will be equal if the "docPage" is a docUrl itself.
 			return;	// No need to log anything.
 
-		Matcher docPageMatcher = null;	// It's ok if it remains "null", the "getPathStr()" will create one then.
+		ParsedUrl parsedDocPage = UrlUtils.getParsedUrl(docPage);
+		if ( parsedDocPage == null )
+			return;
 
 		if ( pageDomain == null ) {
-			if ( (docPageMatcher = UrlUtils.getUrlMatcher(docPage)) == null )
-				return;
-			if ( (pageDomain = UrlUtils.getDomainStr(docPage, docPageMatcher)) == null )
+			if ( (pageDomain = UrlUtils.getDomainStr(docPage, parsedDocPage)) == null )
 				return;
 		}
 
 		if ( domainsBlockedFromMLA.contains(pageDomain) )	// Don't gather data for domains which are proven to not be compatible with the MLA.
 			return;
 
-		String docPagePath = UrlUtils.getPathStr(docPage, docPageMatcher);	// The "docPageMatcher" might be null, but it's ok.
+		String docPagePath = UrlUtils.getPathStr(docPage, parsedDocPage);
 		if ( docPagePath == null )
 			return;
 
 		// DocUrl part-extraction.
-		Matcher docUrlMatcher = UrlUtils.getUrlMatcher(docUrl);
-		if ( docUrlMatcher == null )
+		ParsedUrl parsedDocUrl = UrlUtils.getParsedUrl(docUrl);
+		if ( parsedDocUrl == null )
 			return;
 
-		String docUrlPath = UrlUtils.getPathStr(docUrl, docUrlMatcher);
+		String docUrlPath = UrlUtils.getPathStr(docUrl, parsedDocUrl);
 		if ( docUrlPath == null )
 			return;
 
-		String docUrlID = UrlUtils.getDocIdStr(docUrl, docUrlMatcher);
+		String docUrlID = UrlUtils.getDocIdStr(docUrl, parsedDocUrl);
 		if ( docUrlID == null )
 			return;
 
@@ -258,11 +261,11 @@ public class MachineLearning
 			return false;
 		}
 
-		Matcher urlMatcher = UrlUtils.getUrlMatcher(pageUrl);
-		if ( urlMatcher == null )
+		ParsedUrl parsedPageUrl = UrlUtils.getParsedUrl(pageUrl);
+		if ( parsedPageUrl == null )
 			return false;
 
-		String pagePath = UrlUtils.getPathStr(pageUrl, urlMatcher);
+		String pagePath = UrlUtils.getPathStr(pageUrl, parsedPageUrl);
 		if ( pagePath == null )
 			return false;
 
@@ -280,7 +283,7 @@ public class MachineLearning
 		else if ( pathsSize > 3 )    // It's not worth risking connecting with more than 3 "predictedDocUrl"s, for which their success is non-granted.
 			return false;    // The difference here is that we avoid making the connections but we leave the data as it is.. this way we allow whole domains to be blocked based on docPaths' size being larger than 5.
 
-		String docIdStr = UrlUtils.getDocIdStr(pageUrl, urlMatcher);
+		String docIdStr = UrlUtils.getDocIdStr(pageUrl, parsedPageUrl);
 		if ( docIdStr == null )
 			return false;
 		else if ( UrlTypeChecker.PLAIN_PAGE_EXTENSION_FILTER.matcher(docIdStr.toLowerCase()).matches() )
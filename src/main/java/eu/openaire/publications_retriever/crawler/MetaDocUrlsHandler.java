@@ -1,29 +1,21 @@
 package eu.openaire.publications_retriever.crawler;
 
-import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.UrlCanonicalizer;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class MetaDocUrlsHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(MetaDocUrlsHandler.class);
 
-    // Order-independent META_DOC_URL-regex.
-    // <meta(?:[^<]*name=\"(?:[^<]*citation_pdf|eprints.document)_url\"[^<]*content=\"(http[^\"]+)\"|[^<]*content=\"(http[^\"]+)\"[^<]*name=\"(?:[^<]*citation_pdf|eprints.document)_url\")[^>]*[/]?>
-    private static final String metaName = "name=\"(?:[^<]*citation_pdf|eprints.document)_url\"";
-    private static final String metaContent = "content=\"(http[^\"]+)\"";
-    public static final Pattern META_DOC_URL = Pattern.compile("<meta(?:[^<]*" + metaName + "[^<]*" + metaContent + "|[^<]*" + metaContent + "[^<]*" + metaName + ")[^>]*[/]?>");
-
     public static Pattern COMMON_UNSUPPORTED_META_DOC_OR_DATASET_URL_EXTENSIONS;    // Its pattern gets compiled at runtime, only one time, depending on the Datatype.
     static {
         // Depending on the datatype, the pattern is formed differently.
@@ -41,6 +33,7 @@ public class MetaDocUrlsHandler {
     }
 
     public static AtomicInteger numOfMetaDocUrlsFound = new AtomicInteger(0);
+    public static AtomicInteger numOfPagesHandledByTheirHead = new AtomicInteger(0);   // The pages which were handled by their metaDocUrl, without downloading their "body".
 
 
     /**
@@ -58,17 +51,39 @@ public class MetaDocUrlsHandler {
     public static boolean checkIfAndHandleMetaDocUrl(String urlId, String sourceUrl, String pageUrl, String pageDomain, String pageHtml)
     {
         // Check if the docLink is provided in a metaTag and connect to it directly.
-        String metaDocUrl = null;
-        Matcher metaDocUrlMatcher = META_DOC_URL.matcher(pageHtml);
-        if ( !metaDocUrlMatcher.find() )
+        String metaDocUrl = getMetaDocUrl(pageHtml);
+        if ( metaDocUrl == null )
             return false;    // It was not found and so it was not handled. We don't log the sourceUrl, since it will be handled later.
 
-        if ( (metaDocUrl = getMetaDocUrlFromMatcher(metaDocUrlMatcher)) == null ) {
-            logger.error("Could not retrieve the metaDocUrl, continue by crawling the pageUrl.");
-            return false;   // We don't log the sourceUrl, since it will be handled later.
-        }
+        return handleMetaDocUrl(urlId, sourceUrl, pageUrl, pageDomain, metaDocUrl);
+    }
+
+
+    /**
+     * This method returns the metaDocUrl of the given html-part, or "null", if there is no such metaTag inside (or it could not be retrieved).
+     * @param pageHtml
+     * @return
+     */
+    public static String getMetaDocUrl(String pageHtml)
+    {
+        String metaDocUrl = MetaTagScanner.findMetaDocUrl(pageHtml);  // A single linear pass, instead of the backtracking "META_DOC_URL"-regex.
         //logger.debug("MetaDocUrl: " + metaDocUrl);  // DEBUG!
+        return metaDocUrl;
+    }
+
 
+    /**
+     * This method connects to the given metaDocUrl (if it's acceptable) and checks if it's really a docUrl.
+     * It returns "true" when the metaDocUrl was handled (independently of how it was handled), otherwise it returns "false" and the crawling of the page should continue.
+     * @param urlId
+     * @param sourceUrl
+     * @param pageUrl
+     * @param pageDomain
+     * @param metaDocUrl
+     * @return
+     */
+    public static boolean handleMetaDocUrl(String urlId, String sourceUrl, String pageUrl, String pageDomain, String metaDocUrl)
+    {
         if ( metaDocUrl.equals(pageUrl) || ConnSupportUtils.haveOnlyProtocolDifference(metaDocUrl, pageUrl) ) {
             logger.warn("The metaDocUrl was found to be the same as the pageUrl! Continue by crawling the page..");
             return false;   // This metaDocUrl cannot be handled, return to "PageCrawler.visit()" to continue.
@@ -99,7 +114,7 @@ public class MetaDocUrlsHandler {
         }
 
         String tempMetaDocUrl = metaDocUrl;
-        if ( (metaDocUrl = URLCanonicalizer.getCanonicalURL(metaDocUrl, null, StandardCharsets.UTF_8)) == null ) {
+        if ( (metaDocUrl = UrlCanonicalizer.getCanonicalUrl(metaDocUrl, null)) == null ) {
             logger.warn("Could not canonicalize metaDocUrl: " + tempMetaDocUrl);
             UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'checkIfAndHandleMetaDocUrl()', due to canonicalization's problems.", null, true, "true", "false", "false", "false");
             PageCrawler.contentProblematicUrls.incrementAndGet();
@@ -127,29 +142,4 @@ public class MetaDocUrlsHandler {
             return false;   // Continue crawling the page..
         }
     }
-
-
-    public static String getMetaDocUrlFromMatcher(Matcher metaDocUrlMatcher)
-    {
-        if ( metaDocUrlMatcher == null ) {
-            logger.error("\"PageCrawler.getMetaDocUrlMatcher()\" received a \"null\" matcher!");
-            return null;
-        }
-
-        //logger.debug("Matched meta-doc-url-line: " + metaDocUrlMatcher.group(0));	// DEBUG!!
-
-        String metaDocUrl = null;
-        try {
-            metaDocUrl = metaDocUrlMatcher.group(1);
-        } catch ( Exception e ) { logger.error("", e); }
-        if ( metaDocUrl == null ) {
-            try {
-                metaDocUrl = metaDocUrlMatcher.group(2);    // Try the other group.
-            } catch ( Exception e ) { logger.error("", e); }
-        }
-
-        //logger.debug("MetaDocUrl: " + metaDocUrl);	// DEBUG!
-
-        return metaDocUrl;	// IT MAY BE NULL.. Handling happens in the caller method.
-    }
 }
@@ -0,0 +1,168 @@
+package eu.openaire.publications_retriever.crawler;
+
+
+/**
+ * This class finds the metaDocUrl inside the HTML-code, with a single linear pass, instead of the "META_DOC_URL"-regex, which backtracks a lot on pages with many metaTags.
+ * It recognises the "meta"-tags, their "name" and "content" attributes (in any order, with double, single or no quotes) and the supported names ("citation_pdf_url", "eprints.document_url").
+ * The tags, the attribute-names and the supported names are matched case-insensitively and any whitespace around the attributes is tolerated.
+ * @author Lampros Smyrnaios
+ */
+public class MetaTagScanner
+{
+	private static final String[] supportedMetaNames = {"citation_pdf_url", "eprints.document_url"};	// Any prefix is accepted, like in the regex (e.g. "dc.citation_pdf_url").
+
+
+	/**
+	 * This method returns the "content" of the first metaTag which has a supported "name" and a "content" starting with "http", or "null", if there is no such tag.
+	 * @param html
+	 * @return metaDocUrl or null
+	 */
+	public static String findMetaDocUrl(CharSequence html)
+	{
+		if ( html == null )
+			return null;
+
+		int length = html.length();
+		int index = 0;
+		while ( (index = indexOf(html, '<', index, length)) != -1 )
+		{
+			index++;
+			if ( !isMetaTagStart(html, index, length) )
+				continue;
+			index += 4;	// Skip the "meta".
+
+			String nameValue = null, contentValue = null;
+			boolean isTagValid = true;
+			while ( index < length )	// Loop over the attributes, until the end of the tag.
+			{
+				char c = html.charAt(index);
+				if ( c == '>' )
+					break;
+				else if ( c == '<' ) {	// A broken tag. The next tag starts here.
+					isTagValid = false;
+					break;
+				} else if ( Character.isWhitespace(c) || (c == '/') ) {
+					index++;
+					continue;
+				}
+
+				int attrNameStart = index;
+				while ( (index < length) && !isAttributeNameEnd(html.charAt(index)) )
+					index++;
+				int attrNameEnd = index;
+
+				index = skipWhitespace(html, index, length);
+				if ( (index >= length) || (html.charAt(index) != '=') )
+					continue;	// An attribute without value.
+				index = skipWhitespace(html, (index + 1), length);
+				if ( index >= length )
+					break;
+
+				int valueStart, valueEnd;
+				char quote = html.charAt(index);
+				if ( (quote == '"') || (quote == '\'') ) {
+					valueStart = index + 1;
+					if ( (valueEnd = indexOf(html, quote, valueStart, length)) == -1 ) {
+						isTagValid = false;	// The quote never closes.
+						break;
+					}
+					index = valueEnd + 1;
+				} else {
+					valueStart = index;
+					while ( (index < length) && !Character.isWhitespace(html.charAt(index)) && (html.charAt(index) != '>') )
+						index++;
+					valueEnd = index;
+				}
+
+				int attrNameLength = attrNameEnd - attrNameStart;
+				if ( (nameValue == null) && (attrNameLength == 4) && regionMatchesIgnoreCase(html, attrNameStart, "name") )
+					nameValue = html.subSequence(valueStart, valueEnd).toString();
+				else if ( (contentValue == null) && (attrNameLength == 7) && regionMatchesIgnoreCase(html, attrNameStart, "content") )
+					contentValue = html.subSequence(valueStart, valueEnd).toString();
+			}
+
+			String metaDocUrl;
+			if ( isTagValid && ((metaDocUrl = getMetaDocUrl(nameValue, contentValue)) != null) )
+				return metaDocUrl;
+		}
+		return null;
+	}
+
+
+	/**
+	 * This method returns the trimmed "content" of a metaTag, if its "name" is supported and its "content" starts with "http", otherwise it returns "null".
+	 * It is also used by the "HtmlLinkTokenizer", which finds the metaTags along with the link-elements.
+	 * @param nameValue the raw value of the "name"-attribute (it may be null)
+	 * @param contentValue the raw value of the "content"-attribute (it may be null)
+	 * @return metaDocUrl or null
+	 */
+	public static String getMetaDocUrl(String nameValue, String contentValue)
+	{
+		if ( (nameValue == null) || (contentValue == null) || !isSupportedMetaName(nameValue) )
+			return null;
+		contentValue = contentValue.trim();
+		if ( (contentValue.length() > 4) && contentValue.regionMatches(true, 0, "http", 0, 4) )
+			return contentValue;
+		return null;
+	}
+
+
+	private static boolean isMetaTagStart(CharSequence html, int index, int length)
+	{
+		if ( ((index + 4) >= length) || !regionMatchesIgnoreCase(html, index, "meta") )
+			return false;
+		char nextChar = html.charAt(index + 4);
+		return (Character.isWhitespace(nextChar) || (nextChar == '/') || (nextChar == '>'));	// Avoid tags like "<metadata>".
+	}
+
+
+	private static boolean isSupportedMetaName(String nameValue)
+	{
+		nameValue = nameValue.trim();
+		for ( String supportedMetaName : supportedMetaNames ) {
+			int offset = nameValue.length() - supportedMetaName.length();
+			if ( (offset >= 0) && nameValue.regionMatches(true, offset, supportedMetaName, 0, supportedMetaName.length()) )
+				return true;
+		}
+		return false;
+	}
+
+
+	private static boolean isAttributeNameEnd(char c)
+	{
+		return (Character.isWhitespace(c) || (c == '=') || (c == '>') || (c == '/') || (c == '<'));
+	}
+
+
+	private static int skipWhitespace(CharSequence html, int index, int length)
+	{
+		while ( (index < length) && Character.isWhitespace(html.charAt(index)) )
+			index++;
+		return index;
+	}
+
+
+	private static int indexOf(CharSequence html, char c, int fromIndex, int length)
+	{
+		for ( int i = fromIndex; i < length; ++i )
+			if ( html.charAt(i) == c )
+				return i;
+		return -1;
+	}
+
+
+	/**
+	 * The given "lowerCaseStr" should be in lower-case and within bounds (checked by the caller).
+	 */
+	private static boolean regionMatchesIgnoreCase(CharSequence html, int index, String lowerCaseStr)
+	{
+		int strLength = lowerCaseStr.length();
+		if ( (index + strLength) > html.length() )
+			return false;
+		for ( int i = 0; i < strLength; ++i )
+			if ( Character.toLowerCase(html.charAt(index + i)) != lowerCaseStr.charAt(i) )
+				return false;
+		return true;
+	}
+
+}
@@ -1,10 +1,14 @@
 package eu.openaire.publications_retriever.crawler;
 
-import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import eu.openaire.publications_retriever.exceptions.*;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker;
+import eu.openaire.publications_retriever.util.http.HtmlReader;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import eu.openaire.publications_retriever.util.http.TimesCounter;
+import eu.openaire.publications_retriever.util.url.DocOrDatasetUrlClassifier;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.UrlCanonicalizer;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.jsoup.Jsoup;
@@ -14,11 +18,8 @@ import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.net.HttpURLConnection;
-import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
-import java.util.Hashtable;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -37,24 +38,40 @@ public class PageCrawler
 
 	public static final Pattern JAVASCRIPT_CODE_PDF_LINK = Pattern.compile(".*\"pdfUrl\":\"([^\"]+)\".*");	// TODO - Check if this case is common, in order to handle it.
 
-	public static final Hashtable<String, Integer> timesDomainNotGivingInternalLinks = new Hashtable<String, Integer>();
-	public static final Hashtable<String, Integer> timesDomainNotGivingDocUrls = new Hashtable<String, Integer>();
+	public static final TimesCounter<String> timesDomainNotGivingInternalLinks = new TimesCounter<>();
+	public static final TimesCounter<String> timesDomainNotGivingDocUrls = new TimesCounter<>();
 
 	public static final int timesToGiveNoInternalLinksBeforeBlocked = 200;
 	public static final int timesToGiveNoDocUrlsBeforeBlocked = 100;
 
 	public static AtomicInteger contentProblematicUrls = new AtomicInteger(0);
 
+	public static AtomicInteger numOfPagesParsedWithJsoup = new AtomicInteger(0);	// The pages with malformed HTML, for which the "HtmlLinkTokenizer" could not decide on its own.
+
 	private static final int MAX_INTERNAL_LINKS_TO_ACCEPT_PAGE = 500;	// If a page has more than 500 internal links, then discard it. Example: "https://dblp.uni-trier.de/db/journals/corr/corr1805.html"
 	private static final int MAX_POSSIBLE_DOC_OR_DATASET_LINKS_TO_CONNECT = 5;	// The < 5 > is the optimal value, figured out after experimentation. Example: "https://doaj.org/article/acf5f095dc0f49a59d98a6c3abca7ab6".
 
+	public static int maxParallelCandidateChecksPerPage = 1;	// When it's more than < 1 >, the possibleDocOrDatasetUrls of a page are verified in parallel, see "CandidateUrlsVerifier". It's set by the "-parallelCandidateChecks" argument.
+
 	private static boolean should_check_remaining_links = true;	// The remaining links very rarely give docUrls.. so, for time-performance, we can disable them.
 	private static final int MAX_REMAINING_INTERNAL_LINKS_TO_CONNECT = 10;	// The < 10 > is the optimal value, figured out after experimentation.
 
 	private static final Pattern NON_VALID_DOCUMENT = Pattern.compile(".*(?:manu[ae]l|guide|preview).*");
 
 
-	public static void visit(String urlId, String sourceUrl, String pageUrl, String pageContentType, HttpURLConnection conn, String firstHTMLlineFromDetectedContentType, BufferedReader bufferedReader)
+	public static void visit(String urlId, String sourceUrl, String pageUrl, String pageContentType, HttpURLConnection conn, String firstHTMLlineFromDetectedContentType, HtmlReader htmlReader)
+	{
+		UrlUtils.pinParsedUrl(pageUrl);	// The pageUrl is needed again for each of its internal-links, which would otherwise evict it from the cache.
+		try {
+			visitPage(urlId, sourceUrl, pageUrl, pageContentType, conn, firstHTMLlineFromDetectedContentType, htmlReader);
+		} finally {
+			PageFingerprints.clearCurrentPage();	// The thread will handle other urls next.
+			UrlUtils.unpinParsedUrl();
+		}
+	}
+
+
+	private static void visitPage(String urlId, String sourceUrl, String pageUrl, String pageContentType, HttpURLConnection conn, String firstHTMLlineFromDetectedContentType, HtmlReader htmlReader)
 	{
 		logger.debug("Visiting pageUrl: \"" + pageUrl + "\".");
 
@@ -63,27 +80,67 @@ public class PageCrawler
 			logger.warn("Problematic URL in \"PageCrawler.visit()\": \"" + pageUrl + "\"");
 			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in PageCrawler.visit() method, after the occurrence of a domain-retrieval error.", null, true, "true", "false", "false", "false");
 			LoaderAndChecker.connProblematicUrls.incrementAndGet();
-			ConnSupportUtils.closeBufferedReader(bufferedReader);	// This page's content-type was auto-detected, and the process fails before re-requesting the conn-inputStream, then make sure we close the last one.
+			ConnSupportUtils.closeHtmlReader(htmlReader);	// This page's content-type was auto-detected, and the process fails before re-requesting the conn-inputStream, then make sure we close the last one.
 			return;
 		}
 
-		String pageHtml = null;	// Get the pageHtml to parse the page.
-		if ( (pageHtml = ConnSupportUtils.getHtmlString(conn, bufferedReader)) == null ) {
-			logger.warn("Could not retrieve the HTML-code for pageUrl: " + pageUrl);
-			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving its HTML-code. Its contentType is: '" + pageContentType + "'.", null, true, "true", "true", "false", "false");
-			LoaderAndChecker.connProblematicUrls.incrementAndGet();
+		// Get the pageHtml to parse the page. First, we read only its "head", as most of the pages provide their metaDocUrl there, so the "body" may not be needed at all.
+		HtmlReader pageReader = ConnSupportUtils.getHtmlReader(conn, htmlReader);
+		String pageHtml = null;
+		if ( (pageReader == null) || ((pageHtml = ConnSupportUtils.readHtmlLines(pageReader, true)) == null) ) {
+			ConnSupportUtils.closeHtmlReader(pageReader);
+			logHtmlRetrievalProblem(urlId, sourceUrl, pageUrl, pageContentType);
 			return;
 		}
-		else if ( firstHTMLlineFromDetectedContentType != null ) {
+		boolean isHeadEmpty = pageHtml.isEmpty();
+		if ( firstHTMLlineFromDetectedContentType != null )
 			pageHtml = firstHTMLlineFromDetectedContentType + pageHtml;
+
+		// Check if the docLink is provided in a metaTag and connect to it directly.
+		String metaDocUrl = MetaDocUrlsHandler.getMetaDocUrl(pageHtml);
+		if ( (metaDocUrl != null) && MetaDocUrlsHandler.handleMetaDocUrl(urlId, sourceUrl, pageUrl, pageDomain, metaDocUrl) ) {
+			MetaDocUrlsHandler.numOfPagesHandledByTheirHead.incrementAndGet();
+			conn.disconnect();	// Close the socket before closing the reader, otherwise the rest of the page would be downloaded, in order to reuse the connection.
+			ConnSupportUtils.closeHtmlReader(pageReader);
+			return;	// The sourceUrl is already logged inside the called method.
 		}
 
+		// The rest of the page is needed, in order to extract its internal-links.
+		String restOfPageHtml = ConnSupportUtils.readHtmlLines(pageReader, false);
+		ConnSupportUtils.closeHtmlReader(pageReader);
+		if ( (restOfPageHtml == null) || (isHeadEmpty && restOfPageHtml.isEmpty()) ) {
+			logHtmlRetrievalProblem(urlId, sourceUrl, pageUrl, pageContentType);
+			return;
+		}
+		else if ( !restOfPageHtml.isEmpty() )
+			pageHtml += restOfPageHtml;
+
 		//logger.debug(pageHtml);	// DEBUG!
 
-		// Check if the docLink is provided in a metaTag and connect to it directly.
-		if ( MetaDocUrlsHandler.checkIfAndHandleMetaDocUrl(urlId, sourceUrl, pageUrl, pageDomain, pageHtml) )
+		// Scan the whole page once, to get both its metaDocUrl and its link-elements, which are used by the following stages.
+		ParsedPage parsedPage;
+		try {
+			parsedPage = parsePage(pageHtml);
+		} catch (Exception e) {
+			logger.warn("Could not parse the HTML-code of pageUrl: " + pageUrl, e);
+			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'PageCrawler.visit()' method, as there was a problem parsing its HTML-code. Its contentType is: '" + pageContentType + "'", null, true, "true", "true", "false", "false");
+			contentProblematicUrls.incrementAndGet();
+			return;
+		}
+
+		if ( (metaDocUrl == null) && !restOfPageHtml.isEmpty() && (parsedPage.metaDocUrl != null)	// Some pages have their metaTags inside the "body".
+				&& MetaDocUrlsHandler.handleMetaDocUrl(urlId, sourceUrl, pageUrl, pageDomain, parsedPage.metaDocUrl) )
 			return;	// The sourceUrl is already logged inside the called method.
 
+		// Skip the pages which match a template of this domain that never gives docUrls, like a login-wall or a soft-404 page. Their internalLinks are not extracted nor checked.
+		if ( PageFingerprints.isKnownNoDocUrlTemplate(pageDomain, parsedPage.fingerprint) ) {
+			logger.warn("Page: \"" + pageUrl + "\" matches a template-page of its domain, which has not given any docUrls. The page was discarded.");
+			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'PageCrawler.visit()' method, as it matches a template-page of its domain (like a login-wall or a soft-404 page), which has not given any docUrls.", null, true, "true", "true", "false", "false");
+			handlePageWithNoDocUrls(urlId, sourceUrl, pageUrl, pageDomain, true, true);
+			return;
+		}
+		PageFingerprints.setCurrentPage(pageDomain, parsedPage.fingerprint);	// The outcome of this page will be recorded for its fingerprint.
+
 		// Check if we want to use AND if so, if we should run, the MLA.
 		if ( MachineLearning.useMLA ) {
 			MachineLearning.totalPagesReachedMLAStage.incrementAndGet();	// Used for M.L.A.'s execution-manipulation.
@@ -92,9 +149,10 @@ public class PageCrawler
 					return;	// If we were able to find the right path.. and hit a docUrl successfully.. return. The Quadruple is already logged.
 		}
 
-		HashSet<String> currentPageLinks = null;	// We use "HashSet" to avoid duplicates.
-		if ( (currentPageLinks = retrieveInternalLinks(urlId, sourceUrl, pageUrl, pageDomain, pageHtml, pageContentType)) == null )
+		LinkExtractionResult extractionResult = null;
+		if ( (extractionResult = retrieveInternalLinks(urlId, sourceUrl, pageUrl, pageDomain, parsedPage, pageContentType)) == null )
 			return;	// The necessary logging is handled inside.
+		HashSet<String> currentPageLinks = extractionResult.internalLinks;	// We use "HashSet" to avoid duplicates. Its iteration-order is the order of the links in the page.
 
 		int numOfInternalLinks = currentPageLinks.size();
 		if ( numOfInternalLinks > MAX_INTERNAL_LINKS_TO_ACCEPT_PAGE ) {
@@ -103,33 +161,59 @@ public class PageCrawler
 			contentProblematicUrls.incrementAndGet();
 			return;
 		}
-		HashSet<String> remainingLinks = new HashSet<>(numOfInternalLinks);	// Used later. Initialize with the total num of links (less will actually get stored there, but their num is unknown).
 		String urlToCheck = null;
 		String lowerCaseLink = null;
-		int possibleDocOrDatasetUrlsCounter = 0;
 
-		// Do a fast-loop, try connecting only to a handful of promising links first.
-		// Check if urls inside this page, match to a docUrl regex, if they do, try connecting with them and see if they truly are docUrls. If they are, return.
+		// Canonicalize and score the links, so that the most promising ones get connected first, as the number of links we connect to, is limited.
+		List<ScoredLink> scoredLinks = new ArrayList<>(numOfInternalLinks);
+		int previousPagesOfDomain = BoilerplateLinks.registerPage(pageDomain);
+		int position = -1;
 		for ( String currentLink : currentPageLinks )
 		{
+			position ++;
+			if ( BoilerplateLinks.isBoilerplate(pageDomain, currentLink, previousPagesOfDomain) )
+				continue;	// This link appears in most pages of this domain (navigation, footer, etc.), so it does not lead to the docUrl of this page.
+
 			// Produce fully functional internal links, NOT internal paths or non-canonicalized (if possible).
 			if ( currentLink.contains("[") ) { // This link cannot be canonicalized, go and make it a full-link, at least.
 				if ( (urlToCheck = ConnSupportUtils.getFullyFormedUrl(pageUrl, currentLink, null)) == null )
 					continue;
 			}
-			else if ( (urlToCheck = URLCanonicalizer.getCanonicalURL(currentLink, pageUrl, StandardCharsets.UTF_8)) == null ) {
+			else if ( (urlToCheck = UrlCanonicalizer.getCanonicalUrl(currentLink, pageUrl)) == null ) {
 				logger.warn("Could not canonicalize internal url: " + currentLink);
 				continue;
 			}
 
-            if ( UrlUtils.docOrDatasetUrlsWithIDs.containsKey(urlToCheck) ) {	// If we got into an already-found docUrl, log it and return.
+			if ( UrlUtils.docOrDatasetUrlsWithIDs.containsKey(urlToCheck) ) {	// If we got into an already-found docUrl, log it and return. No connection is needed for that, so we check all the links first.
 				ConnSupportUtils.handleReCrossedDocUrl(urlId, sourceUrl, pageUrl, urlToCheck, logger, false);
 				return;
-            }
+			}
+
+			lowerCaseLink = urlToCheck.toLowerCase();
+			String anchorText = extractionResult.anchorTexts.get(currentLink);
+			scoredLinks.add(new ScoredLink(urlToCheck, lowerCaseLink, LinkRanker.scoreLink(lowerCaseLink, ((anchorText != null) ? anchorText.toLowerCase() : null), pageDomain, position, numOfInternalLinks)));
+		}
+		LinkRanker.sortByScore(scoredLinks);
+
+		// If this domain has a proven link-template, then try its matching link first. If it's a docUrl, then the generic crawling of the page is skipped.
+		String templateLink = LinkTemplates.findTemplateLink(pageDomain, scoredLinks);
+		if ( (templateLink != null) && checkTemplateLink(urlId, sourceUrl, pageUrl, pageDomain, templateLink) )
+			return;	// The necessary logging is handled inside.
+
+		List<String> remainingLinks = new ArrayList<>(scoredLinks.size());	// Used later. They are kept in the order of their score.
+		int possibleDocOrDatasetUrlsCounter = 0;
+		boolean shouldVerifyInParallel = (maxParallelCandidateChecksPerPage > 1);
+		List<String> possibleDocOrDatasetUrls = shouldVerifyInParallel ? new ArrayList<>(MAX_POSSIBLE_DOC_OR_DATASET_LINKS_TO_CONNECT) : null;	// Only the candidates which the sequential-verification would check, are gathered.
+		boolean wasCandidatesLimitReached = false;
 
-            lowerCaseLink = urlToCheck.toLowerCase();
-            if ( (LoaderAndChecker.retrieveDocuments && LoaderAndChecker.DOC_URL_FILTER.matcher(lowerCaseLink).matches())
-				|| (LoaderAndChecker.retrieveDatasets && LoaderAndChecker.DATASET_URL_FILTER.matcher(lowerCaseLink).matches()) )
+		// Do a fast-loop, try connecting only to a handful of promising links first.
+		// Check if urls inside this page, match to a docUrl regex, if they do, try connecting with them and see if they truly are docUrls. If they are, return.
+		for ( ScoredLink scoredLink : scoredLinks )
+		{
+			urlToCheck = scoredLink.url;
+			lowerCaseLink = scoredLink.lowerCaseUrl;
+			if ( (LoaderAndChecker.retrieveDocuments && DocOrDatasetUrlClassifier.isPossibleDocUrl(lowerCaseLink))
+				|| (LoaderAndChecker.retrieveDatasets && DocOrDatasetUrlClassifier.isPossibleDatasetUrl(lowerCaseLink)) )
 			{
 				// Some docUrls may be in different domain, so after filtering the urls based on the possible type.. then we can allow to check for links in different domains.
 
@@ -142,16 +226,26 @@ public class PageCrawler
 				}	// Example of problematic url: "http://thredds.d4science.org/thredds/catalog/public/netcdf/AquamapsNative/catalog.html"
 
 				if ( (++possibleDocOrDatasetUrlsCounter) > MAX_POSSIBLE_DOC_OR_DATASET_LINKS_TO_CONNECT ) {
+					if ( shouldVerifyInParallel ) {
+						wasCandidatesLimitReached = true;
+						break;
+					}
 					logger.warn("The maximum limit (" + MAX_POSSIBLE_DOC_OR_DATASET_LINKS_TO_CONNECT + ") of possible doc or dataset links to be connected was reached for pageUrl: \"" + pageUrl + "\". The page was discarded.");
 					handlePageWithNoDocUrls(urlId, sourceUrl, pageUrl, pageDomain, true, false);
 					return;
 				}
 
+				if ( shouldVerifyInParallel ) {
+					possibleDocOrDatasetUrls.add(urlToCheck);
+					continue;
+				}
+
 				//logger.debug("InternalPossibleDocLink to connect with: " + urlToCheck);	// DEBUG!
 				try {
-					if ( HttpConnUtils.connectAndCheckMimeType(urlId, sourceUrl, pageUrl, urlToCheck, null, false, true) )	// We log the docUrl inside this method.
+					if ( HttpConnUtils.connectAndCheckMimeType(urlId, sourceUrl, pageUrl, urlToCheck, null, false, true) ) {	// We log the docUrl inside this method.
+						registerDocUrlLink(pageDomain, urlToCheck);
 						return;
-					else {	// It's not a DocUrl.
+					} else {	// It's not a DocUrl.
 						UrlUtils.duplicateUrls.add(urlToCheck);
 						continue;
 					}
@@ -162,7 +256,7 @@ public class PageCrawler
 					String blockedDomain = dbe.getMessage();
 					if ( (blockedDomain != null) && blockedDomain.contains(pageDomain) ) {
 						logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after it's domain was blocked.");
-						UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Logged in 'PageCrawler.visit()' method, as its domain was blocked during crawling.", null, true, "true", "true", "false", "false");
+						UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Logged in 'PageCrawler.visit()' method, as its domain was blocked during crawling." + DomainCircuitBreaker.getStateComment(pageDomain), null, true, "true", "true", "false", "false");
 						LoaderAndChecker.connProblematicUrls.incrementAndGet();
 						return;
 					}
@@ -181,9 +275,19 @@ public class PageCrawler
 				}
             }
 
-            remainingLinks.add(urlToCheck);	// Add the fully-formed & accepted remaining links into a new hashSet to be iterated.
+            remainingLinks.add(urlToCheck);	// Add the fully-formed & accepted remaining links into a new list to be iterated.
 		}// end for-loop
 
+		if ( shouldVerifyInParallel ) {
+			if ( !possibleDocOrDatasetUrls.isEmpty() && CandidateUrlsVerifier.verifyCandidates(urlId, sourceUrl, pageUrl, pageDomain, possibleDocOrDatasetUrls) )
+				return;	// The necessary logging is handled inside.
+			if ( wasCandidatesLimitReached ) {
+				logger.warn("The maximum limit (" + MAX_POSSIBLE_DOC_OR_DATASET_LINKS_TO_CONNECT + ") of possible doc or dataset links to be connected was reached for pageUrl: \"" + pageUrl + "\". The page was discarded.");
+				handlePageWithNoDocUrls(urlId, sourceUrl, pageUrl, pageDomain, true, false);
+				return;
+			}
+		}
+
 		// If we reached here, it means that we couldn't find a docUrl the quick way.. so we have to check some (we exclude lots of them) of the internal links one by one.
 
 		if ( should_check_remaining_links )
@@ -193,6 +297,82 @@ public class PageCrawler
 	}
 
 
+	/**
+	 * This method checks the link which matches a proven template of the page's domain (see "LinkTemplates").
+	 * If it's not a docUrl, it's added to the "duplicateUrls", so that the generic crawling, which follows, will not check it again.
+	 * The same filters as in the generic crawling are applied before connecting, so the already-checked or the unwanted links are not connected, but they count as failures of the template.
+	 * @param urlId
+	 * @param sourceUrl
+	 * @param pageUrl
+	 * @param pageDomain
+	 * @param templateLink
+	 * @return "true", if the page was handled (the docUrl was found, or the page was left), otherwise, "false". In both cases, the necessary logging is handled inside.
+	 */
+	private static boolean checkTemplateLink(String urlId, String sourceUrl, String pageUrl, String pageDomain, String templateLink)
+	{
+		if ( UrlUtils.duplicateUrls.contains(templateLink) ) {	// It was already checked (it's not an already-found docUrl, as those are handled before).
+			LinkTemplates.registerTemplateLinkResult(pageDomain, templateLink, false);
+			return false;
+		}
+
+		if ( UrlTypeChecker.shouldNotAcceptInternalLink(templateLink, templateLink.toLowerCase()) ) {
+			LinkTemplates.registerTemplateLinkResult(pageDomain, templateLink, false);
+			UrlUtils.duplicateUrls.add(templateLink);
+			return false;
+		}
+
+		boolean wasDocUrl = false;
+		try {
+			wasDocUrl = HttpConnUtils.connectAndCheckMimeType(urlId, sourceUrl, pageUrl, templateLink, null, false, true);	// We log the docUrl inside this method.
+		} catch (DomainBlockedException dbe) {
+			String blockedDomain = dbe.getMessage();
+			if ( (blockedDomain != null) && blockedDomain.contains(pageDomain) ) {
+				logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after it's domain was blocked.");
+				UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Logged in 'PageCrawler.visit()' method, as its domain was blocked during crawling." + DomainCircuitBreaker.getStateComment(pageDomain), null, true, "true", "true", "false", "false");
+				LoaderAndChecker.connProblematicUrls.incrementAndGet();
+				return true;
+			}
+		} catch (ConnTimeoutException cte) {
+			if ( templateLink.contains(pageDomain) ) {	// In this case, it's unworthy to stay and check other internalLinks here.
+				logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after its template-link caused a ConnTimeoutException.");
+				UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Logged in 'PageCrawler.visit()' method, as an internalLink of this page caused 'ConnTimeoutException'.", null, true, "true", "true", "false", "false");
+				LoaderAndChecker.connProblematicUrls.incrementAndGet();
+				return true;
+			}
+		} catch (Exception e) {	// The generic crawling will follow. The link is added to the "duplicateUrls", below.
+			logger.error("" + e);
+		}
+
+		LinkTemplates.registerTemplateLinkResult(pageDomain, templateLink, wasDocUrl);
+		if ( wasDocUrl ) {
+			LinkRanker.registerDocUrlLink(templateLink);
+			return true;
+		}
+		UrlUtils.duplicateUrls.add(templateLink);
+		return false;
+	}
+
+
+	/**
+	 * This method records that the given internalLink of a page from the given domain gave a docUrl, so that similar links get preferred in the future.
+	 * @param pageDomain
+	 * @param internalLink
+	 */
+	static void registerDocUrlLink(String pageDomain, String internalLink)
+	{
+		LinkRanker.registerDocUrlLink(internalLink);
+		LinkTemplates.registerDocUrlLink(pageDomain, internalLink);
+	}
+
+
+	private static void logHtmlRetrievalProblem(String urlId, String sourceUrl, String pageUrl, String pageContentType)
+	{
+		logger.warn("Could not retrieve the HTML-code for pageUrl: " + pageUrl);
+		UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving its HTML-code. Its contentType is: '" + pageContentType + "'.", null, true, "true", "true", "false", "false");
+		LoaderAndChecker.connProblematicUrls.incrementAndGet();
+	}
+
+
 	/**
 	 * This method handles
 	 * @param urlId
@@ -209,6 +389,7 @@ public class PageCrawler
 			logger.warn("Page: \"" + pageUrl + "\" does not contain a docUrl.");
 
 		UrlTypeChecker.pagesNotProvidingDocUrls.incrementAndGet();
+		PageFingerprints.registerNoDocUrlOfCurrentPage();
 		if ( !isAlreadyLoggedToOutput )	// This check is used in error-cases, where we have already logged the Quadruple.
 			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Logged in 'PageCrawler.visit()' method, as no docUrl was found inside.", null, true, "true", "true", "false", "false");
 		if ( ConnSupportUtils.countAndBlockDomainAfterTimes(HttpConnUtils.blacklistedDomains, PageCrawler.timesDomainNotGivingDocUrls, pageDomain, PageCrawler.timesToGiveNoDocUrlsBeforeBlocked, true) )
@@ -216,27 +397,11 @@ public class PageCrawler
 	}
 
 
-	public static HashSet<String> retrieveInternalLinks(String urlId, String sourceUrl, String pageUrl, String pageDomain, String pageHtml, String pageContentType)
+	public static LinkExtractionResult retrieveInternalLinks(String urlId, String sourceUrl, String pageUrl, String pageDomain, ParsedPage parsedPage, String pageContentType)
 	{
-		HashSet<String> currentPageLinks = null;
+		LinkExtractionResult result;
 		try {
-			currentPageLinks = extractInternalLinksFromHtml(pageHtml, pageUrl);
-		} catch (DynamicInternalLinksFoundException dilfe) {
-			HttpConnUtils.blacklistedDomains.add(pageDomain);
-			logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after found to have dynamic links. Its domain \"" + pageDomain + "\"  was blocked.");	// Refer "PageCrawler.visit()" here for consistency with other similar messages.
-			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Logged in 'PageCrawler.retrieveInternalLinks()', as it belongs to a domain with dynamic-links.", null, true, "true", "true", "false", "false");
-			PageCrawler.contentProblematicUrls.incrementAndGet();
-			return null;
-		} catch ( DocLinkFoundException dlfe) {
-			if ( !verifyDocLink(urlId, sourceUrl, pageUrl, pageDomain, pageContentType, dlfe) )	// url-logging is handled inside.
-				handlePageWithNoDocUrls(urlId, sourceUrl, pageUrl, pageDomain, false, true);
-			return null;	// This DocLink is the only docLink we will ever gonna get from this page. The sourceUrl is logged inside the called method.
-			// If this "DocLink" is a DocUrl, then returning "null" here, will trigger the 'PageCrawler.retrieveInternalLinks()' method to exit immediately (and normally).
-		} catch ( DocLinkInvalidException dlie ) {
-			//logger.warn("An invalid docLink < " + dlie.getMessage() + " > was found for pageUrl: \"" + pageUrl + "\". Search was stopped.");	// DEBUG!
-			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'PageCrawler.retrieveInternalLinks()' method, as there was an invalid docLink. Its contentType is: '" + pageContentType + "'", null, true, "true", "true", "false", "false");
-			handlePageWithNoDocUrls(urlId, sourceUrl, pageUrl, pageDomain, false, true);
-			return null;
+			result = extractInternalLinks(parsedPage, pageUrl);
 		} catch (Exception e) {
 			logger.warn("Could not retrieve the internalLinks for pageUrl: " + pageUrl);
 			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'PageCrawler.retrieveInternalLinks()' method, as there was a problem retrieving its internalLinks. Its contentType is: '" + pageContentType + "'", null, true, "true", "true", "false", "false");
@@ -244,6 +409,29 @@ public class PageCrawler
 			return null;
 		}
 
+		switch ( result.type ) {
+			case DYNAMIC_LINKS_FOUND:
+				HttpConnUtils.blacklistedDomains.add(pageDomain);
+				logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after found to have dynamic links. Its domain \"" + pageDomain + "\"  was blocked.");	// Refer "PageCrawler.visit()" here for consistency with other similar messages.
+				UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Logged in 'PageCrawler.retrieveInternalLinks()', as it belongs to a domain with dynamic-links.", null, true, "true", "true", "false", "false");
+				PageCrawler.contentProblematicUrls.incrementAndGet();
+				return null;
+			case DOC_LINK_FOUND:
+				if ( !verifyDocLink(urlId, sourceUrl, pageUrl, pageDomain, pageContentType, result.docLink) )	// url-logging is handled inside.
+					handlePageWithNoDocUrls(urlId, sourceUrl, pageUrl, pageDomain, false, true);
+				return null;	// This DocLink is the only docLink we will ever gonna get from this page. The sourceUrl is logged inside the called method.
+				// If this "DocLink" is a DocUrl, then returning "null" here, will trigger the 'PageCrawler.retrieveInternalLinks()' method to exit immediately (and normally).
+			case DOC_LINK_INVALID:
+				//logger.warn("An invalid docLink < " + result.docLink + " > was found for pageUrl: \"" + pageUrl + "\". Search was stopped.");	// DEBUG!
+				UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'PageCrawler.retrieveInternalLinks()' method, as there was an invalid docLink. Its contentType is: '" + pageContentType + "'", null, true, "true", "true", "false", "false");
+				handlePageWithNoDocUrls(urlId, sourceUrl, pageUrl, pageDomain, false, true);
+				return null;
+			default:
+				break;
+		}
+
+		HashSet<String> currentPageLinks = result.internalLinks;	// It's "null" for the "NO_LINKS" type.
+
 		boolean isNull = (currentPageLinks == null);
 		boolean isEmpty = false;
 
@@ -264,83 +452,144 @@ public class PageCrawler
 		//if ( pageUrl.contains(<keyWord> || <url>) )	// In case we want to print internal-links only for specific-pageTypes.
 			//printInternalLinksForDebugging(currentPageLinks);
 
-		return currentPageLinks;
+		return result;
 	}
 
 
 	/**
-	 * Get the internalLinks using "Jsoup".
+	 * This method scans the given HTML-code once, using the streaming "HtmlLinkTokenizer", in order to get the metaDocUrl and the link-elements of the page.
+	 * When the HTML is too malformed for the tokenizer, the link-elements are extracted with "Jsoup" and the metaDocUrl with the "MetaTagScanner".
 	 * @param pageHtml
-	 * @param pageUrl
-	 * @return The internalLinks
-	 * @throws DocLinkFoundException
-	 * @throws DynamicInternalLinksFoundException
+	 * @return The ParsedPage
 	 */
-	public static HashSet<String> extractInternalLinksFromHtml(String pageHtml, String pageUrl) throws DocLinkFoundException, DynamicInternalLinksFoundException, DocLinkInvalidException
+	public static ParsedPage parsePage(String pageHtml)
 	{
+		HtmlLinkTokenizer linkTokenizer = new HtmlLinkTokenizer(pageHtml, LoaderAndChecker.retrieveDocuments);
+		List<LinkElement> linkElements = new ArrayList<>();
+		while ( linkTokenizer.hasNext() )
+			linkElements.add(linkTokenizer.next());
+
+		if ( !linkTokenizer.isMalformed() )
+			return new ParsedPage(linkTokenizer.getMetaDocUrl(), linkElements, false, linkTokenizer.getFingerprint());
+
+		// The tokenizer stopped early, as Jsoup may "repair" this page differently, so use Jsoup from the beginning.
+		numOfPagesParsedWithJsoup.incrementAndGet();
 		Document document = Jsoup.parse(pageHtml);
 		Elements elementLinksOnPage = document.select("a, link[href][type*=pdf]");
-		if ( elementLinksOnPage.isEmpty() ) {	// It will surely not be null, by Jsoup-documentation.
-			logger.warn("Jsoup did not extract any links from pageUrl: \"" + pageUrl + "\"");
-			return null;
-		}
+		linkElements = new ArrayList<>(elementLinksOnPage.size());
+		for ( Element el : elementLinksOnPage )
+			linkElements.add(getLinkElement(el));
+
+		PageFingerprints.Accumulator fingerprintAccumulator = new PageFingerprints.Accumulator();
+		for ( Element el : document.getAllElements() )
+			if ( el != document )	// Skip the "#root".
+				fingerprintAccumulator.addTag(el.normalName());
+		fingerprintAccumulator.addTitle(document.title());
+		return new ParsedPage(MetaDocUrlsHandler.getMetaDocUrl(pageHtml), linkElements, true, fingerprintAccumulator.getFingerprint());
+	}
 
-		HashSet<String> urls = new HashSet<>(elementLinksOnPage.size()/2);	// Only some of the links will be added in the final set.
-		String linkAttr, internalLink;
 
-		for ( Element el : elementLinksOnPage )
-		{
-			if ( LoaderAndChecker.retrieveDocuments)	// Currently, these smart-checks are only available for specific docFiles (not for datasets).
+	/**
+	 * Get the internalLinks from the given HTML-code.
+	 * @param pageHtml
+	 * @param pageUrl
+	 * @return The LinkExtractionResult
+	 */
+	public static LinkExtractionResult extractInternalLinksFromHtml(String pageHtml, String pageUrl)
+	{
+		return extractInternalLinks(parsePage(pageHtml), pageUrl);
+	}
+
+
+	/**
+	 * Get the internalLinks from the link-elements of the given ParsedPage.
+	 * The docLinks (valid or invalid) and the dynamic-links are signaled through the returned result.
+	 * @param parsedPage
+	 * @param pageUrl
+	 * @return The LinkExtractionResult
+	 */
+	public static LinkExtractionResult extractInternalLinks(ParsedPage parsedPage, String pageUrl)
+	{
+		LinkExtractionResult result = checkLinkElements(parsedPage.linkElements);
+		if ( result.type == LinkExtractionResult.Type.NO_LINKS )
+			logger.warn("No link-elements were extracted from pageUrl: \"" + pageUrl + "\"");
+		return result;
+	}
+
+
+	private static LinkExtractionResult checkLinkElements(List<LinkElement> linkElements)
+	{
+		if ( linkElements.isEmpty() )
+			return new LinkExtractionResult(LinkExtractionResult.Type.NO_LINKS, null, null, null);
+
+		HashSet<String> urls = new LinkedHashSet<>();	// Only some of the links will be added in the final set. Their order in the page is kept, for the "LinkRanker".
+		HashMap<String, String> anchorTexts = new HashMap<>();
+		String linkAttr, internalLink;
+		try {
+			for ( LinkElement el : linkElements )
 			{
-				linkAttr = el.text();
-				if ( !linkAttr.isEmpty() ) {
-					String lowerCaseLinkAttr = linkAttr.toLowerCase();
-					if ( NON_VALID_DOCUMENT.matcher(lowerCaseLinkAttr).matches() ) {	// If it's not a valid full-text..
-						//logger.debug("Avoiding invalid full-text with context: \"" + linkAttr + "\", internalLink: " + el.attr("href"));	// DEBUG!
-						continue;	// Avoid collecting it..
-					}
-					else if ( lowerCaseLinkAttr.contains("pdf") ) {
-						internalLink = el.attr("href");
-						if ( !internalLink.isEmpty() && !internalLink.startsWith("#", 0) ) {
-							//logger.debug("Found the docLink < " + internalLink + " > from link-text: \"" + linkAttr + "\"");	// DEBUG
-							throw new DocLinkFoundException(internalLink);
+				if ( LoaderAndChecker.retrieveDocuments)	// Currently, these smart-checks are only available for specific docFiles (not for datasets).
+				{
+					linkAttr = el.text;
+					if ( !linkAttr.isEmpty() ) {
+						String lowerCaseLinkAttr = linkAttr.toLowerCase();
+						if ( NON_VALID_DOCUMENT.matcher(lowerCaseLinkAttr).matches() ) {	// If it's not a valid full-text..
+							//logger.debug("Avoiding invalid full-text with context: \"" + linkAttr + "\", internalLink: " + el.href);	// DEBUG!
+							continue;	// Avoid collecting it..
+						}
+						else if ( lowerCaseLinkAttr.contains("pdf") ) {
+							//logger.debug("Found the docLink < " + el.href + " > from link-text: \"" + linkAttr + "\"");	// DEBUG
+							return getDocLinkResult(el.href);
 						}
-						throw new DocLinkInvalidException(internalLink);
 					}
-				}
 
-				linkAttr = el.attr("title");
-				if ( !linkAttr.isEmpty() && linkAttr.toLowerCase().contains("pdf") ) {
-					internalLink = el.attr("href");
-					if ( !internalLink.isEmpty() && !internalLink.startsWith("#", 0) ) {
-						//logger.debug("Found the docLink < " + internalLink + " > from link-title: \"" + linkAttr + "\"");	// DEBUG
-						throw new DocLinkFoundException(internalLink);
+					linkAttr = el.title;
+					if ( !linkAttr.isEmpty() && linkAttr.toLowerCase().contains("pdf") ) {
+						//logger.debug("Found the docLink < " + el.href + " > from link-title: \"" + linkAttr + "\"");	// DEBUG
+						return getDocLinkResult(el.href);
 					}
-					throw new DocLinkInvalidException(internalLink);
-				}
 
-				// Check if we have a "link[href][type*=pdf]" get the docUrl. This also check all the "types" even from the HTML-"a" elements.
-				linkAttr = el.attr("type");
-				if ( !linkAttr.isEmpty() && ConnSupportUtils.knownDocMimeTypes.contains(linkAttr) ) {
-					internalLink = el.attr("href");
-					if ( !internalLink.isEmpty() && !internalLink.startsWith("#", 0) ) {
-						//logger.debug("Found the docLink < " + internalLink + " > from link-type: \"" + linkAttr + "\"");	// DEBUG
-						throw new DocLinkFoundException(internalLink);
+					// Check if we have a "link[href][type*=pdf]" get the docUrl. This also check all the "types" even from the HTML-"a" elements.
+					linkAttr = el.type;
+					if ( !linkAttr.isEmpty() && ConnSupportUtils.knownDocMimeTypes.contains(linkAttr) ) {
+						//logger.debug("Found the docLink < " + el.href + " > from link-type: \"" + linkAttr + "\"");	// DEBUG
+						return getDocLinkResult(el.href);
 					}
-					throw new DocLinkInvalidException(internalLink);
 				}
-			}
 
-			internalLink = el.attr("href");
-			if ( internalLink.isEmpty() || internalLink.equals("#") ) {
-				internalLink = el.attr("data-popup");	// Ex: https://www.ingentaconnect.com/content/cscript/cvia/2017/00000002/00000003/art00008
-				if ( internalLink.isEmpty() )
-					continue;
+				internalLink = el.href;
+				if ( internalLink.isEmpty() || internalLink.equals("#") ) {
+					internalLink = el.dataPopup;	// Ex: https://www.ingentaconnect.com/content/cscript/cvia/2017/00000002/00000003/art00008
+					if ( internalLink.isEmpty() )
+						continue;
+				}
+				if ( (internalLink = gatherInternalLink(internalLink)) != null ) {	// Throws exceptions for the rare cases of dynamic-links and javaScript-docLinks.
+					urls.add(internalLink);
+					if ( !el.text.isEmpty() )
+						anchorTexts.putIfAbsent(internalLink, el.text);
+				}
 			}
-			if ( (internalLink = gatherInternalLink(internalLink)) != null )	// Throws exceptions which go to the caller method.
-				urls.add(internalLink);
+		} catch (DynamicInternalLinksFoundException dilfe) {
+			return new LinkExtractionResult(LinkExtractionResult.Type.DYNAMIC_LINKS_FOUND, null, null, null);
+		} catch (DocLinkFoundException dlfe) {
+			return new LinkExtractionResult(LinkExtractionResult.Type.DOC_LINK_FOUND, null, null, dlfe.getMessage());
 		}
-		return urls;
+
+		return new LinkExtractionResult(LinkExtractionResult.Type.INTERNAL_LINKS, urls, anchorTexts, null);
+	}
+
+
+	private static LinkExtractionResult getDocLinkResult(String docLink)
+	{
+		if ( !docLink.isEmpty() && !docLink.startsWith("#", 0) )
+			return new LinkExtractionResult(LinkExtractionResult.Type.DOC_LINK_FOUND, null, null, docLink);
+		return new LinkExtractionResult(LinkExtractionResult.Type.DOC_LINK_INVALID, null, null, docLink);
+	}
+
+
+	private static LinkElement getLinkElement(Element el)
+	{
+		return new LinkElement(el.attr("href"), el.attr("title"), el.attr("type"), el.attr("data-popup"), (LoaderAndChecker.retrieveDocuments ? el.text() : null));
 	}
 
 
@@ -360,8 +609,8 @@ public class PageCrawler
 		// Remove anchors from possible docUrls and add the remaining part to the list. Non-possibleDocUrls having anchors are rejected (except for hashtag-directories).
 		if ( lowerCaseInternalLink.contains("#") )
 		{
-			if ( (LoaderAndChecker.retrieveDocuments && LoaderAndChecker.DOC_URL_FILTER.matcher(lowerCaseInternalLink).matches())
-					|| (LoaderAndChecker.retrieveDatasets && LoaderAndChecker.DATASET_URL_FILTER.matcher(lowerCaseInternalLink).matches()) ) {
+			if ( (LoaderAndChecker.retrieveDocuments && DocOrDatasetUrlClassifier.isPossibleDocUrl(lowerCaseInternalLink))
+					|| (LoaderAndChecker.retrieveDatasets && DocOrDatasetUrlClassifier.isPossibleDatasetUrl(lowerCaseInternalLink)) ) {
 				// There are some docURLs with anchors. We should get the docUrl but remove the anchors to keep them clean and connectable.
 				// Like this: https://www.redalyc.org/pdf/104/10401515.pdf#page=1&zoom=auto,-13,792
 				internalLink = UrlUtils.removeAnchor(internalLink);
@@ -393,9 +642,8 @@ public class PageCrawler
 	}
 
 
-	public static boolean verifyDocLink(String urlId, String sourceUrl, String pageUrl, String pageDomain, String pageContentType, DocLinkFoundException dlfe)
+	public static boolean verifyDocLink(String urlId, String sourceUrl, String pageUrl, String pageDomain, String pageContentType, String docLink)
 	{
-		String docLink = dlfe.getMessage();
 		if ( (docLink == null) || docLink.isEmpty() ) {
 			logger.warn("DocLink was not retrieved!");
 			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving its internalLinks. Its contentType is: '" + pageContentType + "'", null, true, "true", "true", "false", "false");
@@ -404,7 +652,7 @@ public class PageCrawler
 
 		// Produce fully functional internal links, NOT internal paths or non-canonicalized.
 		String tempLink = docLink;
-		if ( (docLink = URLCanonicalizer.getCanonicalURL(docLink, pageUrl, StandardCharsets.UTF_8)) == null ) {
+		if ( (docLink = UrlCanonicalizer.getCanonicalUrl(docLink, pageUrl)) == null ) {
 			logger.warn("Could not canonicalize internal url: " + tempLink);
 			UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Discarded in 'PageCrawler.visit()' method, as there were canonicalization problems with the 'possibleDocUrl' found inside: " + tempLink, null, true, "true", "false", "false", "false");
 			return false;
@@ -438,7 +686,7 @@ public class PageCrawler
 	private static final AtomicInteger timesFoundDocOrDatasetUrlFromRemainingLinks = new AtomicInteger(0);
 	private static final double leastPercentageOfHitsFromRemainingLinks = 0.20;
 
-	public static boolean checkRemainingInternalLinks(String urlId, String sourceUrl, String pageUrl, String pageDomain, HashSet<String> remainingLinks)
+	public static boolean checkRemainingInternalLinks(String urlId, String sourceUrl, String pageUrl, String pageDomain, List<String> remainingLinks)
 	{
 		if ( remainingLinks.isEmpty() ) {
 			handlePageWithNoDocUrls(urlId, sourceUrl, pageUrl, pageDomain, false, false);
@@ -459,7 +707,7 @@ public class PageCrawler
 
 		int remainingUrlsCounter = 0;
 
-		for ( String currentLink : remainingLinks )    // Here we don't re-check already-checked links, as this is a new list. All the links here are full-canonicalized-urls.
+		for ( String currentLink : remainingLinks )    // Here we don't re-check already-checked links, as this is a new list. All the links here are full-canonicalized-urls, in the order of their score.
 		{
 			// Make sure we avoid connecting to different domains to save time. We allow to check different domains only after matching to possible-urls in the previous fast-loop.
 			if ( !currentLink.contains(pageDomain)
@@ -485,6 +733,7 @@ public class PageCrawler
 				{    // Log this in order to find ways to make these docUrls get found sooner..!
 					logger.debug("Page \"" + pageUrl + "\", gave the \"remaining\" docUrl \"" + currentLink + "\"");    // DEBUG!!
 					timesFoundDocOrDatasetUrlFromRemainingLinks.incrementAndGet();
+					registerDocUrlLink(pageDomain, currentLink);
 					return true;
 				} else
 					UrlUtils.duplicateUrls.add(currentLink);
@@ -492,7 +741,7 @@ public class PageCrawler
 				String blockedDomain = dbe.getMessage();
 				if ( (blockedDomain != null) && blockedDomain.contains(pageDomain) ) {
 					logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.checkRemainingInternalLinks()\" after it's domain was blocked.");
-					UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Logged in 'PageCrawler.checkRemainingInternalLinks()' method, as its domain was blocked during crawling.", null, true, "true", "true", "false", "false");
+					UrlUtils.logOutputData(urlId, sourceUrl, null, "unreachable", "Logged in 'PageCrawler.checkRemainingInternalLinks()' method, as its domain was blocked during crawling." + DomainCircuitBreaker.getStateComment(pageDomain), null, true, "true", "true", "false", "false");
 					LoaderAndChecker.connProblematicUrls.incrementAndGet();
 					return false;
 				}
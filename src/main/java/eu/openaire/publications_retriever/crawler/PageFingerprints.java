@@ -0,0 +1,276 @@
+package eu.openaire.publications_retriever.crawler;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class recognizes the template-pages of each domain which never give docUrls, like login-walls, cookie-consent pages, "access denied" pages and soft-404 pages.
+ * Many domains return such a page for thousands of different urls, so, once a template has proved to give no docUrls, its pages are skipped without checking their internalLinks.
+ * Each page gets a 64-bit "simhash" of its structure (the bigrams of its consecutive tag-names) and of its title-tokens, so the pages of the same template get the same (or a very close) fingerprint,
+ * while the landing-pages of different records, which share the structure but have different titles, get distant fingerprints.
+ * The outcome of each crawled page is counted for the closest fingerprint of its domain. A few pages of each matching template are still crawled, in case the template starts giving docUrls.
+ * @author Lampros Smyrnaios
+ */
+public class PageFingerprints
+{
+	private static final int MAX_HAMMING_DISTANCE = 3;	// The fingerprints which differ in up to 3 bits, belong to the same template.
+	private static final int MAX_TEMPLATES_PER_DOMAIN = 20;
+	private static final int MAX_DOMAINS_TO_LEARN = 50000;
+	private static final int LEAST_PAGES_WITHOUT_DOC_URLS_TO_SKIP = 5;
+	private static final int PAGES_TO_SKIP_BEFORE_RECHECK = 20;	// Every 20th matching page is crawled normally, in case its template has started giving docUrls (e.g. the login-wall was lifted).
+
+	private static final ConcurrentHashMap<String, List<PageTemplate>> domainsWithTemplates = new ConcurrentHashMap<>();
+
+	private static final ThreadLocal<CurrentPage> currentPage = new ThreadLocal<>();	// The page which is being crawled by each thread, in order to record its outcome.
+
+	public static AtomicInteger numOfPagesSkippedByFingerprint = new AtomicInteger(0);
+
+
+	private static class PageTemplate
+	{
+		final long fingerprint;
+		final AtomicInteger pagesWithoutDocUrls = new AtomicInteger(0);
+		final AtomicInteger pagesWithDocUrls = new AtomicInteger(0);
+		final AtomicInteger timesMatched = new AtomicInteger(0);
+
+		PageTemplate(long fingerprint)
+		{
+			this.fingerprint = fingerprint;
+		}
+
+		boolean givesNoDocUrls() {
+			return ((pagesWithDocUrls.get() == 0) && (pagesWithoutDocUrls.get() >= LEAST_PAGES_WITHOUT_DOC_URLS_TO_SKIP));
+		}
+	}
+
+
+	private static class CurrentPage
+	{
+		final String pageDomain;
+		final long fingerprint;
+		boolean isRecorded = false;	// Only the first outcome of the page is recorded.
+
+		CurrentPage(String pageDomain, long fingerprint)
+		{
+			this.pageDomain = pageDomain;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+
+	/**
+	 * This class accumulates the features of a page, in order to produce its fingerprint.
+	 */
+	public static class Accumulator
+	{
+		private final long[] structureWeights = new long[64];
+		private final long[] titleWeights = new long[64];
+		private long previousTagHash = 0;
+		private int numOfTags = 0;
+		private int numOfTitleTokens = 0;
+		private boolean hasTitle = false;
+
+		/**
+		 * @param tagName	// The name of a start-tag, in lowerCase, in the order it appears in the page.
+		 */
+		public void addTag(String tagName)
+		{
+			long tagHash = hash(tagName, 0, tagName.length());
+			addFeature(structureWeights, mix((previousTagHash * 31) + tagHash), 1);
+			previousTagHash = tagHash;
+			numOfTags ++;
+		}
+
+		/**
+		 * Only the first title of the page is used.
+		 * @param title
+		 */
+		public void addTitle(String title)
+		{
+			if ( hasTitle )
+				return;
+			hasTitle = true;
+			String lowerCaseTitle = title.toLowerCase();
+			int length = lowerCaseTitle.length();
+			int tokenStart = -1;
+			for ( int i = 0; i <= length; i++ ) {
+				if ( (i < length) && Character.isLetterOrDigit(lowerCaseTitle.charAt(i)) ) {
+					if ( tokenStart == -1 )
+						tokenStart = i;
+				} else if ( tokenStart != -1 ) {
+					addFeature(titleWeights, mix(hash(lowerCaseTitle, tokenStart, i)), 1);
+					numOfTitleTokens ++;
+					tokenStart = -1;
+				}
+			}
+		}
+
+		/**
+		 * The title-tokens get, in total, the same weight as all the tag-bigrams, so that the pages with different titles get distant fingerprints.
+		 * @return The fingerprint, or "0", if no features were added.
+		 */
+		public long getFingerprint()
+		{
+			long titleScale = (numOfTitleTokens > 0) ? Math.max(1, (numOfTags / numOfTitleTokens)) : 0;
+			long fingerprint = 0;
+			for ( int bit = 0; bit < 64; bit++ )
+				if ( (structureWeights[bit] + (titleScale * titleWeights[bit])) > 0 )
+					fingerprint |= (1L << bit);
+			return fingerprint;
+		}
+
+		private static void addFeature(long[] weights, long featureHash, int weight)
+		{
+			for ( int bit = 0; bit < 64; bit++ )
+				weights[bit] += (((featureHash >>> bit) & 1) != 0) ? weight : -weight;
+		}
+	}
+
+
+	/**
+	 * This method checks whether the given page matches a template of its domain, which has given no docUrls so far. In that case, the page should be skipped.
+	 * @param pageDomain
+	 * @param fingerprint
+	 * @return true / false
+	 */
+	public static boolean isKnownNoDocUrlTemplate(String pageDomain, long fingerprint)
+	{
+		if ( fingerprint == 0 )
+			return false;
+		List<PageTemplate> templates = domainsWithTemplates.get(pageDomain);
+		if ( templates == null )
+			return false;
+		PageTemplate template = findTemplate(templates, fingerprint);
+		if ( (template == null) || !template.givesNoDocUrls() )
+			return false;
+		if ( (template.timesMatched.incrementAndGet() % PAGES_TO_SKIP_BEFORE_RECHECK) == 0 )
+			return false;	// Re-check this template.
+		numOfPagesSkippedByFingerprint.incrementAndGet();
+		return true;
+	}
+
+
+	/**
+	 * This method sets the page which is crawled by the current thread, so that its outcome gets recorded by "registerDocUrlOfCurrentPage()" or "registerNoDocUrlOfCurrentPage()".
+	 * @param pageDomain
+	 * @param fingerprint
+	 */
+	public static void setCurrentPage(String pageDomain, long fingerprint)
+	{
+		if ( fingerprint != 0 )
+			currentPage.set(new CurrentPage(pageDomain, fingerprint));
+	}
+
+
+	public static void clearCurrentPage()
+	{
+		currentPage.remove();
+	}
+
+
+	public static void registerDocUrlOfCurrentPage()
+	{
+		registerOutcomeOfCurrentPage(true);
+	}
+
+
+	public static void registerNoDocUrlOfCurrentPage()
+	{
+		registerOutcomeOfCurrentPage(false);
+	}
+
+
+	private static void registerOutcomeOfCurrentPage(boolean gaveDocUrl)
+	{
+		CurrentPage page = currentPage.get();
+		if ( (page == null) || page.isRecorded )
+			return;
+		page.isRecorded = true;
+
+		List<PageTemplate> templates = domainsWithTemplates.get(page.pageDomain);
+		if ( templates == null ) {
+			if ( domainsWithTemplates.size() >= MAX_DOMAINS_TO_LEARN )
+				return;
+			templates = domainsWithTemplates.computeIfAbsent(page.pageDomain, k -> new CopyOnWriteArrayList<>());
+		}
+
+		PageTemplate template = findTemplate(templates, page.fingerprint);
+		if ( template == null ) {
+			synchronized ( templates ) {	// Make sure the limit is respected, when many threads add a new template for the same domain.
+				if ( (template = findTemplate(templates, page.fingerprint)) == null ) {
+					if ( templates.size() >= MAX_TEMPLATES_PER_DOMAIN ) {
+						// Make room by removing a template which was seen only once, as the distinct landing-pages of a domain would fill the list.
+						PageTemplate singleTemplate = null;
+						for ( PageTemplate temp : templates )
+							if ( (temp.pagesWithoutDocUrls.get() + temp.pagesWithDocUrls.get()) <= 1 ) {
+								singleTemplate = temp;
+								break;
+							}
+						if ( singleTemplate == null )
+							return;
+						templates.remove(singleTemplate);
+					}
+					template = new PageTemplate(page.fingerprint);
+					templates.add(template);
+				}
+			}
+		}
+
+		if ( gaveDocUrl )
+			template.pagesWithDocUrls.incrementAndGet();
+		else
+			template.pagesWithoutDocUrls.incrementAndGet();
+	}
+
+
+	private static PageTemplate findTemplate(List<PageTemplate> templates, long fingerprint)
+	{
+		PageTemplate closestTemplate = null;
+		int minDistance = (MAX_HAMMING_DISTANCE + 1);
+		for ( PageTemplate template : templates ) {
+			int distance = getHammingDistance(template.fingerprint, fingerprint);
+			if ( distance < minDistance ) {
+				minDistance = distance;
+				closestTemplate = template;
+			}
+		}
+		return closestTemplate;
+	}
+
+
+	public static int getHammingDistance(long fingerprint1, long fingerprint2)
+	{
+		return Long.bitCount(fingerprint1 ^ fingerprint2);
+	}
+
+
+	/**
+	 * The 64-bit "FNV-1a" hash of the given region of the string.
+	 */
+	private static long hash(String str, int start, int end)
+	{
+		long hash = 0xCBF29CE484222325L;
+		for ( int i = start; i < end; i++ ) {
+			hash ^= str.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+		return hash;
+	}
+
+
+	/**
+	 * The 64-bit finalizer of the "MurmurHash3", which spreads the bits of the hash, so that every bit of the fingerprint depends on the whole feature.
+	 */
+	private static long mix(long h)
+	{
+		h ^= (h >>> 33);
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= (h >>> 33);
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= (h >>> 33);
+		return h;
+	}
+}
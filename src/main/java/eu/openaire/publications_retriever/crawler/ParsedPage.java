@@ -0,0 +1,25 @@
+package eu.openaire.publications_retriever.crawler;
+
+import java.util.List;
+
+
+/**
+ * This class holds the data of a page, which are produced by scanning its HTML-code once (see "PageCrawler.parsePage()") and are used by the crawling-stages which follow.
+ * @author Lampros Smyrnaios
+ */
+public class ParsedPage
+{
+	public String metaDocUrl;	// The first metaDocUrl of the page, or "null", if there is none.
+	public List<LinkElement> linkElements;	// The "a" and "link[href][type*=pdf]" elements, in document-order.
+	public boolean wasParsedWithJsoup;	// The HTML was too malformed for the "HtmlLinkTokenizer".
+	public long fingerprint;	// The structural fingerprint of the page (see "PageFingerprints"), or "0", if it has no tags.
+
+
+	ParsedPage(String metaDocUrl, List<LinkElement> linkElements, boolean wasParsedWithJsoup, long fingerprint)
+	{
+		this.metaDocUrl = metaDocUrl;
+		this.linkElements = linkElements;
+		this.wasParsedWithJsoup = wasParsedWithJsoup;
+		this.fingerprint = fingerprint;
+	}
+}
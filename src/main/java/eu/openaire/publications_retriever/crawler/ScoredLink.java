@@ -0,0 +1,21 @@
+package eu.openaire.publications_retriever.crawler;
+
+
+/**
+ * This class holds a canonicalized internalLink of a page, along with its score from the "LinkRanker".
+ * @author Lampros Smyrnaios
+ */
+public class ScoredLink
+{
+	public String url;
+	public String lowerCaseUrl;
+	public int score;
+
+
+	ScoredLink(String url, String lowerCaseUrl, int score)
+	{
+		this.url = url;
+		this.lowerCaseUrl = lowerCaseUrl;
+		this.score = score;
+	}
+}
@@ -5,8 +5,10 @@ import com.google.common.collect.HashMultimap;
 import eu.openaire.publications_retriever.PublicationsRetriever;
 import eu.openaire.publications_retriever.crawler.MachineLearning;
 import eu.openaire.publications_retriever.exceptions.DocFileNotRetrievedException;
+import eu.openaire.publications_retriever.util.http.BandwidthLimiter;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
 import eu.openaire.publications_retriever.util.url.DataToBeLogged;
+import eu.openaire.publications_retriever.util.url.RegexGuard;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONException;
@@ -319,10 +321,13 @@ public class FileUtils
 
 			int bytesRead = -1;
 			byte[] buffer = new byte[3145728];	// 3Mb (average docFiles-size)
+			int readChunkSize = BandwidthLimiter.getReadChunkSize(buffer.length);	// When the bandwidth is limited, we read smaller chunks, in order to progress smoothly.
+			long throttledMillis = 0;	// The time spent waiting for bandwidth does not count towards the "maxStoringWaitingTime".
 			long startTime = System.nanoTime();
-			while ( (bytesRead = inStream.read(buffer)) != -1 )
+			while ( (bytesRead = inStream.read(buffer, 0, readChunkSize)) != -1 )
 			{
-				long elapsedTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+				throttledMillis += BandwidthLimiter.acquireForDocFile(bytesRead);
+				long elapsedTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) - throttledMillis;
 				if ( (elapsedTime > FileUtils.maxStoringWaitingTime) || (elapsedTime == Long.MIN_VALUE) ) {
 					logger.warn("Storing docFile from docUrl: \"" + docUrl + "\" is taking over "+ TimeUnit.MILLISECONDS.toSeconds(FileUtils.maxStoringWaitingTime) + "seconds! Aborting..");
 					if ( !docFile.delete() )
@@ -390,15 +395,17 @@ public class FileUtils
 		}*/
 		
 		if ( contentDisposition != null ) {	// Extract docFileName from contentDisposition.
-			Matcher fileNameMatcher = FILENAME_FROM_CONTENT_DISPOSITION_FILTER.matcher(contentDisposition);
-			if ( fileNameMatcher.matches() ) {
+			Matcher fileNameMatcher = FILENAME_FROM_CONTENT_DISPOSITION_FILTER.matcher("");
+			RegexGuard.Result result = RegexGuard.matches(fileNameMatcher, contentDisposition, RegexGuard.MAX_HEADER_LENGTH);
+			if ( result == RegexGuard.Result.MATCHED ) {
 				try {
 					docFileName = fileNameMatcher.group(1);	// Group<1> is the fileName.
 				} catch (Exception e) { logger.error("", e); }
 				if ( (docFileName == null) || docFileName.isEmpty() )
 					docFileName = null;	// Ensure null-value for future checks.
-			} else
+			} else if ( result == RegexGuard.Result.NOT_MATCHED )
 				logger.warn("Unmatched file-content-Disposition: " + contentDisposition);
+			// If the guard aborted the matching, then the fileName will be taken from the url, below.
 		}
 		
 		//docFileName = null;	// Just to test the docFileNames retrieved from the DocId-part of the docUrls.
@@ -0,0 +1,156 @@
+package eu.openaire.publications_retriever.util.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+
+/**
+ * This class implements a global "token-bucket", which limits the bandwidth used by all worker-threads when downloading docFiles.
+ * The small control-requests (landing-pages, HEAD-requests, etc.) have priority: they are never blocked and a part of the budget is reserved for them,
+ * so that a burst of large docFiles cannot starve them and cause timeouts (which would lead to false domain-blocking).
+ * @author Lampros Smyrnaios
+ */
+public class BandwidthLimiter
+{
+	private static final Logger logger = LoggerFactory.getLogger(BandwidthLimiter.class);
+
+	public static long maxBytesPerSecond = 0;	// The total budget for all threads. Zero means "no limit". It is set by the "-bandwidthLimitKBps" cmd-arg.
+	public static final double controlRequestsReservedRatio = 0.2;	// The part of the budget which the docFile-downloads are not allowed to consume. Only the control-requests can use it.
+	private static final int minReadChunkSize = 8192;	// 8Kb
+
+	/**
+	 * The wait of a throttled docFile-read.
+	 */
+	public interface Sleeper
+	{
+		void sleep(long millis) throws InterruptedException;
+	}
+
+	public static LongSupplier nanoClock = System::nanoTime;	// It can be replaced by the tests, in order to control the time.
+	public static Sleeper sleeper = TimeUnit.MILLISECONDS::sleep;	// It can be replaced by the tests, so that they do not have to actually wait.
+
+	private static final Object bucketLock = new Object();
+	private static double availableTokens = 0;	// One token equals one byte. It may become negative, in case a read was bigger than the available tokens ("debt"), which will be paid-off by the next refills.
+	private static long lastRefillNanos = nanoClock.getAsLong();
+
+	public static final AtomicLong totalDocFileBytesRead = new AtomicLong(0);
+	public static final AtomicLong totalControlBytesRead = new AtomicLong(0);
+	public static final AtomicLong timesDocFileReadsWereThrottled = new AtomicLong(0);
+	public static final AtomicLong totalThrottlingMillis = new AtomicLong(0);
+
+
+	public static boolean isEnabled()
+	{
+		return (maxBytesPerSecond > 0);
+	}
+
+
+	/**
+	 * This method returns the max number of bytes which should be requested in one read-operation, when the limiter is enabled.
+	 * Huge reads would create a huge "debt" and cause the download to stall for a long time, instead of progressing smoothly.
+	 * @param bufferLength
+	 * @return
+	 */
+	public static int getReadChunkSize(int bufferLength)
+	{
+		if ( !isEnabled() )
+			return bufferLength;
+
+		long chunkSize = (long)((maxBytesPerSecond * (1 - controlRequestsReservedRatio)) / 10);	// Aim for about 10 reads per second.
+		if ( chunkSize < minReadChunkSize )
+			chunkSize = minReadChunkSize;
+		return (int) Math.min(chunkSize, bufferLength);
+	}
+
+
+	/**
+	 * This method is called by the docFile-downloader, after each read. If the tokens (above the reserved ones) are exhausted,
+	 * it waits until they are refilled. It returns the milliseconds spent waiting, so that the caller can exclude them from its own time-limits.
+	 * @param numOfBytes
+	 * @return waitedMillis
+	 */
+	public static long acquireForDocFile(int numOfBytes)
+	{
+		totalDocFileBytesRead.addAndGet(numOfBytes);
+		if ( !isEnabled() )
+			return 0;
+
+		double reservedTokens = maxBytesPerSecond * controlRequestsReservedRatio;
+		long startTime = nanoClock.getAsLong();
+		boolean wasThrottled = false;
+		try {
+			while ( true ) {
+				long millisToWait;
+				synchronized (bucketLock) {
+					refill();
+					if ( availableTokens > reservedTokens ) {
+						availableTokens -= numOfBytes;	// This may lead to a "debt", which will be paid before any other docFile-read is allowed.
+						break;
+					}
+					millisToWait = (long) Math.ceil(((reservedTokens - availableTokens) * 1000) / maxBytesPerSecond);
+				}
+				wasThrottled = true;
+				sleeper.sleep(Math.max(millisToWait, 1));
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();	// Preserve the status, the caller will find out about it in its next I/O operation.
+		}
+
+		if ( wasThrottled ) {
+			long waitedMillis = TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong() - startTime);
+			timesDocFileReadsWereThrottled.incrementAndGet();
+			totalThrottlingMillis.addAndGet(waitedMillis);
+			return waitedMillis;
+		} else
+			return 0;
+	}
+
+
+	/**
+	 * This method is called after a control-request (e.g. a landing-page) was read. It never blocks, it just consumes the tokens,
+	 * possibly going under the reserved ones, so that the docFile-downloads will be the ones waiting.
+	 * @param numOfBytes
+	 */
+	public static void consumeForControlRequest(int numOfBytes)
+	{
+		totalControlBytesRead.addAndGet(numOfBytes);
+		if ( !isEnabled() )
+			return;
+
+		synchronized (bucketLock) {
+			refill();
+			availableTokens -= numOfBytes;
+		}
+	}
+
+
+	/**
+	 * This method is called while holding the "bucketLock".
+	 */
+	private static void refill()
+	{
+		long now = nanoClock.getAsLong();
+		if ( now < lastRefillNanos ) {	// The clock may go backwards only when it is replaced by the tests.
+			lastRefillNanos = now;
+			return;
+		}
+		availableTokens += ((now - lastRefillNanos) * maxBytesPerSecond) / 1_000_000_000.0;
+		if ( availableTokens > maxBytesPerSecond )	// The bucket can hold up to one second of traffic.
+			availableTokens = maxBytesPerSecond;
+		lastRefillNanos = now;
+	}
+
+
+	public static void logBandwidthStatistics(long elapsedMillis)
+	{
+		double elapsedSecs = ((elapsedMillis > 0) ? elapsedMillis : 1) / 1000.0;
+		logger.debug("The docFiles' bytes read were " + totalDocFileBytesRead.get() + " (about " + (long)(totalDocFileBytesRead.get() / elapsedSecs) + " bytes/sec) and the control-requests' bytes read were " + totalControlBytesRead.get() + " (about " + (long)(totalControlBytesRead.get() / elapsedSecs) + " bytes/sec).");
+		if ( isEnabled() )
+			logger.debug("The bandwidth-limit was " + maxBytesPerSecond + " bytes/sec. The docFile-reads were throttled " + timesDocFileReadsWereThrottled.get() + " times, for " + totalThrottlingMillis.get() + " milliseconds in total.");
+	}
+
+}
@@ -4,29 +4,32 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import eu.openaire.publications_retriever.PublicationsRetriever;
+import eu.openaire.publications_retriever.crawler.LinkExtractionResult;
 import eu.openaire.publications_retriever.crawler.MachineLearning;
 import eu.openaire.publications_retriever.crawler.PageCrawler;
 import eu.openaire.publications_retriever.exceptions.DocFileNotRetrievedException;
-import eu.openaire.publications_retriever.exceptions.DocLinkFoundException;
 import eu.openaire.publications_retriever.exceptions.DomainBlockedException;
 import eu.openaire.publications_retriever.util.file.FileUtils;
+import eu.openaire.publications_retriever.util.url.DocOrDatasetUrlClassifier;
+import eu.openaire.publications_retriever.util.url.DomainRegistry;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.net.ConnectException;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -48,8 +51,6 @@ public class ConnSupportUtils
 	public static final Pattern HTML_STRING_MATCH = Pattern.compile("^(?:[\\s]*<(?:!doctype\\s)?html).*");
 	public static final Pattern RESPONSE_BODY_UNWANTED_MATCH = Pattern.compile("^(?:[\\s]+|[\\s]*<(?:\\?xml|!--).*)");	// TODO - Avoid matching to "  <?xml>sddfs<html[...]" (as some times the whole page-code is a single line)
 
-	public static final Pattern SPACE_ONLY_LINE = Pattern.compile("^[\\s]+$");	// For full-HTML-extraction.
-
 	private static final Pattern NON_PROTOCOL_URL = Pattern.compile("^(?:[^:/]+://)(.*)");
 
 	// Note: We cannot remove all the spaces from the HTML, as the JSOUP fails to extract the internal links. If a custom-approach will be followed, then we can take the space-removal into account.
@@ -58,19 +59,14 @@ public class ConnSupportUtils
 	public static final int minPolitenessDelay = 3000;	// 3 sec
 	public static final int maxPolitenessDelay = 7000;	// 7 sec
 
-	public static final Hashtable<String, Integer> timesDomainsReturned5XX = new Hashtable<String, Integer>();	// Domains that have returned HTTP 5XX Error Code, and the amount of times they did.
-	public static final Hashtable<String, Integer> timesDomainsHadTimeoutEx = new Hashtable<String, Integer>();
-	public static final Hashtable<String, Integer> timesPathsReturned403 = new Hashtable<String, Integer>();
+	public static final TimesCounter<String> timesPathsReturned403 = new TimesCounter<>();
 	
 	public static final SetMultimap<String, String> domainsMultimapWithPaths403BlackListed = Multimaps.synchronizedSetMultimap(HashMultimap.create());	// Holds multiple values for any key, if a domain(key) has many different paths (values) for which there was a 403 errorCode.
 	
 	private static final int timesToHave403errorCodeBeforePathBlocked = 10;	// If a path leads to 403 with different urls, more than 5 times, then this path gets blocked.
 	private static final int numberOf403BlockedPathsBeforeDomainBlocked = 50;	// If a domain has more than 5 different 403-blocked paths, then the whole domain gets blocked.
 
-	private static final int timesToHave5XXerrorCodeBeforeDomainBlocked = 10;
-	private static final int timesToHaveTimeoutExBeforeDomainBlocked = 25;
-
-	private static final int timesToReturnNoTypeBeforeDomainBlocked = 10;
+	// The domains returning HTTP 5XX or 429 error codes, timing-out or returning no content-type, are handled by their "DomainCircuitBreaker", instead of getting blocked forever.
 	public static AtomicInteger reCrossedDocUrls = new AtomicInteger(0);
 
 	public static final Set<String> knownDocMimeTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
@@ -149,7 +145,7 @@ public class ConnSupportUtils
 				if ( (contentDisposition != null) && !contentDisposition.equals("attachment") )
 					typeToReturn = contentDisposition.toLowerCase().contains("pdf") ? "document" : null;	// TODO - add more types as needed. Check: "http://www.esocialsciences.org/Download/repecDownload.aspx?qs=Uqn/rN48N8UOPcbSXUd2VFI+dpOD3MDPRfIL8B3DH+6L18eo/yEvpYEkgi9upp2t8kGzrjsWQHUl44vSn/l7Uc1SILR5pVtxv8VYECXSc8pKLF6QJn6MioA5dafPj/8GshHBvLyCex2df4aviMvImCZpwMHvKoPiO+4B7yHRb97u1IHg45E+Z6ai0Z/0vacWHoCsNT9O4FNZKMsSzen2Cw=="
 				else
-					typeToReturn = urlStr.toLowerCase().contains("pdf") ? "document" : null;
+					typeToReturn = UrlUtils.getParsedUrl(urlStr).getLowerCaseUrl().contains("pdf") ? "document" : null;
 
 				return typeToReturn;
 			}
@@ -161,10 +157,10 @@ public class ConnSupportUtils
 				plainMimeType = getPlainMimeType(mimeType);
 				if ( plainMimeType == null ) {    // If there was any error removing the charset, still try to determine the data-type.
 					logger.warn("Url with problematic mimeType (" + mimeType + ") was: " + urlStr);
-					lowerCaseUrl = urlStr.toLowerCase();
+					lowerCaseUrl = UrlUtils.getParsedUrl(urlStr).getLowerCaseUrl();	// This url was just connected, so it's already parsed.
 					if ( lowerCaseUrl.contains("pdf") )
 						typeToReturn = "document";
-					else if ( LoaderAndChecker.DATASET_URL_FILTER.matcher(lowerCaseUrl).matches() )
+					else if ( DocOrDatasetUrlClassifier.isPossibleDatasetUrl(lowerCaseUrl) )
 						typeToReturn = "dataset";
 
 					return typeToReturn;	// Default is "null".
@@ -189,15 +185,15 @@ public class ConnSupportUtils
 						typeToReturn = "document";
 					else {
 						String clearContentDisposition = StringUtils.replace(lowerCaseContentDisposition, "\"", "", -1);
-						if ( LoaderAndChecker.DATASET_URL_FILTER.matcher(clearContentDisposition).matches() )
+						if ( DocOrDatasetUrlClassifier.isPossibleDatasetUrl(clearContentDisposition) )
 							typeToReturn = "dataset";
 					}
 				}
 				else {
-					lowerCaseUrl = urlStr.toLowerCase();
+					lowerCaseUrl = UrlUtils.getParsedUrl(urlStr).getLowerCaseUrl();	// This url was just connected, so it's already parsed.
 					if ( lowerCaseUrl.contains("pdf") )
 						typeToReturn = "document";
-					else if ( LoaderAndChecker.DATASET_URL_FILTER.matcher(lowerCaseUrl).matches() )
+					else if ( DocOrDatasetUrlClassifier.isPossibleDatasetUrl(lowerCaseUrl) )
 						typeToReturn = "dataset";
 				}
 			}	// TODO - When we will accept more docTypes, match it also against other docTypes, not just "pdf".
@@ -210,7 +206,7 @@ public class ConnSupportUtils
 				typeToReturn = "document";
 			else {
 				String clearContentDisposition = StringUtils.replace(lowerCaseContentDisposition, "\"", "", -1);
-				if ( LoaderAndChecker.DATASET_URL_FILTER.matcher(clearContentDisposition).matches() )
+				if ( DocOrDatasetUrlClassifier.isPossibleDatasetUrl(clearContentDisposition) )
 					typeToReturn = "dataset";
 			}
 			return typeToReturn;	// Default is "null".
@@ -314,26 +310,121 @@ public class ConnSupportUtils
 	}
 
 
-	public static final Hashtable<String, DomainConnectionData> domainsWithLocks = new Hashtable<>();
+	public static final ConcurrentHashMap<String, DomainLatencyData> domainsWithLatencyData = new ConcurrentHashMap<>();	// Holds the connect and TTFB latency-histograms of each domain, from which its timeouts are derived.
+
+	private static final int minLatencySamplesForAdaptiveTimeouts = 5;	// Until then, the global timeouts are used.
+	private static final double adaptiveTimeoutsPercentile = 0.95;	// A few timeouts (which are recorded as samples with the timeout-value) do not push the timeouts up to the ceiling.
+	private static final int adaptiveTimeoutsHeadroomMultiplier = 2;
+	private static final int adaptiveTimeoutsHeadroomMillis = 1000;
+	private static final int minAdaptiveConnectTimeout = 2000;	// 2 sec
+	private static final int minAdaptiveReadTimeout = 3000;	// 3 sec
+	private static final int maxAdaptiveGETTimeout = 2 * HttpConnUtils.maxConnGETWaitingTime;	// The slow-but-healthy domains may wait more than the default, instead of timing-out and getting blocked.
+	private static final int maxAdaptiveHEADTimeout = 2 * HttpConnUtils.maxConnHEADWaitingTime;
+
+	public static final AtomicInteger timesUsedAdaptiveTimeouts = new AtomicInteger(0);
+
+
+	/**
+	 * This method sets the connect and read timeouts of the given connection.
+	 * If we have enough latency-samples for the domain, the timeouts are derived from a high percentile of its latencies, plus some headroom, bounded by global floors and ceilings.
+	 * Otherwise, the global default timeouts are used.
+	 * @param conn
+	 * @param domainStr
+	 * @param useHttpGetMethod
+	 */
+	public static void setTimeouts(HttpURLConnection conn, String domainStr, boolean useHttpGetMethod)
+	{
+		int defaultTimeout = useHttpGetMethod ? HttpConnUtils.maxConnGETWaitingTime : HttpConnUtils.maxConnHEADWaitingTime;
+		int connectTimeout = defaultTimeout;
+		int readTimeout = defaultTimeout;
+
+		DomainLatencyData domainLatencyData = (domainStr != null) ? domainsWithLatencyData.get(domainStr) : null;
+		if ( domainLatencyData != null ) {
+			int maxTimeout = useHttpGetMethod ? maxAdaptiveGETTimeout : maxAdaptiveHEADTimeout;
+			long connectPercentile = domainLatencyData.getConnectPercentile(adaptiveTimeoutsPercentile, minLatencySamplesForAdaptiveTimeouts);
+			long ttfbPercentile = domainLatencyData.getTtfbPercentile(adaptiveTimeoutsPercentile, minLatencySamplesForAdaptiveTimeouts);
+			if ( connectPercentile != -1 )
+				connectTimeout = getBoundedTimeout(connectPercentile, minAdaptiveConnectTimeout, maxTimeout);
+			if ( ttfbPercentile != -1 )
+				readTimeout = getBoundedTimeout(ttfbPercentile, minAdaptiveReadTimeout, maxTimeout);
+			if ( (connectPercentile != -1) || (ttfbPercentile != -1) )
+				timesUsedAdaptiveTimeouts.incrementAndGet();
+		}
+
+		conn.setConnectTimeout(connectTimeout);
+		conn.setReadTimeout(readTimeout);
+	}
+
+
+	private static int getBoundedTimeout(long latencyPercentile, int minTimeout, int maxTimeout)
+	{
+		long timeout = (latencyPercentile * adaptiveTimeoutsHeadroomMultiplier) + adaptiveTimeoutsHeadroomMillis;
+		if ( timeout < minTimeout )
+			return minTimeout;
+		else if ( timeout > maxTimeout )
+			return maxTimeout;
+		else
+			return (int) timeout;
+	}
+
+
+	/**
+	 * This method connects and gets the responseCode, while recording the connect and TTFB latencies of the domain.
+	 * In case of a timeout, the timeout-value is recorded as a sample for the related phase, so that the timeouts of slow domains can grow (up to the ceiling).
+	 * @param conn
+	 * @param domainStr
+	 * @return responseCode
+	 * @throws IOException
+	 */
+	public static int connectAndMeasureLatency(HttpURLConnection conn, String domainStr) throws IOException
+	{
+		DomainLatencyData domainLatencyData = null;
+		if ( domainStr != null )
+			domainLatencyData = domainsWithLatencyData.computeIfAbsent(domainStr, k -> new DomainLatencyData());
+
+		boolean isConnected = false;
+		SSLUtils.forgetCreatedSocket();	// Any socket created by a previous connection of this thread, which failed.
+		try {
+			long startTime = System.nanoTime();
+			conn.connect();
+			long connectedTime = System.nanoTime();
+			isConnected = true;
+			SSLUtils.recordHandshake();	// If a new TLS-connection was made, count whether it resumed a cached session.
+			int responseCode = conn.getResponseCode();	// The success for the "DomainCircuitBreaker" is recorded later, after the response is classified.
+			if ( domainLatencyData != null ) {
+				domainLatencyData.addConnectLatency(TimeUnit.NANOSECONDS.toMillis(connectedTime - startTime));
+				domainLatencyData.addTtfbLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectedTime));
+			}
+			return responseCode;
+		} catch (IOException ioe) {
+			SSLUtils.forgetCreatedSocket();
+			if ( (domainLatencyData != null) && ((ioe instanceof SocketTimeoutException)
+					|| ((ioe instanceof ConnectException) && (ioe.getMessage() != null) && ioe.getMessage().toLowerCase().contains("timeout"))) ) {
+				if ( isConnected )
+					domainLatencyData.addTtfbLatency(conn.getReadTimeout());
+				else
+					domainLatencyData.addConnectLatency(conn.getConnectTimeout());
+			}
+			throw ioe;
+		}
+	}
+
 
 	/**
 	 * This method receives the domain and manages the sleep-time, if needed.
-	 * It first extracts the last 3 parts of the domain. Then it checks if the domain is faced for the first time.
-	 * If it is the first time, then the domain is added in the Hashtable along with a new DomainConnectionData.
+	 * The politeness-data is kept per registrable domain (the public-suffix along with one more label), in the "DomainRegistry". If it is the first time connecting with that domain, then its data is created and no delay is applied.
 	 * Else the thread will lock that domain and check if it was connected before at most "minPolitenessDelay" secs, if so, then the thread will sleep for a random number of milliseconds.
 	 * Different threads lock on different domains, so each thread is not dependent on another thread which works on a different domain.
 	 * @param domainStr
 	 */
 	public static void applyPolitenessDelay(String domainStr)
 	{
-		// Consider only the last three parts of a domain, not all, otherwise, a sub-sub-domain might connect simultaneously with a another sub-sub-domain.
-		domainStr = UrlUtils.getTopThreeLevelDomain(domainStr);
-
-		DomainConnectionData domainConnectionData = domainsWithLocks.get(domainStr);
-		if ( domainConnectionData == null ) {	// If it is the 1st time connecting.
-			domainsWithLocks.put(domainStr, new DomainConnectionData());
+		// Consider only the registrable domain, otherwise, a sub-domain might connect simultaneously with another sub-domain of the same site.
+		// The public-suffixes are taken into account, so the unrelated sites under a suffix like "ac.uk" or "edu.br" are not delayed by each other.
+		boolean[] createdData = new boolean[] {false};
+		DomainConnectionData domainConnectionData = DomainRegistry.getConnectionData(domainStr, createdData);
+		if ( createdData[0] )	// If it is the 1st time connecting. Only one thread creates the data, the others which raced with it, apply the delay.
 			return;
-		}
 
 		domainConnectionData.lock.lock();// Threads trying to connect with the same domain, should sleep one AFTER the other, to avoid coming back after sleep at the same time, in the end..
 		long elapsedTimeMillis;
@@ -402,13 +493,15 @@ public class ConnSupportUtils
 				return null;
 			}
 
-			HashSet<String> extractedLinksHashSet = PageCrawler.extractInternalLinksFromHtml(html, conn.getURL().toString());
+			LinkExtractionResult result = PageCrawler.extractInternalLinksFromHtml(html, conn.getURL().toString());
+			if ( result.type == LinkExtractionResult.Type.DOC_LINK_FOUND )
+				return result.docLink;	// Return the DocLink to connect with.
+
+			HashSet<String> extractedLinksHashSet = result.internalLinks;
 			if ( extractedLinksHashSet == null || extractedLinksHashSet.size() == 0 )
 				return null;	// Logging is handled inside..
 
 			return new ArrayList<>(extractedLinksHashSet).get(0);	// There will be only a couple of urls so it's not a big deal to gather them all.
-		} catch ( DocLinkFoundException dlfe) {
-			return dlfe.getMessage();	// Return the DocLink to connect with.
 		} catch (Exception e) {
 			logger.error("", e);
 			return null;
@@ -437,11 +530,15 @@ public class ConnSupportUtils
 		if ( (errorStatusCode >= 400) && (errorStatusCode <= 499) )	// Client Error.
 		{
 			errorLogMessage = "Url: \"" + urlStr + "\" seems to be unreachable. Received: HTTP " + errorStatusCode + " Client Error.";
-			if ( errorStatusCode == 403 ) {
-				if ( (domainStr == null) || !urlStr.contains(domainStr) )	// The domain might have changed after redirections.
-					domainStr = UrlUtils.getDomainStr(urlStr, null);
+			if ( (domainStr == null) || !urlStr.contains(domainStr) )	// The domain might have changed after redirections.
+				domainStr = UrlUtils.getDomainStr(urlStr, null);
 
-				if ( domainStr != null )	// It may be null if "UrlUtils.getDomainStr()" failed.
+			if ( errorStatusCode == 429 ) {	// Too Many Requests. This is a temporary condition, so it's handled by the circuit-breaker of the domain.
+				if ( domainStr != null )
+					on429errorCode(domainStr);
+			} else {
+				DomainCircuitBreaker.recordSuccess(domainStr);	// The server is responsive. Note that the other 4XX codes are specific to the resource, not the server.
+				if ( (errorStatusCode == 403) && (domainStr != null) )	// The domain may be null if "UrlUtils.getDomainStr()" failed.
 					on403ErrorCode(urlStr, domainStr, calledForPageUrl);	// The "DomainBlockedException" will go up-method by its own, if thrown inside this one.
 			}
 		}
@@ -497,20 +594,18 @@ public class ConnSupportUtils
 	}
 	
 	
-	public static boolean countAndBlockPathAfterTimes(SetMultimap<String, String> domainsWithPaths, Hashtable<String, Integer> pathsWithTimes, String pathStr, String domainStr, int timesBeforeBlocked, boolean calledForPageUrl)
+	public static boolean countAndBlockPathAfterTimes(SetMultimap<String, String> domainsWithPaths, TimesCounter<String> pathsWithTimes, String pathStr, String domainStr, int timesBeforeBlocked, boolean calledForPageUrl)
 	{
-		if ( countInsertAndGetTimes(pathsWithTimes, pathStr) > timesBeforeBlocked ) {
-
+		// The count for a blocked path is removed, as there is no need to keep it.
+		return pathsWithTimes.incrementAndCheckThreshold(pathStr, timesBeforeBlocked, (path, times) -> {
 			// If we use MLA, we are storing the docPage-successful-paths, so check if this is one of them, if it is then don't block it.
 			// If it's an internal-link, then.. we can't iterate over every docUrl-successful-path of every docPage-successful-path.. it's too expensive O(5*n), not O(1)..
-			if ( calledForPageUrl && MachineLearning.useMLA && MachineLearning.successPathsHashMultiMap.containsKey(pathStr) )
+			if ( calledForPageUrl && MachineLearning.useMLA && MachineLearning.successPathsHashMultiMap.containsKey(path) )
 				return false;
 
-			domainsWithPaths.put(domainStr, pathStr);	// Add this path in the list of blocked paths of this domain.
-			pathsWithTimes.remove(pathStr);	// No need to keep the count for a blocked path.
+			domainsWithPaths.put(domainStr, path);	// Add this path in the list of blocked paths of this domain.
 			return true;
-		}
-		return false;
+		});
 	}
 	
 	
@@ -539,8 +634,17 @@ public class ConnSupportUtils
 	
 	public static void on5XXerrorCode(String domainStr) throws DomainBlockedException
 	{
-		if ( countAndBlockDomainAfterTimes(HttpConnUtils.blacklistedDomains, timesDomainsReturned5XX, domainStr, timesToHave5XXerrorCodeBeforeDomainBlocked, true) ) {
-			logger.debug("Domain: \"" + domainStr + "\" was blocked after returning 5XX Error Code " + timesToHave5XXerrorCodeBeforeDomainBlocked + " times.");
+		if ( DomainCircuitBreaker.recordFailure(domainStr) ) {
+			logger.debug("Domain: \"" + domainStr + "\" was temporarily blocked after returning a burst of 5XX Error Codes.");
+			throw new DomainBlockedException(domainStr);
+		}
+	}
+
+
+	public static void on429errorCode(String domainStr) throws DomainBlockedException
+	{
+		if ( DomainCircuitBreaker.recordFailure(domainStr) ) {
+			logger.debug("Domain: \"" + domainStr + "\" was temporarily blocked after returning a burst of 429 (Too Many Requests) Error Codes.");
 			throw new DomainBlockedException(domainStr);
 		}
 	}
@@ -548,8 +652,8 @@ public class ConnSupportUtils
 	
 	public static void onTimeoutException(String domainStr) throws DomainBlockedException
 	{
-		if ( countAndBlockDomainAfterTimes(HttpConnUtils.blacklistedDomains, timesDomainsHadTimeoutEx, domainStr, timesToHaveTimeoutExBeforeDomainBlocked, true) ) {
-			logger.debug("Domain: \"" + domainStr + "\" was blocked after causing TimeoutException " + timesToHaveTimeoutExBeforeDomainBlocked + " times.");
+		if ( DomainCircuitBreaker.recordFailure(domainStr) ) {
+			logger.debug("Domain: \"" + domainStr + "\" was temporarily blocked after causing a burst of TimeoutExceptions.");
 			throw new DomainBlockedException(domainStr);
 		}
 	}
@@ -567,35 +671,16 @@ public class ConnSupportUtils
 	 * @param checkAgainstDocUrlsHits
 	 * @return boolean
 	 */
-	public static boolean countAndBlockDomainAfterTimes(Set<String> blackList, Hashtable<String, Integer> domainsWithTimes, String domainStr, int timesBeforeBlock, boolean checkAgainstDocUrlsHits)
+	public static boolean countAndBlockDomainAfterTimes(Set<String> blackList, TimesCounter<String> domainsWithTimes, String domainStr, int timesBeforeBlock, boolean checkAgainstDocUrlsHits)
 	{
-		int badTimes = countInsertAndGetTimes(domainsWithTimes, domainStr);
-
-		if ( badTimes > timesBeforeBlock )
-		{
-			if ( checkAgainstDocUrlsHits ) {	// This will not be the case for MLA-blocked-domains.
-				Integer goodTimes = UrlUtils.domainsAndHits.get(domainStr);
-				if ( (goodTimes != null) && (goodTimes >= badTimes) )
-					return false;
-			}
+		// The counting-data of a blocked domain is removed.
+		return domainsWithTimes.incrementAndCheckThreshold(domainStr, timesBeforeBlock, (domain, badTimes) -> {
+			if ( checkAgainstDocUrlsHits && (DomainRegistry.getHits(domain) >= badTimes) )	// This will not be the case for MLA-blocked-domains.
+				return false;
 
-			blackList.add(domainStr);    // Block this domain.
-			domainsWithTimes.remove(domainStr);	// Remove counting-data.
-			return true;	// This domain was blocked.
-		}
-		return false;	// It wasn't blocked.
-	}
-	
-	
-	public static int countInsertAndGetTimes(Hashtable<String, Integer> itemWithTimes, String itemToCount)
-	{
-		int curTimes = 1;
-		if ( itemWithTimes.containsKey(itemToCount) )
-			curTimes += itemWithTimes.get(itemToCount);
-		
-		itemWithTimes.put(itemToCount, curTimes);
-		
-		return curTimes;
+			blackList.add(domain);    // Block this domain.
+			return true;
+		});
 	}
 
 
@@ -630,30 +715,63 @@ public class ConnSupportUtils
 	}
 
 
-	public static String getHtmlString(HttpURLConnection conn, BufferedReader bufferedReader)
+	public static String getHtmlString(HttpURLConnection conn, HtmlReader htmlReader)
+	{
+		HtmlReader reader = getHtmlReader(conn, htmlReader);
+		if ( reader == null )
+			return null;
+		try {
+			String html = readHtmlLines(reader, false);
+			return ((html != null) && !html.isEmpty()) ? html : null;	// Make sure we return a "null" on empty string, to better handle the case in the caller-function.
+		} finally {
+			closeHtmlReader(reader);
+		}
+	}
+
+
+	/**
+	 * This method returns a reader for the HTML-code of the given connection, or the given reader, if the content-type was auto-detected and a reader was already opened.
+	 * It returns "null" if the content-size is unacceptable or the inputStream could not be acquired. The caller is responsible to close the returned reader.
+	 * @param conn
+	 * @param htmlReader
+	 * @return
+	 */
+	public static HtmlReader getHtmlReader(HttpURLConnection conn, HtmlReader htmlReader)
 	{
 		int contentSize = getContentSize(conn, false);
-		if ( contentSize == -1 ) {	// "Unacceptable size"-code..
+		if ( (contentSize == -1) || (contentSize > HtmlReader.maxAllowedHtmlSize) ) {	// "Unacceptable size"-code..
 			logger.warn("Aborting HTML-extraction for pageUrl: " + conn.getURL().toString());
+			closeHtmlReader(htmlReader);
 			return null;
 		}
 
-		StringBuilder htmlStrB = new StringBuilder(300000);	// Initialize it here each time for thread-safety (thread-locality).
-
-		try (BufferedReader br = (bufferedReader != null ? bufferedReader : new BufferedReader(new InputStreamReader(conn.getInputStream()))) )	// Try-with-resources
-		{
-			String inputLine;
-			while ( (inputLine = br.readLine()) != null )
-			{
-				if ( !inputLine.isEmpty() && (inputLine.length() != 1) && !SPACE_ONLY_LINE.matcher(inputLine).matches() ) {	// We check for (inputLine.length() != 1), as some lines contain an unrecognized byte.
-					htmlStrB.append(inputLine);
-					//logger.debug(inputLine);	// DEBUG!
-				}
-			}
-			//logger.debug("Chars in html: " + String.valueOf(htmlStrB.length()));	// DEBUG!
+		if ( htmlReader != null )
+			return htmlReader;
+		try {
+			return HtmlReader.open(conn);
+		} catch ( IOException ioe ) {
+			logger.error("IOException when retrieving the HTML-code: " + ioe.getMessage());
+			return null;
+		} catch ( Exception e ) {
+			logger.error("", e);
+			return null;
+		}
+	}
 
-			return (htmlStrB.length() != 0) ? htmlStrB.toString() : null;	// Make sure we return a "null" on empty string, to better handle the case in the caller-function.
 
+	/**
+	 * This method reads the HTML-code from the given reader and returns it as a single string, without the line-breaks and the blank lines.
+	 * If "stopAfterHead" is "true", it stops after the line which closes the "head" (or opens the "body") of the page, so the caller can check the metaTags,
+	 * before deciding whether the rest of the page is needed. The same reader can then be given again, to read the rest of the page.
+	 * It returns an empty string if there was nothing to read, or "null" if there was an error. It does not close the reader.
+	 * @param htmlReader
+	 * @param stopAfterHead
+	 * @return
+	 */
+	public static String readHtmlLines(HtmlReader htmlReader, boolean stopAfterHead)
+	{
+		try {
+			return htmlReader.readHtml(stopAfterHead);
 		} catch ( IOException ioe ) {
 			logger.error("IOException when retrieving the HTML-code: " + ioe.getMessage());
 			return null;
@@ -661,9 +779,6 @@ public class ConnSupportUtils
 			logger.error("", e);
 			return null;
 		}
-		finally {
-			htmlStrB.setLength(0);	// Reset "StringBuilder" WITHOUT re-allocating.
-		}
 	}
 
 
@@ -684,7 +799,7 @@ public class ConnSupportUtils
 		String mimeType = null;
 		boolean foundDetectedContentType = false;
 		String firstHtmlLine = null;
-		BufferedReader bufferedReader = null;
+		HtmlReader htmlReader = null;
 		boolean calledForPossibleDocUrl = false;
 		boolean wasConnectedWithHTTPGET = conn.getRequestMethod().equals("GET");
 
@@ -697,7 +812,7 @@ public class ConnSupportUtils
 					mimeType = "text/html";
 					foundDetectedContentType = true;
 					firstHtmlLine = detectedContentType.firstHtmlLine;
-					bufferedReader = detectedContentType.bufferedReader;
+					htmlReader = detectedContentType.htmlReader;
 				} else if ( detectedContentType.detectedContentType.equals("pdf") ) {
 					logger.debug("The url with the undeclared content type < " + finalUrlStr + " >, was examined and found to have PDF contentType!");
 					mimeType = "application/pdf";
@@ -715,9 +830,9 @@ public class ConnSupportUtils
 			warnMsg += "\nThe initial connection was made with the \"HTTP-HEAD\" method, so there is no response-body to use to detect the content-type.";
 
 		if ( !foundDetectedContentType && wasConnectedWithHTTPGET ) {	// If it could be detected but was not, only then go and check if it should be blocked.
-			if ( ConnSupportUtils.countAndBlockDomainAfterTimes(HttpConnUtils.blacklistedDomains, HttpConnUtils.timesDomainsReturnedNoType, domainStr, timesToReturnNoTypeBeforeDomainBlocked, true) ) {
+			if ( DomainCircuitBreaker.recordFailure(domainStr) ) {
 				logger.warn(warnMsg);
-				logger.warn("Domain: \"" + domainStr + "\" was blocked after returning no Type-info more than " + timesToReturnNoTypeBeforeDomainBlocked + " times.");
+				logger.warn("Domain: \"" + domainStr + "\" was temporarily blocked after returning no Type-info multiple times.");
 				throw new DomainBlockedException(domainStr);
 			} else
 				throw new RuntimeException(warnMsg);	// We can't retrieve any clue. This is not desired. The "warnMsg" will be printed by the caller method.
@@ -727,7 +842,7 @@ public class ConnSupportUtils
 		detectionList.add(0, mimeType);
 		detectionList.add(1, foundDetectedContentType);
 		detectionList.add(2, firstHtmlLine);
-		detectionList.add(3, bufferedReader);
+		detectionList.add(3, htmlReader);
 		detectionList.add(4, calledForPossibleDocUrl);
 		return detectionList;
 	}
@@ -748,30 +863,33 @@ public class ConnSupportUtils
 			return null;
 		}
 
+		HtmlReader htmlReader = null;
 		try {
-			BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+			htmlReader = HtmlReader.open(conn);
 			String inputLine;
 
 			// Skip empty lines in the beginning of the HTML-code
-			while ( ((inputLine = br.readLine()) != null) && (inputLine.isEmpty() || (inputLine.length() == 1) || RESPONSE_BODY_UNWANTED_MATCH.matcher(inputLine).matches()) )	// https://repositorio.uam.es/handle/10486/687988
+			while ( ((inputLine = htmlReader.readLine()) != null) && (inputLine.isEmpty() || (inputLine.length() == 1) || RESPONSE_BODY_UNWANTED_MATCH.matcher(inputLine).matches()) )	// https://repositorio.uam.es/handle/10486/687988
 			{	/* No action inside */	}	// https://bv.fapesp.br/pt/publicacao/96198/homogeneous-gaussian-profile-p-type-emitters-updated-param/		http://naosite.lb.nagasaki-u.ac.jp/dspace/handle/10069/29792
 
 			// For DEBUGing..
-			/*while ( ((inputLine = br.readLine()) != null) && !(inputLine.isEmpty() || inputLine.length() == 1 || RESPONSE_BODY_UNWANTED_MATCH.matcher(inputLine).matches()) )
+			/*while ( ((inputLine = htmlReader.readLine()) != null) && !(inputLine.isEmpty() || inputLine.length() == 1 || RESPONSE_BODY_UNWANTED_MATCH.matcher(inputLine).matches()) )
 			{ logger.debug(inputLine + "\nLength of line: " + inputLine.length());
 				logger.debug(Arrays.toString(inputLine.chars().toArray()));
 			}*/
 
 			//logger.debug("First line of RequestBody: " + inputLine);	// DEBUG!
-			if ( inputLine == null )
+			if ( inputLine == null ) {
+				htmlReader.close();
 				return null;
+			}
 
 			String lowerCaseInputLine = inputLine.toLowerCase();
 			//logger.debug(lowerCaseInputLine + "\nLength of line: "  + lowerCaseInputLine.length());	// DEBUG!
 			if ( HTML_STRING_MATCH.matcher(lowerCaseInputLine).matches() )
-				return new DetectedContentType("html", inputLine, br);
+				return new DetectedContentType("html", inputLine, htmlReader);
 			else {
-				br.close();	// We close the stream here, since if we got a pdf we should reconnect in order to get the very first bytes (we don't read "lines" when downloading PDFs).
+				htmlReader.close();	// We close the stream here, since if we got a pdf we should reconnect in order to get the very first bytes (we don't read "lines" when downloading PDFs).
 				if ( lowerCaseInputLine.startsWith("%pdf-", 0) )
 					return new DetectedContentType("pdf", null, null);	// For PDFs we just going to re-connect in order to download the, since we read plain bytes for them and not String-lines, so we re-connect just to be sure we don't corrupt them.
 				else
@@ -779,9 +897,11 @@ public class ConnSupportUtils
 			}
 		} catch ( IOException ioe ) {
 			logger.error("IOException when retrieving the HTML-code: " + ioe.getMessage());
+			closeHtmlReader(htmlReader);
 			return null;
 		} catch ( Exception e ) {
 			logger.error("", e);
+			closeHtmlReader(htmlReader);
 			return null;
 		}
 	}
@@ -817,14 +937,10 @@ public class ConnSupportUtils
 	}
 
 
-	public static void closeBufferedReader(BufferedReader bufferedReader)
+	public static void closeHtmlReader(HtmlReader htmlReader)
 	{
-		try {
-			if ( bufferedReader != null )
-				bufferedReader.close();
-		} catch ( IOException ioe ) {
-			logger.warn("Problem when closing \"BufferedReader\": " + ioe.getMessage());
-		}
+		if ( htmlReader != null )
+			htmlReader.close();	// Any problem is logged inside.
 	}
 
 	
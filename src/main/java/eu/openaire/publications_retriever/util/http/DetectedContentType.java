@@ -1,16 +1,14 @@
 package eu.openaire.publications_retriever.util.http;
 
-import java.io.BufferedReader;
-
 public class DetectedContentType {
 
     public String detectedContentType;
     public String firstHtmlLine;
-    public BufferedReader bufferedReader;
+    public HtmlReader htmlReader;
 
-    DetectedContentType(String detectedContentType, String firstHtmlLine, BufferedReader bufferedReader) {
+    DetectedContentType(String detectedContentType, String firstHtmlLine, HtmlReader htmlReader) {
         this.detectedContentType = detectedContentType;
         this.firstHtmlLine = firstHtmlLine;
-        this.bufferedReader = bufferedReader;
+        this.htmlReader = htmlReader;
     }
 }
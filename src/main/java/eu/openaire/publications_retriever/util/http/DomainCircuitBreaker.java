@@ -0,0 +1,305 @@
+package eu.openaire.publications_retriever.util.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+
+/**
+ * This class implements a "circuit-breaker" per domain, for the transient problems (HTTP 5XX and 429, timeouts, missing content-type).
+ * Instead of blocking such domains forever, after a number of bad events, the breaker "opens" fast when a burst of errors happens inside a sliding time-window,
+ * then, after a cool-down period, it becomes "half-open" and allows a single "probe"-request. If the probe succeeds, the breaker "closes" again,
+ * otherwise it re-opens with a larger cool-down period.
+ * A success is recorded only after the response is fully classified (e.g. its content-type is known), as a response may turn out to be a failure, after being received.
+ * While half-open, only the outcome of the probe is taken into account. The requests which were admitted before the breaker opened, are ignored.
+ * The probe is recognized by its thread, as each connection is handled by a single thread, from the request until the classification of the response.
+ * @author Lampros Smyrnaios
+ */
+public class DomainCircuitBreaker
+{
+	private static final Logger logger = LoggerFactory.getLogger(DomainCircuitBreaker.class);
+
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	private static final ConcurrentHashMap<String, DomainCircuitBreaker> domainsWithCircuitBreakers = new ConcurrentHashMap<>();
+
+	private static final int numOfWindowBuckets = 6;
+	private static final long windowBucketMillis = 10_000;	// The sliding-window covers the last minute.
+	private static final int minFailuresToOpen = 5;
+	private static final double minFailureRatioToOpen = 0.5;	// The domains which mostly succeed, are not affected by a few errors.
+	private static final long initialCoolDownMillis = 30_000;	// 30 sec
+	private static final long maxCoolDownMillis = 600_000;	// 10 min
+	private static final long maxProbeMillis = 60_000;	// If a probe does not report back (e.g. it failed with a non-transient error), then another probe is allowed after this time.
+
+	public static final AtomicInteger timesBreakersOpened = new AtomicInteger(0);
+	public static final AtomicInteger timesBreakersClosedAfterProbe = new AtomicInteger(0);
+	public static final AtomicInteger numOfProbeRequests = new AtomicInteger(0);
+	public static final AtomicInteger numOfRejectedRequests = new AtomicInteger(0);
+
+	public static LongSupplier clock = System::currentTimeMillis;	// It can be replaced by the tests, in order to control the time.
+
+	private State state = State.CLOSED;
+	private final int[] failuresPerBucket = new int[numOfWindowBuckets];
+	private final int[] successesPerBucket = new int[numOfWindowBuckets];
+	private long currentBucketStartMillis = clock.getAsLong();
+	private int currentBucketIndex = 0;
+	private long coolDownMillis = initialCoolDownMillis;
+	private long openedAtMillis = 0;
+	private long probeStartedAtMillis = 0;
+	private boolean isProbeInFlight = false;
+	private long probeThreadId = -1;
+
+
+	/**
+	 * This method is called before connecting to the domain. It returns "false" if the request should not be made, as the breaker is open,
+	 * or it's half-open and another probe is already in-flight. If the breaker has just become half-open, this request is the probe.
+	 * @param domainStr
+	 * @return
+	 */
+	public static boolean allowRequest(String domainStr)
+	{
+		if ( domainStr == null )
+			return true;
+		DomainCircuitBreaker circuitBreaker = domainsWithCircuitBreakers.get(domainStr);
+		if ( (circuitBreaker == null) || circuitBreaker.tryAcquirePermission() )
+			return true;
+
+		numOfRejectedRequests.incrementAndGet();
+		return false;
+	}
+
+
+	/**
+	 * This method returns "true" if the breaker of the domain is open (or half-open with a probe in-flight), without affecting its state.
+	 * @param domainStr
+	 * @return
+	 */
+	public static boolean isOpen(String domainStr)
+	{
+		if ( domainStr == null )
+			return false;
+		DomainCircuitBreaker circuitBreaker = domainsWithCircuitBreakers.get(domainStr);
+		return ((circuitBreaker != null) && circuitBreaker.isRejectingRequests());
+	}
+
+
+	/**
+	 * This method records a success for the given domain. It should be called only after the response is fully classified, not just received.
+	 * @param domainStr
+	 */
+	public static void recordSuccess(String domainStr)
+	{
+		if ( domainStr == null )
+			return;
+		DomainCircuitBreaker circuitBreaker = domainsWithCircuitBreakers.get(domainStr);
+		if ( circuitBreaker != null )	// There is no need to create a breaker for domains which had no problems, yet.
+			circuitBreaker.onSuccess(domainStr);
+	}
+
+
+	/**
+	 * This method records a failure for the given domain. It returns "true" if this failure caused the breaker to open.
+	 * @param domainStr
+	 * @return
+	 */
+	public static boolean recordFailure(String domainStr)
+	{
+		if ( domainStr == null )
+			return false;
+		return domainsWithCircuitBreakers.computeIfAbsent(domainStr, k -> new DomainCircuitBreaker()).onFailure(domainStr);
+	}
+
+
+	/**
+	 * This method returns a message about the state of the domain's breaker, to be added in the "comment" of the output, or an empty string, if the breaker is closed.
+	 * @param domainStr
+	 * @return
+	 */
+	public static String getStateComment(String domainStr)
+	{
+		if ( domainStr == null )
+			return "";
+		DomainCircuitBreaker circuitBreaker = domainsWithCircuitBreakers.get(domainStr);
+		if ( circuitBreaker == null )
+			return "";
+		return circuitBreaker.getComment();
+	}
+
+
+	/**
+	 * @param domainStr
+	 * @return The state of the breaker of the domain, or "CLOSED", if the domain has no breaker.
+	 */
+	public static State getState(String domainStr)
+	{
+		DomainCircuitBreaker circuitBreaker = (domainStr != null) ? domainsWithCircuitBreakers.get(domainStr) : null;
+		return (circuitBreaker != null) ? circuitBreaker.getCurrentState() : State.CLOSED;
+	}
+
+
+	public static void logStatistics()
+	{
+		logger.debug("The domains' circuit-breakers opened " + timesBreakersOpened.get() + " times and closed again " + timesBreakersClosedAfterProbe.get() + " times, after " + numOfProbeRequests.get() + " probe-requests in total. The requests avoided due to an open circuit-breaker, were " + numOfRejectedRequests.get() + ".");
+	}
+
+
+	private synchronized boolean tryAcquirePermission()
+	{
+		long now = clock.getAsLong();
+		switch ( state ) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if ( (now - openedAtMillis) < coolDownMillis )
+					return false;
+				state = State.HALF_OPEN;
+				return startProbe(now);
+			default:	// HALF_OPEN
+				if ( isProbeInFlight && ((now - probeStartedAtMillis) < maxProbeMillis) )
+					return false;
+				return startProbe(now);
+		}
+	}
+
+
+	private boolean startProbe(long now)
+	{
+		isProbeInFlight = true;
+		probeStartedAtMillis = now;
+		probeThreadId = Thread.currentThread().getId();
+		numOfProbeRequests.incrementAndGet();
+		return true;
+	}
+
+
+	private synchronized boolean isRejectingRequests()
+	{
+		if ( state == State.OPEN )
+			return ((clock.getAsLong() - openedAtMillis) < coolDownMillis);
+		else if ( state == State.HALF_OPEN )
+			return isProbeInFlight && ((clock.getAsLong() - probeStartedAtMillis) < maxProbeMillis);
+		return false;
+	}
+
+
+	private synchronized State getCurrentState()
+	{
+		return state;
+	}
+
+
+	/**
+	 * @return "true", if the current thread is making the probe-request, which was admitted while the breaker was half-open.
+	 */
+	private boolean isProbeThread()
+	{
+		return isProbeInFlight && (probeThreadId == Thread.currentThread().getId());
+	}
+
+
+	private synchronized void onSuccess(String domainStr)
+	{
+		if ( state == State.HALF_OPEN ) {
+			if ( !isProbeThread() )
+				return;	// A request which was admitted before the breaker opened. Only the probe may close the breaker.
+			logger.debug("The circuit-breaker of domain: \"" + domainStr + "\" was closed, after a successful probe-request.");
+			state = State.CLOSED;
+			isProbeInFlight = false;
+			coolDownMillis = Math.max(initialCoolDownMillis, coolDownMillis / 2);	// If it trips again soon, it will stay open for a bit longer than the initial time.
+			resetWindow(clock.getAsLong());
+			timesBreakersClosedAfterProbe.incrementAndGet();
+		} else if ( state == State.CLOSED )
+			successesPerBucket[getCurrentBucketIndex(clock.getAsLong())] ++;
+	}
+
+
+	private synchronized boolean onFailure(String domainStr)
+	{
+		long now = clock.getAsLong();
+		if ( state == State.HALF_OPEN ) {
+			if ( !isProbeThread() )
+				return false;	// A request which was admitted before the breaker opened. Only the probe decides the next state.
+			coolDownMillis = Math.min((coolDownMillis * 2), maxCoolDownMillis);
+			open(now, domainStr);
+			return true;
+		} else if ( state == State.OPEN )
+			return false;	// A request which started before the breaker opened. It's already open, no need to do anything.
+
+		failuresPerBucket[getCurrentBucketIndex(now)] ++;
+
+		int failures = 0, successes = 0;
+		for ( int i = 0; i < numOfWindowBuckets; ++i ) {
+			failures += failuresPerBucket[i];
+			successes += successesPerBucket[i];
+		}
+		if ( (failures >= minFailuresToOpen) && (((double) failures / (failures + successes)) >= minFailureRatioToOpen) ) {
+			open(now, domainStr);
+			return true;
+		}
+		return false;
+	}
+
+
+	private void open(long now, String domainStr)
+	{
+		state = State.OPEN;
+		openedAtMillis = now;
+		isProbeInFlight = false;
+		resetWindow(now);
+		timesBreakersOpened.incrementAndGet();
+		logger.debug("The circuit-breaker of domain: \"" + domainStr + "\" was opened, for " + TimeUnit.MILLISECONDS.toSeconds(coolDownMillis) + " seconds.");
+	}
+
+
+	/**
+	 * This method moves the sliding-window forward, clearing the expired buckets, and returns the index of the current bucket.
+	 * It's called while holding the lock of this breaker.
+	 * */
+	private int getCurrentBucketIndex(long now)
+	{
+		long elapsedBuckets = (now - currentBucketStartMillis) / windowBucketMillis;
+		if ( elapsedBuckets > 0 ) {
+			if ( elapsedBuckets >= numOfWindowBuckets )
+				resetWindow(now);
+			else {
+				for ( int i = 0; i < elapsedBuckets; ++i ) {
+					currentBucketIndex = (currentBucketIndex + 1) % numOfWindowBuckets;
+					failuresPerBucket[currentBucketIndex] = 0;
+					successesPerBucket[currentBucketIndex] = 0;
+				}
+				currentBucketStartMillis += (elapsedBuckets * windowBucketMillis);
+			}
+		}
+		return currentBucketIndex;
+	}
+
+
+	private void resetWindow(long now)
+	{
+		for ( int i = 0; i < numOfWindowBuckets; ++i ) {
+			failuresPerBucket[i] = 0;
+			successesPerBucket[i] = 0;
+		}
+		currentBucketIndex = 0;
+		currentBucketStartMillis = now;
+	}
+
+
+	private synchronized String getComment()
+	{
+		if ( state == State.OPEN ) {
+			long remainingMillis = coolDownMillis - (clock.getAsLong() - openedAtMillis);
+			if ( remainingMillis > 0 )
+				return " The circuit-breaker of its domain was OPEN (a probe will be allowed after " + TimeUnit.MILLISECONDS.toSeconds(remainingMillis) + " seconds).";
+			else
+				return " The circuit-breaker of its domain was OPEN (waiting for a probe).";
+		} else if ( state == State.HALF_OPEN )
+			return " The circuit-breaker of its domain was HALF_OPEN (probing).";
+		return "";
+	}
+
+}
@@ -0,0 +1,76 @@
+package eu.openaire.publications_retriever.util.http;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+
+/**
+ * This class holds the latency-histograms of a domain, for the "connect"-phase and for the "time-to-first-byte" (TTFB) phase.
+ * The buckets grow exponentially, so a few of them are enough to cover from some milliseconds up to a few minutes, keeping the memory-footprint per domain small.
+ * @author Lampros Smyrnaios
+ */
+public class DomainLatencyData {
+
+    private static final int numOfBuckets = 32;
+    private static final long[] bucketUpperBoundsMillis = new long[numOfBuckets];
+    static {
+        double upperBound = 50;   // The first bucket holds the latencies up to 50ms.
+        for ( int i = 0; i < numOfBuckets; ++i ) {
+            bucketUpperBoundsMillis[i] = (long) upperBound;
+            upperBound *= 1.3;  // The last bucket reaches about 170 seconds.
+        }
+    }
+
+    final AtomicIntegerArray connectHistogram = new AtomicIntegerArray(numOfBuckets);
+    final AtomicIntegerArray ttfbHistogram = new AtomicIntegerArray(numOfBuckets);
+
+
+    public void addConnectLatency(long latencyMillis) {
+        connectHistogram.incrementAndGet(getBucketIndex(latencyMillis));
+    }
+
+    public void addTtfbLatency(long latencyMillis) {
+        ttfbHistogram.incrementAndGet(getBucketIndex(latencyMillis));
+    }
+
+    public long getConnectPercentile(double percentile, int minSamples) {
+        return getPercentile(connectHistogram, percentile, minSamples);
+    }
+
+    public long getTtfbPercentile(double percentile, int minSamples) {
+        return getPercentile(ttfbHistogram, percentile, minSamples);
+    }
+
+
+    private static int getBucketIndex(long latencyMillis) {
+        for ( int i = 0; i < numOfBuckets; ++i )
+            if ( latencyMillis <= bucketUpperBoundsMillis[i] )
+                return i;
+        return (numOfBuckets -1);
+    }
+
+
+    /**
+     * This method returns the upper-bound of the bucket which contains the requested percentile,
+     * or -1, if there are less than "minSamples" samples, in which case the caller should fall back to the default values.
+     * */
+    private static long getPercentile(AtomicIntegerArray histogram, double percentile, int minSamples) {
+        int[] counts = new int[numOfBuckets];   // Take a snapshot, as other threads may update the histogram in the meantime.
+        long totalSamples = 0;
+        for ( int i = 0; i < numOfBuckets; ++i ) {
+            counts[i] = histogram.get(i);
+            totalSamples += counts[i];
+        }
+        if ( totalSamples < minSamples )
+            return -1;
+
+        long targetRank = (long) Math.ceil(totalSamples * percentile);
+        long cumulativeSamples = 0;
+        for ( int i = 0; i < numOfBuckets; ++i ) {
+            cumulativeSamples += counts[i];
+            if ( cumulativeSamples >= targetRank )
+                return bucketUpperBoundsMillis[i];
+        }
+        return bucketUpperBoundsMillis[numOfBuckets -1];
+    }
+
+}
@@ -0,0 +1,449 @@
+package eu.openaire.publications_retriever.util.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+
+
+/**
+ * This class reads the HTML-code of a page directly from the bytes of its inputStream, instead of using a "BufferedReader" over an "InputStreamReader".
+ * It detects the charset from the BOM, the "Content-Type" header or the "meta"-tags (in this order), it strips the blank lines without using regexes
+ * and it enforces a hard limit on the bytes read, even when the "Content-Length" is missing.
+ * The byte, char and string buffers are reused by each thread, so only the final HTML-string is allocated per page.
+ * An instance is used by a single thread and it should always be closed, in order to release the connection and the buffers.
+ * @author Lampros Smyrnaios
+ */
+public class HtmlReader implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(HtmlReader.class);
+
+	public static final int maxAllowedHtmlSize = 10485760;	// 10Mb ; The largest pages we have seen are a few Mb.
+	private static final int bufferSize = 16384;	// 16Kb
+	private static final int charsetPrefixSize = 1024;	// The HTML-standard requires the charset-declaration to be inside the first 1024 bytes.
+	private static final int maxPooledBuilderCapacity = 1048576;	// Don't keep huge builders per thread, after reading an unusually large page.
+	private static final Charset defaultCharset = StandardCharsets.UTF_8;
+
+	private static final ThreadLocal<Buffers> threadBuffers = ThreadLocal.withInitial(Buffers::new);
+
+	private final InputStream inputStream;
+	private final Buffers buffers;
+	private final boolean areBuffersPooled;
+	private final ByteBuffer byteBuffer;	// In "read"-mode, between calls.
+	private final CharBuffer charBuffer;	// In "read"-mode, between calls.
+	private final CharsetDecoder decoder;
+	private final Charset charset;
+	private long totalBytesRead = 0;
+	private boolean isEndOfInput = false;
+	private boolean isDecodingFinished = false;
+	private boolean shouldSkipLF = false;	// Set after a "\r", so that a "\r\n" counts as a single line-terminator in "readLine()".
+	private boolean isClosed = false;
+
+
+	private static class Buffers
+	{
+		final byte[] bytes = new byte[bufferSize];
+		final char[] chars = new char[bufferSize];
+		StringBuilder strB = new StringBuilder(300000);
+		boolean isInUse = false;
+		CharsetDecoder lastDecoder = null;
+	}
+
+
+	/**
+	 * This method opens a reader for the HTML-code of the given connection. The connection should already be connected and the content-size should be checked by the caller.
+	 * @param conn
+	 * @return
+	 * @throws IOException
+	 */
+	public static HtmlReader open(HttpURLConnection conn) throws IOException
+	{
+		return new HtmlReader(conn.getInputStream(), conn.getContentType());
+	}
+
+
+	/**
+	 * This constructor opens a reader for the HTML-code of the given inputStream, which is closed when this reader is closed.
+	 * @param inputStream
+	 * @param contentTypeHeader	// It may be null.
+	 * @throws IOException
+	 */
+	public HtmlReader(InputStream inputStream, String contentTypeHeader) throws IOException
+	{
+		this.inputStream = inputStream;
+		Buffers pooledBuffers = threadBuffers.get();
+		if ( pooledBuffers.isInUse )	// This thread is already reading another page (e.g. a metaDocUrl without a content-type, while the page is still open).
+			this.buffers = new Buffers();
+		else {
+			pooledBuffers.isInUse = true;
+			this.buffers = pooledBuffers;
+		}
+		this.areBuffersPooled = (this.buffers == pooledBuffers);
+		this.byteBuffer = ByteBuffer.wrap(buffers.bytes);
+		this.charBuffer = CharBuffer.wrap(buffers.chars);
+		this.charBuffer.limit(0);	// Nothing to read yet.
+
+		try {
+			// Read the first bytes, in order to detect the charset.
+			int prefixSize = 0;
+			while ( prefixSize < charsetPrefixSize ) {
+				int numOfBytes = readBytes(buffers.bytes, prefixSize, (bufferSize - prefixSize));
+				if ( numOfBytes == -1 ) {
+					isEndOfInput = true;
+					break;
+				}
+				prefixSize += numOfBytes;
+			}
+			byteBuffer.limit(prefixSize);
+
+			Charset detectedCharset = getCharsetFromBOM(buffers.bytes, prefixSize);	// It also moves the "position" after the BOM.
+			if ( detectedCharset == null )
+				detectedCharset = getCharsetFromContentType(contentTypeHeader);
+			if ( detectedCharset == null )
+				detectedCharset = getCharsetFromMetaTags(buffers.bytes, prefixSize);
+			this.charset = (detectedCharset != null) ? detectedCharset : defaultCharset;
+
+			CharsetDecoder lastDecoder = buffers.lastDecoder;
+			if ( (lastDecoder != null) && lastDecoder.charset().equals(this.charset) )
+				this.decoder = lastDecoder.reset();
+			else {
+				this.decoder = this.charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+				buffers.lastDecoder = this.decoder;
+			}
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+
+	public Charset getCharset()
+	{
+		return charset;
+	}
+
+
+	/**
+	 * This method returns the next line (without its terminator), including the blank ones, or "null" if the end of the stream was reached.
+	 * @return
+	 * @throws IOException
+	 */
+	public String readLine() throws IOException
+	{
+		StringBuilder lineStrB = null;
+		while ( true )
+		{
+			if ( !charBuffer.hasRemaining() && !fillChars() )
+				return (lineStrB != null) ? lineStrB.toString() : null;
+
+			char[] chars = charBuffer.array();
+			int start = charBuffer.position();
+			int limit = charBuffer.limit();
+			if ( shouldSkipLF ) {
+				shouldSkipLF = false;
+				if ( chars[start] == '\n' ) {
+					charBuffer.position(++start);
+					continue;
+				}
+			}
+			for ( int i = start; i < limit; ++i ) {
+				char c = chars[i];
+				if ( (c == '\n') || (c == '\r') ) {
+					charBuffer.position(i + 1);
+					shouldSkipLF = (c == '\r');
+					if ( lineStrB == null )
+						return new String(chars, start, (i - start));
+					return lineStrB.append(chars, start, (i - start)).toString();
+				}
+			}
+			if ( lineStrB == null )
+				lineStrB = new StringBuilder(2 * (limit - start));
+			lineStrB.append(chars, start, (limit - start));
+			charBuffer.position(limit);
+		}
+	}
+
+
+	/**
+	 * This method reads the HTML-code and returns it as a single string, without the line-terminators and without the blank lines
+	 * (the empty ones, the ones with a single char (usually an unrecognized byte) and the ones with only whitespace).
+	 * If "stopAfterHead" is "true", it stops after the line which closes the "head" (or opens the "body") of the page. A later call continues from that point.
+	 * It returns an empty string if there was nothing to read.
+	 * @param stopAfterHead
+	 * @return
+	 * @throws IOException
+	 */
+	public String readHtml(boolean stopAfterHead) throws IOException
+	{
+		StringBuilder strB = buffers.strB;
+		strB.setLength(0);
+		int lineStart = 0;
+		shouldSkipLF = false;	// The blank lines are removed anyway.
+		while ( true )
+		{
+			if ( !charBuffer.hasRemaining() && !fillChars() )
+				break;
+
+			char[] chars = charBuffer.array();
+			int start = charBuffer.position();
+			int limit = charBuffer.limit();
+			int i = start;
+			for ( ; i < limit; ++i ) {
+				char c = chars[i];
+				if ( (c == '\n') || (c == '\r') ) {
+					strB.append(chars, start, (i - start));
+					start = i + 1;
+					if ( !removeIfBlankLine(strB, lineStart) ) {
+						if ( stopAfterHead && isHeadEndLine(strB, lineStart) ) {
+							charBuffer.position(start);
+							return strB.toString();
+						}
+						lineStart = strB.length();
+					}
+				}
+			}
+			strB.append(chars, start, (i - start));
+			charBuffer.position(limit);
+		}
+		removeIfBlankLine(strB, lineStart);	// The last line, which may have no terminator.
+		return strB.toString();
+	}
+
+
+	/**
+	 * Returns "true" if the line starting at "lineStart" was blank and it was removed.
+	 */
+	private static boolean removeIfBlankLine(StringBuilder strB, int lineStart)
+	{
+		int lineEnd = strB.length();
+		if ( (lineEnd - lineStart) > 1 ) {	// We check for (length != 1), as some lines contain an unrecognized byte.
+			for ( int i = lineStart; i < lineEnd; ++i ) {
+				char c = strB.charAt(i);
+				if ( (c != ' ') && (c != '\t') && (c != '\f') && (c != '\u000B') )	// The same whitespace as the "\s" of the regexes.
+					return false;
+			}
+		}
+		strB.setLength(lineStart);
+		return true;
+	}
+
+
+	private static boolean isHeadEndLine(StringBuilder strB, int lineStart)
+	{
+		int lineEnd = strB.length();
+		for ( int i = lineStart; i < lineEnd; ++i ) {
+			if ( strB.charAt(i) == '<' ) {
+				if ( regionMatchesIgnoreCase(strB, (i + 1), lineEnd, "/head>") || isBodyTag(strB, (i + 1), lineEnd) )
+					return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * Returns "true" if the "body"-tag starts at the given index, not just another tag with the same prefix (like "bodycontent").
+	 * The tag-name should be followed by whitespace, ">" or "/", or by the end of the line (the attributes may be in the next lines).
+	 */
+	private static boolean isBodyTag(StringBuilder strB, int index, int lineEnd)
+	{
+		if ( !regionMatchesIgnoreCase(strB, index, lineEnd, "body") )
+			return false;
+		int nextIndex = index + 4;
+		if ( nextIndex == lineEnd )
+			return true;
+		char c = strB.charAt(nextIndex);
+		return ((c == '>') || (c == '/') || (c == ' ') || (c == '\t') || (c == '\f') || (c == '\u000B'));
+	}
+
+
+	private static boolean regionMatchesIgnoreCase(CharSequence charSeq, int index, int end, String lowerCaseStr)
+	{
+		int strLength = lowerCaseStr.length();
+		if ( (index + strLength) > end )
+			return false;
+		for ( int i = 0; i < strLength; ++i )
+			if ( Character.toLowerCase(charSeq.charAt(index + i)) != lowerCaseStr.charAt(i) )
+				return false;
+		return true;
+	}
+
+
+	/**
+	 * This method decodes the next chars into the "charBuffer", reading more bytes if needed. It returns "false" when there are no more chars.
+	 */
+	private boolean fillChars() throws IOException
+	{
+		if ( isDecodingFinished )
+			return false;
+
+		charBuffer.clear();
+		while ( true )
+		{
+			if ( isEndOfInput ) {
+				if ( !decoder.decode(byteBuffer, charBuffer, true).isOverflow() ) {	// Otherwise, the remaining bytes will be decoded in the next call.
+					decoder.flush(charBuffer);
+					isDecodingFinished = true;
+				}
+				charBuffer.flip();
+				return (charBuffer.hasRemaining() || !isDecodingFinished);
+			}
+
+			decoder.decode(byteBuffer, charBuffer, false);
+			if ( charBuffer.position() > 0 ) {
+				charBuffer.flip();
+				return true;
+			}
+
+			// All the available bytes were decoded (except maybe the first bytes of a multi-byte char), so read more.
+			byteBuffer.compact();
+			int numOfBytes = readBytes(byteBuffer.array(), byteBuffer.position(), byteBuffer.remaining());
+			if ( numOfBytes == -1 )
+				isEndOfInput = true;
+			else
+				byteBuffer.position(byteBuffer.position() + numOfBytes);
+			byteBuffer.flip();
+		}
+	}
+
+
+	private int readBytes(byte[] bytes, int offset, int length) throws IOException
+	{
+		int numOfBytes = inputStream.read(bytes, offset, length);
+		if ( numOfBytes > 0 ) {
+			totalBytesRead += numOfBytes;
+			BandwidthLimiter.consumeForControlRequest(numOfBytes);	// The page-requests have priority over the docFile-downloads, they just consume from the common bandwidth-budget.
+			if ( totalBytesRead > maxAllowedHtmlSize )
+				throw new IOException("The HTML-code exceeded the max allowed size (" + maxAllowedHtmlSize + " bytes).");
+		}
+		return numOfBytes;
+	}
+
+
+	/**
+	 * This method returns the charset of the BOM (if any) and moves the position of the "byteBuffer" after it.
+	 */
+	private Charset getCharsetFromBOM(byte[] bytes, int size)
+	{
+		if ( (size >= 3) && (bytes[0] == (byte) 0xEF) && (bytes[1] == (byte) 0xBB) && (bytes[2] == (byte) 0xBF) ) {
+			byteBuffer.position(3);
+			return StandardCharsets.UTF_8;
+		} else if ( size >= 2 ) {
+			if ( (bytes[0] == (byte) 0xFE) && (bytes[1] == (byte) 0xFF) ) {
+				byteBuffer.position(2);
+				return StandardCharsets.UTF_16BE;
+			} else if ( (bytes[0] == (byte) 0xFF) && (bytes[1] == (byte) 0xFE) ) {
+				byteBuffer.position(2);
+				return StandardCharsets.UTF_16LE;
+			}
+		}
+		return null;
+	}
+
+
+	static Charset getCharsetFromContentType(String contentType)
+	{
+		if ( contentType == null )
+			return null;
+		int charsetIndex = indexOfIgnoreCase(contentType, "charset", 0);
+		if ( charsetIndex == -1 )
+			return null;
+		return getCharsetFromDeclaration(contentType, (charsetIndex + 7));
+	}
+
+
+	/**
+	 * This method looks for a "charset"-declaration inside a "meta"-tag, in the first bytes of the page. Those bytes are ASCII-compatible in all the charsets we expect to find there.
+	 */
+	static Charset getCharsetFromMetaTags(byte[] bytes, int size)
+	{
+		String prefix = new String(bytes, 0, Math.min(size, charsetPrefixSize), StandardCharsets.ISO_8859_1);	// One char per byte.
+		int metaIndex = 0;
+		while ( (metaIndex = indexOfIgnoreCase(prefix, "<meta", metaIndex)) != -1 ) {
+			metaIndex += 5;
+			int tagEnd = prefix.indexOf('>', metaIndex);
+			if ( tagEnd == -1 )
+				tagEnd = prefix.length();
+			int charsetIndex = indexOfIgnoreCase(prefix.substring(0, tagEnd), "charset", metaIndex);
+			if ( charsetIndex != -1 ) {
+				Charset charset = getCharsetFromDeclaration(prefix.substring(0, tagEnd), (charsetIndex + 7));
+				if ( charset != null )
+					return charset;
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * This method parses the value after the "charset"-keyword, like: "charset=utf-8", "charset = 'utf-8'" or "charset=\"utf-8\"".
+	 */
+	private static Charset getCharsetFromDeclaration(String str, int index)
+	{
+		int length = str.length();
+		while ( (index < length) && Character.isWhitespace(str.charAt(index)) )
+			index++;
+		if ( (index >= length) || (str.charAt(index) != '=') )
+			return null;
+		index++;
+		while ( (index < length) && (Character.isWhitespace(str.charAt(index)) || (str.charAt(index) == '"') || (str.charAt(index) == '\'')) )
+			index++;
+		int valueStart = index;
+		while ( (index < length) && (Character.isLetterOrDigit(str.charAt(index)) || (str.charAt(index) == '-') || (str.charAt(index) == '_') || (str.charAt(index) == '.') || (str.charAt(index) == ':')) )
+			index++;
+		if ( index == valueStart )
+			return null;
+
+		String charsetName = str.substring(valueStart, index);
+		try {
+			Charset charset = Charset.forName(charsetName);
+			if ( charset.equals(StandardCharsets.UTF_16) || charset.equals(StandardCharsets.UTF_16BE) || charset.equals(StandardCharsets.UTF_16LE) )
+				return null;	// Without a BOM, a declared UTF-16 is almost always wrong, as the declaration itself was readable as ASCII.
+			return charset;
+		} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+			logger.debug("Unsupported charset: \"" + charsetName + "\"");
+			return null;
+		}
+	}
+
+
+	private static int indexOfIgnoreCase(String str, String lowerCaseStr, int fromIndex)
+	{
+		int lastIndex = str.length() - lowerCaseStr.length();
+		for ( int i = fromIndex; i <= lastIndex; ++i )
+			if ( regionMatchesIgnoreCase(str, i, str.length(), lowerCaseStr) )
+				return i;
+		return -1;
+	}
+
+
+	/**
+	 * This method closes the inputStream (so the connection can be reused or closed) and releases the pooled buffers.
+	 */
+	@Override
+	public void close()
+	{
+		if ( isClosed )
+			return;
+		isClosed = true;
+		try {
+			inputStream.close();
+		} catch (IOException ioe) {
+			logger.warn("Problem when closing the HTML-inputStream: " + ioe.getMessage());
+		}
+		if ( areBuffersPooled ) {
+			if ( buffers.strB.capacity() > maxPooledBuilderCapacity )
+				buffers.strB = new StringBuilder(300000);
+			else
+				buffers.strB.setLength(0);
+			buffers.isInUse = false;
+		}
+	}
+
+}
@@ -1,12 +1,14 @@
 package eu.openaire.publications_retriever.util.http;
 
-import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import eu.openaire.publications_retriever.crawler.PageCrawler;
 import eu.openaire.publications_retriever.crawler.SpecialUrlsHandler;
 import eu.openaire.publications_retriever.exceptions.*;
 import eu.openaire.publications_retriever.util.file.FileUtils;
+import eu.openaire.publications_retriever.util.url.DomainRegistry;
+import eu.openaire.publications_retriever.util.url.DomainSet;
 import eu.openaire.publications_retriever.util.url.GenericUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.UrlCanonicalizer;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -14,12 +16,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLException;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.*;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -37,18 +38,17 @@ public class HttpConnUtils
 
 	public static final Set<String> domainsWithUnsupportedAcceptLanguageParameter = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
-	public static final Set<String> blacklistedDomains = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());	// Domains with which we don't want to connect again.
+	public static final Set<String> blacklistedDomains = new DomainSet(DomainRegistry.FLAG_BLOCKED);	// Domains with which we don't want to connect again.
 
-	public static final Hashtable<String, Integer> timesDomainsHadInputNotBeingDocNorPage = new Hashtable<String, Integer>();
-	public static final Hashtable<String, Integer> timesDomainsReturnedNoType = new Hashtable<String, Integer>();	// Domain which returned no content-type not content disposition in their response and amount of times they did.
+	public static final TimesCounter<String> timesDomainsHadInputNotBeingDocNorPage = new TimesCounter<>();
 
 	public static AtomicInteger numOfDomainsBlockedDueToSSLException = new AtomicInteger(0);
 
 	public static String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:87.0) Gecko/20100101 Firefox/87.0";
 	public static String acceptLanguage = "en,en;q=0.5";
 
-	public static final int maxConnGETWaitingTime = 15000;	// Max time (in ms) to wait for a connection, using "HTTP GET".
-	public static final int maxConnHEADWaitingTime = 10000;	// Max time (in ms) to wait for a connection, using "HTTP HEAD".
+	public static final int maxConnGETWaitingTime = 15000;	// Max time (in ms) to wait for a connection, using "HTTP GET". It's the default, until we have enough latency-samples for the domain (see: "ConnSupportUtils.setTimeouts()").
+	public static final int maxConnHEADWaitingTime = 10000;	// Max time (in ms) to wait for a connection, using "HTTP HEAD". It's the default, until we have enough latency-samples for the domain.
 
 	private static final int maxRedirectsForPageUrls = 7;// The usual redirect times for doi.org urls is 3, though some of them can reach even 5 (if not more..)
 	private static final int maxRedirectsForInternalLinks = 2;	// Internal-DOC-Links shouldn't take more than 2 redirects.
@@ -59,12 +59,25 @@ public class HttpConnUtils
 	private static final boolean shouldNOTacceptGETmethodForUncategorizedInternalLinks = true;
 
 
-	public static final Set<String> domainsSupportingHTTPS = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	public static final Set<String> domainsSupportingHTTPS = new DomainSet(DomainRegistry.FLAG_SUPPORTS_HTTPS);
 
 	public static AtomicInteger timesDidOfflineHTTPSredirect = new AtomicInteger(0);
 
 	public static ThreadLocal<Boolean> isSpecialUrl = new ThreadLocal<Boolean>();	// Every Thread has its own variable.
 
+	public static ThreadLocal<AtomicBoolean> docUrlClaim = new ThreadLocal<AtomicBoolean>();	// It's set only for the threads which verify the candidates of a page in parallel (see "CandidateUrlsVerifier"), as only one docUrl should be logged per page.
+
+
+	/**
+	 * This method claims the right to log a docUrl for the current page. It always succeeds, except when the candidates of the page are verified in parallel and another docUrl was claimed first.
+	 * @return "true", if the docUrl can be logged, otherwise, "false".
+	 */
+	public static boolean claimDocUrl()
+	{
+		AtomicBoolean claim = docUrlClaim.get();
+		return ((claim == null) || claim.compareAndSet(false, true));
+	}
+
 
 	/**
 	 * This method checks if a certain url can give us its mimeType, as well as if this mimeType is a docMimeType.
@@ -105,7 +118,7 @@ public class HttpConnUtils
 
 			boolean foundDetectedContentType = false;
 			String firstHtmlLine = null;
-			BufferedReader bufferedReader = null;
+			HtmlReader htmlReader = null;
 
 			///////////////////////////
 			//mimeType = null;	// DEBUG!
@@ -118,11 +131,12 @@ public class HttpConnUtils
 					mimeType = (String)detectionList.get(0);
 					foundDetectedContentType = (boolean)detectionList.get(1);
 					firstHtmlLine = (String)detectionList.get(2);
-					bufferedReader = (BufferedReader) detectionList.get(3);
+					htmlReader = (HtmlReader) detectionList.get(3);
 					calledForPossibleDocOrDatasetUrl = (boolean) detectionList.get(4);
-					//logger.debug(mimeType); logger.debug(String.valueOf(foundDetectedContentType)); logger.debug(firstHtmlLine); logger.debug(String.valueOf(bufferedReader)); logger.debug(String.valueOf(calledForPossibleDocUrl));	// DEBUG!
+					//logger.debug(mimeType); logger.debug(String.valueOf(foundDetectedContentType)); logger.debug(firstHtmlLine); logger.debug(String.valueOf(htmlReader)); logger.debug(String.valueOf(calledForPossibleDocUrl));	// DEBUG!
 				}
 			}
+			DomainCircuitBreaker.recordSuccess(domainStr);	// The response is classified now. If its content-type could not be detected, a failure was recorded instead, above.
 
 			String lowerCaseMimeType = mimeType;
 			if ( mimeType != null && !foundDetectedContentType )	// It may have gained a value after auto-detection, so we check again. If it was auto-detected, then it's already in lowercase.
@@ -134,6 +148,8 @@ public class HttpConnUtils
 			if ( (returnedType != null) && !finalUrlStr.contains("academic.microsoft.com/api") )	// The "academic.microsoft.com/api" is a json-page which provides the docUrls, so avoid identify it as a "dataset" here..
 			{
 				if ( LoaderAndChecker.retrieveDocuments && returnedType.equals("document") ) {
+					if ( !claimDocUrl() )
+						return false;	// Another candidate of this page was verified first, so avoid downloading and logging a second docUrl.
 					logger.info("docUrl found: < " + finalUrlStr + " >");
 					String fullPathFileName = "";
 					if ( FileUtils.shouldDownloadDocFiles ) {
@@ -153,6 +169,8 @@ public class HttpConnUtils
 					return true;
 				}
 				else if ( LoaderAndChecker.retrieveDatasets && returnedType.equals("dataset") ) {
+					if ( !claimDocUrl() )
+						return false;
 					logger.info("datasetUrl found: < " + finalUrlStr + " >");
 					// TODO - handle possible download and improve logging...
 					String fullPathFileName = FileUtils.shouldDownloadDocFiles ? "It's a dataset-url. The download is not supported." : "It's a dataset-url.";
@@ -176,7 +194,7 @@ public class HttpConnUtils
 				}
 				else if ( (lowerCaseMimeType != null) && ((lowerCaseMimeType.contains("htm") || (lowerCaseMimeType.contains("text") && !lowerCaseMimeType.contains("xml") && !lowerCaseMimeType.contains("csv") && !lowerCaseMimeType.contains("tsv")))) )	// The content-disposition is non-usable in the case of pages.. it's probably not provided anyway.
 					// TODO - Better make a regex for the above checks..
-					PageCrawler.visit(urlId, sourceUrl, finalUrlStr, mimeType, conn, firstHtmlLine, bufferedReader);
+					PageCrawler.visit(urlId, sourceUrl, finalUrlStr, mimeType, conn, firstHtmlLine, htmlReader);
 				else if ( finalUrlStr.contains("academic.microsoft.com/api/") )	// JSON content.
 					SpecialUrlsHandler.extractDocUrlFromAcademicMicrosoftJson(urlId, sourceUrl, finalUrlStr, conn);
 				else {
@@ -268,6 +286,11 @@ public class HttpConnUtils
 			if ( blacklistedDomains.contains(domainStr) )
 		    	throw new RuntimeException("Avoid connecting to blackListed domain: \"" + domainStr + "\" with url: " + resourceURL);
 
+			if ( !DomainCircuitBreaker.allowRequest(domainStr) ) {	// If the breaker is half-open, this request may be the "probe".
+				logger.debug("Avoid connecting to domain: \"" + domainStr + "\" with url: " + resourceURL + ", as its circuit-breaker is open.");
+				throw new DomainBlockedException(domainStr);
+			}
+
 			// Check whether we don't accept "GET" method for uncategorizedInternalLinks and if this url is such a case.
 			if ( !calledForPageUrl && shouldNOTacceptGETmethodForUncategorizedInternalLinks
 					&& !calledForPossibleDocUrl && domainsWithUnsupportedHeadMethod.contains(domainStr) )	// Exclude the possibleDocUrls and the ones which cannot connect with "HEAD".
@@ -302,6 +325,7 @@ public class HttpConnUtils
 
 			URL url = new URL(resourceURL);
 			conn = (HttpURLConnection) url.openConnection();
+			SSLUtils.setSharedSocketFactory(conn);	// Resume the cached TLS-sessions, instead of doing full handshakes.
 			conn.setRequestProperty("User-Agent", userAgent);
 			if ( !domainsWithUnsupportedAcceptLanguageParameter.contains(domainStr) )
 				conn.setRequestProperty("Accept-Language", acceptLanguage);
@@ -316,20 +340,16 @@ public class HttpConnUtils
 				|| domainsWithUnsupportedHeadMethod.contains(domainStr) )	// If the domain doesn't support "HEAD", then we only do "GET".
 			{
 				conn.setRequestMethod("GET");	// Go directly with "GET".
-				conn.setConnectTimeout(maxConnGETWaitingTime);
-				conn.setReadTimeout(maxConnGETWaitingTime);
+				ConnSupportUtils.setTimeouts(conn, domainStr, true);
 				useHttpGetMethod = true;
 			} else {
 				conn.setRequestMethod("HEAD");	// Else, try "HEAD" (it may be either a domain that supports "HEAD", or a new domain, for which we have no info yet).
-				conn.setConnectTimeout(maxConnHEADWaitingTime);
-				conn.setReadTimeout(maxConnHEADWaitingTime);
+				ConnSupportUtils.setTimeouts(conn, domainStr, false);
 			}
 
 			ConnSupportUtils.applyPolitenessDelay(domainStr);
 
-			conn.connect();	// Else, first connect and if there is no error, log this domain as the last one.
-
-			if ( (responseCode = conn.getResponseCode()) == -1 )
+			if ( (responseCode = ConnSupportUtils.connectAndMeasureLatency(conn, domainStr)) == -1 )	// Connect and get the responseCode, while recording the latencies of this domain.
 				throw new RuntimeException("Invalid HTTP response for \"" + resourceURL + "\"");
 
 			if ( responseCode == 406 )	// It's possible that the server does not support the "Accept-Language" parameter.
@@ -338,24 +358,21 @@ public class HttpConnUtils
 				domainsWithUnsupportedAcceptLanguageParameter.add(domainStr);	// Take note that this domain does not support it..
 
 				conn = (HttpURLConnection) url.openConnection();
+				SSLUtils.setSharedSocketFactory(conn);	// Resume the cached TLS-sessions, instead of doing full handshakes.
 				conn.setRequestProperty("User-Agent", userAgent);
 				conn.setInstanceFollowRedirects(false);
 
 				if ( useHttpGetMethod ) {
 					conn.setRequestMethod("GET");	// Go directly with "GET".
-					conn.setConnectTimeout(maxConnGETWaitingTime);
-					conn.setReadTimeout(maxConnGETWaitingTime);
+					ConnSupportUtils.setTimeouts(conn, domainStr, true);
 				} else {
 					conn.setRequestMethod("HEAD");	// Else, try "HEAD" (it may be either a domain that supports "HEAD", or a new domain, for which we have no info yet).
-					conn.setConnectTimeout(maxConnHEADWaitingTime);
-					conn.setReadTimeout(maxConnHEADWaitingTime);
+					ConnSupportUtils.setTimeouts(conn, domainStr, false);
 				}
 
 				ConnSupportUtils.applyPolitenessDelay(domainStr);
 
-				conn.connect();	// Else, first connect and if there is no error, log this domain as the last one.
-
-				if ( conn.getResponseCode() == -1 )
+				if ( ConnSupportUtils.connectAndMeasureLatency(conn, domainStr) == -1 )
 					throw new RuntimeException("Invalid HTTP response for \"" + resourceURL + "\"");
 			}
 			else if ( ((responseCode == 405) || (responseCode == 501)) && conn.getRequestMethod().equals("HEAD") )	// If this SERVER doesn't support "HEAD" method or doesn't allow us to use it..
@@ -369,20 +386,18 @@ public class HttpConnUtils
 				// If we accept connection's retrying, using "GET", move on reconnecting.
 				// No call of "conn.disconnect()" here, as we will connect to the same server.
 				conn = (HttpURLConnection) url.openConnection();
+				SSLUtils.setSharedSocketFactory(conn);	// Resume the cached TLS-sessions, instead of doing full handshakes.
 				conn.setRequestMethod("GET");	// To reach here, it means that the HEAD method is unsupported.
 				conn.setRequestProperty("User-Agent", userAgent);
 				if ( !domainsWithUnsupportedAcceptLanguageParameter.contains(domainStr) )
 					conn.setRequestProperty("Accept-Language", acceptLanguage);
-				conn.setConnectTimeout(maxConnGETWaitingTime);
-				conn.setReadTimeout(maxConnGETWaitingTime);
+				ConnSupportUtils.setTimeouts(conn, domainStr, true);
 				conn.setInstanceFollowRedirects(false);
 
 				ConnSupportUtils.applyPolitenessDelay(domainStr);
 
-				conn.connect();
-				//logger.debug("responseCode for \"" + resourceURL + "\", after setting conn-method to: \"" + conn.getRequestMethod() + "\" is: " + conn.getResponseCode());
-
-				responseCode = conn.getResponseCode();
+				responseCode = ConnSupportUtils.connectAndMeasureLatency(conn, domainStr);
+				//logger.debug("responseCode for \"" + resourceURL + "\", after setting conn-method to: \"" + conn.getRequestMethod() + "\" is: " + responseCode);
 				if ( responseCode == -1 )	// Make sure we throw a RunEx on invalidHTTP.
 					throw new RuntimeException("Invalid HTTP response for \"" + resourceURL + "\"");
 
@@ -393,24 +408,22 @@ public class HttpConnUtils
 					domainsWithUnsupportedAcceptLanguageParameter.add(domainStr);	// Take note that this domain does not support it..
 
 					conn = (HttpURLConnection) url.openConnection();
+					SSLUtils.setSharedSocketFactory(conn);	// Resume the cached TLS-sessions, instead of doing full handshakes.
 					conn.setRequestMethod("GET");	// To reach here, it means that the HEAD method is unsupported.
 					conn.setRequestProperty("User-Agent", userAgent);
-					conn.setConnectTimeout(maxConnGETWaitingTime);
-					conn.setReadTimeout(maxConnGETWaitingTime);
+					ConnSupportUtils.setTimeouts(conn, domainStr, true);
 					conn.setInstanceFollowRedirects(false);
 
 					ConnSupportUtils.applyPolitenessDelay(domainStr);
 
-					conn.connect();	// Else, first connect and if there is no error, log this domain as the last one.
-
-					if ( (conn.getResponseCode()) == -1 )
+					if ( ConnSupportUtils.connectAndMeasureLatency(conn, domainStr) == -1 )
 						throw new RuntimeException("Invalid HTTP response for \"" + resourceURL + "\"");
 				}
 			}
-		} catch (RuntimeException | DomainWithUnsupportedHEADmethodException redwuhme) {
+		} catch (RuntimeException | DomainBlockedException | DomainWithUnsupportedHEADmethodException redbewuhme) {
 			if ( conn != null )
 				conn.disconnect();
-			throw redwuhme;	// We want to throw the same exception to keep the messages and the stacktrace in place.
+			throw redbewuhme;	// We want to throw the same exception to keep the messages and the stacktrace in place.
 		} catch (Exception e) {
 			if ( conn != null )
 				conn.disconnect();
@@ -498,6 +511,7 @@ public class HttpConnUtils
 
 		try {
 			do {	// We assume we already have an HTTP-3XX response code.
+				DomainCircuitBreaker.recordSuccess(domainStr);	// The server of the current url is responsive, it redirects us.
 				curRedirectsNum ++;
 				if ( curRedirectsNum > maxRedirects )
 					throw new RuntimeException("Redirects exceeded their limit (" + maxRedirects + ") for " + urlType + ": \"" + initialUrl + "\"");
@@ -521,7 +535,7 @@ public class HttpConnUtils
 				if ( targetUrl == null )
 					throw new RuntimeException("Could not create target url for resourceUrl: " + currentUrl + " having location: " + location);
 
-				String lowerCaseTargetUrl = targetUrl.toLowerCase();
+				String lowerCaseTargetUrl = UrlUtils.getParsedUrl(targetUrl).getLowerCaseUrl();	// The parsed targetUrl is re-used for its domain, below.
 				if ( (calledForPageUrl && UrlTypeChecker.shouldNotAcceptPageUrl(targetUrl, lowerCaseTargetUrl))	// Redirecting a pageUrl.
 						|| (!calledForPageUrl && UrlTypeChecker.shouldNotAcceptInternalLink(targetUrl, lowerCaseTargetUrl)) )	// Redirecting an internalPageLink.
 					throw new RuntimeException("Url: \"" + initialUrl + "\" was prevented to redirect to the unwanted location: \"" + targetUrl + "\", after receiving an \"HTTP " + responseCode + "\" Redirect Code, in redirection-number: " + curRedirectsNum);
@@ -532,13 +546,14 @@ public class HttpConnUtils
 				}
 
 				String tempTargetUrl = targetUrl;
-				if ( !targetUrl.contains("#/") && (targetUrl = URLCanonicalizer.getCanonicalURL(targetUrl, null, StandardCharsets.UTF_8)) == null )
+				if ( !targetUrl.contains("#/") && (targetUrl = UrlCanonicalizer.getCanonicalUrl(targetUrl, null)) == null )
 					throw new RuntimeException("Could not canonicalize target url: " + tempTargetUrl);	// Don't let it continue.
 
 				//ConnSupportUtils.printRedirectDebugInfo(currentUrl, location, targetUrl, responseCode, curRedirectsNum);
 
 				if ( UrlUtils.docOrDatasetUrlsWithIDs.containsKey(targetUrl) ) {	// If we got into an already-found docUrl, log it and return.
-					ConnSupportUtils.handleReCrossedDocUrl(urlId, sourceUrl, pageUrl, targetUrl, logger, calledForPageUrl);
+					if ( claimDocUrl() )	// Otherwise, another docUrl was already logged for this page.
+						ConnSupportUtils.handleReCrossedDocUrl(urlId, sourceUrl, pageUrl, targetUrl, logger, calledForPageUrl);
 					throw new AlreadyFoundDocUrlException();
 				}
 
@@ -0,0 +1,262 @@
+package eu.openaire.publications_retriever.util.http;
+
+import eu.openaire.publications_retriever.PublicationsRetriever;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class provides a shared and tuned "SSLContext", with a large session-cache, so that the connections to the same HTTPS-publishers resume their TLS-sessions,
+ * instead of doing a full handshake every time. It also counts the full and resumed handshakes, in order to estimate the time saved.
+ * The handshakes are counted by the connecting thread, after the connection is made, by examining the session of the TLS-socket which this thread created (if any),
+ * instead of using a "HandshakeCompletedListener", for which the JDK starts a new thread on every handshake.
+ * Optionally, it can "warm-up" the TLS-sessions with the most frequent domains of the upcoming batch.
+ * @author Lampros Smyrnaios
+ */
+public class SSLUtils
+{
+	private static final Logger logger = LoggerFactory.getLogger(SSLUtils.class);
+
+	private static final int sessionCacheSize = 50000;	// Most of our traffic goes to a few hundred publishers, but we don't want their sessions to be evicted by the rest.
+	private static final int sessionTimeoutSecs = 86400;	// 24 hours
+
+	public static boolean shouldWarmUpTopDomains = false;	// When "true", the TLS-sessions with the top domains of each batch are opened, before the batch is processed. It's set by the "-warmUpTopDomains" argument.
+	public static int numOfTopDomainsToWarmUp = 50;
+	private static final int warmUpTimeout = 5000;	// 5 sec
+
+	public static final AtomicInteger numOfFullHandshakes = new AtomicInteger(0);
+	public static final AtomicInteger numOfResumedHandshakes = new AtomicInteger(0);
+	private static final AtomicLong totalFullHandshakesMillis = new AtomicLong(0);
+	private static final AtomicLong totalResumedHandshakesMillis = new AtomicLong(0);
+	public static final AtomicInteger numOfWarmedUpDomains = new AtomicInteger(0);
+
+	private static SSLSocketFactory sslSocketFactory = null;
+
+	private static final ThreadLocal<CreatedSocket> createdSockets = new ThreadLocal<>();	// The TLS-socket which was created by the current connection of each thread. It's not set for the reused "keep-alive" connections.
+
+
+	private static final class CreatedSocket
+	{
+		final SSLSocket socket;
+		final long creationTime;
+
+		CreatedSocket(SSLSocket socket, long creationTime) {
+			this.socket = socket;
+			this.creationTime = creationTime;
+		}
+	}
+
+	static {
+		try {
+			SSLContext sslContext = SSLContext.getInstance("TLS");
+			sslContext.init(null, null, null);	// Use the default key and trust managers.
+			SSLSessionContext clientSessionContext = sslContext.getClientSessionContext();
+			clientSessionContext.setSessionCacheSize(sessionCacheSize);
+			clientSessionContext.setSessionTimeout(sessionTimeoutSecs);
+			sslSocketFactory = new HandshakeTrackingSocketFactory(sslContext.getSocketFactory());
+		} catch (Exception e) {
+			logger.error("Could not create the shared \"SSLContext\", the default one will be used instead!", e);
+		}
+	}
+
+
+	/**
+	 * This method makes the given connection use the shared "SSLSocketFactory", if it's an HTTPS-connection.
+	 * Note that the same factory-instance must be used in all connections, in order for the "keep-alive" connections to be reused as well.
+	 * @param conn
+	 */
+	public static void setSharedSocketFactory(HttpURLConnection conn)
+	{
+		if ( (sslSocketFactory != null) && (conn instanceof HttpsURLConnection) )
+			((HttpsURLConnection) conn).setSSLSocketFactory(sslSocketFactory);
+	}
+
+
+	/**
+	 * This method should be called before a connection is made, so that only a TLS-socket created by that connection is examined by the "recordHandshake()".
+	 */
+	public static void forgetCreatedSocket()
+	{
+		createdSockets.remove();
+	}
+
+
+	/**
+	 * This method should be called after a connection is made. If the current thread created a new TLS-socket for it, then its handshake is counted as a full or a resumed one.
+	 * Nothing is counted when the connection reused a "keep-alive" connection, as no handshake was made.
+	 */
+	public static void recordHandshake()
+	{
+		CreatedSocket createdSocket = createdSockets.get();
+		if ( createdSocket == null )
+			return;
+		createdSockets.remove();
+
+		SSLSession session = createdSocket.socket.getSession();	// The handshake is already completed, so this does not block.
+		if ( (session == null) || !session.isValid() )
+			return;	// The handshake failed.
+		long handshakeMillis = System.currentTimeMillis() - createdSocket.creationTime;
+		if ( session.getCreationTime() < createdSocket.creationTime ) {	// A resumed session keeps the creation-time of the original one.
+			numOfResumedHandshakes.incrementAndGet();
+			totalResumedHandshakesMillis.addAndGet(handshakeMillis);
+		} else {
+			numOfFullHandshakes.incrementAndGet();
+			totalFullHandshakesMillis.addAndGet(handshakeMillis);
+		}
+	}
+
+
+	/**
+	 * This method opens TLS-sessions with the most frequent HTTPS-domains of the given urls, in parallel, so that the actual connections resume those sessions.
+	 * Only the TLS-handshake is made, no HTTP-request is sent, so the politeness-delay is not applied.
+	 * @param urls
+	 */
+	public static void warmUpTopDomains(Collection<String> urls)
+	{
+		if ( sslSocketFactory == null )
+			return;
+
+		HashMap<String, Integer> hostsWithCounts = new HashMap<>();
+		for ( String url : urls ) {
+			if ( !url.startsWith("https://", 0) )
+				continue;
+			try {
+				String host = new URL(url).getHost().toLowerCase();
+				if ( !host.isEmpty() )
+					hostsWithCounts.merge(host, 1, Integer::sum);
+			} catch (Exception ignored) {}	// This url will be handled (and logged) later.
+		}
+
+		List<Map.Entry<String, Integer>> hostEntries = new ArrayList<>(hostsWithCounts.entrySet());
+		hostEntries.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
+
+		List<Callable<Boolean>> callableTasks = new ArrayList<>(numOfTopDomainsToWarmUp);
+		for ( Map.Entry<String, Integer> hostEntry : hostEntries ) {
+			if ( callableTasks.size() >= numOfTopDomainsToWarmUp )
+				break;
+			if ( hostEntry.getValue() < 2 )
+				break;	// There is no benefit for the domains appearing only once in the batch.
+			String host = hostEntry.getKey();
+			String domainStr = host.startsWith("www.", 0) ? host.substring(4) : host;
+			if ( HttpConnUtils.blacklistedDomains.contains(domainStr) || DomainCircuitBreaker.isOpen(domainStr) )
+				continue;
+			callableTasks.add(() -> warmUpHost(host));
+		}
+		if ( callableTasks.isEmpty() )
+			return;
+
+		try {
+			PublicationsRetriever.executor.invokeAll(callableTasks, (warmUpTimeout * 2L), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ie) {
+			logger.warn("The main thread was interrupted while warming-up the TLS-sessions: " + ie.getMessage());
+		}
+	}
+
+
+	private static boolean warmUpHost(String host)
+	{
+		try ( Socket plainSocket = new Socket() ) {
+			plainSocket.connect(new InetSocketAddress(host, 443), warmUpTimeout);
+			plainSocket.setSoTimeout(warmUpTimeout);
+			try ( SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(plainSocket, host, 443, false) ) {	// The host is given, in order to use the "SNI" extension and to have the session cached for this host.
+				sslSocket.startHandshake();
+				recordHandshake();
+			}
+			numOfWarmedUpDomains.incrementAndGet();
+			return true;
+		} catch (Exception e) {
+			forgetCreatedSocket();
+			logger.debug("Could not warm-up the TLS-session with host: \"" + host + "\": " + e.getMessage());	// The actual connection will handle any problem.
+			return false;
+		}
+	}
+
+
+	public static void logStatistics()
+	{
+		int fullHandshakes = numOfFullHandshakes.get();
+		int resumedHandshakes = numOfResumedHandshakes.get();
+		String message = "The TLS-handshakes were " + (fullHandshakes + resumedHandshakes) + ", from which " + resumedHandshakes + " resumed a cached session.";
+		if ( (fullHandshakes > 0) && (resumedHandshakes > 0) ) {
+			long avgFullMillis = totalFullHandshakesMillis.get() / fullHandshakes;
+			long avgResumedMillis = totalResumedHandshakesMillis.get() / resumedHandshakes;
+			message += " The average full-handshake took " + avgFullMillis + " ms and the average resumed-handshake took " + avgResumedMillis + " ms (including the TCP-connection), so about " + (((avgFullMillis - avgResumedMillis) * resumedHandshakes) / 1000) + " seconds were saved.";
+		}
+		if ( shouldWarmUpTopDomains )
+			message += " The TLS-sessions of " + numOfWarmedUpDomains.get() + " domains were warmed-up.";
+		logger.debug(message);
+	}
+
+
+	/**
+	 * This factory delegates the socket-creation to the factory of the shared "SSLContext" and keeps the created TLS-socket of each thread, for the "recordHandshake()".
+	 */
+	private static class HandshakeTrackingSocketFactory extends SSLSocketFactory
+	{
+		private final SSLSocketFactory delegate;
+
+		HandshakeTrackingSocketFactory(SSLSocketFactory delegate) {
+			this.delegate = delegate;
+		}
+
+		private Socket track(Socket socket) {
+			if ( socket instanceof SSLSocket )
+				createdSockets.set(new CreatedSocket((SSLSocket) socket, System.currentTimeMillis()));
+			return socket;
+		}
+
+		@Override
+		public String[] getDefaultCipherSuites() {
+			return delegate.getDefaultCipherSuites();
+		}
+
+		@Override
+		public String[] getSupportedCipherSuites() {
+			return delegate.getSupportedCipherSuites();
+		}
+
+		@Override
+		public Socket createSocket() throws IOException {
+			return track(delegate.createSocket());
+		}
+
+		@Override
+		public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+			return track(delegate.createSocket(socket, host, port, autoClose));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return track(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			return track(delegate.createSocket(host, port, localHost, localPort));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			return track(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+			return track(delegate.createSocket(address, port, localAddress, localPort));
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+package eu.openaire.publications_retriever.util.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+
+/**
+ * This class counts the times each item (like a domain or a path) did something, for example, the times a domain gave a docUrl, or the times a path returned HTTP 403.
+ * The counters are kept in a "ConcurrentHashMap", so the threads counting different items never wait for each other and each increment is atomic,
+ * unlike the "containsKey()-get()-put()" sequence on a "Hashtable", which took its monitor three times and could lose increments.
+ * @author Lampros Smyrnaios
+ */
+public class TimesCounter<K>
+{
+	private final ConcurrentHashMap<K, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+
+	/**
+	 * @return The times counted for the item, including this one.
+	 */
+	public int incrementAndGet(K item)
+	{
+		AtomicInteger counter = counters.get(item);
+		if ( counter == null )	// Avoid the locking of the "computeIfAbsent()", when the item is already counted.
+			counter = counters.computeIfAbsent(item, k -> new AtomicInteger(0));
+		return counter.incrementAndGet();
+	}
+
+
+	/**
+	 * This method counts one more time for the item and if its times exceed the "threshold", it calls the given action, with the item and its times.
+	 * If the action returns "true" (for example, the item was blocked), then the counter of the item is removed, as it's not needed anymore.
+	 * Otherwise, the action will be called again, on the next time counted for this item.
+	 * @param item
+	 * @param threshold
+	 * @param actionOnThresholdExceeded
+	 * @return "true", if the action was called and it returned "true", otherwise, "false".
+	 */
+	public boolean incrementAndCheckThreshold(K item, int threshold, BiPredicate<K, Integer> actionOnThresholdExceeded)
+	{
+		int times = incrementAndGet(item);
+		if ( (times > threshold) && actionOnThresholdExceeded.test(item, times) ) {
+			counters.remove(item);
+			return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * @return The times counted for the item, or "0", if it was never counted (or its counter was removed).
+	 */
+	public int get(K item)
+	{
+		AtomicInteger counter = counters.get(item);
+		return (counter != null) ? counter.get() : 0;
+	}
+
+
+	public void remove(K item)
+	{
+		counters.remove(item);
+	}
+
+
+	public int size()
+	{
+		return counters.size();
+	}
+
+
+	/**
+	 * @return A copy of the counters, for the statistics.
+	 */
+	public Map<K, Integer> getSnapshot()
+	{
+		Map<K, Integer> snapshot = new HashMap<>(counters.size());
+		for ( Map.Entry<K, AtomicInteger> entry : counters.entrySet() )
+			snapshot.put(entry.getKey(), entry.getValue().get());
+		return snapshot;
+	}
+}
@@ -0,0 +1,146 @@
+package eu.openaire.publications_retriever.util.url;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * This class decides whether a url is a possible docUrl or datasetUrl, giving the same verdicts with the "LoaderAndChecker.DOC_URL_FILTER" and the "LoaderAndChecker.DATASET_URL_FILTER",
+ * without their backtracking, which gets expensive on long urls (the leading ".+" is tried at every position of the url, for each alternative).
+ * The doc-keywords may appear anywhere inside the url (like "getpdf" or "/downloads/"), so they are searched with a single pass of a "LiteralsMatcher".
+ * The dataset-formats are only matched at the end of the url (see the note below), so only its endings are looked up in a hash-table.
+ * All the methods expect the urls in lowerCase, like the regexes do.
+ * @author Lampros Smyrnaios
+ */
+public class DocOrDatasetUrlClassifier
+{
+	// The alternatives of the "DOC_URL_FILTER". Its "cgi/viewcontent.cgi?" is checked separately, as its "dot" matches any character and the "i" is optional.
+	private static final String[] docKeywords = {"pdf", "download", "/doc", "document", "/file", "?file", "&file", "/fulltext", "attachment", "/paper", "viewfile", "viewdoc", "/get", "cgi/viewcontent"};
+	private static final long VIEW_CONTENT_KEYWORD_MASK = (1L << (docKeywords.length -1));
+	private static final LiteralsMatcher docKeywordsMatcher = new LiteralsMatcher(docKeywords);
+
+	// Note that the "dataset_formats" are not grouped inside the "DATASET_URL_FILTER", so each format is a separate alternative of the regex:
+	// only the "xls" needs a "." or a "format=" before it, only the "values" may be followed by a query, and all the other formats just need to be at the end of the url.
+	// The verdicts are kept the same, the regex can be fixed separately.
+	private static final Set<String> datasetFormats = new HashSet<>(Arrays.asList("csv", "tsv", "tab", "json", "geojson", "xml", "ods", "ddi", "rdf", "zip", "gzip", "rar", "tar",
+			"7z", "xz", "tgz", "smi", "por", "ascii", "dta", "sav", "dat", "txt", "tfw", "dwg", "svg", "sas7bdat", "spss", "sas", "stata",
+			"sql", "sqlite", "mysql", "mysqlite", "postgresql", "postgresqlite", "bigquery", "shp", "shx", "sbx", "sbn", "prj", "dbf", "mdb", "accdb", "mif", "mat", "pcd", "bt",
+			"trs", "opj", "jcamp", "fcs", "fas", "fasta", "keys"));	// The formats of a fixed form, which are looked up at the end of the url.
+	private static final int MAX_DATASET_FORMAT_LENGTH = 13;	// The "postgresqlite".
+	private static final String[] datasetFormatsWithOptionalNumber = {"gz", "bz", "n", "ns", "nc", "hdf"};	// Like "gz", "bz2", "nc4" and "hdf5".
+
+
+	/**
+	 * @param lowerCaseUrl
+	 * @return The same verdict as "LoaderAndChecker.DOC_URL_FILTER.matcher(lowerCaseUrl).matches()".
+	 */
+	public static boolean isPossibleDocUrl(String lowerCaseUrl)
+	{
+		long keywordMatches = docKeywordsMatcher.findMatches(lowerCaseUrl);
+		if ( (keywordMatches == 0) || hasLineTerminator(lowerCaseUrl) )	// The regex uses the "dot", which does not match the line-terminators.
+			return false;
+
+		for ( int i = 0; i < docKeywords.length; i++ )
+		{
+			if ( (keywordMatches & (1L << i)) == 0 )
+				continue;
+			if ( (1L << i) == VIEW_CONTENT_KEYWORD_MASK ) {
+				if ( hasViewContentKeyword(lowerCaseUrl) )
+					return true;
+			}
+			else if ( !lowerCaseUrl.startsWith(docKeywords[i]) || (lowerCaseUrl.indexOf(docKeywords[i], 1) != -1) )	// The regex requires at least one character before the keyword.
+				return true;
+		}
+		return false;
+	}
+
+
+	private static boolean hasViewContentKeyword(String lowerCaseUrl)
+	{
+		String keyword = docKeywords[docKeywords.length -1];
+		int index = 0;
+		while ( (index = lowerCaseUrl.indexOf(keyword, Math.max(index, 1))) != -1 ) {
+			if ( lowerCaseUrl.startsWith("cg", (index + keyword.length() + 1)) )	// Any character, followed by "cg" (the "i" is optional).
+				return true;
+			index ++;
+		}
+		return false;
+	}
+
+
+	/**
+	 * @param lowerCaseUrl
+	 * @return The same verdict as "LoaderAndChecker.DATASET_URL_FILTER.matcher(lowerCaseUrl).matches()".
+	 */
+	public static boolean isPossibleDatasetUrl(String lowerCaseUrl)
+	{
+		int length = lowerCaseUrl.length();
+		if ( (length < 2) || hasLineTerminator(lowerCaseUrl) )
+			return false;
+
+		// All the matches need at least one character before them.
+		int index = lowerCaseUrl.indexOf("dataset", 1);
+		while ( index != -1 ) {
+			int afterIndex = index + 7;
+			if ( lowerCaseUrl.startsWith("/", afterIndex) || lowerCaseUrl.startsWith("s/", afterIndex) )
+				return true;
+			index = lowerCaseUrl.indexOf("dataset", (index + 1));
+		}
+
+		index = lowerCaseUrl.indexOf("values", 1);
+		while ( index != -1 ) {
+			int afterIndex = index + 6;
+			if ( (afterIndex == length) || ((lowerCaseUrl.charAt(afterIndex) == '?') && (afterIndex < (length -1))) )
+				return true;
+			index = lowerCaseUrl.indexOf("values", (index + 1));
+		}
+
+		for ( String xlsFormat : new String[] {"xls", "xlsx"} )
+			if ( lowerCaseUrl.endsWith(xlsFormat) ) {
+				int formatStart = length - xlsFormat.length();
+				if ( ((formatStart >= 2) && (lowerCaseUrl.charAt(formatStart -1) == '.')) || ((formatStart >= 8) && lowerCaseUrl.startsWith("format=", (formatStart -7))) )
+					return true;
+			}
+
+		// Look up the endings of the url, which may be a format of a fixed form.
+		for ( int formatStart = Math.max(1, (length - MAX_DATASET_FORMAT_LENGTH)); formatStart <= (length -2); formatStart++ )
+			if ( datasetFormats.contains(lowerCaseUrl.substring(formatStart)) )
+				return true;
+
+		int numberStart = length;
+		while ( (numberStart > 1) && (lowerCaseUrl.charAt(numberStart -1) >= '0') && (lowerCaseUrl.charAt(numberStart -1) <= '9') )
+			numberStart --;
+		for ( String format : datasetFormatsWithOptionalNumber )
+			if ( endsWithAt(lowerCaseUrl, format, numberStart) )
+				return true;
+		if ( (numberStart < length) && endsWithAt(lowerCaseUrl, "h", numberStart) )	// The "h" needs a number, like "h5".
+			return true;
+
+		int fStart = length;
+		while ( (fStart > 1) && (lowerCaseUrl.charAt(fStart -1) == 'f') )
+			fStart --;
+		return ((fStart < length) && endsWithAt(lowerCaseUrl, "ti", fStart));	// Like "tif" and "tiff".
+	}
+
+
+	/**
+	 * @return true, if the given format ends at the given index of the url, having at least one character before it.
+	 */
+	private static boolean endsWithAt(String lowerCaseUrl, String format, int end)
+	{
+		int start = end - format.length();
+		return ((start >= 1) && lowerCaseUrl.startsWith(format, start));
+	}
+
+
+	private static boolean hasLineTerminator(String str)
+	{
+		for ( int i = 0, length = str.length(); i < length; i++ ) {
+			char c = str.charAt(i);
+			if ( (c == '\n') || (c == '\r') || (c == '\u0085') || (c == '\u2028') || (c == '\u2029') )
+				return true;
+		}
+		return false;
+	}
+}
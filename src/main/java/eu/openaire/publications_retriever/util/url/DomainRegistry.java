@@ -0,0 +1,256 @@
+package eu.openaire.publications_retriever.util.url;
+
+import eu.openaire.publications_retriever.util.http.DomainConnectionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * This class assigns a dense int-ID to each domain, the first time a url of that domain is parsed, and it keeps the per-domain state in arrays indexed by that ID,
+ * instead of having each piece of state in a different map, keyed by the domain-string.
+ * The state is kept in chunks of arrays (a struct-of-arrays), which are allocated when the first ID of each chunk is assigned, so they never need to be copied.
+ * The domain-string, its registrable domain (as another ID), its flags (like "blocked"), its docUrl-hits and its politeness-data, are all found by the same ID.
+ * If the registry gets full, the new domains get no ID ("-1") and they have no state: they are never considered blocked, their hits are not counted and they get new politeness-data in each connection.
+ * @author Lampros Smyrnaios
+ */
+public class DomainRegistry
+{
+	private static final Logger logger = LoggerFactory.getLogger(DomainRegistry.class);
+
+	public static final int FLAG_BLOCKED = 1;	// The domain is blocked, see the "HttpConnUtils.blacklistedDomains".
+	public static final int FLAG_BLOCKED_FROM_MLA = 2;	// The domain is not compatible with the "MachineLearning".
+	public static final int FLAG_SUPPORTS_HTTPS = 4;	// The domain redirects from "http" to "https", so the offline-redirection can be used.
+
+	private static final int CHUNK_SIZE_BITS = 10;
+	private static final int CHUNK_SIZE = (1 << CHUNK_SIZE_BITS);	// 1024 domains per chunk.
+	private static final int MAX_NUM_OF_CHUNKS = (1 << 16);
+	private static final int MAX_NUM_OF_IDS = (MAX_NUM_OF_CHUNKS * CHUNK_SIZE);	// Up to 64 million domains.
+
+	private static final ConcurrentHashMap<String, Integer> domainIds = new ConcurrentHashMap<>();
+	private static final AtomicInteger nextId = new AtomicInteger(0);
+	private static final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(MAX_NUM_OF_CHUNKS);
+	private static final AtomicBoolean wasFullRegistryLogged = new AtomicBoolean(false);
+
+
+	private static final class Chunk
+	{
+		final String[] domains = new String[CHUNK_SIZE];	// Written once, before the ID is published through the "domainIds".
+		final AtomicIntegerArray registrableDomainIds = new AtomicIntegerArray(CHUNK_SIZE);	// The ID plus one, so that the "0" means "not found yet".
+		final AtomicIntegerArray flags = new AtomicIntegerArray(CHUNK_SIZE);
+		final AtomicIntegerArray hits = new AtomicIntegerArray(CHUNK_SIZE);	// The times the domain led to a docUrl.
+		final AtomicReferenceArray<DomainConnectionData> connectionData = new AtomicReferenceArray<>(CHUNK_SIZE);	// It's used only for the registrable domains.
+	}
+
+
+	/**
+	 * @param domain (in lowerCase, like the "UrlUtils.getDomainStr()" returns it)
+	 * @return The ID of the domain, which is assigned now, if this is the first time the domain is met, or "-1", if the registry is full.
+	 */
+	public static int getId(String domain)
+	{
+		Integer id = domainIds.get(domain);	// Avoid the locking of the "computeIfAbsent()", for the known domains.
+		if ( id == null )
+			id = domainIds.computeIfAbsent(domain, DomainRegistry::assignId);	// When the registry is full, it returns "null" and nothing is stored.
+		return (id != null) ? id : -1;
+	}
+
+
+	/**
+	 * @return The ID of the domain, or "-1", if the domain was never met, so it has no state.
+	 */
+	public static int getExistingId(String domain)
+	{
+		Integer id = domainIds.get(domain);
+		return (id != null) ? id : -1;
+	}
+
+
+	private static Integer assignId(String domain)
+	{
+		int id = nextId.getAndUpdate(currentId -> (currentId < MAX_NUM_OF_IDS) ? (currentId + 1) : currentId);	// Do not go past the last ID, so that the loops over the IDs stay within the chunks.
+		if ( id >= MAX_NUM_OF_IDS ) {
+			if ( wasFullRegistryLogged.compareAndSet(false, true) )
+				logger.warn("The \"DomainRegistry\" is full, with " + MAX_NUM_OF_IDS + " domains. The new domains, like \"" + domain + "\", will be handled without their per-domain state.");
+			return null;
+		}
+		int chunkIndex = (id >>> CHUNK_SIZE_BITS);
+		Chunk chunk = chunks.get(chunkIndex);
+		if ( chunk == null ) {
+			chunks.compareAndSet(chunkIndex, null, new Chunk());	// Another thread may have created it, in the meantime.
+			chunk = chunks.get(chunkIndex);
+		}
+		chunk.domains[id & (CHUNK_SIZE -1)] = domain;
+		return id;
+	}
+
+
+	private static Chunk getChunk(int id)
+	{
+		return chunks.get(id >>> CHUNK_SIZE_BITS);
+	}
+
+
+	public static String getDomain(int id)
+	{
+		return getChunk(id).domains[id & (CHUNK_SIZE -1)];
+	}
+
+
+	public static int getNumOfDomains()
+	{
+		return domainIds.size();
+	}
+
+
+	/**
+	 * The registrable domain is found only once for each domain, the first time it's needed (outside the "computeIfAbsent()" of the "getId()", which cannot be called recursively).
+	 * @return The ID of the registrable domain of the given domain (like the "PublicSuffixes.getRegistrableDomain()" returns it), or "-1", if the registrable domain could not get an ID, as the registry is full.
+	 */
+	public static int getRegistrableDomainId(int id)
+	{
+		Chunk chunk = getChunk(id);
+		int index = (id & (CHUNK_SIZE -1));
+		int registrableDomainIdPlusOne = chunk.registrableDomainIds.get(index);
+		if ( registrableDomainIdPlusOne == 0 ) {	// Two threads may find it at the same time, but they will find the same ID.
+			String domain = chunk.domains[index];
+			String registrableDomain = PublicSuffixes.getRegistrableDomain(domain);
+			registrableDomainIdPlusOne = (registrableDomain.equals(domain) ? id : getId(registrableDomain)) + 1;
+			chunk.registrableDomainIds.set(index, registrableDomainIdPlusOne);	// If it got no ID, the "0" is kept, so it will be searched again.
+		}
+		return (registrableDomainIdPlusOne - 1);
+	}
+
+
+	public static boolean hasFlag(int id, int flag)
+	{
+		return ((getChunk(id).flags.get(id & (CHUNK_SIZE -1)) & flag) != 0);
+	}
+
+
+	/**
+	 * @return "true", if the flag was not set before.
+	 */
+	public static boolean setFlag(int id, int flag)
+	{
+		AtomicIntegerArray flags = getChunk(id).flags;
+		int index = (id & (CHUNK_SIZE -1));
+		int currentFlags;
+		do {
+			currentFlags = flags.get(index);
+			if ( (currentFlags & flag) != 0 )
+				return false;
+		} while ( !flags.compareAndSet(index, currentFlags, (currentFlags | flag)) );
+		return true;
+	}
+
+
+	/**
+	 * @return The docUrl-hits of the domain, including this one, or "0", if the domain has no ID, as the registry is full.
+	 */
+	public static int incrementHits(String domain)
+	{
+		int id = getId(domain);
+		if ( id == -1 )
+			return 0;
+		return getChunk(id).hits.incrementAndGet(id & (CHUNK_SIZE -1));
+	}
+
+
+	/**
+	 * @return The docUrl-hits of the domain, or "0", if it never led to a docUrl.
+	 */
+	public static int getHits(String domain)
+	{
+		int id = getExistingId(domain);
+		return (id != -1) ? getChunk(id).hits.get(id & (CHUNK_SIZE -1)) : 0;
+	}
+
+
+	/**
+	 * This method returns the politeness-data of the registrable domain of the given domain, so that the sub-domains of the same site, share the same data.
+	 * @param domain
+	 * @param createdData (it's filled with "true" if the data was created now, which means that this is the first connection to this registrable domain)
+	 * @return The politeness-data. If the registry is full, new data is returned, which is not kept.
+	 */
+	public static DomainConnectionData getConnectionData(String domain, boolean[] createdData)
+	{
+		int id = getId(domain);
+		int registrableDomainId = (id != -1) ? getRegistrableDomainId(id) : -1;
+		if ( registrableDomainId == -1 ) {
+			createdData[0] = true;
+			return new DomainConnectionData();
+		}
+		AtomicReferenceArray<DomainConnectionData> connectionData = getChunk(registrableDomainId).connectionData;
+		int index = (registrableDomainId & (CHUNK_SIZE -1));
+		DomainConnectionData domainConnectionData = connectionData.get(index);
+		if ( domainConnectionData == null ) {
+			DomainConnectionData newData = new DomainConnectionData();
+			createdData[0] = connectionData.compareAndSet(index, null, newData);	// Only one thread wins, the rest use the winner's data.
+			domainConnectionData = connectionData.get(index);
+		}
+		return domainConnectionData;
+	}
+
+
+	/**
+	 * @return The IDs of the domains having the given flag.
+	 */
+	static int[] getIdsWithFlag(int flag)
+	{
+		int numOfIds = nextId.get();
+		int[] ids = new int[numOfIds];
+		int numOfIdsWithFlag = 0;
+		for ( int id = 0; id < numOfIds; id++ ) {
+			Chunk chunk = getChunk(id);
+			if ( (chunk != null) && (chunk.domains[id & (CHUNK_SIZE -1)] != null) && ((chunk.flags.get(id & (CHUNK_SIZE -1)) & flag) != 0) )
+				ids[numOfIdsWithFlag ++] = id;
+		}
+		int[] idsWithFlag = new int[numOfIdsWithFlag];
+		System.arraycopy(ids, 0, idsWithFlag, 0, numOfIdsWithFlag);
+		return idsWithFlag;
+	}
+
+
+	/**
+	 * @return The domains which led to docUrls, along with their hits, for the statistics.
+	 */
+	public static Map<String, Integer> getDomainsAndHits()
+	{
+		Map<String, Integer> domainsAndHits = new HashMap<>();
+		for ( int id = 0, numOfIds = nextId.get(); id < numOfIds; id++ ) {
+			Chunk chunk = getChunk(id);
+			int index = (id & (CHUNK_SIZE -1));
+			int hits;
+			if ( (chunk != null) && (chunk.domains[index] != null) && ((hits = chunk.hits.get(index)) > 0) )
+				domainsAndHits.put(chunk.domains[index], hits);
+		}
+		return domainsAndHits;
+	}
+
+
+	/**
+	 * @return The number of the registrable domains (sites), to which the domains which led to docUrls belong.
+	 */
+	public static int getNumOfRegistrableDomainsWithHits()
+	{
+		Set<Integer> registrableDomainIds = new HashSet<>();
+		for ( int id = 0, numOfIds = nextId.get(); id < numOfIds; id++ ) {
+			Chunk chunk = getChunk(id);
+			int index = (id & (CHUNK_SIZE -1));
+			int registrableDomainId;
+			if ( (chunk != null) && (chunk.domains[index] != null) && (chunk.hits.get(index) > 0) && ((registrableDomainId = getRegistrableDomainId(id)) != -1) )
+				registrableDomainIds.add(registrableDomainId);
+		}
+		return registrableDomainIds.size();
+	}
+}
@@ -0,0 +1,82 @@
+package eu.openaire.publications_retriever.util.url;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class is a set of domains, which is kept as a flag of each domain in the "DomainRegistry", instead of a separate map of domain-strings.
+ * The "contains()" of a domain which was never met, does not register it. The domains cannot be removed, as no caller needs that.
+ * @author Lampros Smyrnaios
+ */
+public class DomainSet extends AbstractSet<String>
+{
+	private final int flag;
+	private final AtomicInteger size = new AtomicInteger(0);
+
+
+	public DomainSet(int flag)
+	{
+		this.flag = flag;
+	}
+
+
+	@Override
+	public boolean add(String domain)
+	{
+		int id = DomainRegistry.getId(domain);
+		if ( id == -1 )
+			return false;	// The registry is full, so this domain cannot be kept in the set.
+		if ( DomainRegistry.setFlag(id, flag) ) {
+			size.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+
+	@Override
+	public boolean contains(Object domain)
+	{
+		if ( !(domain instanceof String) )
+			return false;
+		int id = DomainRegistry.getExistingId((String) domain);
+		return ((id != -1) && DomainRegistry.hasFlag(id, flag));
+	}
+
+
+	@Override
+	public int size()
+	{
+		return size.get();
+	}
+
+
+	/**
+	 * @return An iterator over the domains which were in the set when this method was called.
+	 */
+	@Override
+	public Iterator<String> iterator()
+	{
+		int[] ids = DomainRegistry.getIdsWithFlag(flag);
+		return new Iterator<String>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return (index < ids.length);
+			}
+
+			@Override
+			public String next()
+			{
+				if ( index >= ids.length )
+					throw new NoSuchElementException();
+				return DomainRegistry.getDomain(ids[index ++]);
+			}
+		};
+	}
+}
@@ -0,0 +1,36 @@
+package eu.openaire.publications_retriever.util.url;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * This set keeps the urls themselves, in a "ConcurrentHashMap". It has no false-positives, but it needs about 150 bytes of heap per url.
+ * @author Lampros Smyrnaios
+ */
+public class HeapUrlSet implements UrlSet
+{
+	private final Set<String> urls = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+
+	@Override
+	public boolean add(String url) {
+		return urls.add(url);
+	}
+
+	@Override
+	public boolean contains(String url) {
+		return urls.contains(url);
+	}
+
+	@Override
+	public long size() {
+		return urls.size();
+	}
+
+	@Override
+	public String getDescription() {
+		return "a set of " + urls.size() + " urls, in the heap";
+	}
+}
@@ -0,0 +1,111 @@
+package eu.openaire.publications_retriever.util.url;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * This class finds which of a fixed set of literals are contained in a string, with a single pass over it, using an "Aho-Corasick" automaton.
+ * It replaces a chain of "String.contains()" calls, which scans the string once for each literal.
+ * The literals are expected in lowerCase ASCII (like the rules of the "UrlTypeChecker"), so the automaton is a dense table over the ASCII characters and any other character leads back to the root-state.
+ * Up to 64 literals are supported, as the matches are returned in a bit-mask, where the bit "i" is set, when the literal with index "i" is contained.
+ * @author Lampros Smyrnaios
+ */
+public class LiteralsMatcher
+{
+	private static final int ALPHABET_SIZE = 128;
+
+	private final int[][] transitions;	// The "goto"-function, with the "failure"-links already applied, so each character needs exactly one lookup.
+	private final long[] outputs;	// The literals which end at each state, including those of its failure-states.
+
+
+	public LiteralsMatcher(String... literals)
+	{
+		if ( literals.length > 64 )
+			throw new IllegalArgumentException("Up to 64 literals are supported, not " + literals.length + ".");
+
+		// Build the trie of the literals.
+		ArrayList<int[]> trie = new ArrayList<>();
+		ArrayList<Long> trieOutputs = new ArrayList<>();
+		trie.add(newState());
+		trieOutputs.add(0L);
+		for ( int i = 0; i < literals.length; i++ )
+		{
+			String literal = literals[i];
+			if ( literal.isEmpty() )
+				throw new IllegalArgumentException("The literal with index " + i + " is empty.");
+			int state = 0;
+			for ( int j = 0; j < literal.length(); j++ ) {
+				char c = literal.charAt(j);
+				if ( c >= ALPHABET_SIZE )
+					throw new IllegalArgumentException("The literal \"" + literal + "\" is not in ASCII.");
+				if ( trie.get(state)[c] == -1 ) {
+					trie.get(state)[c] = trie.size();
+					trie.add(newState());
+					trieOutputs.add(0L);
+				}
+				state = trie.get(state)[c];
+			}
+			trieOutputs.set(state, (trieOutputs.get(state) | (1L << i)));
+		}
+
+		int numOfStates = trie.size();
+		transitions = trie.toArray(new int[numOfStates][]);
+		outputs = new long[numOfStates];
+		for ( int i = 0; i < numOfStates; i++ )
+			outputs[i] = trieOutputs.get(i);
+
+		// Compute the failure-links in breadth-first order and turn the trie into a complete automaton.
+		int[] failures = new int[numOfStates];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for ( int c = 0; c < ALPHABET_SIZE; c++ ) {
+			int next = transitions[0][c];
+			if ( next == -1 )
+				transitions[0][c] = 0;
+			else {
+				failures[next] = 0;
+				queue.add(next);
+			}
+		}
+		while ( !queue.isEmpty() )
+		{
+			int state = queue.poll();
+			outputs[state] |= outputs[failures[state]];
+			for ( int c = 0; c < ALPHABET_SIZE; c++ ) {
+				int next = transitions[state][c];
+				if ( next == -1 )
+					transitions[state][c] = transitions[failures[state]][c];
+				else {
+					failures[next] = transitions[failures[state]][c];
+					queue.add(next);
+				}
+			}
+		}
+	}
+
+
+	private static int[] newState()
+	{
+		int[] state = new int[ALPHABET_SIZE];
+		Arrays.fill(state, -1);
+		return state;
+	}
+
+
+	/**
+	 * @param str
+	 * @return The bit-mask of the literals which are contained in the given string, or "0", if none is contained.
+	 */
+	public long findMatches(String str)
+	{
+		long matches = 0;
+		int state = 0;
+		for ( int i = 0, length = str.length(); i < length; i++ ) {
+			char c = str.charAt(i);
+			state = (c < ALPHABET_SIZE) ? transitions[state][c] : 0;
+			matches |= outputs[state];
+		}
+		return matches;
+	}
+}
@@ -1,16 +1,16 @@
 package eu.openaire.publications_retriever.util.url;
 
 import com.google.common.collect.HashMultimap;
-import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import eu.openaire.publications_retriever.PublicationsRetriever;
 import eu.openaire.publications_retriever.util.file.FileUtils;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import eu.openaire.publications_retriever.util.http.SSLUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
@@ -32,6 +32,7 @@ public class LoaderAndChecker
 	
 	public static final Pattern DOC_URL_FILTER = Pattern.compile(".+(pdf|download|/doc|document|(?:/|[?]|&)file|/fulltext|attachment|/paper|viewfile|viewdoc|/get|cgi/viewcontent.cgi?).*");
 	// "DOC_URL_FILTER" works for lowerCase Strings (we make sure they are in lowerCase before we check).
+	// The urls are checked with the "DocOrDatasetUrlClassifier", which gives the same verdicts as the "DOC_URL_FILTER" and the "DATASET_URL_FILTER", without their backtracking. These regexes are its reference.
 	// Note that we still need to check if it's an alive link and if it's actually a docUrl (though it's mimeType).
 
 	private static final String dataset_formats = "xls[x]?|[ct]sv|tab|(?:geo)?json|xml|ods|ddi|rdf|[g]?zip|[rt]ar|[7x]z|tgz|[gb]z[\\d]*|smi|por|ascii|dta|sav|dat|txt|ti[f]+|tfw|dwg"
@@ -97,6 +98,9 @@ public class LoaderAndChecker
 
 			logger.info("Batch counter: " + (++batchCount) + ((PublicationsRetriever.inputFileFullPath != null)? " | progress: " + PublicationsRetriever.df.format(((batchCount-1) * FileUtils.jsonBatchSize) * 100.0 / FileUtils.numOfLines) : "") + "% | every batch contains " + FileUtils.jsonBatchSize + " id-url pairs.");
 
+			if ( SSLUtils.shouldWarmUpTopDomains )
+				SSLUtils.warmUpTopDomains(loadedUrlGroup);
+
 			List<Callable<Boolean>> callableTasks = new ArrayList<>(loadedUrlGroup.size());
 
 			for ( String retrievedUrl : loadedUrlGroup )
@@ -108,7 +112,7 @@ public class LoaderAndChecker
 						return false;
 
 					String urlToCheck = retrievedUrlToCheck;
-					if ( !urlToCheck.contains("#/") && (urlToCheck = URLCanonicalizer.getCanonicalURL(retrievedUrlToCheck, null, StandardCharsets.UTF_8)) == null ) {
+					if ( !urlToCheck.contains("#/") && (urlToCheck = UrlCanonicalizer.getCanonicalUrl(retrievedUrlToCheck, null)) == null ) {
 						logger.warn("Could not canonicalize url: " + retrievedUrlToCheck);
 						UrlUtils.logOutputData("null", retrievedUrlToCheck, null, "unreachable", "Discarded at loading time, due to canonicalization's problems.", null, true, "true", "false", "false", "false");
 						LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -121,9 +125,9 @@ public class LoaderAndChecker
 					}
 
 					boolean isPossibleDocOrDatasetUrl = false;
-					String lowerCaseRetrievedUrl = retrievedUrlToCheck.toLowerCase();
-					if ( (retrieveDocuments && DOC_URL_FILTER.matcher(lowerCaseRetrievedUrl).matches())
-							|| (retrieveDatasets && DATASET_URL_FILTER.matcher(lowerCaseRetrievedUrl).matches()) )
+					String lowerCaseRetrievedUrl = UrlUtils.getParsedUrl(retrievedUrlToCheck).getLowerCaseUrl();	// It is usually already parsed inside "handleUrlChecks()".
+					if ( (retrieveDocuments && DocOrDatasetUrlClassifier.isPossibleDocUrl(lowerCaseRetrievedUrl))
+							|| (retrieveDatasets && DocOrDatasetUrlClassifier.isPossibleDatasetUrl(lowerCaseRetrievedUrl)) )
 						isPossibleDocOrDatasetUrl = true;
 
 					try {	// We sent the < null > into quotes to avoid causing NPEs in the thread-safe datastructures that do not support null input.
@@ -135,7 +139,7 @@ public class LoaderAndChecker
 							if ( (message != null) && message.contains("HTTP 404 Client Error") )
 								wasUrlValid = "false";
 						}
-						UrlUtils.logOutputData("null", retrievedUrlToCheck, null, "unreachable", "Discarded at loading time, due to connectivity problems.", null, true, "true", wasUrlValid, "false", "false");
+						UrlUtils.logOutputData("null", retrievedUrlToCheck, null, "unreachable", getCommentWithCircuitBreakerState("Discarded at loading time, due to connectivity problems.", retrievedUrlToCheck), null, true, "true", wasUrlValid, "false", "false");
 					}
 					return true;
 				});
@@ -173,6 +177,9 @@ public class LoaderAndChecker
 			numOfIDs += keys.size();
 			//logger.debug("numOfIDs = " + numOfIDs);	// DEBUG!
 
+			if ( SSLUtils.shouldWarmUpTopDomains )
+				SSLUtils.warmUpTopDomains(loadedIdUrlPairs.values());
+
 			List<Callable<Boolean>> callableTasks = new ArrayList<>(numOfIDs);
 
 			for ( String retrievedId : keys )
@@ -209,10 +216,10 @@ public class LoaderAndChecker
 							break;
 						}
 
-						String lowerCaseRetrievedUrl = retrievedUrl.toLowerCase();
+						String lowerCaseRetrievedUrl = UrlUtils.getParsedUrl(retrievedUrl).getLowerCaseUrl();	// It is usually already parsed inside "handleUrlChecks()".
 						// Check if it's a possible-DocUrl, if so, this is the only url which will be checked from this id-group, unless there's a canonicalization problem.
-						if ( (retrieveDocuments && DOC_URL_FILTER.matcher(lowerCaseRetrievedUrl).matches())
-							|| (retrieveDatasets && DATASET_URL_FILTER.matcher(lowerCaseRetrievedUrl).matches()) ) {
+						if ( (retrieveDocuments && DocOrDatasetUrlClassifier.isPossibleDocUrl(lowerCaseRetrievedUrl))
+							|| (retrieveDatasets && DocOrDatasetUrlClassifier.isPossibleDatasetUrl(lowerCaseRetrievedUrl)) ) {
 							//logger.debug("Possible docUrl or datasetUrl: " + retrievedUrl);
 							possibleDocOrDatasetUrl = retrievedUrl;
 							break;	// This is the absolute-best-case, we go and connect directly.
@@ -252,7 +259,7 @@ public class LoaderAndChecker
 					}
 
 					String sourceUrl = urlToCheck;	// Hold it here for the logging-messages.
-					if ( !sourceUrl.contains("#/") && (urlToCheck = URLCanonicalizer.getCanonicalURL(sourceUrl, null, StandardCharsets.UTF_8)) == null ) {
+					if ( !sourceUrl.contains("#/") && (urlToCheck = UrlCanonicalizer.getCanonicalUrl(sourceUrl, null)) == null ) {
 						logger.warn("Could not canonicalize url: " + sourceUrl);
 						UrlUtils.logOutputData(retrievedId, sourceUrl, null, "unreachable", "Discarded at loading time, due to canonicalization's problems.", null, true, "true", "false", "false", "false");
 						LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -277,7 +284,7 @@ public class LoaderAndChecker
 							if ( (message != null) && message.contains("HTTP 404 Client Error") )
 								wasUrlValid = "false";
 						}
-						UrlUtils.logOutputData(retrievedId, urlToCheck, null, "unreachable", "Discarded at loading time, due to connectivity problems.", null, true, "true", wasUrlValid, "false", "false");
+						UrlUtils.logOutputData(retrievedId, urlToCheck, null, "unreachable", getCommentWithCircuitBreakerState("Discarded at loading time, due to connectivity problems.", urlToCheck), null, true, "true", wasUrlValid, "false", "false");
 						// This url had connectivity problems.. but the rest might not, go check them out.
 						if ( !isSingleIdUrlPair ) {
 							loggedUrlsOfCurrentId.add(urlToCheck);
@@ -338,7 +345,7 @@ public class LoaderAndChecker
 
 					String urlToCheck = retrievedUrl;
 					String sourceUrl = urlToCheck;    // Hold it here for the logging-messages.
-					if ( !sourceUrl.contains("#/") && (urlToCheck = URLCanonicalizer.getCanonicalURL(sourceUrl, null, StandardCharsets.UTF_8)) == null ) {
+					if ( !sourceUrl.contains("#/") && (urlToCheck = UrlCanonicalizer.getCanonicalUrl(sourceUrl, null)) == null ) {
 						logger.warn("Could not canonicalize url: " + sourceUrl);
 						UrlUtils.logOutputData(retrievedId, sourceUrl, null, "unreachable", "Discarded at loading time, due to canonicalization's problems.", null, true, "true", "false", "false", "false");
 						LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -351,10 +358,10 @@ public class LoaderAndChecker
 					}
 
 					boolean isPossibleDocOrDatasetUrl = false;    // Used for specific connection settings.
-					String lowerCaseRetrievedUrl = retrievedUrl.toLowerCase();
+					String lowerCaseRetrievedUrl = UrlUtils.getParsedUrl(retrievedUrl).getLowerCaseUrl();	// It is usually already parsed inside "handleUrlChecks()".
 					// Check if it's a possible-DocUrl, if so, this info will be used for optimal web-connection later.
-					if ( (retrieveDocuments && DOC_URL_FILTER.matcher(lowerCaseRetrievedUrl).matches())
-							|| (retrieveDatasets && DATASET_URL_FILTER.matcher(lowerCaseRetrievedUrl).matches()) ) {
+					if ( (retrieveDocuments && DocOrDatasetUrlClassifier.isPossibleDocUrl(lowerCaseRetrievedUrl))
+							|| (retrieveDatasets && DocOrDatasetUrlClassifier.isPossibleDatasetUrl(lowerCaseRetrievedUrl)) ) {
 						//logger.debug("Possible docUrl or datasetUrl: " + retrievedUrl);
 						isPossibleDocOrDatasetUrl = true;
 					}
@@ -368,7 +375,7 @@ public class LoaderAndChecker
 							if ( (message != null) && message.contains("HTTP 404 Client Error") )
 								wasUrlValid = "false";
 						}
-						UrlUtils.logOutputData(retrievedId, urlToCheck, null, "unreachable", "Discarded at loading time, due to connectivity problems.", null, true, "true", wasUrlValid, "false", "false");
+						UrlUtils.logOutputData(retrievedId, urlToCheck, null, "unreachable", getCommentWithCircuitBreakerState("Discarded at loading time, due to connectivity problems.", urlToCheck), null, true, "true", wasUrlValid, "false", "false");
 					}
 					return true;
 				});
@@ -419,7 +426,7 @@ public class LoaderAndChecker
 
 						String urlToCheck = retrievedUrl;
 						String sourceUrl = urlToCheck;    // Hold it here for the logging-messages.
-						if ( !sourceUrl.contains("#/") && (urlToCheck = URLCanonicalizer.getCanonicalURL(sourceUrl, null, StandardCharsets.UTF_8)) == null ) {
+						if ( !sourceUrl.contains("#/") && (urlToCheck = UrlCanonicalizer.getCanonicalUrl(sourceUrl, null)) == null ) {
 							logger.warn("Could not canonicalize url: " + sourceUrl);
 							UrlUtils.logOutputData(retrievedId, sourceUrl, null, "unreachable", "Discarded at loading time, due to canonicalization's problems.", null, true, "true", "false", "false", "false");
 							LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -432,10 +439,10 @@ public class LoaderAndChecker
 						}
 
 						boolean isPossibleDocOrDatasetUrl = false;    // Used for specific connection settings.
-						String lowerCaseRetrievedUrl = retrievedUrl.toLowerCase();
+						String lowerCaseRetrievedUrl = UrlUtils.getParsedUrl(retrievedUrl).getLowerCaseUrl();	// It is usually already parsed inside "handleUrlChecks()".
 						// Check if it's a possible-DocUrl, if so, this info will be used for optimal web-connection later.
-						if ( (retrieveDocuments && DOC_URL_FILTER.matcher(lowerCaseRetrievedUrl).matches())
-								|| (retrieveDatasets && DATASET_URL_FILTER.matcher(lowerCaseRetrievedUrl).matches()) ) {
+						if ( (retrieveDocuments && DocOrDatasetUrlClassifier.isPossibleDocUrl(lowerCaseRetrievedUrl))
+								|| (retrieveDatasets && DocOrDatasetUrlClassifier.isPossibleDatasetUrl(lowerCaseRetrievedUrl)) ) {
 							//logger.debug("Possible docUrl or datasetUrl: " + retrievedUrl);
 							isPossibleDocOrDatasetUrl = true;
 						}
@@ -449,7 +456,7 @@ public class LoaderAndChecker
 								if ( (message != null) && message.contains("HTTP 404 Client Error") )
 									wasUrlValid = "false";
 							}
-							UrlUtils.logOutputData(retrievedId, urlToCheck, null, "unreachable", "Discarded at loading time, due to connectivity problems.", null, true, "true", wasUrlValid, "false", "false");
+							UrlUtils.logOutputData(retrievedId, urlToCheck, null, "unreachable", getCommentWithCircuitBreakerState("Discarded at loading time, due to connectivity problems.", urlToCheck), null, true, "true", wasUrlValid, "false", "false");
 						}
 					}
 					return true;
@@ -499,7 +506,7 @@ public class LoaderAndChecker
 		for ( String urlToCheck : retrievedUrlsOfThisId )
 		{
 			if ( loggedUrlsOfThisId.contains(urlToCheck)
-				|| ( ((urlToCheck = URLCanonicalizer.getCanonicalURL(urlToCheck, null, StandardCharsets.UTF_8)) == null)
+				|| ( ((urlToCheck = UrlCanonicalizer.getCanonicalUrl(urlToCheck, null)) == null)
 					|| loggedUrlsOfThisId.contains(urlToCheck) ))
 					continue;
 
@@ -517,7 +524,7 @@ public class LoaderAndChecker
 					if ( (message != null) && message.contains("HTTP 404 Client Error") )
 						wasUrlValid = "false";
 				}
-				UrlUtils.logOutputData(retrievedId, urlToCheck, null, "unreachable", "Discarded at loading time, in checkRemainingUrls(), due to connectivity problems.", null, true, "true", wasUrlValid, "false", "false");
+				UrlUtils.logOutputData(retrievedId, urlToCheck, null, "unreachable", getCommentWithCircuitBreakerState("Discarded at loading time, in checkRemainingUrls(), due to connectivity problems.", urlToCheck), null, true, "true", wasUrlValid, "false", "false");
 				if ( !isSingleIdUrlPair )
 					loggedUrlsOfThisId.add(urlToCheck);
 			}
@@ -526,6 +533,18 @@ public class LoaderAndChecker
 	}
 	
 	
+	/**
+	 * This method adds the state of the circuit-breaker of the url's domain (if it's not closed), to the given comment, which is written in the output.
+	 * @param comment
+	 * @param url
+	 * @return
+	 */
+	public static String getCommentWithCircuitBreakerState(String comment, String url)
+	{
+		return comment + DomainCircuitBreaker.getStateComment(UrlUtils.getDomainStr(url, null));
+	}
+
+
 	/**
 	 * This method checks if the given url is either of unwantedType or if it's a duplicate in the input, while removing the potential jsessionid from the url.
 	 * It returns the givenUrl without the jsessionidPart if this url is accepted for connection/crawling, otherwise, it returns "null".
@@ -552,6 +571,14 @@ public class LoaderAndChecker
 			return null;
 		}
 		
+		if ( DomainCircuitBreaker.isOpen(urlDomain) ) {	// The domain has temporary problems, avoid wasting time on it, until its cool-down period ends.
+			logger.debug("Avoid connecting to domain: \"" + urlDomain + "\" with url: " + retrievedUrl + ", as its circuit-breaker is open.");
+			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", "Discarded in 'LoaderAndChecker.handleUrlChecks()' method." + DomainCircuitBreaker.getStateComment(urlDomain), null, true, "true", "true", "false", "false");
+			if ( !useIdUrlPairs )
+				connProblematicUrls.incrementAndGet();
+			return null;
+		}
+
 		if ( ConnSupportUtils.checkIfPathIs403BlackListed(retrievedUrl, urlDomain) ) {	// The path-extraction is independent of the jsessionid-removal, so this gets executed before.
 			logger.debug("Preventing reaching 403ErrorCode with url: \"" + retrievedUrl + "\"!");
 			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", "Discarded in 'LoaderAndChecker.handleUrlChecks()' as it had a blackListed urlPath.", null, true, "true", "true", "false", "false");
@@ -560,7 +587,7 @@ public class LoaderAndChecker
 			return null;
 		}
 		
-		String lowerCaseUrl = retrievedUrl.toLowerCase();
+		String lowerCaseUrl = UrlUtils.getParsedUrl(retrievedUrl).getLowerCaseUrl();	// The url was parsed when its domain was extracted.
 		
 		if ( UrlTypeChecker.matchesUnwantedUrlType(urlId, retrievedUrl, lowerCaseUrl) )
 			return null;	// The url-logging is happening inside this method (per urlType).
@@ -633,7 +660,7 @@ public class LoaderAndChecker
 			// We have to make sure the "equal()" and the "contains()" succeed on the same-started-urls.
 			String tempUrl = retrievedUrl;
 			if ( !retrievedUrl.contains("#/") )
-				if ( (retrievedUrl = URLCanonicalizer.getCanonicalURL(retrievedUrl, null, StandardCharsets.UTF_8)) == null )
+				if ( (retrievedUrl = UrlCanonicalizer.getCanonicalUrl(retrievedUrl, null)) == null )
 					retrievedUrl = tempUrl;	// Make sure we keep it on canonicalization-failure.
 
 			if ( !loggedUrlsOfThisId.contains(retrievedUrl) )
@@ -0,0 +1,208 @@
+package eu.openaire.publications_retriever.util.url;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+
+
+/**
+ * This class holds the parts of a url, which are otherwise extracted with the "UrlUtils.URL_TRIPLE" regex, again and again, by each method which needs them.
+ * The "domain", "path" and "docId" are the same as the groups of the "URL_TRIPLE" (the "domain" is in lowerCase, like the "UrlUtils.getDomainStr()" returns it).
+ * They are "null", if the url does not match the "URL_TRIPLE" (or the related group is empty), so the callers can log the problem, like they did with the regex.
+ * The parsing is hand-written for the usual urls, while the few urls which need the backtracking of the regex to be resolved (like the ones having a url inside their query), are given to the "URL_TRIPLE" itself.
+ * The objects are immutable, so they can be shared between the methods handling the same url, instead of re-parsing it.
+ * @author Lampros Smyrnaios
+ */
+public class ParsedUrl
+{
+	public static AtomicInteger numOfUrlsParsedWithRegex = new AtomicInteger(0);
+
+	public final String url;
+	public final String scheme;	// Like "https", or "null", if there is no "://" in the url.
+	public final String host;	// The host as it appears in the url, with the "www." and without the user-info or the port.
+	public final String lowerCaseHost;
+	public final String domain;	// The group <2> of the "URL_TRIPLE", in lowerCase.
+	public final String path;	// The group <1> of the "URL_TRIPLE".
+	public final String docId;	// The group <3> of the "URL_TRIPLE".
+	public final String query;	// The part after the first "?" and before the anchor, or "null".
+	public final int domainId;	// The ID of the "domain" in the "DomainRegistry", or "-1", if there is no domain or if the registry is full.
+
+	private String lowerCaseUrl = null;	// It's created only if it's needed. The race of two threads creating it is harmless, as they create the same string.
+
+
+	private ParsedUrl(String url, String scheme, String host, String domain, String path, String docId, String query)
+	{
+		this.url = url;
+		this.scheme = scheme;
+		this.host = host;
+		this.lowerCaseHost = (host != null) ? host.toLowerCase() : null;
+		this.domainId = (domain != null) ? DomainRegistry.getId(domain) : -1;
+		this.domain = (this.domainId != -1) ? DomainRegistry.getDomain(this.domainId) : domain;	// Keep a single instance of each domain-string. If the registry is full, the given domain-string is kept.
+		this.path = path;
+		this.docId = docId;
+		this.query = query;
+	}
+
+
+	public String getLowerCaseUrl()
+	{
+		if ( lowerCaseUrl == null )
+			lowerCaseUrl = url.toLowerCase();
+		return lowerCaseUrl;
+	}
+
+
+	/**
+	 * @return The registrable domain of the "domain", like the "PublicSuffixes.getRegistrableDomain()" returns it, or "null", if there is no domain.
+	 */
+	public String getRegistrableDomain()
+	{
+		if ( domain == null )
+			return null;
+		int registrableDomainId = (domainId != -1) ? DomainRegistry.getRegistrableDomainId(domainId) : -1;
+		return (registrableDomainId != -1) ? DomainRegistry.getDomain(registrableDomainId) : PublicSuffixes.getRegistrableDomain(domain);	// The registry is full.
+	}
+
+
+	/**
+	 * @param url (not null)
+	 * @return The parsed url. Its "domain", "path" and "docId" are "null", when they could not be extracted.
+	 */
+	public static ParsedUrl parse(String url)
+	{
+		String scheme = null, host = null, query = null;
+		int schemeEnd = url.indexOf("://");
+		if ( schemeEnd != -1 ) {
+			scheme = url.substring(0, schemeEnd);
+			int hostStart = schemeEnd + 3;
+			int authorityEnd = indexOfAny(url, "/?#", hostStart);
+			int userInfoEnd = url.lastIndexOf('@', (authorityEnd -1));
+			if ( userInfoEnd >= hostStart )
+				hostStart = userInfoEnd + 1;
+			int portStart = url.lastIndexOf(':', (authorityEnd -1));
+			host = url.substring(hostStart, ((portStart >= hostStart) ? portStart : authorityEnd));
+		}
+		int queryStart = url.indexOf('?');
+		if ( queryStart != -1 ) {
+			int anchorStart = url.indexOf('#', queryStart);
+			query = url.substring((queryStart + 1), ((anchorStart != -1) ? anchorStart : url.length()));
+		}
+
+		// If the url ends with "/" then remove it as its a "mistake" and the last part of it is the "docID" we want.
+		String urlToMatch = url.endsWith("/") ? url.substring(0, (url.length() -1)) : url;
+
+		String[] groups = getUrlTripleGroups(urlToMatch, schemeEnd);
+		if ( groups == null ) {	// This url needs the backtracking of the regex.
+			numOfUrlsParsedWithRegex.incrementAndGet();
+			Matcher urlMatcher = UrlUtils.URL_TRIPLE.matcher(urlToMatch);
+			if ( urlMatcher.matches() )
+				groups = new String[] {urlMatcher.group(1), urlMatcher.group(2), urlMatcher.group(3)};
+			else
+				return new ParsedUrl(url, scheme, host, null, null, null, query);
+		}
+		return new ParsedUrl(url, scheme, host, emptyToNull((groups[1] != null) ? groups[1].toLowerCase() : null), emptyToNull(groups[0]), emptyToNull(groups[2]), query);
+	}
+
+
+	/**
+	 * This method gives the groups of the "URL_TRIPLE" for the given url, for the cases where the first choice of each of its quantifiers leads to a match.
+	 * @param urlStr (without the ending "/")
+	 * @param schemeEnd (the index of the first "://")
+	 * @return The path, domain and docId, or "null", if the url has to be matched by the regex itself.
+	 */
+	private static String[] getUrlTripleGroups(String urlStr, int schemeEnd)
+	{
+		// The ".+://" takes the last "://" which leads to a match, so there should be only one. The "dot" does not match the line-terminators.
+		if ( (schemeEnd < 1) || (urlStr.indexOf("://", (schemeEnd + 1)) != -1) || hasLineTerminator(urlStr) )
+			return null;
+
+		int length = urlStr.length();
+		int index = schemeEnd + 3;
+
+		// The optional "ww(?:w|\d)(?:(?:\w+)?\.)?" prefix, which is tried first.
+		if ( urlStr.startsWith("ww", index) && ((index + 2) < length) && ((urlStr.charAt(index + 2) == 'w') || isDigit(urlStr.charAt(index + 2))) ) {
+			index += 3;
+			int wordEnd = index;
+			while ( (wordEnd < length) && isWordChar(urlStr.charAt(wordEnd)) )
+				wordEnd ++;
+			if ( (wordEnd < length) && (urlStr.charAt(wordEnd) == '.') )
+				index = wordEnd + 1;
+		}
+
+		// The domain "[\w.\-]+".
+		int domainStart = index;
+		while ( (index < length) && (isWordChar(urlStr.charAt(index)) || (urlStr.charAt(index) == '.') || (urlStr.charAt(index) == '-')) )
+			index ++;
+		if ( index == domainStart )
+			return null;
+		int domainEnd = index;
+
+		// The optional port "[:\d]+". The domain has already taken the digits.
+		while ( (index < length) && ((urlStr.charAt(index) == ':') || isDigit(urlStr.charAt(index))) )
+			index ++;
+
+		if ( index == length )	// There is no path after the domain.
+			return new String[] {urlStr, urlStr.substring(domainStart, domainEnd), ""};
+		else if ( urlStr.charAt(index) != '/' )
+			return null;
+
+		// The "(?:.*/)?" takes everything until the last "/", then the docId "[^/^;?]*" follows, along with the optional "[;?][^/^=]+(?:=.*)?".
+		int idStart = urlStr.lastIndexOf('/') + 1;
+		int idEnd = idStart;
+		char c = 0;
+		while ( (idEnd < length) && ((c = urlStr.charAt(idEnd)) != ';') && (c != '?') && (c != '^') )
+			idEnd ++;
+		if ( idEnd < length ) {
+			if ( (c == '^') || ((idEnd + 1) == length) )
+				return null;
+			for ( int i = (idEnd + 1); i < length; i++ ) {
+				c = urlStr.charAt(i);
+				if ( c == '=' ) {
+					if ( i == (idEnd + 1) )	// At least one character is needed before the "=".
+						return null;
+					break;	// Anything can follow the "=".
+				}
+				else if ( c == '^' )
+					return null;
+			}
+		}
+		return new String[] {urlStr.substring(0, idStart), urlStr.substring(domainStart, domainEnd), urlStr.substring(idStart, idEnd)};
+	}
+
+
+	private static int indexOfAny(String str, String chars, int fromIndex)
+	{
+		for ( int i = fromIndex, length = str.length(); i < length; i++ )
+			if ( chars.indexOf(str.charAt(i)) != -1 )
+				return i;
+		return str.length();
+	}
+
+
+	private static boolean isDigit(char c)
+	{
+		return ((c >= '0') && (c <= '9'));
+	}
+
+
+	private static boolean isWordChar(char c)	// The "\w" of the regexes (without the "UNICODE_CHARACTER_CLASS" flag).
+	{
+		return (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || isDigit(c) || (c == '_'));
+	}
+
+
+	private static boolean hasLineTerminator(String str)
+	{
+		for ( int i = 0, length = str.length(); i < length; i++ ) {
+			char c = str.charAt(i);
+			if ( (c == '\n') || (c == '\r') || (c == '\u0085') || (c == '\u2028') || (c == '\u2029') )
+				return true;
+		}
+		return false;
+	}
+
+
+	private static String emptyToNull(String str)
+	{
+		return ((str == null) || str.isEmpty()) ? null : str;
+	}
+}
@@ -0,0 +1,224 @@
+package eu.openaire.publications_retriever.util.url;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * This class finds the registrable domain of a domain (its public-suffix along with one more label), using the "Public Suffix List" (https://publicsuffix.org/list/public_suffix_list.dat),
+ * which is bundled in the resources, so it can be updated without depending on the internal classes of any library.
+ * For example: "repositorio.ufsc.br" -> "ufsc.br", "x.y.ac.uk" -> "y.ac.uk" and "journals.example.com" -> "example.com".
+ * The rules are kept in a trie of the reversed labels (e.g.: "uk" -> "ac"), where the children of each node are kept in a sorted array,
+ * so a lookup needs a binary-search per label of the domain, comparing the labels in-place, without creating any intermediate strings.
+ * @author Lampros Smyrnaios
+ */
+public class PublicSuffixes
+{
+	private static final Logger logger = LoggerFactory.getLogger(PublicSuffixes.class);
+
+	private static final String publicSuffixListResource = "/public_suffix_list.dat";
+
+	private static final byte EXACT_RULE = 1;	// Like "ac.uk".
+	private static final byte WILDCARD_RULE = 2;	// Like "*.ck", where any label under this node is a public-suffix.
+	private static final byte EXCEPTION_RULE = 4;	// Like "!www.ck", where this is a registrable domain, even though a wildcard-rule matches it.
+
+
+	private static final class Node
+	{
+		byte rules = 0;
+		String[] labels = new String[0];	// Sorted.
+		Node[] children = new Node[0];
+
+		private Map<String, Node> childrenToBuild = new HashMap<>();	// It's used only while building the trie.
+
+
+		Node getOrAddChild(String label) {
+			return childrenToBuild.computeIfAbsent(label, k -> new Node());
+		}
+
+
+		void freeze() {
+			labels = childrenToBuild.keySet().toArray(new String[0]);
+			Arrays.sort(labels);
+			children = new Node[labels.length];
+			for ( int i = 0; i < labels.length; i++ ) {
+				children[i] = childrenToBuild.get(labels[i]);
+				children[i].freeze();
+			}
+			childrenToBuild = null;
+		}
+
+
+		/**
+		 * @return The child for the label which is found in the given range of the domain, or "null".
+		 */
+		Node getChild(String domain, int labelStart, int labelEnd) {
+			int low = 0, high = labels.length -1;
+			while ( low <= high ) {
+				int middle = (low + high) >>> 1;
+				int comparison = compareLabel(labels[middle], domain, labelStart, labelEnd);
+				if ( comparison < 0 )
+					low = middle +1;
+				else if ( comparison > 0 )
+					high = middle -1;
+				else
+					return children[middle];
+			}
+			return null;
+		}
+	}
+
+
+	private static final class TrieHolder {	// The trie is built the first time it's needed.
+		static final Node root = buildTrie();
+	}
+
+
+	/**
+	 * This method builds the trie from the rules of the "Public Suffix List". Each line holds one rule, or a comment (starting with "//").
+	 * The wildcard-rules (like "*.ck") and the exception-rules (like "!www.ck") are kept in the node of the part after the "*." or the "!".
+	 * The internationalized rules are added both in their unicode and their "punycode" form, as the domains of the urls may be in either form.
+	 * If the list cannot be loaded, then the trie stays empty and only the default-rule "*" is applied, so the last label is considered the public-suffix.
+	 */
+	private static Node buildTrie()
+	{
+		Node root = new Node();
+		int numOfRules = 0;
+		try ( InputStream inputStream = PublicSuffixes.class.getResourceAsStream(publicSuffixListResource) )
+		{
+			if ( inputStream == null )
+				throw new IllegalStateException("The resource \"" + publicSuffixListResource + "\" was not found.");
+			BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+			String line;
+			while ( (line = reader.readLine()) != null )
+			{
+				line = line.trim();
+				if ( line.isEmpty() || line.startsWith("//") )
+					continue;
+				int ruleEnd = 0;	// The rule ends at the first whitespace.
+				while ( (ruleEnd < line.length()) && !Character.isWhitespace(line.charAt(ruleEnd)) )
+					ruleEnd ++;
+				String suffix = line.substring(0, ruleEnd).toLowerCase();
+				byte rule = EXACT_RULE;
+				if ( suffix.startsWith("*.") ) {
+					suffix = suffix.substring(2);
+					rule = WILDCARD_RULE;
+				} else if ( suffix.startsWith("!") ) {
+					suffix = suffix.substring(1);
+					rule = EXCEPTION_RULE;
+				}
+				addRule(root, suffix, rule);
+				String asciiSuffix;
+				try {
+					asciiSuffix = IDN.toASCII(suffix);
+				} catch (IllegalArgumentException iae) {
+					asciiSuffix = suffix;
+				}
+				if ( !asciiSuffix.equals(suffix) )
+					addRule(root, asciiSuffix.toLowerCase(), rule);
+				numOfRules ++;
+			}
+		} catch (Exception e) {
+			logger.error("Could not load the \"Public Suffix List\", so only the top-level-domains will be considered public-suffixes: " + e.getMessage());
+		}
+		root.freeze();
+		logger.debug("Loaded " + numOfRules + " rules of the \"Public Suffix List\".");
+		return root;
+	}
+
+
+	private static void addRule(Node root, String suffix, byte rule)
+	{
+		Node node = root;
+		int labelEnd = suffix.length();
+		while ( labelEnd > 0 ) {
+			int labelStart = suffix.lastIndexOf('.', (labelEnd -1)) +1;
+			node = node.getOrAddChild(suffix.substring(labelStart, labelEnd));
+			labelEnd = labelStart -1;
+		}
+		node.rules |= rule;
+	}
+
+
+	/**
+	 * This method returns the registrable domain of the given domain.
+	 * If the domain is an IP-address, or it's a public-suffix itself (e.g. "ac.uk"), then the domain is returned as it is, so it can still be used as a key.
+	 * @param domain (in lowerCase, without a port)
+	 * @return registrableDomain
+	 */
+	public static String getRegistrableDomain(String domain)
+	{
+		int length = domain.length();
+		if ( domain.endsWith(".") )
+			length --;	// The "example.org." is the same as the "example.org".
+		if ( length <= 0 )
+			return domain;
+
+		int lastLabelStart = domain.lastIndexOf('.', (length -1)) +1;
+		if ( (domain.indexOf(':') != -1) || isNumber(domain, lastLabelStart, length) )	// It's an IPv6 or an IPv4 address.
+			return domain;
+
+		// Find the start of the public-suffix, following the longest matching rule. If no rule matches, then the last label is the public-suffix.
+		int suffixStart = lastLabelStart;
+		Node node = TrieHolder.root;
+		int labelEnd = length;
+		int previousLabelStart = length;
+		while ( labelEnd > 0 )
+		{
+			int labelStart = domain.lastIndexOf('.', (labelEnd -1)) +1;
+			Node child = node.getChild(domain, labelStart, labelEnd);
+			if ( (child != null) && ((child.rules & EXCEPTION_RULE) != 0) ) {
+				suffixStart = previousLabelStart;	// This label is not part of the public-suffix.
+				break;
+			}
+			if ( ((node.rules & WILDCARD_RULE) != 0) || ((child != null) && ((child.rules & EXACT_RULE) != 0)) )
+				suffixStart = labelStart;
+			if ( child == null )
+				break;
+			node = child;
+			previousLabelStart = labelStart;
+			labelEnd = labelStart -1;
+		}
+
+		if ( suffixStart == 0 )	// The domain is a public-suffix itself.
+			return domain;
+		int registrableDomainStart = domain.lastIndexOf('.', (suffixStart -2)) +1;
+		return (registrableDomainStart == 0) ? domain : domain.substring(registrableDomainStart);
+	}
+
+
+	/**
+	 * @return The comparison of the given label with the label in the given range of the domain, like the "String.compareTo()" does.
+	 */
+	private static int compareLabel(String label, String domain, int labelStart, int labelEnd)
+	{
+		int labelLength = label.length();
+		int otherLength = labelEnd - labelStart;
+		for ( int i = 0, minLength = Math.min(labelLength, otherLength); i < minLength; i++ ) {
+			char c1 = label.charAt(i), c2 = domain.charAt(labelStart + i);
+			if ( c1 != c2 )
+				return (c1 - c2);
+		}
+		return (labelLength - otherLength);
+	}
+
+
+	private static boolean isNumber(String str, int start, int end)
+	{
+		if ( start >= end )
+			return false;
+		for ( int i = start; i < end; i++ )
+			if ( (str.charAt(i) < '0') || (str.charAt(i) > '9') )
+				return false;
+		return true;
+	}
+}
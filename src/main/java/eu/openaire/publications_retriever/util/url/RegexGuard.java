@@ -0,0 +1,122 @@
+package eu.openaire.publications_retriever.util.url;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class guards the matching of the regexes which have nested quantifiers and run on the urls and the headers given by arbitrary sites.
+ * A pathological input could make such a regex backtrack for minutes, pinning the worker-thread which runs it.
+ * So, the inputs longer than a length-cap are not matched at all, while the rest are given to the regex wrapped in a "CharSequence" which checks a deadline, while the regex reads it.
+ * When the guard trips, the matching is aborted and the caller classifies the input itself (e.g. an unwanted-type rule considers the url as unwanted, while the "removeAnchor()" keeps the url as it is).
+ * @author Lampros Smyrnaios
+ */
+public class RegexGuard
+{
+	private static final Logger logger = LoggerFactory.getLogger(RegexGuard.class);
+
+	public static final int MAX_URL_LENGTH = 8192;	// The browsers and the servers do not support much longer urls, anyway.
+	public static final int MAX_HEADER_LENGTH = 2048;
+
+	public static final long MAX_MATCHING_NANOS = TimeUnit.MILLISECONDS.toNanos(100);	// The usual matchings take a few microseconds.
+
+	private static final int CHAR_ACCESSES_BETWEEN_DEADLINE_CHECKS = 1024;	// Must be a power of 2. The "System.nanoTime()" is too expensive to be called on every character-access.
+
+	public static AtomicInteger numOfInputsOverLengthCap = new AtomicInteger(0);
+	public static AtomicInteger numOfMatchingsOverDeadline = new AtomicInteger(0);
+
+
+	public enum Result { MATCHED, NOT_MATCHED, ABORTED }
+
+
+	/**
+	 * This method matches the whole input against the pattern of the given matcher, unless the input is longer than the "maxInputLength" or the matching takes more than the "MAX_MATCHING_NANOS".
+	 * After a "MATCHED" result, the groups of the matcher can be retrieved as usual.
+	 * @param matcher (of the pattern to use, it will be reset with the input)
+	 * @param input
+	 * @param maxInputLength
+	 * @return The result of the matching.
+	 */
+	public static Result matches(Matcher matcher, String input, int maxInputLength)
+	{
+		if ( input.length() > maxInputLength ) {
+			numOfInputsOverLengthCap.incrementAndGet();
+			logger.warn("The regex \"" + getPatternStart(matcher.pattern()) + "\" was not run for an input of " + input.length() + " characters (the maximum length is " + maxInputLength + "), starting with: \"" + input.substring(0, 200) + "\"");
+			return Result.ABORTED;
+		}
+		try {
+			return matcher.reset(new DeadlineCharSequence(input, (System.nanoTime() + MAX_MATCHING_NANOS))).matches() ? Result.MATCHED : Result.NOT_MATCHED;
+		} catch (DeadlineExceededException dee) {
+			numOfMatchingsOverDeadline.incrementAndGet();
+			logger.warn("The regex \"" + getPatternStart(matcher.pattern()) + "\" was aborted after running for more than " + TimeUnit.NANOSECONDS.toMillis(MAX_MATCHING_NANOS) + " ms, for the input: \"" + input + "\"");
+			return Result.ABORTED;
+		}
+	}
+
+
+	private static String getPatternStart(Pattern pattern)
+	{
+		String patternStr = pattern.pattern();
+		return (patternStr.length() > 50) ? (patternStr.substring(0, 50) + "...") : patternStr;
+	}
+
+
+	public static String getStatistics()
+	{
+		return numOfInputsOverLengthCap.get() + " (over the length-cap) and " + numOfMatchingsOverDeadline.get() + " (over the deadline)";
+	}
+
+
+	/**
+	 * The regex-engine reads the input only through the "charAt()", so this is where the deadline is checked.
+	 * The "subSequence()" is used only for the groups, after the matching, so it returns a plain "String".
+	 */
+	private static final class DeadlineCharSequence implements CharSequence
+	{
+		private final String str;
+		private final long deadlineNanos;
+		private int numOfAccesses = 0;
+
+		DeadlineCharSequence(String str, long deadlineNanos)
+		{
+			this.str = str;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		@Override
+		public char charAt(int index)
+		{
+			if ( ((++numOfAccesses & (CHAR_ACCESSES_BETWEEN_DEADLINE_CHECKS -1)) == 0) && (System.nanoTime() > deadlineNanos) )
+				throw new DeadlineExceededException();
+			return str.charAt(index);
+		}
+
+		@Override
+		public int length() {
+			return str.length();
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return str.substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return str;
+		}
+	}
+
+
+	private static final class DeadlineExceededException extends RuntimeException
+	{
+		DeadlineExceededException() {
+			super(null, null, false, false);	// No stack-trace is needed, it's caught right away.
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package eu.openaire.publications_retriever.util.url;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class holds an ordered set of regex-rules, which are checked one after the other, until the first one which matches the whole string.
+ * Each thread re-uses its own "Matcher" for each rule, instead of allocating a new one for every check, and the number of matches of each rule is counted, for the statistics.
+ * The matching is guarded by the "RegexGuard", as the rules run on urls given by arbitrary sites. A url which trips the guard is considered to match the rule being checked, so it gets rejected.
+ * @author Lampros Smyrnaios
+ */
+public class RegexRuleSet
+{
+	private final String[] ruleNames;
+	private final Pattern[] patterns;
+	private final AtomicInteger[] ruleMatches;
+	private final ThreadLocal<Matcher[]> threadMatchers;
+
+
+	/**
+	 * @param ruleNames	// The names used in logging and statistics.
+	 * @param patterns	// The rules, in the order they should be checked.
+	 */
+	public RegexRuleSet(String[] ruleNames, Pattern[] patterns)
+	{
+		if ( ruleNames.length != patterns.length )
+			throw new IllegalArgumentException("The number of ruleNames (" + ruleNames.length + ") is different than the number of patterns (" + patterns.length + ").");
+		this.ruleNames = ruleNames;
+		this.patterns = patterns;
+		this.ruleMatches = new AtomicInteger[patterns.length];
+		for ( int i = 0; i < patterns.length; i++ )
+			ruleMatches[i] = new AtomicInteger(0);
+		this.threadMatchers = ThreadLocal.withInitial(() -> {
+			Matcher[] matchers = new Matcher[patterns.length];
+			for ( int i = 0; i < patterns.length; i++ )
+				matchers[i] = patterns[i].matcher("");
+			return matchers;
+		});
+	}
+
+
+	/**
+	 * @param str
+	 * @return The index of the first rule which matches the whole given string (or for which the "RegexGuard" aborted the matching), or "-1", if none of them matches.
+	 */
+	public int findFirstMatchingRule(String str)
+	{
+		Matcher[] matchers = threadMatchers.get();
+		for ( int i = 0; i < matchers.length; i++ ) {
+			RegexGuard.Result result = RegexGuard.matches(matchers[i], str, RegexGuard.MAX_URL_LENGTH);
+			if ( result == RegexGuard.Result.MATCHED ) {
+				ruleMatches[i].incrementAndGet();
+				return i;
+			} else if ( result == RegexGuard.Result.ABORTED )
+				return i;	// It's counted by the "RegexGuard".
+		}
+		return -1;
+	}
+
+
+	public String getRuleName(int ruleIndex)
+	{
+		return ruleNames[ruleIndex];
+	}
+
+
+	/**
+	 * @return The number of matches of each rule, like: "{RULE_1=5, RULE_2=0}".
+	 */
+	public String getRuleMatchesStr()
+	{
+		StringBuilder strB = new StringBuilder(ruleNames.length * 30);
+		strB.append('{');
+		for ( int i = 0; i < ruleNames.length; i++ ) {
+			if ( i > 0 )
+				strB.append(", ");
+			strB.append(ruleNames[i]).append('=').append(ruleMatches[i].get());
+		}
+		return strB.append('}').toString();
+	}
+}
@@ -0,0 +1,423 @@
+package eu.openaire.publications_retriever.util.url;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class canonicalizes the urls, giving the same output as the "URLCanonicalizer" of the "crawler4j" (with the "UTF-8" charset), which was used before.
+ * The relative urls are resolved against their context-url (the url of their page) with the "RFC 1808" rules, like the "UrlResolver" of the "crawler4j" does.
+ * The "java.net.URI" is used to normalize the path and the "URLDecoder"/"URLEncoder" to re-encode the query-params, only when they contain characters which could be changed by them,
+ * as most of the paths and params are already in their canonical form.
+ * Each thread keeps the results of its last canonicalizations, since the same urls are canonicalized again, when they are re-checked or logged (e.g. in the "LoaderAndChecker.checkRemainingUrls()").
+ * @author Lampros Smyrnaios
+ */
+public class UrlCanonicalizer
+{
+	public static AtomicInteger numOfCanonicalizationsReused = new AtomicInteger(0);
+
+	private static final int MAX_CANONICALIZATIONS_PER_THREAD = 256;
+
+	private static final String FAILED_CANONICALIZATION = "";	// The "null" results are also kept, so the failing urls are not canonicalized again.
+
+	private static final ThreadLocal<LinkedHashMap<String, String>> lastCanonicalizations = ThreadLocal.withInitial(() -> new LinkedHashMap<String, String>(MAX_CANONICALIZATIONS_PER_THREAD * 2, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return (size() > MAX_CANONICALIZATIONS_PER_THREAD);
+		}
+	});
+
+
+	/**
+	 * @param href (the url or a relative link)
+	 * @param context (the url of the page of the relative link, it may be null)
+	 * @return The canonical url / null, if the url is invalid.
+	 */
+	public static String getCanonicalUrl(String href, String context)
+	{
+		String key = (context == null) ? href : (context + '\u0000' + href);	// The "NUL" is not expected inside the urls.
+		LinkedHashMap<String, String> canonicalizations = lastCanonicalizations.get();
+		String canonicalUrl = canonicalizations.get(key);
+		if ( canonicalUrl != null ) {
+			numOfCanonicalizationsReused.incrementAndGet();
+			return (canonicalUrl == FAILED_CANONICALIZATION) ? null : canonicalUrl;
+		}
+
+		canonicalUrl = canonicalize(href, context);
+		canonicalizations.put(key, ((canonicalUrl != null) ? canonicalUrl : FAILED_CANONICALIZATION));
+		return canonicalUrl;
+	}
+
+
+	private static String canonicalize(String href, String context)
+	{
+		try {
+			URL canonicalURL = new URL(resolveUrl(((context == null) ? "" : context), href));
+
+			String host = canonicalURL.getHost().toLowerCase();
+			if ( host.isEmpty() )	// This is an invalid url.
+				return null;
+
+			String path = canonicalURL.getPath();
+			if ( !isNormalPath(path) ) {
+				// Normalize: no empty segments (i.e., "//"), no segments equal to ".", and no segments equal to ".." that are preceded by a segment not equal to "..".
+				path = new URI(path.replace("\\", "/").replace(String.valueOf((char) 12288), "%E3%80%80").replace(" ", "%20")).normalize().toString();
+				while ( path.contains("//") )
+					path = path.replace("//", "/");
+				while ( path.startsWith("/../") )
+					path = path.substring(3);
+				path = path.trim();
+			}
+			if ( path.isEmpty() )
+				path = "/";
+
+			String queryString = "";
+			Map<String, String> params = createParameterMap(canonicalURL.getQuery());
+			if ( (params != null) && !params.isEmpty() ) {
+				String canonicalParams = getCanonicalParams(params);
+				if ( !canonicalParams.isEmpty() )
+					queryString = "?" + canonicalParams;
+			}
+
+			// Drop the default port: example.com:80 -> example.com
+			int port = canonicalURL.getPort();
+			if ( port == canonicalURL.getDefaultPort() )
+				port = -1;
+
+			// Build the url in the way the "new URL(protocol, host, port, file).toExternalForm()" does.
+			StringBuilder strB = new StringBuilder(host.length() + path.length() + queryString.length() + 20);
+			strB.append(canonicalURL.getProtocol().toLowerCase()).append("://");
+			if ( (host.indexOf(':') >= 0) && !host.startsWith("[") )
+				strB.append('[').append(host).append(']');
+			else
+				strB.append(host);
+			if ( port != -1 )
+				strB.append(':').append(port);
+			return strB.append(path.replace("%7E", "~").replace(" ", "%20")).append(queryString).toString();
+		} catch (java.net.MalformedURLException | URISyntaxException e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * @return true, if the "URI.normalize()" and the rest of the path-normalization would give back the same path.
+	 */
+	private static boolean isNormalPath(String path)
+	{
+		int length = path.length();
+		for ( int i = 0; i < length; i++ ) {
+			char c = path.charAt(i);
+			if ( ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || ("-_~!$&'()*+,;=:@".indexOf(c) != -1) )
+				continue;
+			else if ( c == '/' ) {
+				if ( (i > 0) && (path.charAt(i -1) == '/') )
+					return false;	// An empty segment.
+			}
+			else if ( c == '.' ) {
+				if ( (i == 0) || (path.charAt(i -1) == '/') ) {	// A segment which starts with a ".".
+					int segmentEnd = path.indexOf('/', i);
+					int segmentLength = ((segmentEnd == -1) ? length : segmentEnd) - i;
+					if ( (segmentLength == 1) || ((segmentLength == 2) && (path.charAt(i +1) == '.')) )
+						return false;
+				}
+			}
+			else if ( c == '%' ) {
+				if ( ((i + 2) >= length) || !isHexDigit(path.charAt(i +1)) || !isHexDigit(path.charAt(i +2)) )
+					return false;	// The URI rejects it.
+			}
+			else
+				return false;	// Any other character may be rejected by the URI or be changed.
+		}
+		return ((length == 0) || (path.charAt(0) == '/'));
+	}
+
+
+	private static boolean isHexDigit(char c)
+	{
+		return ((c >= '0') && (c <= '9')) || ((c >= 'a') && (c <= 'f')) || ((c >= 'A') && (c <= 'F'));
+	}
+
+
+	private static Map<String, String> createParameterMap(String queryString)
+	{
+		if ( (queryString == null) || queryString.isEmpty() )
+			return null;
+
+		String[] pairs = queryString.split("&");
+		Map<String, String> params = new LinkedHashMap<>(pairs.length);
+		for ( String pair : pairs )
+		{
+			if ( pair.isEmpty() )
+				continue;
+
+			String[] tokens = pair.split("=", 2);
+			if ( tokens.length == 1 ) {
+				if ( pair.charAt(0) == '=' )
+					params.put("", tokens[0]);
+				else
+					params.put(tokens[0], "");
+			} else
+				params.put(tokens[0], tokens[1]);
+		}
+		return params;
+	}
+
+
+	private static String getCanonicalParams(Map<String, String> params)
+	{
+		StringBuilder strB = new StringBuilder(100);
+		for ( Map.Entry<String, String> pair : params.entrySet() )
+		{
+			String key = pair.getKey().toLowerCase();
+			if ( key.equals("jsessionid") || key.equals("phpsessid") || key.equals("aspsessionid") )
+				continue;
+			if ( strB.length() > 0 )
+				strB.append('&');
+			strB.append(percentEncodeRfc3986(pair.getKey()));
+			if ( !pair.getValue().isEmpty() )
+				strB.append('=').append(percentEncodeRfc3986(pair.getValue()));
+		}
+		return strB.toString();
+	}
+
+
+	private static String percentEncodeRfc3986(String str)
+	{
+		boolean isUnchangedByEncoding = true;	// The "URLDecoder" and the "URLEncoder" leave these characters as they are.
+		for ( int i = 0, length = str.length(); i < length; i++ ) {
+			char c = str.charAt(i);
+			if ( !(((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || (c == '.') || (c == '-') || (c == '_') || (c == '*')) ) {
+				isUnchangedByEncoding = false;
+				break;
+			}
+		}
+		try {
+			if ( !isUnchangedByEncoding ) {
+				str = str.replace("+", "%2B");
+				str = URLDecoder.decode(str, "UTF-8");
+				str = URLEncoder.encode(str, "UTF-8");
+			}
+			return str.replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+		} catch (Exception e) {
+			return str;	// Like the "crawler4j", the string is returned with the changes made until the failure (e.g. a malformed escape-sequence).
+		}
+	}
+
+
+	/**
+	 * This method resolves the given relative url against the base url, as described in the "RFC 1808", like the "UrlResolver" of the "crawler4j" does.
+	 * @param baseUrl (it's empty if the "relativeUrl" is expected to be absolute)
+	 * @param relativeUrl
+	 * @return The resolved url.
+	 */
+	static String resolveUrl(String baseUrl, String relativeUrl)
+	{
+		return resolveUrl(parseUrl(baseUrl.trim()), relativeUrl.trim()).toString();
+	}
+
+
+	private static ResolvedUrl resolveUrl(ResolvedUrl baseUrl, String relativeUrl)
+	{
+		ResolvedUrl url = parseUrl(relativeUrl);
+		if ( relativeUrl.isEmpty() )	// The embedded url inherits the entire base url.
+			return new ResolvedUrl(baseUrl);
+		if ( url.scheme != null )	// It's an absolute url.
+			return url;
+
+		url.scheme = baseUrl.scheme;
+		if ( url.location != null )
+			return url;
+
+		url.location = baseUrl.location;
+		if ( (url.path != null) && !url.path.isEmpty() && (url.path.charAt(0) == '/') ) {	// The path is not relative.
+			url.path = removeLeadingSlashPoints(url.path);
+			return url;
+		}
+
+		if ( url.path == null ) {	// The url inherits the path of the base url, along with its params and query, unless it has its own.
+			url.path = baseUrl.path;
+			if ( url.parameters != null )
+				return url;
+			url.parameters = baseUrl.parameters;
+			if ( url.query != null )
+				return url;
+			url.query = baseUrl.query;
+			return url;
+		}
+
+		// The last segment of the base-path is replaced by the relative path.
+		String path = "";
+		if ( baseUrl.path != null ) {
+			int lastSlashIndex = baseUrl.path.lastIndexOf('/');
+			if ( lastSlashIndex >= 0 )
+				path = baseUrl.path.substring(0, (lastSlashIndex +1));
+		} else
+			path = "/";
+		path = path.concat(url.path);
+
+		// Remove the "./" segments and the ending "." segment.
+		int segmentIndex;
+		while ( (segmentIndex = path.indexOf("/./")) >= 0 )
+			path = path.substring(0, (segmentIndex +1)).concat(path.substring(segmentIndex +3));
+		if ( path.endsWith("/.") )
+			path = path.substring(0, (path.length() -1));
+
+		// Remove the "<segment>/../" parts, from left to right, and the ending "<segment>/..".
+		while ( (segmentIndex = path.indexOf("/../")) > 0 ) {
+			int slashIndex = path.lastIndexOf('/', (segmentIndex -1));
+			if ( slashIndex < 0 )
+				break;	// The "crawler4j" loops forever here, but it cannot happen, as the base-path of a url with a location, always starts with a "/".
+			path = path.substring(0, (slashIndex +1)).concat(path.substring(segmentIndex +4));
+		}
+		if ( path.endsWith("/..") ) {
+			int slashIndex = path.lastIndexOf('/', (path.length() -4));
+			if ( slashIndex >= 0 )
+				path = path.substring(0, (slashIndex +1));
+		}
+
+		url.path = removeLeadingSlashPoints(path);
+		return url;
+	}
+
+
+	private static String removeLeadingSlashPoints(String path)
+	{
+		while ( path.startsWith("/..") )
+			path = path.substring(3);
+		return path;
+	}
+
+
+	/**
+	 * This method splits the url to the parts described in the "RFC 1808".
+	 */
+	private static ResolvedUrl parseUrl(String spec)
+	{
+		ResolvedUrl url = new ResolvedUrl();
+		int startIndex = 0;
+		int endIndex = spec.length();
+
+		int crosshatchIndex = indexOf(spec, '#', startIndex, endIndex);
+		if ( crosshatchIndex >= 0 ) {
+			url.fragment = spec.substring((crosshatchIndex +1), endIndex);
+			endIndex = crosshatchIndex;
+		}
+
+		int colonIndex = indexOf(spec, ':', startIndex, endIndex);
+		if ( colonIndex > 0 ) {
+			String scheme = spec.substring(startIndex, colonIndex);
+			if ( isValidScheme(scheme) ) {
+				url.scheme = scheme;
+				startIndex = colonIndex +1;
+			}
+		}
+
+		int locationStartIndex = -1;
+		int locationEndIndex = -1;
+		if ( spec.startsWith("//", startIndex) ) {
+			locationStartIndex = startIndex +2;
+			locationEndIndex = indexOf(spec, '/', locationStartIndex, endIndex);
+			if ( locationEndIndex >= 0 )
+				startIndex = locationEndIndex;
+		}
+
+		int questionMarkIndex = indexOf(spec, '?', startIndex, endIndex);
+		if ( questionMarkIndex >= 0 ) {
+			if ( (locationStartIndex >= 0) && (locationEndIndex < 0) ) {	// The location ends at the "?".
+				locationEndIndex = questionMarkIndex;
+				startIndex = questionMarkIndex;
+			}
+			url.query = spec.substring((questionMarkIndex +1), endIndex);
+			endIndex = questionMarkIndex;
+		}
+
+		int semicolonIndex = indexOf(spec, ';', startIndex, endIndex);
+		if ( semicolonIndex >= 0 ) {
+			if ( (locationStartIndex >= 0) && (locationEndIndex < 0) ) {	// The location ends at the ";".
+				locationEndIndex = semicolonIndex;
+				startIndex = semicolonIndex;
+			}
+			url.parameters = spec.substring((semicolonIndex +1), endIndex);
+			endIndex = semicolonIndex;
+		}
+
+		if ( (locationStartIndex >= 0) && (locationEndIndex < 0) )
+			locationEndIndex = endIndex;
+		else if ( startIndex < endIndex )
+			url.path = spec.substring(startIndex, endIndex);
+
+		if ( (locationStartIndex >= 0) && (locationEndIndex >= 0) )
+			url.location = spec.substring(locationStartIndex, locationEndIndex);
+		return url;
+	}
+
+
+	private static int indexOf(String str, char c, int startIndex, int endIndex)
+	{
+		for ( int i = startIndex; i < endIndex; i++ )
+			if ( str.charAt(i) == c )
+				return i;
+		return -1;
+	}
+
+
+	private static boolean isValidScheme(String scheme)
+	{
+		int length = scheme.length();
+		if ( (length < 1) || !Character.isLetter(scheme.charAt(0)) )
+			return false;
+		for ( int i = 1; i < length; i++ ) {
+			char c = scheme.charAt(i);
+			if ( !Character.isLetterOrDigit(c) && (c != '.') && (c != '+') && (c != '-') )
+				return false;
+		}
+		return true;
+	}
+
+
+	private static class ResolvedUrl
+	{
+		String scheme;
+		String location;
+		String path;
+		String parameters;
+		String query;
+		String fragment;
+
+		ResolvedUrl() {}
+
+		ResolvedUrl(ResolvedUrl url) {
+			this.scheme = url.scheme;
+			this.location = url.location;
+			this.path = url.path;
+			this.parameters = url.parameters;
+			this.query = url.query;
+			this.fragment = url.fragment;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder strB = new StringBuilder(100);
+			if ( scheme != null )
+				strB.append(scheme).append(':');
+			if ( location != null )
+				strB.append("//").append(location);
+			if ( path != null )
+				strB.append(path);
+			if ( parameters != null )
+				strB.append(';').append(parameters);
+			if ( query != null )
+				strB.append('?').append(query);
+			if ( fragment != null )
+				strB.append('#').append(fragment);
+			return strB.toString();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package eu.openaire.publications_retriever.util.url;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+
+/**
+ * This set keeps a 64-bit fingerprint of each url, instead of the url itself, in open-addressing tables which are allocated outside the heap.
+ * This way, each url needs between 11 and 21 bytes (8 bytes per slot, with the tables being 37.5% to 75% full), instead of about 150 bytes of heap, and the garbage-collector never scans them.
+ * The fingerprints are spread in many stripes, each one having its own table and lock, so the threads rarely wait for each other.
+ *
+ * Two different urls may have the same fingerprint, in which case the second one is considered to be in the set already (a false-positive), while there are no false-negatives.
+ * With 64-bit fingerprints, the expected number of false-positives is about: (numOfUrls ^ 2) / (2 ^ 65), for example, less than 0.0001 for 50 million urls.
+ * A false-positive only makes a link not being checked, so this budget is by far lower than the number of links which are lost due to connection-problems.
+ * @author Lampros Smyrnaios
+ */
+public class UrlFingerprintSet implements UrlSet
+{
+	public static final long MIN_URLS_TO_USE_FINGERPRINTS = 1_000_000;	// For smaller runs, the "HeapUrlSet" is used, as it's small enough and it has no false-positives.
+
+	private static final int NUM_OF_STRIPES = 64;	// Must be a power of 2.
+	private static final int STRIPE_INDEX_SHIFT = Long.numberOfLeadingZeros(NUM_OF_STRIPES -1);	// The highest bits of the fingerprint choose the stripe, while the lowest ones choose the slot.
+	private static final int MIN_STRIPE_CAPACITY = 1024;
+	private static final int MAX_STRIPE_CAPACITY = (1 << 27);	// A direct-ByteBuffer can hold up to 2 GB, so the table of each stripe is doubled up to 2^27 slots (1 GB).
+	private static final double MAX_LOAD_FACTOR = 0.75;
+
+	private static final long EMPTY_SLOT = 0;
+
+	private static final HashFunction fingerprintFunction = Hashing.farmHashFingerprint64();
+
+	private final Stripe[] stripes = new Stripe[NUM_OF_STRIPES];
+
+
+	/**
+	 * @param expectedNumOfUrls (used to allocate the tables once, at the start)
+	 */
+	public UrlFingerprintSet(long expectedNumOfUrls)
+	{
+		long slotsPerStripe = (long) Math.ceil(expectedNumOfUrls / MAX_LOAD_FACTOR / NUM_OF_STRIPES);
+		int capacity = MIN_STRIPE_CAPACITY;
+		while ( (capacity < slotsPerStripe) && (capacity < MAX_STRIPE_CAPACITY) )
+			capacity <<= 1;
+		for ( int i = 0; i < NUM_OF_STRIPES; i++ )
+			stripes[i] = new Stripe(capacity);
+	}
+
+
+	@Override
+	public boolean add(String url)
+	{
+		long fingerprint = getFingerprint(url);
+		return getStripe(fingerprint).add(fingerprint);
+	}
+
+
+	@Override
+	public boolean contains(String url)
+	{
+		long fingerprint = getFingerprint(url);
+		return getStripe(fingerprint).contains(fingerprint);
+	}
+
+
+	@Override
+	public long size()
+	{
+		long size = 0;
+		for ( Stripe stripe : stripes )
+			size += stripe.getSize();
+		return size;
+	}
+
+
+	@Override
+	public String getDescription()
+	{
+		long size = 0, offHeapBytes = 0;
+		for ( Stripe stripe : stripes ) {
+			synchronized ( stripe ) {
+				size += stripe.size;
+				offHeapBytes += ((long) stripe.table.capacity() * Long.BYTES);
+			}
+		}
+		return "a set of " + size + " url-fingerprints, using " + (offHeapBytes / (1024 * 1024)) + " MB outside the heap";
+	}
+
+
+	static long getFingerprint(String url)
+	{
+		long fingerprint = fingerprintFunction.hashUnencodedChars(url).asLong();	// No encoding of the chars is needed, so no byte-array is created.
+		return (fingerprint == EMPTY_SLOT) ? 1 : fingerprint;
+	}
+
+
+	private Stripe getStripe(long fingerprint)
+	{
+		return stripes[(int) (fingerprint >>> STRIPE_INDEX_SHIFT)];
+	}
+
+
+	private static final class Stripe
+	{
+		private LongBuffer table;
+		private int mask;
+		private int size = 0;
+
+
+		Stripe(int capacity)
+		{
+			table = allocateTable(capacity);
+			mask = (capacity -1);
+		}
+
+
+		synchronized boolean add(long fingerprint)
+		{
+			int slot = findSlot(table, mask, fingerprint);
+			if ( table.get(slot) == fingerprint )
+				return false;
+			if ( size >= (table.capacity() * MAX_LOAD_FACTOR) ) {
+				grow();
+				slot = findSlot(table, mask, fingerprint);
+			}
+			table.put(slot, fingerprint);
+			size ++;
+			return true;
+		}
+
+
+		synchronized boolean contains(long fingerprint)
+		{
+			return (table.get(findSlot(table, mask, fingerprint)) == fingerprint);
+		}
+
+
+		synchronized int getSize()
+		{
+			return size;
+		}
+
+
+		private void grow()
+		{
+			int newCapacity = (table.capacity() << 1);
+			if ( newCapacity > MAX_STRIPE_CAPACITY )	// This would need billions of urls.
+				throw new IllegalStateException("The stripe of the \"UrlFingerprintSet\" is full, with " + size + " fingerprints.");
+			LongBuffer newTable = allocateTable(newCapacity);
+			int newMask = (newCapacity -1);
+			for ( int i = 0, capacity = table.capacity(); i < capacity; i++ ) {
+				long fingerprint = table.get(i);
+				if ( fingerprint != EMPTY_SLOT )
+					newTable.put(findSlot(newTable, newMask, fingerprint), fingerprint);
+			}
+			table = newTable;	// The old table is freed by the garbage-collector, along with its direct-buffer.
+			mask = newMask;
+		}
+
+
+		/**
+		 * @return The slot holding the given fingerprint, or the empty slot where it should be put (linear probing).
+		 */
+		private static int findSlot(LongBuffer table, int mask, long fingerprint)
+		{
+			int slot = (int) fingerprint & mask;
+			long slotValue;
+			while ( ((slotValue = table.get(slot)) != EMPTY_SLOT) && (slotValue != fingerprint) )
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+
+		private static LongBuffer allocateTable(int capacity)
+		{
+			return ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();	// The direct-buffers are zeroed, so all slots are empty.
+		}
+	}
+}
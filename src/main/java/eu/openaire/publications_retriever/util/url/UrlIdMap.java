@@ -0,0 +1,156 @@
+package eu.openaire.publications_retriever.util.url;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * This class maps the urls to their IDs, like the "UrlUtils.docOrDatasetUrlsWithIDs" needs, which is consulted on every redirection, internal-link and predicted url, while it's written on every docUrl found.
+ * Each mapping is kept as a single entry-object, holding the url and its ID in a single UTF-8 byte-array, which is both the key and the value of a "ConcurrentHashMap".
+ * This way, each mapping needs two objects instead of the five of a "Hashtable<String, String>" (its entry, the two strings and their char/byte arrays), and the lookups are lock-free.
+ * The lookups compare the url-string with the bytes of the entries directly, so they do not encode the url.
+ * @author Lampros Smyrnaios
+ */
+public class UrlIdMap
+{
+	private final ConcurrentHashMap<Object, Entry> map = new ConcurrentHashMap<>();
+
+
+	/**
+	 * @param url
+	 * @param id (it may be "null")
+	 */
+	public void put(String url, String id)
+	{
+		Entry entry = new Entry(url, id);
+		map.put(entry, entry);
+	}
+
+
+	public boolean containsKey(String url)
+	{
+		return map.containsKey(new LookupKey(url));
+	}
+
+
+	/**
+	 * @return The ID of the url, or "null", if the url is not mapped (or it was mapped to a "null" ID).
+	 */
+	public String get(String url)
+	{
+		Entry entry = map.get(new LookupKey(url));
+		return (entry != null) ? entry.getId() : null;
+	}
+
+
+	public int size()
+	{
+		return map.size();
+	}
+
+
+	/**
+	 * The "hashCode()" of an entry is the "String.hashCode()" of its url, so that a "LookupKey" finds it.
+	 */
+	private static final class Entry
+	{
+		private final byte[] bytes;	// The UTF-8 bytes of the url, followed by the UTF-8 bytes of the ID.
+		private final int urlLength;	// The number of bytes of the url.
+		private final boolean hasId;
+		private final int hash;
+
+		Entry(String url, String id)
+		{
+			byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+			this.urlLength = urlBytes.length;
+			this.hasId = (id != null);
+			if ( hasId ) {
+				byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+				this.bytes = Arrays.copyOf(urlBytes, (urlLength + idBytes.length));
+				System.arraycopy(idBytes, 0, bytes, urlLength, idBytes.length);
+			} else
+				this.bytes = urlBytes;
+			this.hash = url.hashCode();
+		}
+
+		String getId()
+		{
+			return hasId ? new String(bytes, urlLength, (bytes.length - urlLength), StandardCharsets.UTF_8) : null;
+		}
+
+		boolean hasUrl(String url)
+		{
+			int numOfChars = url.length();
+			if ( numOfChars > urlLength )	// Each char needs at least one byte.
+				return false;
+			for ( int i = 0; i < numOfChars; i++ ) {
+				char c = url.charAt(i);
+				if ( c >= 0x80 )	// Not an ASCII-char, compare the encoded url instead. The urls rarely have such chars.
+					return hasUrlBytes(url.getBytes(StandardCharsets.UTF_8));
+				if ( bytes[i] != c )
+					return false;
+			}
+			return (numOfChars == urlLength);
+		}
+
+		private boolean hasUrlBytes(byte[] urlBytes)
+		{
+			return hasUrlBytes(urlBytes, urlBytes.length);
+		}
+
+		private boolean hasUrlBytes(byte[] otherBytes, int otherUrlLength)
+		{
+			if ( otherUrlLength != urlLength )
+				return false;
+			for ( int i = 0; i < urlLength; i++ )
+				if ( bytes[i] != otherBytes[i] )
+					return false;
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if ( this == obj )
+				return true;
+			if ( obj instanceof LookupKey )
+				return hasUrl(((LookupKey) obj).url);
+			if ( !(obj instanceof Entry) )
+				return false;
+			Entry other = (Entry) obj;
+			return ((hash == other.hash) && other.hasUrlBytes(bytes, urlLength));
+		}
+	}
+
+
+	/**
+	 * It's used only for the lookups. The "ConcurrentHashMap" calls the "equals()" of the given key, with the stored entries.
+	 */
+	private static final class LookupKey
+	{
+		private final String url;
+
+		LookupKey(String url) {
+			this.url = url;
+		}
+
+		@Override
+		public int hashCode() {
+			return url.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if ( obj instanceof Entry )
+				return ((Entry) obj).hasUrl(url);
+			return ((obj instanceof LookupKey) && url.equals(((LookupKey) obj).url));
+		}
+	}
+}
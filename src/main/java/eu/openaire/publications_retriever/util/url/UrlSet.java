@@ -0,0 +1,24 @@
+package eu.openaire.publications_retriever.util.url;
+
+
+/**
+ * A concurrent set of urls, which only grows during a run, like the "UrlUtils.duplicateUrls".
+ * The "HeapUrlSet" keeps the urls themselves, while the "UrlFingerprintSet" keeps only a fingerprint of each url, outside the heap, for the large runs.
+ * @author Lampros Smyrnaios
+ */
+public interface UrlSet
+{
+	/**
+	 * @return "true", if the url was not in the set before.
+	 */
+	boolean add(String url);
+
+	boolean contains(String url);
+
+	long size();
+
+	/**
+	 * @return A description of the set, used in the statistics.
+	 */
+	String getDescription();
+}
@@ -5,6 +5,9 @@ import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -66,129 +69,112 @@ public class UrlTypeChecker
 	
 	
 	/**
-	 * This method takes the "retrievedUrl" from the inputFile and the "lowerCaseUrl" that comes out the retrieved one.
-	 * It then checks if the "lowerCaseUrl" matched certain criteria representing the unwanted urls' types. It uses the "retrievedUrl" for proper logging.
-	 * If these criteria match, then it logs the url and returns "true", otherwise, it returns "false".
-	 * @param urlId
-	 * @param lowerCaseUrl
-	 * @return true/false
+	 * This class holds a rule of the "matchesUnwantedUrlType()", which matches the urls containing any (or all) of its literals.
 	 */
-	public static boolean matchesUnwantedUrlType(String urlId, String retrievedUrl, String lowerCaseUrl)
+	private static class UnwantedUrlRule
 	{
-		String loggingMessage = null;
-		
-		// Avoid JavaScript-powered domains, other than the "sciencedirect.com", which is handled separately.
-		// We could "guess" the pdf-link for some of them, but for "persee.fr" for ex. there's also a captcha requirement for the connection, also the "tandfonline.com" wants its cookies, otherwise it redirects to "cookieAbsent"..
-		if ( lowerCaseUrl.contains("tandfonline.com") || lowerCaseUrl.contains("persee.fr")
-			|| lowerCaseUrl.contains("documentation.ird.fr") )	// The "documentation.ird.fr" works in "UrlCheck-test" but not when running multiple urls from the inputFile.
+		final long literalsMask;	// The bits of its literals in the "unwantedUrlLiteralsMatcher".
+		final boolean requiresAllLiterals;
+		final String loggingMessage;
+		final AtomicInteger counter;
+
+		UnwantedUrlRule(String[] literals, boolean requiresAllLiterals, String loggingMessage, AtomicInteger counter)
 		{
-			loggingMessage = "Discarded after matching to a JavaScript-using domain, other than the 'sciencedirect.com'.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				javascriptPageUrls.incrementAndGet();
-			return true;
+			long mask = 0;
+			for ( String literal : literals ) {
+				mask |= (1L << unwantedUrlLiterals.size());
+				unwantedUrlLiterals.add(literal);
+			}
+			this.literalsMask = mask;
+			this.requiresAllLiterals = requiresAllLiterals;
+			this.loggingMessage = loggingMessage;
+			this.counter = counter;
 		}
-		// Avoid plain "www.elsevier.com" and the "journals.elsevier.com" don't give docUrls.
-		else if ( lowerCaseUrl.contains("www.elsevier.com") || lowerCaseUrl.contains("journals.elsevier.com") ) {
-			// The "linkinghub.elsevier.com" is redirecting to "sciencedirect.com", so it's acceptable and not included here.
-			// Note that we still accept the "elsevier.es" pageUrls, which give docUrls.
-			loggingMessage = "Discarded after matching to the unwanted '(www|journals).elsevier.com' domain.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				elsevierUnwantedUrls.incrementAndGet();
-			return true;
+
+		boolean matches(long literalMatches) {
+			return requiresAllLiterals ? ((literalMatches & literalsMask) == literalsMask) : ((literalMatches & literalsMask) != 0);
 		}
+	}
+
+	private static final List<String> unwantedUrlLiterals = new ArrayList<>();	// Filled by the constructor of each rule.
+
+	// The rules are checked in this order, the first matching one is used for the logging and the statistics.
+	private static final List<UnwantedUrlRule> unwantedUrlRules = Arrays.asList(
+		// Avoid JavaScript-powered domains, other than the "sciencedirect.com", which is handled separately.
+		// We could "guess" the pdf-link for some of them, but for "persee.fr" for ex. there's also a captcha requirement for the connection, also the "tandfonline.com" wants its cookies, otherwise it redirects to "cookieAbsent"..
+		// The "documentation.ird.fr" works in "UrlCheck-test" but not when running multiple urls from the inputFile.
+		new UnwantedUrlRule(new String[] {"tandfonline.com", "persee.fr", "documentation.ird.fr"}, false, "Discarded after matching to a JavaScript-using domain, other than the 'sciencedirect.com'.", javascriptPageUrls),
+		// Avoid plain "www.elsevier.com" and the "journals.elsevier.com" don't give docUrls.
+		// The "linkinghub.elsevier.com" is redirecting to "sciencedirect.com", so it's acceptable and not included here. Note that we still accept the "elsevier.es" pageUrls, which give docUrls.
+		new UnwantedUrlRule(new String[] {"www.elsevier.com", "journals.elsevier.com"}, false, "Discarded after matching to the unwanted '(www|journals).elsevier.com' domain.", elsevierUnwantedUrls),
 		// Avoid resultPages (containing multiple publication-results).
-		else if ( lowerCaseUrl.contains("doaj.org/toc/") ) {
-			loggingMessage = "Discarded after matching to the Results-directory: 'doaj.org/toc/'.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				doajResultPageUrls.incrementAndGet();
-			return true;
-		}
+		new UnwantedUrlRule(new String[] {"doaj.org/toc/"}, false, "Discarded after matching to the Results-directory: 'doaj.org/toc/'.", doajResultPageUrls),
 		// Avoid HTML docUrls. These are shown simply inside the html-text of the page. No binary to download.
-		else if ( lowerCaseUrl.contains("dlib.org") || lowerCaseUrl.contains("saberes.fcecon.unr.edu.ar") || lowerCaseUrl.contains("eumed.net") ) {
-			loggingMessage = "Discarded after matching to a site containing the full-text as plain-text inside its HTML.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				pagesWithHtmlDocUrls.incrementAndGet();
-			return true;
-		}
-		// Avoid pages known to not provide docUrls (just metadata).
-		else if ( lowerCaseUrl.contains("rivisteweb.it") || lowerCaseUrl.contains("wur.nl") || lowerCaseUrl.contains("remeri.org.mx")	// Keep only "remeri" subDomain of "org.mx", as the TLD is having a lot of different sites.
-				|| lowerCaseUrl.contains("cam.ac.uk") || lowerCaseUrl.contains("scindeks.ceon.rs") || lowerCaseUrl.contains("egms.de") ) {
-			loggingMessage = "Discarded after matching to a domain which doesn't provide docUrls.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				pagesNotProvidingDocUrls.incrementAndGet();
-			return true;
-		}
+		new UnwantedUrlRule(new String[] {"dlib.org", "saberes.fcecon.unr.edu.ar", "eumed.net"}, false, "Discarded after matching to a site containing the full-text as plain-text inside its HTML.", pagesWithHtmlDocUrls),
+		// Avoid pages known to not provide docUrls (just metadata). Keep only "remeri" subDomain of "org.mx", as the TLD is having a lot of different sites.
+		new UnwantedUrlRule(new String[] {"rivisteweb.it", "wur.nl", "remeri.org.mx", "cam.ac.uk", "scindeks.ceon.rs", "egms.de"}, false, "Discarded after matching to a domain which doesn't provide docUrls.", pagesNotProvidingDocUrls),
 		// Avoid domains requiring login to access docUrls.
-		else if ( lowerCaseUrl.contains("bibliotecadigital.uel.br") || lowerCaseUrl.contains("cepr.org") ) {
-			loggingMessage = "Discarded after matching to a domain which needs login to access docFiles.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				pagesRequireLoginToAccessDocFiles.incrementAndGet();
-			return true;
-		}
+		new UnwantedUrlRule(new String[] {"bibliotecadigital.uel.br", "cepr.org"}, false, "Discarded after matching to a domain which needs login to access docFiles.", pagesRequireLoginToAccessDocFiles),
 		// Avoid crawling pages having their DocUrls in larger depth (internalPagesToDocUrls or PreviousOfDocUrls).
-		else if ( lowerCaseUrl.contains("/view/") || lowerCaseUrl.contains("scielosp.org") || lowerCaseUrl.contains("dk.um.si") || lowerCaseUrl.contains("apospublications.com")
-				|| lowerCaseUrl.contains("jorr.org") || lowerCaseUrl.contains("rwth-aachen.de") || lowerCaseUrl.contains("pubmed.ncbi.nlm.nih.gov") ) {
-			loggingMessage = "Discarded after matching to a site having its DocUrls in larger depth.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				pagesWithLargerCrawlingDepth.incrementAndGet();
-			return true;
-		}
+		new UnwantedUrlRule(new String[] {"/view/", "scielosp.org", "dk.um.si", "apospublications.com", "jorr.org", "rwth-aachen.de", "pubmed.ncbi.nlm.nih.gov"}, false, "Discarded after matching to a site having its DocUrls in larger depth.", pagesWithLargerCrawlingDepth),
 		// Avoid "PANGAEA."-urls with problematic form and non docUrl internal links (yes WITH the "DOT").
-		else if ( lowerCaseUrl.contains("doi.org/https://doi.org/") && lowerCaseUrl.contains("pangaea.") ) {
-			loggingMessage = "Discarded after matching to 'PANGAEA.' urls with invalid form and non-docUrls in their internal links.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				pangaeaUrls.incrementAndGet();
-			return true;
-		}
+		new UnwantedUrlRule(new String[] {"doi.org/https://doi.org/", "pangaea."}, true, "Discarded after matching to 'PANGAEA.' urls with invalid form and non-docUrls in their internal links.", pangaeaUrls),
 		// Avoid known domains with connectivity problems.
-		else if ( lowerCaseUrl.contains("200.17.137.108") ) {
-			loggingMessage = "Discarded after matching to known urls with connectivity problems.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				LoaderAndChecker.connProblematicUrls.incrementAndGet();
-			return true;
-		}
-		/*
-		// Avoid slow urls (taking more than 3secs to connect). This is currently disabled since it was decided to let more pageUrl unblocked.
-		else if ( lowerCaseUrl.contains("handle.net") || lowerCaseUrl.contains("doors.doshisha.ac.jp") || lowerCaseUrl.contains("opac-ir.lib.osaka-kyoiku.ac.jp") ) {
-			loggingMessage = "Discarded after matching to domain, known to take long to respond.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
-			if ( !LoaderAndChecker.useIdUrlPairs )
-				longToRespondUrls ++;
-			return true;
-		}*/
+		new UnwantedUrlRule(new String[] {"200.17.137.108"}, false, "Discarded after matching to known urls with connectivity problems.", LoaderAndChecker.connProblematicUrls),
+		// Avoid slow urls (taking more than 3secs to connect), like "handle.net", "doors.doshisha.ac.jp" and "opac-ir.lib.osaka-kyoiku.ac.jp" (using the "longToRespondUrls").
+		// This is currently disabled since it was decided to let more pageUrl unblocked.
 		// Avoid urls which contain either "getSharedSiteSession" or "consumeSharedSiteSession" as these cause an infinite loop.
-		else if ( lowerCaseUrl.contains("sharedsitesession") ) {
-			ConnSupportUtils.blockSharedSiteSessionDomains(retrievedUrl, null);
-			loggingMessage = "It was discarded after participating in a 'sharedSiteSession-endlessRedirectionPack'.";
+		new UnwantedUrlRule(new String[] {"sharedsitesession"}, false, "It was discarded after participating in a 'sharedSiteSession-endlessRedirectionPack'.", LoaderAndChecker.connProblematicUrls)
+	);
+	private static final UnwantedUrlRule sharedSiteSessionRule = unwantedUrlRules.get(unwantedUrlRules.size() -1);
+
+	private static final LiteralsMatcher unwantedUrlLiteralsMatcher = new LiteralsMatcher(unwantedUrlLiterals.toArray(new String[0]));	// All the literals are searched with a single pass over the url.
+
+	public static final RegexRuleSet pageUrlRegexRules = new RegexRuleSet(
+			new String[] {"PLAIN_DOMAIN_FILTER", "SPECIFIC_DOMAIN_FILTER", "URL_DIRECTORY_FILTER", "URL_FILE_EXTENSION_FILTER", "CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER"},
+			new Pattern[] {PLAIN_DOMAIN_FILTER, SPECIFIC_DOMAIN_FILTER, URL_DIRECTORY_FILTER, URL_FILE_EXTENSION_FILTER, CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER});	// TODO - Remove the "CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER" when these docExtensions get supported.
+
+	// The "INTERNAL_LINKS_KEYWORDS_FILTER" is checked with literals, before the regex-rules. Only its "doi.org" keyword needs the regex, as its "dot" matches any character.
+	private static final LiteralsMatcher internalLinksKeywordsMatcher = new LiteralsMatcher("doi", "?ln=", "?lan=", "?lng=", "?lang=", "isallowed=n", "site=", "linkout", "login", "linklistener");
+	private static final long DOI_KEYWORD_MASK = 1L;
+	private static final Pattern DOI_ORG_KEYWORD_FILTER = Pattern.compile("doi.org");
+
+	public static final RegexRuleSet internalLinkRegexRules = new RegexRuleSet(
+			new String[] {"URL_DIRECTORY_FILTER", "SPECIFIC_DOMAIN_FILTER", "PLAIN_DOMAIN_FILTER", "URL_FILE_EXTENSION_FILTER", "INTERNAL_LINKS_FILE_FORMAT_FILTER", "PLAIN_PAGE_EXTENSION_FILTER", "CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER"},
+			new Pattern[] {URL_DIRECTORY_FILTER, SPECIFIC_DOMAIN_FILTER, PLAIN_DOMAIN_FILTER, URL_FILE_EXTENSION_FILTER, INTERNAL_LINKS_FILE_FORMAT_FILTER, PLAIN_PAGE_EXTENSION_FILTER, CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER});
+
+	public static AtomicInteger internalLinksMatchingKeywords = new AtomicInteger(0);	// The internalLinks which were rejected by the "INTERNAL_LINKS_KEYWORDS_FILTER".
+
+
+	/**
+	 * This method takes the "retrievedUrl" from the inputFile and the "lowerCaseUrl" that comes out the retrieved one.
+	 * It then checks if the "lowerCaseUrl" matched certain criteria representing the unwanted urls' types. It uses the "retrievedUrl" for proper logging.
+	 * If these criteria match, then it logs the url and returns "true", otherwise, it returns "false".
+	 * @param urlId
+	 * @param lowerCaseUrl
+	 * @return true/false
+	 */
+	public static boolean matchesUnwantedUrlType(String urlId, String retrievedUrl, String lowerCaseUrl)
+	{
+		String loggingMessage = null;
+
+		UnwantedUrlRule rule = findUnwantedUrlRule(lowerCaseUrl);
+		if ( rule != null ) {
+			if ( rule == sharedSiteSessionRule )
+				ConnSupportUtils.blockSharedSiteSessionDomains(retrievedUrl, null);
+			loggingMessage = rule.loggingMessage;
 			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
 			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
 			if ( !LoaderAndChecker.useIdUrlPairs )
-				LoaderAndChecker.connProblematicUrls.incrementAndGet();
+				rule.counter.incrementAndGet();
 			return true;
 		}
+
 		// Avoid pages based on unwanted url-string-content.
-		else if ( shouldNotAcceptPageUrl(retrievedUrl, lowerCaseUrl) ) {
+		int matchingRegexRule = pageUrlRegexRules.findFirstMatchingRule(lowerCaseUrl);
+		if ( matchingRegexRule != -1 ) {
 			loggingMessage = "Discarded after matching to unwantedType-regex-rules.";
-			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
+			logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage + " The matching rule was: " + pageUrlRegexRules.getRuleName(matchingRegexRule));
 			UrlUtils.logOutputData(urlId, retrievedUrl, null, "unreachable", loggingMessage, null, true, "true", "N/A", "false", "false");
 			if ( !LoaderAndChecker.useIdUrlPairs )
 				urlsWithUnwantedForm.incrementAndGet();
@@ -199,6 +185,28 @@ public class UrlTypeChecker
 	}
 	
 	
+	/**
+	 * This method checks whether the given url matches any of the literal-rules of the "matchesUnwantedUrlType()", without logging it.
+	 * @param lowerCaseUrl
+	 * @return true / false
+	 */
+	public static boolean matchesUnwantedLiterals(String lowerCaseUrl)
+	{
+		return (findUnwantedUrlRule(lowerCaseUrl) != null);
+	}
+
+
+	private static UnwantedUrlRule findUnwantedUrlRule(String lowerCaseUrl)
+	{
+		long literalMatches = unwantedUrlLiteralsMatcher.findMatches(lowerCaseUrl);
+		if ( literalMatches != 0 )
+			for ( UnwantedUrlRule rule : unwantedUrlRules )
+				if ( rule.matches(literalMatches) )
+					return rule;
+		return null;
+	}
+	
+	
 	/**
 	 * This method matches the given pageUrl against general regex-es.
 	 * It returns "true" if the givenUrl should not be accepted, otherwise, it returns "false".
@@ -212,9 +220,7 @@ public class UrlTypeChecker
 			lowerCaseUrl = pageUrl.toLowerCase();
 		// If it's not "null", it means we have already done the transformation in the calling method.
 		
-		return	PLAIN_DOMAIN_FILTER.matcher(lowerCaseUrl).matches() || SPECIFIC_DOMAIN_FILTER.matcher(lowerCaseUrl).matches()
-				|| URL_DIRECTORY_FILTER.matcher(lowerCaseUrl).matches() || URL_FILE_EXTENSION_FILTER.matcher(lowerCaseUrl).matches()
-				|| CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER.matcher(lowerCaseUrl).matches();	// TODO - To be removed when these docExtensions get supported.
+		return (pageUrlRegexRules.findFirstMatchingRule(lowerCaseUrl) != -1);
 	}
 	
 	
@@ -224,11 +230,13 @@ public class UrlTypeChecker
 			lowerCaseLink = linkStr.toLowerCase();
 		// If it's not "null", it means we have already done the transformation in the calling method.
 		
-		return	URL_DIRECTORY_FILTER.matcher(lowerCaseLink).matches() || INTERNAL_LINKS_KEYWORDS_FILTER.matcher(lowerCaseLink).matches()
-				|| SPECIFIC_DOMAIN_FILTER.matcher(lowerCaseLink).matches() || PLAIN_DOMAIN_FILTER.matcher(lowerCaseLink).matches()
-				|| URL_FILE_EXTENSION_FILTER.matcher(lowerCaseLink).matches() || INTERNAL_LINKS_FILE_FORMAT_FILTER.matcher(lowerCaseLink).matches()
-				|| PLAIN_PAGE_EXTENSION_FILTER.matcher(lowerCaseLink).matches()
-				|| CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER.matcher(lowerCaseLink).matches();	// TODO - To be removed when these docExtensions get supported.
+		long keywordMatches = internalLinksKeywordsMatcher.findMatches(lowerCaseLink);
+		if ( (keywordMatches & ~DOI_KEYWORD_MASK) != 0	// Any other keyword.
+				|| ((keywordMatches != 0) && DOI_ORG_KEYWORD_FILTER.matcher(lowerCaseLink).find()) ) {
+			internalLinksMatchingKeywords.incrementAndGet();
+			return true;
+		}
+		return (internalLinkRegexRules.findFirstMatchingRule(lowerCaseLink) != -1);
 	}
 	
 }
@@ -1,16 +1,12 @@
 package eu.openaire.publications_retriever.util.url;
 
 import eu.openaire.publications_retriever.crawler.MachineLearning;
+import eu.openaire.publications_retriever.crawler.PageFingerprints;
 import eu.openaire.publications_retriever.util.file.FileUtils;
-import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.Hashtable;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -35,14 +31,12 @@ public class UrlUtils
 
 	public static AtomicInteger sumOfDocUrlsFound = new AtomicInteger(0);	// Change it back to simple int if finally in singleThread mode
 
-	public static final Set<String> duplicateUrls = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	public static UrlSet duplicateUrls = new HeapUrlSet();	// For the large runs, it's replaced by a "UrlFingerprintSet", at the start.
 
-	public static final Hashtable<String, String> docOrDatasetUrlsWithIDs = new Hashtable<String, String>();	// Null keys are allowed (in case they are not available in the input).
+	public static final UrlIdMap docOrDatasetUrlsWithIDs = new UrlIdMap();	// Null IDs are allowed (in case they are not available in the input).
 
 	public static final String alreadyDownloadedByIDMessage = "This file is probably already downloaded from ID=";
 
-	public static final Hashtable<String, Integer> domainsAndHits = new Hashtable<>();
-
 
 	/**
      * This method logs the outputEntry to be written, as well as the docUrlPath (if non-empty String) and adds entries in the blackList.
@@ -68,9 +62,10 @@ public class UrlUtils
 			if ( !finalDocUrl.equals("unreachable") )
 			{
 				sumOfDocUrlsFound.incrementAndGet();
+				PageFingerprints.registerDocUrlOfCurrentPage();	// If this docUrl was found from a crawled page, then its template is recorded to give docUrls.
 
 				// Remove the "temporalId" from urls for "cleaner" output and "already found docUrl"-matching. These IDs will expire eventually anyway.
-				String lowerCaseUrl = finalDocUrl.toLowerCase();
+				String lowerCaseUrl = getParsedUrl(finalDocUrl).getLowerCaseUrl();	// This docUrl was checked just before, so it's already parsed.
 				if ( lowerCaseUrl.contains("token") || lowerCaseUrl.contains("jsessionid") )
 					finalDocUrl = UrlUtils.removeTemporalIdentifier(finalDocUrl);	// We send the non-lowerCase-url as we may want to continue with that docUrl in case of an error.
 
@@ -87,13 +82,13 @@ public class UrlUtils
 						MachineLearning.gatherMLData(pageUrl, finalDocUrl, pageDomain);
 
 					// Add the domains of the pageUrl and the finalDocUrl to the successful domains as both lead in some way to a docUrl.
-					ConnSupportUtils.countInsertAndGetTimes(domainsAndHits, pageDomain);
+					DomainRegistry.incrementHits(pageDomain);
 
-					// Now if the "finalDocUrl" is different than the "pageUrl", get the domain of the "finalDocUrl" and if it's different, then add it to "domainsAndHits"-HashMap.
+					// Now if the "finalDocUrl" is different than the "pageUrl", get the domain of the "finalDocUrl" and if it's different, then count a hit for it, as well.
 					if ( !pageUrl.equals(finalDocUrl) ) {
 						String docUrlDomain = UrlUtils.getDomainStr(finalDocUrl, null);
 						if ( (docUrlDomain != null) && !pageDomain.equals(docUrlDomain) )
-							ConnSupportUtils.countInsertAndGetTimes(domainsAndHits, docUrlDomain);
+							DomainRegistry.incrementHits(docUrlDomain);
 					}
 				}
 			}
@@ -105,123 +100,134 @@ public class UrlUtils
     }
 
 
+	private static final int PARSED_URLS_CACHE_SIZE = 4;	// A url is handled by a few methods in a row (loading, connecting, crawling, logging), while its redirections or its page's links are handled in between.
+
+	private static final class ParsedUrlsCache {
+		final ParsedUrl[] parsedUrls = new ParsedUrl[PARSED_URLS_CACHE_SIZE];
+		int nextIndex = 0;
+		ParsedUrl pinnedParsedUrl = null;	// The page being crawled by this thread. Its links rotate through the other slots, so it would be evicted and re-parsed for every link.
+	}
+
+	private static final ThreadLocal<ParsedUrlsCache> parsedUrlsCache = ThreadLocal.withInitial(ParsedUrlsCache::new);
+
+
 	/**
-	 * This method returns the domain of the given url, in lowerCase (for better comparison).
+	 * This method returns the parsed version of the given url. The last few urls parsed by each thread are kept, so the methods handling the same url do not parse it again.
 	 * @param urlStr
-	 * @param matcher
-	 * @return domainStr
+	 * @return parsedUrl (its "domain", "path" and "docId" are null, if the url does not match the "URL_TRIPLE") / null if the urlStr was null
 	 */
-	public static String getDomainStr(String urlStr, Matcher matcher)
+	public static ParsedUrl getParsedUrl(String urlStr)
 	{
-		if ( matcher == null )
-			if ( (matcher = getUrlMatcher(urlStr)) == null )
-				return null;
-
-		String domainStr = null;
-		try {
-			domainStr = matcher.group(2);	// Group <2> is the DOMAIN.
-		} catch (Exception e) { logger.error("", e); return null; }
-		if ( (domainStr == null) || domainStr.isEmpty() ) {
-			logger.warn("No domain was extracted from url: \"" + urlStr + "\".");
+		if ( urlStr == null ) {	// Avoid NPE in the parsing.
+			logger.error("The received \"urlStr\" was null in \"getParsedUrl()\"!");
 			return null;
 		}
 
-		return domainStr.toLowerCase();	// We return it in lowerCase as we don't want to store double domains. (it doesn't play any part in connectivity, only the rest of the url is case-sensitive.)
+		ParsedUrlsCache cache = parsedUrlsCache.get();
+		ParsedUrl pinnedParsedUrl = cache.pinnedParsedUrl;
+		if ( (pinnedParsedUrl != null) && ((pinnedParsedUrl.url == urlStr) || pinnedParsedUrl.url.equals(urlStr)) )
+			return pinnedParsedUrl;
+		for ( ParsedUrl parsedUrl : cache.parsedUrls )
+			if ( (parsedUrl != null) && ((parsedUrl.url == urlStr) || parsedUrl.url.equals(urlStr)) )
+				return parsedUrl;
+
+		ParsedUrl parsedUrl = ParsedUrl.parse(urlStr);
+		cache.parsedUrls[cache.nextIndex] = parsedUrl;
+		cache.nextIndex = (cache.nextIndex + 1) % PARSED_URLS_CACHE_SIZE;
+		return parsedUrl;
 	}
 
 
 	/**
-	 * This method returns the path of the given url.
+	 * This method keeps the parsed version of the given url outside the rotating slots of the cache, until "unpinParsedUrl()" is called.
+	 * It's used for the page being crawled by the current thread, which is needed again for each of its internal-links (e.g. in "HttpConnUtils.connectAndCheckMimeType()").
 	 * @param urlStr
-	 * @param matcher
-	 * @return pathStr
 	 */
-	public static String getPathStr(String urlStr, Matcher matcher)
+	public static void pinParsedUrl(String urlStr)
 	{
-		if ( matcher == null )
-			if ( (matcher = getUrlMatcher(urlStr)) == null )
-				return null;
+		ParsedUrl parsedUrl = getParsedUrl(urlStr);	// It's usually already parsed, when the page was connected.
+		if ( parsedUrl != null )
+			parsedUrlsCache.get().pinnedParsedUrl = parsedUrl;
+	}
 
-		String pathStr = null;
-		try {
-			pathStr = matcher.group(1);	// Group <1> is the PATH.
-		} catch (Exception e) { logger.error("", e); return null; }
-		if ( (pathStr == null) || pathStr.isEmpty() ) {
-			logger.warn("No pathStr was extracted from url: \"" + urlStr + "\".");
-			return null;
-		}
 
-		return pathStr;
+	public static void unpinParsedUrl()
+	{
+		parsedUrlsCache.get().pinnedParsedUrl = null;
 	}
 
 
 	/**
-	 * This method returns the path of the given url.
+	 * This method returns the parsed version of the given url, if it matches the "URL_TRIPLE", otherwise it logs the mismatch and returns null.
 	 * @param urlStr
-	 * @param matcher
-	 * @return pathStr
+	 * @param parsedUrl (it may be null, then it's retrieved by the "getParsedUrl()")
+	 * @return parsedUrl / null
 	 */
-	public static String getDocIdStr(String urlStr, Matcher matcher)
+	private static ParsedUrl getMatchingParsedUrl(String urlStr, ParsedUrl parsedUrl)
 	{
-		if ( matcher == null )
-			if ( (matcher = getUrlMatcher(urlStr)) == null )
+		if ( parsedUrl == null )
+			if ( (parsedUrl = getParsedUrl(urlStr)) == null )
 				return null;
 
-		String docIdStr = null;
-		try {
-			docIdStr = matcher.group(3);	// Group <3> is the docId.
-		} catch (Exception e) { logger.error("", e); return null; }
-		if ( (docIdStr == null) || docIdStr.isEmpty() ) {
-			logger.warn("No docID was extracted from url: \"" + urlStr + "\".");
+		if ( parsedUrl.path == null ) {	// The path always exists, when the url matches.
+			logger.warn("Unexpected URL_TRIPLE's mismatch for url: \"" + urlStr + "\"");
 			return null;
 		}
-
-		return docIdStr;
+		return parsedUrl;
 	}
 
 
-	public static Matcher getUrlMatcher(String urlStr)
+	/**
+	 * This method returns the domain of the given url, in lowerCase (for better comparison).
+	 * @param urlStr
+	 * @param parsedUrl (it may be null)
+	 * @return domainStr
+	 */
+	public static String getDomainStr(String urlStr, ParsedUrl parsedUrl)
 	{
-		if ( urlStr == null ) {	// Avoid NPE in "Matcher"
-			logger.error("The received \"urlStr\" was null in \"getUrlMatcher()\"!");
+		if ( (parsedUrl = getMatchingParsedUrl(urlStr, parsedUrl)) == null )
 			return null;
-		}
 
-		// If the url ends with "/" then remove it as its a "mistake" and the last part of it is the "docID" we want.
-		if ( urlStr.endsWith("/") )
-			urlStr = urlStr.substring(0, (urlStr.length() -1));
-		Matcher urlMatcher = UrlUtils.URL_TRIPLE.matcher(urlStr);
-		if ( urlMatcher.matches() )
-			return urlMatcher;
-		else {
-			logger.warn("Unexpected URL_TRIPLE's (" + urlMatcher.toString() + ") mismatch for url: \"" + urlStr + "\"");
+		String domainStr = parsedUrl.domain;	// It's already in lowerCase, as we don't want to store double domains. (it doesn't play any part in connectivity, only the rest of the url is case-sensitive.)
+		if ( domainStr == null ) {
+			logger.warn("No domain was extracted from url: \"" + urlStr + "\".");
 			return null;
 		}
+		return domainStr;
 	}
 
 
-	public static final Pattern TOP_THREE_LEVEL_DOMAIN_FILTER = Pattern.compile("[\\w-.]*?((?:[\\w-]+.)?[\\w-]+.[\\w-]+)$");
+	/**
+	 * This method returns the path of the given url.
+	 * @param urlStr
+	 * @param parsedUrl (it may be null)
+	 * @return pathStr
+	 */
+	public static String getPathStr(String urlStr, ParsedUrl parsedUrl)
+	{
+		if ( (parsedUrl = getMatchingParsedUrl(urlStr, parsedUrl)) == null )
+			return null;
+		return parsedUrl.path;
+	}
+
 
 	/**
-	 * This method received the domain as a parameter and tries to return only the top-three-level domain part.
-	 * If the retrieval process fails, it returns the domain as it was given.
-	 * @param domainStr
-	 * @return the top-three-level-domain
+	 * This method returns the docId of the given url.
+	 * @param urlStr
+	 * @param parsedUrl (it may be null)
+	 * @return docIdStr
 	 */
-	public static String getTopThreeLevelDomain(String domainStr)
+	public static String getDocIdStr(String urlStr, ParsedUrl parsedUrl)
 	{
-		Matcher matcher = TOP_THREE_LEVEL_DOMAIN_FILTER.matcher(domainStr);
-		if ( matcher.matches() ) {
-			try {
-				domainStr = matcher.group(1);
-			} catch (Exception e) {
-				logger.warn("Could not find the group < 1 > when retrieving the top-three-level-domain from \"" + domainStr + "\"");
-				return domainStr;	// It's the domain that was given as parameter.
-			}
-		} else
-			logger.warn("Could not retrieve the top-three-level-domain from \"" + domainStr + "\"");
+		if ( (parsedUrl = getMatchingParsedUrl(urlStr, parsedUrl)) == null )
+			return null;
 
-		return domainStr;
+		String docIdStr = parsedUrl.docId;
+		if ( docIdStr == null ) {
+			logger.warn("No docID was extracted from url: \"" + urlStr + "\".");
+			return null;
+		}
+		return docIdStr;
 	}
 
 
@@ -238,9 +244,9 @@ public class UrlUtils
 			return null;
 		}
 
-		Matcher temporalIdMatcher = TEMPORAL_IDENTIFIER_FILTER.matcher(urlStr);
-		if ( !temporalIdMatcher.matches() )
-			return urlStr;
+		Matcher temporalIdMatcher = TEMPORAL_IDENTIFIER_FILTER.matcher("");
+		if ( RegexGuard.matches(temporalIdMatcher, urlStr, RegexGuard.MAX_URL_LENGTH) != RegexGuard.Result.MATCHED )
+			return urlStr;	// If the guard aborted the matching, the url is kept as it is.
 
 		String preTemporalIdStr = null;
 		String afterTemporalIdStr = null;
@@ -281,9 +287,9 @@ public class UrlUtils
 
 		String noAnchorUrl = null;
 
-		Matcher anchorMatcher = ANCHOR_FILTER.matcher(urlStr);
-		if ( !anchorMatcher.matches() )
-			return urlStr;
+		Matcher anchorMatcher = ANCHOR_FILTER.matcher("");
+		if ( RegexGuard.matches(anchorMatcher, urlStr, RegexGuard.MAX_URL_LENGTH) != RegexGuard.Result.MATCHED )
+			return urlStr;	// If the guard aborted the matching, the url is kept as it is.
 
 		try {
 			noAnchorUrl = anchorMatcher.group(1);	// Take only the 1st part of the urlStr, without the anchor.
@@ -0,0 +1,100 @@
+package eu.openaire.publications_retriever.test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * This class generates HTML-pages which resemble the landing-pages of the common repository-platforms (DSpace, OJS, EPrints, etc.), to be used in tests and benchmarks.
+ * The pages are generated (instead of stored), so they can have the size and the number of metaTags of the large real-pages, without adding megabytes in the repository.
+ * @author Lampros Smyrnaios
+ */
+public class HtmlPageSamples {
+
+	/**
+	 * @return the samples, by name, in a stable order.
+	 */
+	public static Map<String, String> getSamples()
+	{
+		Map<String, String> samples = new LinkedHashMap<>();
+		samples.put("dspaceWithPdfMeta", getDSpacePage(true));
+		samples.put("dspaceWithoutPdfMeta", getDSpacePage(false));
+		samples.put("ojsContentBeforeName", getOjsPage());
+		samples.put("eprintsDocumentUrl", getEprintsPage());
+		samples.put("largeMinifiedWithoutMeta", getLargeMinifiedPage());
+		return samples;
+	}
+
+
+	private static String getDSpacePage(boolean withPdfMeta)
+	{
+		StringBuilder sb = new StringBuilder(150_000);
+		sb.append("<!DOCTYPE html><html lang=\"en\"><head><meta charset=\"utf-8\"><meta http-equiv=\"X-UA-Compatible\" content=\"IE=edge\">");
+		sb.append("<title>On the convergence of the simulated methods | Repository</title>");
+		for ( int i = 0; i < 40; ++i ) {
+			sb.append("<meta name=\"DC.contributor\" content=\"Author Number").append(i).append(", Name\" xml:lang=\"en\">");
+			sb.append("<meta name=\"DCTERMS.abstract\" content=\"Abstract part ").append(i).append(": lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore.\">");
+		}
+		sb.append("<meta name=\"citation_title\" content=\"On the convergence of the simulated methods\">");
+		sb.append("<meta name=\"citation_author\" content=\"Doe, John\">");
+		sb.append("<meta name=\"citation_date\" content=\"2020\">");
+		if ( withPdfMeta )
+			sb.append("<meta name=\"citation_pdf_url\" content=\"https://repository.example.org/bitstream/handle/123456789/1234/paper.pdf?sequence=1&amp;isAllowed=y\">");
+		sb.append("<meta name=\"citation_abstract_html_url\" content=\"https://repository.example.org/handle/123456789/1234\">");
+		sb.append("<link rel=\"stylesheet\" href=\"/themes/Mirage2/styles/main.css\"></head><body>");
+		appendBody(sb, 100_000);
+		sb.append("</body></html>");
+		return sb.toString();
+	}
+
+
+	private static String getOjsPage()
+	{
+		StringBuilder sb = new StringBuilder(80_000);
+		sb.append("<!DOCTYPE html><html lang=\"en-US\"><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\">");
+		for ( int i = 0; i < 20; ++i )
+			sb.append("<meta name=\"citation_keywords\" xml:lang=\"en\" content=\"keyword").append(i).append("\"/>");
+		sb.append("<META content='https://journals.example.org/index.php/journal/article/download/55/70' NAME = 'Citation_PDF_URL' />");
+		sb.append("</head><body>");
+		appendBody(sb, 50_000);
+		sb.append("</body></html>");
+		return sb.toString();
+	}
+
+
+	private static String getEprintsPage()
+	{
+		StringBuilder sb = new StringBuilder(60_000);
+		sb.append("<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>EPrints record</title>");
+		for ( int i = 0; i < 30; ++i )
+			sb.append("<meta name=\"eprints.creators_name\" content=\"Creator").append(i).append(", A.\" />\n");
+		sb.append("<meta name=\"eprints.document_url\" content=\"http://eprints.example.ac.uk/42/1/thesis.pdf\" />\n");
+		sb.append("</head><body>");
+		appendBody(sb, 40_000);
+		sb.append("</body></html>");
+		return sb.toString();
+	}
+
+
+	private static String getLargeMinifiedPage()
+	{
+		StringBuilder sb = new StringBuilder(320_000);
+		sb.append("<html><head><title>Search results</title><meta name=\"viewport\" content=\"width=device-width\"><meta name=\"description\" content=\"A page without a metaDocUrl\"></head><body>");
+		appendBody(sb, 300_000);
+		sb.append("</body></html>");
+		return sb.toString();
+	}
+
+
+	private static void appendBody(StringBuilder sb, int approximateSize)
+	{
+		int targetLength = sb.length() + approximateSize;
+		int i = 0;
+		while ( sb.length() < targetLength ) {
+			sb.append("<div class=\"item\"><a href=\"/handle/123456789/").append(i).append("\">Related item ").append(i).append("</a>");
+			sb.append("<p>Lorem ipsum dolor sit amet, <b>consectetur</b> adipiscing elit &amp; sed do eiusmod.</p></div>");
+			i++;
+		}
+	}
+
+}
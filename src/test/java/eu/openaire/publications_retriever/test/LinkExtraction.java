@@ -76,7 +76,7 @@ public class LinkExtraction {
 	{
 		String link;
 		try {
-			HashSet<String> extractedLinksHashSet = PageCrawler.extractInternalLinksFromHtml(exampleHtml, null);
+			HashSet<String> extractedLinksHashSet = PageCrawler.extractInternalLinksFromHtml(exampleHtml, null).internalLinks;
 			if ( (extractedLinksHashSet == null) || (extractedLinksHashSet.size() == 0) )
 				return;	// Logging is handled inside..
 
@@ -110,7 +110,7 @@ public class LinkExtraction {
 				link = null;
 			}
 			else {
-				HashSet<String> extractedLinksHashSet = PageCrawler.extractInternalLinksFromHtml(html, newUrl);
+				HashSet<String> extractedLinksHashSet = PageCrawler.extractInternalLinksFromHtml(html, newUrl).internalLinks;
 				if ( extractedLinksHashSet == null || extractedLinksHashSet.size() == 0 )
 					return;	// Logging is handled inside..
 
@@ -132,7 +132,7 @@ public class LinkExtraction {
 	public void testExtractAllLinksFromHtml()
 	{
 		try {
-			HashSet<String> extractedLinksHashSet = PageCrawler.extractInternalLinksFromHtml(exampleHtml, null);
+			HashSet<String> extractedLinksHashSet = PageCrawler.extractInternalLinksFromHtml(exampleHtml, null).internalLinks;
 			if ( extractedLinksHashSet == null || extractedLinksHashSet.size() == 0 )
 				return;	// Logging is handled inside..
 
@@ -166,7 +166,7 @@ public class LinkExtraction {
 			}
 			//logger.debug("HTML:\n" + html);
 
-			HashSet<String> extractedLinksHashSet = PageCrawler.extractInternalLinksFromHtml(html, newUrl);
+			HashSet<String> extractedLinksHashSet = PageCrawler.extractInternalLinksFromHtml(html, newUrl).internalLinks;
 			if ( extractedLinksHashSet == null || extractedLinksHashSet.size() == 0 )
 				return;	// Logging is handled inside..
 
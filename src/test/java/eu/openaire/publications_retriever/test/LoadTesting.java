@@ -0,0 +1,154 @@
+package eu.openaire.publications_retriever.test;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.util.ContextInitializer;
+import ch.qos.logback.core.joran.spi.JoranException;
+import eu.openaire.publications_retriever.PublicationsRetriever;
+import eu.openaire.publications_retriever.util.url.UrlUtils;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class runs the whole program against the "LocalPublisherSimulator", in order to measure its throughput, the latency per record and the heap-usage,
+ * in a reproducible way, without hitting the live internet.
+ * As the program keeps its state in static fields, only one load-test can run per JVM. Run the "main()" method, with the optional arguments: numOfDomains numOfRecords numOfThreads
+ * @author Lampros Smyrnaios
+ */
+public class LoadTesting {
+
+	private static final Logger logger = LoggerFactory.getLogger(LoadTesting.class);
+
+	private static final int simulatorPort = 8889;
+	private static final int simulatorThreads = 500;
+	private static final long seed = 42;
+
+	private static int numOfDomains = 2000;
+	private static int numOfRecords = 10000;	// Each domain gets about "numOfRecords / numOfDomains" records, so the politeness-delay is also measured.
+	private static int numOfThreads = 200;
+
+
+	@Disabled	// as we want to run it only on demand, since it takes a few minutes.
+	@Test
+	public void runLoadTest() throws IOException
+	{
+		loadTest();
+	}
+
+
+	public static void main(String[] args) throws IOException
+	{
+		if ( args.length > 0 )
+			numOfDomains = Integer.parseInt(args[0]);
+		if ( args.length > 1 )
+			numOfRecords = Integer.parseInt(args[1]);
+		if ( args.length > 2 )
+			numOfThreads = Integer.parseInt(args[2]);
+		loadTest();
+	}
+
+
+	private static void loadTest() throws IOException
+	{
+		LocalPublisherSimulator simulator = new LocalPublisherSimulator(simulatorPort, numOfDomains, seed);
+		simulator.start(simulatorThreads);
+
+		File testDir = Files.createTempDirectory("publications_retriever_load_test").toFile();
+		File inputFile = new File(testDir, "simulated_input.json");
+		writeInputFile(simulator, inputFile);
+		logger.info("Starting the load-test with " + numOfRecords + " records in " + numOfDomains + " virtual domains. The input-file is: " + inputFile.getAbsolutePath());
+
+		MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+		AtomicLong peakHeapUsed = new AtomicLong(0);
+		ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor();
+		heapSampler.scheduleAtFixedRate(() -> peakHeapUsed.accumulateAndGet(memoryMXBean.getHeapMemoryUsage().getUsed(), Math::max), 0, 100, TimeUnit.MILLISECONDS);
+
+		String[] args = new String[6];
+		args[0] = "-retrieveDataType";
+		args[1] = "document";
+		args[2] = "-inputFileFullPath";
+		args[3] = inputFile.getAbsolutePath();
+		args[4] = "-numOfThreads";
+		args[5] = String.valueOf(numOfThreads);
+
+		long startTime = System.nanoTime();
+		try {
+			TestNonStandardInputOutput.main(args);
+		} finally {
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+			heapSampler.shutdownNow();
+			simulator.stop();
+
+			System.gc();
+			long heapUsedAfterGC = memoryMXBean.getHeapMemoryUsage().getUsed();
+			long[] recordLatencies = simulator.getSortedRecordLatencies();
+
+			restartLogging();	// The logger was stopped by "FileUtils.closeIO()".
+			logger.info("Load-test results: " + numOfRecords + " records in " + numOfDomains + " virtual domains, using " + PublicationsRetriever.workerThreadsCount + " worker-threads.");
+			logger.info("Elapsed time: " + elapsedMillis + " ms, throughput: " + PublicationsRetriever.df.format(numOfRecords / (Math.max(elapsedMillis, 1) / 1000.0)) + " urls/sec. DocUrls found: " + UrlUtils.sumOfDocUrlsFound.get());
+			logger.info("Requests served by the simulator: " + simulator.totalRequests.get() + ", per status-code: " + simulator.getHitsPerStatusCode());
+			if ( recordLatencies.length > 0 )
+				logger.info("Latency per record (from the first request to the last response): p50 = " + getPercentile(recordLatencies, 0.5) + " ms, p99 = " + getPercentile(recordLatencies, 0.99) + " ms, max = " + recordLatencies[recordLatencies.length -1] + " ms (" + recordLatencies.length + " records were requested).");
+			logger.info("Heap used: peak = " + (peakHeapUsed.get() / (1024 * 1024)) + " MB, after GC = " + (heapUsedAfterGC / (1024 * 1024)) + " MB.");
+			logger.info("The input and the results were written in: " + testDir.getAbsolutePath());
+		}
+	}
+
+
+	/**
+	 * The records are spread across the domains randomly, but reproducibly, as it happens with the real input-files.
+	 */
+	private static void writeInputFile(LocalPublisherSimulator simulator, File inputFile) throws IOException
+	{
+		List<Integer> domainIndexes = new ArrayList<>(numOfRecords);
+		for ( int i = 0; i < numOfRecords; ++i )
+			domainIndexes.add(i % numOfDomains);
+		Collections.shuffle(domainIndexes, new Random(seed));
+
+		try ( BufferedWriter writer = Files.newBufferedWriter(inputFile.toPath(), StandardCharsets.UTF_8) ) {
+			for ( int recordId = 0; recordId < numOfRecords; ++recordId ) {
+				writer.write("{\"id\":\"simulator::" + recordId + "\",\"url\":\"" + simulator.getRecordUrl(recordId, domainIndexes.get(recordId)) + "\"}");
+				writer.newLine();
+			}
+		}
+	}
+
+
+	private static long getPercentile(long[] sortedValues, double percentile)
+	{
+		int index = (int) Math.ceil(percentile * sortedValues.length) - 1;
+		return sortedValues[Math.max(0, Math.min(index, sortedValues.length -1))];
+	}
+
+
+	/**
+	 * This method re-loads the logging-configuration, after the logger was stopped at the end of the run, so that the results are written in the same log-file.
+	 */
+	private static void restartLogging()
+	{
+		LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+		if ( loggerContext.isStarted() )
+			return;
+		try {
+			new ContextInitializer(loggerContext).autoConfig();
+			loggerContext.start();
+		} catch (JoranException je) {
+			System.err.println("Could not restart the logger: " + je);
+		}
+	}
+}
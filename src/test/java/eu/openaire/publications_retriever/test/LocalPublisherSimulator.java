@@ -0,0 +1,362 @@
+package eu.openaire.publications_retriever.test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+
+/**
+ * This class starts an embedded HTTP-server, which simulates thousands of "virtual" publishers, in order to test the whole program without hitting the live internet.
+ * Each virtual domain is a different loopback-address (127.x.y.z), so the program sees (and applies its politeness-delays, blocking, etc. to) different domains,
+ * while all of them are served by the same server. Each domain has its own latency and "scenario" (meta-tag pages, redirect-chains, 5XX-bursts, etc.).
+ * The server also records the arrival of the first request and the completion of the last request of each record, in order to calculate the latency per record.
+ * @author Lampros Smyrnaios
+ */
+public class LocalPublisherSimulator {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalPublisherSimulator.class);
+
+	public enum Scenario { META_TAG_PAGE, INTERNAL_LINK_PAGE, DIRECT_PDF, REDIRECT_CHAIN, NO_CONTENT_TYPE, HEAD_UNSUPPORTED, ERROR_BURSTS, RATE_LIMITED }
+
+	// The scenarios are assigned to the domains with these weights (in the order of the "Scenario"-enum). Most of the real publishers give landing-pages.
+	public static int[] scenarioWeights = {30, 25, 10, 10, 5, 10, 5, 5};
+
+	public static int minLatencyMillis = 10;
+	public static int maxLatencyMillis = 300;
+	public static int latencyJitterMillis = 50;
+	public static int maxRedirectHops = 3;
+	public static int pdfBodySize = 64 * 1024;	// 64Kb
+	public static int errorBurstLength = 5;	// The first requests of each "errorBurstPeriod" return "HTTP 503".
+	public static int errorBurstPeriod = 20;
+	public static int rateLimitEveryNthRequest = 3;	// Every n-th request of such domains returns "HTTP 429".
+
+	private final int port;
+	private final int numOfDomains;
+	private final Scenario[] domainScenarios;
+	private final int[] domainLatencies;
+	private final AtomicIntegerArray requestsPerDomain;
+	private final Random random;
+	private final byte[] pdfBody;
+
+	private HttpServer server = null;
+	private ExecutorService serverExecutor = null;
+
+	private final ConcurrentHashMap<Integer, long[]> firstAndLastHitPerRecord = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Integer, AtomicInteger> hitsPerStatusCode = new ConcurrentHashMap<>();
+	public final AtomicInteger totalRequests = new AtomicInteger(0);
+
+
+	public LocalPublisherSimulator(int port, int numOfDomains, long seed)
+	{
+		if ( numOfDomains > (254 * 254 * 126) )
+			throw new IllegalArgumentException("The loopback-addresses are not enough for " + numOfDomains + " domains!");
+		this.port = port;
+		this.numOfDomains = numOfDomains;
+		this.random = new Random(seed);
+		this.domainScenarios = new Scenario[numOfDomains];
+		this.domainLatencies = new int[numOfDomains];
+		this.requestsPerDomain = new AtomicIntegerArray(numOfDomains);
+
+		Scenario[] scenarios = Scenario.values();
+		int totalWeight = 0;
+		for ( int weight : scenarioWeights )
+			totalWeight += weight;
+		for ( int i = 0; i < numOfDomains; ++i ) {
+			int pick = random.nextInt(totalWeight);
+			int j = 0;
+			while ( (pick -= scenarioWeights[j]) >= 0 )
+				j++;
+			domainScenarios[i] = scenarios[j];
+			domainLatencies[i] = minLatencyMillis + random.nextInt(Math.max(1, (maxLatencyMillis - minLatencyMillis)));
+		}
+
+		this.pdfBody = new byte[pdfBodySize];
+		byte[] pdfHeader = "%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII);
+		for ( int i = 0; i < pdfBodySize; ++i )
+			pdfBody[i] = (i < pdfHeader.length) ? pdfHeader[i] : (byte) ('a' + (i % 26));
+	}
+
+
+	/**
+	 * The server listens to all the local addresses, as it cannot listen to just the "127.0.0.0/8" block. Use a firewalled machine, if that matters.
+	 * @param numOfServerThreads
+	 * @throws IOException
+	 */
+	public void start(int numOfServerThreads) throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress(port), 1000);
+		serverExecutor = Executors.newFixedThreadPool(numOfServerThreads);	// The latency is simulated with "sleep()", so we need many threads.
+		server.setExecutor(serverExecutor);
+		server.createContext("/", this::handle);
+		server.start();
+		logger.info("The publisher-simulator started on port " + port + ", serving " + numOfDomains + " virtual domains.");
+	}
+
+
+	public void stop()
+	{
+		if ( server != null )
+			server.stop(0);
+		if ( serverExecutor != null )
+			serverExecutor.shutdownNow();
+	}
+
+
+	public String getDomainHost(int domainIndex)
+	{
+		return "127." + (1 + (domainIndex / (254 * 254))) + "." + (1 + ((domainIndex / 254) % 254)) + "." + (1 + (domainIndex % 254));
+	}
+
+
+	/**
+	 * This method returns the url which should be given as input, for the given record.
+	 * @param recordId
+	 * @param domainIndex
+	 * @return
+	 */
+	public String getRecordUrl(int recordId, int domainIndex)
+	{
+		return "http://" + getDomainHost(domainIndex) + ":" + port + "/handle/" + recordId;
+	}
+
+
+	public Scenario getScenario(int domainIndex)
+	{
+		return domainScenarios[domainIndex];
+	}
+
+
+	private int getDomainIndex(String host)
+	{
+		if ( host == null )
+			return -1;
+		int colonIndex = host.indexOf(':');
+		if ( colonIndex != -1 )
+			host = host.substring(0, colonIndex);
+		String[] parts = host.split("\\.", -1);
+		if ( (parts.length != 4) || !parts[0].equals("127") )
+			return -1;
+		try {
+			int domainIndex = ((Integer.parseInt(parts[1]) - 1) * 254 * 254) + ((Integer.parseInt(parts[2]) - 1) * 254) + (Integer.parseInt(parts[3]) - 1);
+			return ((domainIndex >= 0) && (domainIndex < numOfDomains)) ? domainIndex : -1;
+		} catch (NumberFormatException nfe) {
+			return -1;
+		}
+	}
+
+
+	/**
+	 * The paths are: "/handle/{recordId}" (the input-url), "/redirect/{hop}/{recordId}", "/landing/{recordId}", "/bitstream/{recordId}/fulltext.pdf" and a few boilerplate ones.
+	 * @param exchange
+	 */
+	private void handle(HttpExchange exchange) throws IOException
+	{
+		int recordId = -1;
+		try {
+			totalRequests.incrementAndGet();
+			int domainIndex = getDomainIndex(exchange.getRequestHeaders().getFirst("Host"));
+			if ( domainIndex == -1 ) {
+				respond(exchange, 400, null, null);
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			String[] segments = path.split("/", -1);	// The first segment is empty, as the path starts with "/".
+			recordId = getRecordId(segments);
+			if ( recordId != -1 ) {
+				long now = System.currentTimeMillis();
+				firstAndLastHitPerRecord.putIfAbsent(recordId, new long[]{now, now});
+			}
+
+			int domainRequestNum = requestsPerDomain.incrementAndGet(domainIndex);
+			int latency = domainLatencies[domainIndex];
+			if ( latencyJitterMillis > 0 )
+				latency += ThreadLocalRandom.current().nextInt(latencyJitterMillis);
+			TimeUnit.MILLISECONDS.sleep(latency);
+
+			Scenario scenario = domainScenarios[domainIndex];
+			boolean isHeadRequest = exchange.getRequestMethod().equals("HEAD");
+			if ( scenario == Scenario.ERROR_BURSTS && (((domainRequestNum - 1) % errorBurstPeriod) < errorBurstLength) ) {
+				respond(exchange, 503, "text/html", "<html><body>Service Unavailable</body></html>");
+				return;
+			} else if ( scenario == Scenario.RATE_LIMITED && ((domainRequestNum % rateLimitEveryNthRequest) == 0) ) {
+				exchange.getResponseHeaders().add("Retry-After", "1");
+				respond(exchange, 429, "text/html", "<html><body>Too Many Requests</body></html>");
+				return;
+			} else if ( scenario == Scenario.HEAD_UNSUPPORTED && isHeadRequest ) {
+				respond(exchange, 405, null, null);
+				return;
+			}
+
+			if ( recordId == -1 ) {	// Some boilerplate-page which was not filtered-out by the program.
+				respond(exchange, 404, "text/html", "<html><body>Not Found</body></html>");
+				return;
+			}
+
+			String baseUrl = "http://" + getDomainHost(domainIndex) + ":" + port;
+			String pdfPath = "/bitstream/" + recordId + "/fulltext.pdf";
+			switch ( segments[1] ) {
+				case "handle":
+					if ( scenario == Scenario.DIRECT_PDF )
+						respondWithPdf(exchange, isHeadRequest);
+					else if ( scenario == Scenario.REDIRECT_CHAIN )
+						redirect(exchange, baseUrl + "/redirect/1/" + recordId);
+					else
+						respondWithLandingPage(exchange, scenario, baseUrl, pdfPath, recordId);
+					break;
+				case "redirect":
+					int hop = Integer.parseInt(segments[2]);
+					if ( hop < Math.max(1, (recordId % (maxRedirectHops + 1))) )
+						redirect(exchange, baseUrl + "/redirect/" + (hop + 1) + "/" + recordId);
+					else
+						redirect(exchange, baseUrl + "/landing/" + recordId);
+					break;
+				case "landing":
+					respondWithLandingPage(exchange, scenario, baseUrl, pdfPath, recordId);
+					break;
+				case "bitstream":
+					respondWithPdf(exchange, isHeadRequest);
+					break;
+				default:
+					respond(exchange, 404, "text/html", "<html><body>Not Found</body></html>");
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.error("", e);
+			respond(exchange, 500, null, null);
+		} finally {
+			exchange.close();
+			if ( recordId != -1 ) {
+				long[] firstAndLastHit = firstAndLastHitPerRecord.get(recordId);
+				synchronized ( firstAndLastHit ) {
+					firstAndLastHit[1] = System.currentTimeMillis();	// The time this response was completed.
+				}
+			}
+		}
+	}
+
+
+	private static int getRecordId(String[] segments)
+	{
+		String recordIdStr;
+		if ( segments.length < 3 )
+			return -1;
+		else if ( segments[1].equals("redirect") )
+			recordIdStr = (segments.length > 3) ? segments[3] : null;
+		else
+			recordIdStr = segments[2];
+		try {
+			return (recordIdStr != null) ? Integer.parseInt(recordIdStr) : -1;
+		} catch (NumberFormatException nfe) {
+			return -1;
+		}
+	}
+
+
+	private void respondWithLandingPage(HttpExchange exchange, Scenario scenario, String baseUrl, String pdfPath, int recordId) throws IOException
+	{
+		StringBuilder sb = new StringBuilder(2048);
+		sb.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n<title>Record ").append(recordId).append("</title>\n");
+		sb.append("<link rel=\"stylesheet\" href=\"/static/style.css\">\n");
+		if ( scenario != Scenario.INTERNAL_LINK_PAGE )
+			sb.append("<meta name=\"citation_title\" content=\"A simulated publication ").append(recordId).append("\">\n")
+				.append("<meta name=\"citation_pdf_url\" content=\"").append(baseUrl).append(pdfPath).append("\">\n");
+		sb.append("</head>\n<body>\n<div class=\"header\"><a href=\"/\">Home</a> <a href=\"/about\">About</a> <a href=\"/contact\">Contact</a></div>\n\n");
+		sb.append("<h1>A simulated publication ").append(recordId).append("</h1>\n<p>Abstract: lorem ipsum dolor sit amet.</p>\n");
+		sb.append("<a href=\"/handle/").append(recordId).append("/statistics\">Statistics</a>\n");
+		if ( scenario == Scenario.INTERNAL_LINK_PAGE )
+			sb.append("<a href=\"").append(pdfPath).append("\">Download fulltext (PDF)</a>\n");
+		sb.append("<div class=\"footer\"><a href=\"/privacy\">Privacy</a></div>\n</body>\n</html>\n");
+
+		respond(exchange, 200, ((scenario == Scenario.NO_CONTENT_TYPE) ? null : "text/html; charset=utf-8"), sb.toString());
+	}
+
+
+	private void respondWithPdf(HttpExchange exchange, boolean isHeadRequest) throws IOException
+	{
+		exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+		countStatusCode(200);
+		if ( isHeadRequest ) {
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(200, pdfBody.length);
+		try ( OutputStream os = exchange.getResponseBody() ) {
+			os.write(pdfBody);
+		}
+	}
+
+
+	private void redirect(HttpExchange exchange, String location) throws IOException
+	{
+		exchange.getResponseHeaders().add("Location", location);
+		respond(exchange, 302, null, null);
+	}
+
+
+	private void respond(HttpExchange exchange, int statusCode, String contentType, String body) throws IOException
+	{
+		countStatusCode(statusCode);
+		if ( contentType != null )
+			exchange.getResponseHeaders().add("Content-Type", contentType);
+		if ( (body == null) || exchange.getRequestMethod().equals("HEAD") ) {
+			exchange.sendResponseHeaders(statusCode, -1);
+			return;
+		}
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(statusCode, bytes.length);
+		try ( OutputStream os = exchange.getResponseBody() ) {
+			os.write(bytes);
+		}
+	}
+
+
+	private void countStatusCode(int statusCode)
+	{
+		hitsPerStatusCode.computeIfAbsent(statusCode, k -> new AtomicInteger(0)).incrementAndGet();
+	}
+
+
+	/**
+	 * This method returns the latencies (from the first to the last request) of all the records which were requested, sorted in ascending order.
+	 * @return
+	 */
+	public long[] getSortedRecordLatencies()
+	{
+		long[] latencies = new long[firstAndLastHitPerRecord.size()];
+		int i = 0;
+		for ( long[] firstAndLastHit : firstAndLastHitPerRecord.values() ) {
+			if ( i >= latencies.length )
+				break;
+			synchronized ( firstAndLastHit ) {
+				latencies[i++] = firstAndLastHit[1] - firstAndLastHit[0];
+			}
+		}
+		Arrays.sort(latencies);
+		return latencies;
+	}
+
+
+	public Map<Integer, Integer> getHitsPerStatusCode()
+	{
+		TreeMap<Integer, Integer> hits = new TreeMap<>();
+		for ( Map.Entry<Integer, AtomicInteger> entry : hitsPerStatusCode.entrySet() )
+			hits.put(entry.getKey(), entry.getValue().get());
+		return hits;
+	}
+
+}
@@ -0,0 +1,34 @@
+package eu.openaire.publications_retriever.test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class holds the "META_DOC_URL"-regex, which the "MetaDocUrlsHandler" used before the "MetaTagScanner" replaced it.
+ * It is kept only as the reference of the "TestMetaTagScanner" and the "MetaTagScannerBenchmark".
+ * @author Lampros Smyrnaios
+ */
+public class MetaDocUrlRegex {
+
+	// Order-independent META_DOC_URL-regex.
+	// <meta(?:[^<]*name=\"(?:[^<]*citation_pdf|eprints.document)_url\"[^<]*content=\"(http[^\"]+)\"|[^<]*content=\"(http[^\"]+)\"[^<]*name=\"(?:[^<]*citation_pdf|eprints.document)_url\")[^>]*[/]?>
+	private static final String metaName = "name=\"(?:[^<]*citation_pdf|eprints.document)_url\"";
+	private static final String metaContent = "content=\"(http[^\"]+)\"";
+	public static final Pattern META_DOC_URL = Pattern.compile("<meta(?:[^<]*" + metaName + "[^<]*" + metaContent + "|[^<]*" + metaContent + "[^<]*" + metaName + ")[^>]*[/]?>");
+
+
+	/**
+	 * @return The metaDocUrl of the given html, or "null", if the regex does not find one.
+	 */
+	public static String findMetaDocUrl(String html)
+	{
+		Matcher metaDocUrlMatcher = META_DOC_URL.matcher(html);
+		if ( !metaDocUrlMatcher.find() )
+			return null;
+		String metaDocUrl = metaDocUrlMatcher.group(1);
+		if ( metaDocUrl == null )
+			metaDocUrl = metaDocUrlMatcher.group(2);	// Try the other group.
+		return metaDocUrl;
+	}
+}
@@ -0,0 +1,59 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.crawler.MetaTagScanner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This JMH-benchmark compares the "MetaTagScanner" with the "META_DOC_URL"-regex, on the pages of the "HtmlPageSamples".
+ * Run it on demand, with its "main()" method (after the test-classes are compiled, so that the JMH-annotation-processor generates the benchmark-code).
+ * @author Lampros Smyrnaios
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetaTagScannerBenchmark {
+
+	@Param({"dspaceWithPdfMeta", "dspaceWithoutPdfMeta", "ojsContentBeforeName", "eprintsDocumentUrl", "largeMinifiedWithoutMeta"})
+	public String sampleName;
+
+	private String html;
+
+
+	@Setup
+	public void setUp()
+	{
+		html = HtmlPageSamples.getSamples().get(sampleName);
+	}
+
+
+	@Benchmark
+	public String regex()
+	{
+		return MetaDocUrlRegex.findMetaDocUrl(html);
+	}
+
+
+	@Benchmark
+	public String scanner()
+	{
+		return MetaTagScanner.findMetaDocUrl(html);
+	}
+
+
+	public static void main(String[] args) throws RunnerException
+	{
+		Options options = new OptionsBuilder().include(MetaTagScannerBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,116 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.http.BandwidthLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks the token-bucket of the "BandwidthLimiter", with a controlled clock, which is advanced by the "sleeps" of the throttled reads.
+ * It checks that a full bucket allows a burst of up to one second of traffic (minus the reserved tokens), that the tokens are refilled with time,
+ * that the control-requests are never blocked and that a read larger than the whole bucket does not block forever.
+ * @author Lampros Smyrnaios
+ */
+public class TestBandwidthLimiter {
+
+	private static final long maxBytesPerSecond = 100_000;
+	private static final int chunkSize = 10_000;
+	private static final int numOfChunksInBurst = 8;	// The full bucket, minus the 20% which is reserved for the control-requests.
+
+	private static final AtomicLong currentNanos = new AtomicLong(System.nanoTime());	// It only moves forward, as the limiter keeps its state between the tests.
+	private final AtomicLong totalSleptMillis = new AtomicLong(0);
+
+
+	@BeforeEach
+	public void setClock()
+	{
+		currentNanos.addAndGet(TimeUnit.HOURS.toNanos(1));	// Far after the last refill of the previous test, so the bucket starts full.
+		BandwidthLimiter.nanoClock = currentNanos::get;
+		BandwidthLimiter.sleeper = millis -> {
+			totalSleptMillis.addAndGet(millis);
+			currentNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+		};
+		BandwidthLimiter.maxBytesPerSecond = maxBytesPerSecond;
+		BandwidthLimiter.consumeForControlRequest(0);	// Refill the bucket.
+	}
+
+
+	@AfterEach
+	public void restoreClock()
+	{
+		BandwidthLimiter.maxBytesPerSecond = 0;
+		BandwidthLimiter.nanoClock = System::nanoTime;
+		BandwidthLimiter.sleeper = TimeUnit.MILLISECONDS::sleep;
+	}
+
+
+	@Test
+	public void testBurstAndRefill()
+	{
+		assertBurst();
+
+		// The next read waits until there are more tokens than the reserved ones.
+		assertEquals(1, BandwidthLimiter.acquireForDocFile(chunkSize));
+		assertEquals(1, totalSleptMillis.get());
+
+		// After about half a second, about half of the bucket is refilled.
+		currentNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(490));
+		for ( int i = 0; i < 4; i++ )
+			assertEquals(0, BandwidthLimiter.acquireForDocFile(chunkSize), "chunk " + i);
+		assertEquals(1, totalSleptMillis.get());
+		assertTrue(BandwidthLimiter.acquireForDocFile(chunkSize) > 0);
+
+		// The bucket holds up to one second of traffic, no matter how long it was idle.
+		currentNanos.addAndGet(TimeUnit.SECONDS.toNanos(60));
+		assertBurst();
+	}
+
+
+	@Test
+	public void testControlRequestsAreNotBlocked()
+	{
+		assertBurst();
+
+		// The control-requests consume the reserved tokens and go into "debt", without waiting.
+		BandwidthLimiter.consumeForControlRequest(50_000);
+		assertEquals(0, totalSleptMillis.get());
+
+		// The docFile-read waits for the debt and the reserved tokens to be refilled: (30_000 + 20_000) bytes at 100_000 bytes/sec.
+		long waitedMillis = BandwidthLimiter.acquireForDocFile(chunkSize);
+		assertEquals(totalSleptMillis.get(), waitedMillis);
+		assertTrue((waitedMillis >= 500) && (waitedMillis <= 502), "waited " + waitedMillis + " millis");
+	}
+
+
+	@Test
+	public void testReadLargerThanTheBucket()
+	{
+		// A read of ten times the bucket is allowed at once, instead of waiting for tokens which the bucket can never hold.
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals(0, BandwidthLimiter.acquireForDocFile((int) (10 * maxBytesPerSecond))));
+		assertEquals(0, totalSleptMillis.get());
+
+		// Its "debt" is paid-off by the next reads, in a bounded time: (900_000 + 20_000) bytes at 100_000 bytes/sec.
+		long waitedMillis = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> BandwidthLimiter.acquireForDocFile(chunkSize));
+		assertTrue((waitedMillis >= 9_200) && (waitedMillis <= 9_202), "waited " + waitedMillis + " millis");
+
+		// After that, the bucket works as usual.
+		currentNanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertBurst();
+	}
+
+
+	private void assertBurst()
+	{
+		long sleptMillisBefore = totalSleptMillis.get();
+		for ( int i = 0; i < numOfChunksInBurst; i++ )
+			assertEquals(0, BandwidthLimiter.acquireForDocFile(chunkSize), "chunk " + i);
+		assertEquals(sleptMillisBefore, totalSleptMillis.get());
+	}
+}
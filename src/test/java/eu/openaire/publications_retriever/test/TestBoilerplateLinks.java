@@ -0,0 +1,62 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.crawler.BoilerplateLinks;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * This class checks that the "BoilerplateLinks" recognizes the links which appear in most pages of a domain, but not the page-specific ones.
+ * @author Lampros Smyrnaios
+ */
+public class TestBoilerplateLinks {
+
+	@Test
+	public void testBoilerplateLinks()
+	{
+		String domain = "boilerplate-test.example.org";
+		for ( int page = 0; page < 30; page++ )
+		{
+			int previousPages = BoilerplateLinks.registerPage(domain);
+			boolean isNavigationBoilerplate = BoilerplateLinks.isBoilerplate(domain, "/about", previousPages);
+			boolean isRareLinkBoilerplate = ((page % 3) == 0) && BoilerplateLinks.isBoilerplate(domain, "/news", previousPages);	// It appears in a third of the pages.
+			boolean isRecordLinkBoilerplate = BoilerplateLinks.isBoilerplate(domain, "/bitstream/" + page + "/fulltext.pdf", previousPages);
+
+			if ( page >= 10 )
+				assertTrue(isNavigationBoilerplate, "page " + page);
+			else
+				assertFalse(isNavigationBoilerplate, "page " + page);	// Not enough pages to decide yet.
+			assertFalse(isRareLinkBoilerplate, "page " + page);
+			assertFalse(isRecordLinkBoilerplate, "page " + page);
+		}
+
+		// The same link in another domain is counted separately.
+		String otherDomain = "other-boilerplate-test.example.org";
+		assertFalse(BoilerplateLinks.isBoilerplate(otherDomain, "/about", BoilerplateLinks.registerPage(otherDomain)));
+	}
+
+
+	@Test
+	public void testPageSpecificLinksAreKept()
+	{
+		String domain = "relative-links-test.example.org";
+		for ( int page = 0; page < 30; page++ )
+		{
+			int previousPages = BoilerplateLinks.registerPage(domain);
+			// The relative links lead to a different url in each page.
+			assertFalse(BoilerplateLinks.isBoilerplate(domain, "fulltext.pdf", previousPages), "page " + page);
+			assertFalse(BoilerplateLinks.isBoilerplate(domain, "download", previousPages), "page " + page);
+			assertFalse(BoilerplateLinks.isBoilerplate(domain, "?format=pdf", previousPages), "page " + page);
+			assertFalse(BoilerplateLinks.isBoilerplate(domain, "//cdn.example.org/guide.html", previousPages), "page " + page);
+			// The links which look like docUrls are kept, even if they appear in every page.
+			assertFalse(BoilerplateLinks.isBoilerplate(domain, "/files/guide.pdf", previousPages), "page " + page);
+			assertFalse(BoilerplateLinks.isBoilerplate(domain, "https://" + domain + "/bitstream/handle/1/licence", previousPages), "page " + page);
+
+			boolean isAbsoluteHelpBoilerplate = BoilerplateLinks.isBoilerplate(domain, "https://" + domain + "/help", previousPages);
+			if ( page >= 10 )
+				assertTrue(isAbsoluteHelpBoilerplate, "page " + page);
+		}
+	}
+}
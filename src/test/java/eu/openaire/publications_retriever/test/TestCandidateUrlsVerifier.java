@@ -0,0 +1,237 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.crawler.CandidateUrlsVerifier;
+import eu.openaire.publications_retriever.crawler.PageCrawler;
+import eu.openaire.publications_retriever.exceptions.DomainBlockedException;
+import eu.openaire.publications_retriever.util.file.FileUtils;
+import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import eu.openaire.publications_retriever.util.url.DataToBeLogged;
+import eu.openaire.publications_retriever.util.url.UrlUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks the parallel-verification of the candidates of a page, with a stubbed connection-step, which controls the timing and the outcome of each check.
+ * It checks that only the first verified docUrl is logged, that the rest of the candidates are abandoned after a docUrl is found or the page is left, and that an interrupt is not lost.
+ * @author Lampros Smyrnaios
+ */
+public class TestCandidateUrlsVerifier {
+
+	private static final long maxWaitingSecs = 10;
+
+	private final Set<String> connectedUrls = ConcurrentHashMap.newKeySet();
+
+
+	@BeforeAll
+	public static void setUp()
+	{
+		PageCrawler.maxParallelCandidateChecksPerPage = 2;
+		CandidateUrlsVerifier.initExecutor(2, PageCrawler.maxParallelCandidateChecksPerPage);
+	}
+
+
+	@AfterAll
+	public static void tearDown()
+	{
+		CandidateUrlsVerifier.shutdownExecutor();
+		CandidateUrlsVerifier.executor = null;
+		PageCrawler.maxParallelCandidateChecksPerPage = 1;
+	}
+
+
+	@AfterEach
+	public void restoreConnector()
+	{
+		CandidateUrlsVerifier.candidateConnector = (urlId, sourceUrl, pageUrl, urlToCheck) -> HttpConnUtils.connectAndCheckMimeType(urlId, sourceUrl, pageUrl, urlToCheck, null, false, true);
+	}
+
+
+	@Test
+	public void testFirstVerifiedDocUrlWins() throws Exception
+	{
+		String urlId = "verifier-test-1", pageUrl = "https://page-1.org/record/1";
+		String slowDocUrl = "https://slow-1.org/a.pdf", slowNextUrl = "https://slow-1.org/b.pdf", fastDocUrl = "https://fast-1.org/c.pdf";
+		CountDownLatch fastDocUrlLogged = new CountDownLatch(1);
+		AtomicBoolean slowDocUrlWasClaimed = new AtomicBoolean(true);
+		int abandonedBefore = CandidateUrlsVerifier.numOfCandidateChecksAbandoned.get();
+
+		CandidateUrlsVerifier.candidateConnector = (id, sourceUrl, page, urlToCheck) -> {
+			connectedUrls.add(urlToCheck);
+			if ( urlToCheck.equals(slowDocUrl) ) {	// This docUrl of the first domain is verified after the one of the second domain.
+				awaitLatch(fastDocUrlLogged);
+				slowDocUrlWasClaimed.set(HttpConnUtils.claimDocUrl());
+				return false;	// Like the "HttpConnUtils.connectAndCheckMimeType()" does, when the claim fails.
+			} else if ( urlToCheck.equals(fastDocUrl) ) {
+				assertTrue(HttpConnUtils.claimDocUrl());
+				UrlUtils.logOutputData(id, sourceUrl, page, urlToCheck, "", null, true, "true", "true", "true", "false");
+				fastDocUrlLogged.countDown();
+				return true;
+			}
+			return false;
+		};
+
+		assertTrue(CandidateUrlsVerifier.verifyCandidates(urlId, pageUrl, pageUrl, "page-1.org", Arrays.asList(slowDocUrl, slowNextUrl, fastDocUrl)));
+		waitForAbandonedChecks(abandonedBefore + 1);	// The checker of the first domain still runs, after the page was handled.
+
+		assertFalse(slowDocUrlWasClaimed.get());
+		assertEquals(Arrays.asList(fastDocUrl), getLoggedDocUrls(urlId));
+		assertFalse(connectedUrls.contains(slowNextUrl));
+		assertEquals((abandonedBefore + 1), CandidateUrlsVerifier.numOfCandidateChecksAbandoned.get());
+	}
+
+
+	@Test
+	public void testLeavingThePageStopsTheOtherCheckers() throws Exception
+	{
+		String urlId = "verifier-test-2", pageDomain = "page-2.org", pageUrl = "https://page-2.org/record/2";
+		String blockedUrl = "https://page-2.org/a.pdf";
+		List<String> otherUrls = Arrays.asList("https://other-2.org/1.pdf", "https://other-2.org/2.pdf", "https://other-2.org/3.pdf");
+		String thirdDomainUrl = "https://third-2.org/x.pdf";
+		CountDownLatch otherCheckerStarted = new CountDownLatch(1);
+		int abandonedBefore = CandidateUrlsVerifier.numOfCandidateChecksAbandoned.get();
+
+		CandidateUrlsVerifier.candidateConnector = (id, sourceUrl, page, urlToCheck) -> {
+			connectedUrls.add(urlToCheck);
+			if ( urlToCheck.equals(blockedUrl) ) {	// Both checkers are running, when the page is left.
+				awaitLatch(otherCheckerStarted);
+				throw new DomainBlockedException(pageDomain);
+			} else if ( urlToCheck.equals(otherUrls.get(0)) ) {	// Wait until the checker of the blocked domain has moved to the third domain and abandoned it.
+				otherCheckerStarted.countDown();
+				waitForAbandonedChecks(abandonedBefore + 1);
+			}
+			return false;
+		};
+
+		List<String> candidates = new ArrayList<>();
+		candidates.add(blockedUrl);
+		candidates.addAll(otherUrls);
+		candidates.add(thirdDomainUrl);
+		assertTrue(CandidateUrlsVerifier.verifyCandidates(urlId, pageUrl, pageUrl, pageDomain, candidates));
+
+		assertEquals(new HashSet<>(Arrays.asList(blockedUrl, otherUrls.get(0))), connectedUrls);
+		assertEquals((abandonedBefore + 3), CandidateUrlsVerifier.numOfCandidateChecksAbandoned.get());
+		List<DataToBeLogged> loggedData = getLoggedData(urlId);
+		assertEquals(1, loggedData.size());
+		assertEquals("unreachable", loggedData.get(0).getDocOrDatasetUrl());
+		assertTrue(loggedData.get(0).getComment().contains("its domain was blocked"));
+	}
+
+
+	@Test
+	public void testPolitenessGrouping()
+	{
+		String urlId = "verifier-test-4", pageUrl = "https://page-4.org/record/4";
+		List<String> connectionOrder = Collections.synchronizedList(new ArrayList<>());
+		Set<String> connectionThreads = ConcurrentHashMap.newKeySet();
+		CandidateUrlsVerifier.candidateConnector = (id, sourceUrl, page, urlToCheck) -> {
+			connectionOrder.add(urlToCheck);
+			connectionThreads.add(Thread.currentThread().getName());
+			return false;
+		};
+
+		// The sub-domains of the same site are a single group, so they are checked one after the other, in their order, by the calling thread.
+		int pagesVerifiedInParallelBefore = CandidateUrlsVerifier.numOfPagesVerifiedInParallel.get();
+		List<String> sameSiteCandidates = Arrays.asList("https://a.site-4.org/1.pdf", "https://www.site-4.org/2.pdf", "https://b.a.site-4.org/3.pdf");
+		assertFalse(CandidateUrlsVerifier.verifyCandidates(urlId, pageUrl, pageUrl, "page-4.org", sameSiteCandidates));
+		assertEquals(sameSiteCandidates, connectionOrder);
+		assertEquals(Collections.singleton(Thread.currentThread().getName()), connectionThreads);
+		assertEquals(pagesVerifiedInParallelBefore, CandidateUrlsVerifier.numOfPagesVerifiedInParallel.get());
+
+		// The sites under a public-suffix are different groups.
+		connectionOrder.clear();
+		assertFalse(CandidateUrlsVerifier.verifyCandidates(urlId, pageUrl, pageUrl, "page-4.org", Arrays.asList("https://x-4.ac.uk/1.pdf", "https://y-4.ac.uk/2.pdf")));
+		assertEquals(2, connectionOrder.size());
+		assertEquals((pagesVerifiedInParallelBefore + 1), CandidateUrlsVerifier.numOfPagesVerifiedInParallel.get());
+		assertTrue(getLoggedData(urlId).isEmpty());
+	}
+
+
+	@Test
+	public void testInterruptIsKept() throws Exception
+	{
+		String urlId = "verifier-test-3", pageUrl = "https://page-3.org/record/3";
+		CountDownLatch checkersStarted = new CountDownLatch(2);
+		CountDownLatch releaseCheckers = new CountDownLatch(1);
+		CandidateUrlsVerifier.candidateConnector = (id, sourceUrl, page, urlToCheck) -> {
+			checkersStarted.countDown();
+			awaitLatch(releaseCheckers);
+			return false;
+		};
+
+		AtomicBoolean wasHandled = new AtomicBoolean(false);
+		AtomicBoolean isInterruptedAfterwards = new AtomicBoolean(false);
+		Thread workerThread = new Thread(() -> {
+			wasHandled.set(CandidateUrlsVerifier.verifyCandidates(urlId, pageUrl, pageUrl, "page-3.org", Arrays.asList("https://a-3.org/1.pdf", "https://b-3.org/2.pdf")));
+			isInterruptedAfterwards.set(Thread.currentThread().isInterrupted());
+		});
+		workerThread.start();
+		assertTrue(checkersStarted.await(maxWaitingSecs, TimeUnit.SECONDS));
+		workerThread.interrupt();
+		workerThread.join(TimeUnit.SECONDS.toMillis(maxWaitingSecs));
+		releaseCheckers.countDown();
+
+		assertFalse(workerThread.isAlive());
+		assertTrue(wasHandled.get());
+		assertTrue(isInterruptedAfterwards.get(), "The interrupt-status of the worker-thread was lost.");
+		List<DataToBeLogged> loggedData = getLoggedData(urlId);
+		assertEquals(1, loggedData.size());
+		assertTrue(loggedData.get(0).getComment().contains("was interrupted"));
+	}
+
+
+	private static void awaitLatch(CountDownLatch latch)
+	{
+		try {
+			assertTrue(latch.await(maxWaitingSecs, TimeUnit.SECONDS));
+		} catch (InterruptedException ie) {
+			fail("Interrupted while waiting.");
+		}
+	}
+
+
+	private static void waitForAbandonedChecks(int numOfAbandonedChecks)
+	{
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxWaitingSecs);
+		while ( CandidateUrlsVerifier.numOfCandidateChecksAbandoned.get() < numOfAbandonedChecks ) {
+			assertTrue(System.nanoTime() < deadline, "The candidates were not abandoned in time.");
+			Thread.yield();
+		}
+	}
+
+
+	private static List<DataToBeLogged> getLoggedData(String urlId)
+	{
+		List<DataToBeLogged> loggedData = new ArrayList<>();
+		synchronized ( FileUtils.dataToBeLoggedList ) {
+			for ( DataToBeLogged data : FileUtils.dataToBeLoggedList )
+				if ( data.getUrlId().equals(urlId) )
+					loggedData.add(data);
+		}
+		return loggedData;
+	}
+
+
+	private static List<String> getLoggedDocUrls(String urlId)
+	{
+		List<String> docUrls = new ArrayList<>();
+		for ( DataToBeLogged data : getLoggedData(urlId) )
+			docUrls.add(data.getDocOrDatasetUrl());
+		return docUrls;
+	}
+}
@@ -0,0 +1,87 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.url.DocOrDatasetUrlClassifier;
+import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * This class checks that the "DocOrDatasetUrlClassifier" gives the same verdicts as the "DOC_URL_FILTER" and the "DATASET_URL_FILTER" regexes,
+ * on the urls of the "testData" (along with some variations of them) and on some edge-cases of the regexes.
+ * @author Lampros Smyrnaios
+ */
+public class TestDocOrDatasetUrlClassifier {
+
+	private static final Pattern URL_PATTERN = Pattern.compile("https?://[^\\s\",]+");
+
+	private static final String[] urlSuffixes = {"", "?id=5", "?", ".csv", ".csv?", ".csv?a=1?b", ".tar.gz", ".bz2", ".nc4", ".h", ".h5", ".hdf", ".tifff", ".ti", ".sas7bdat", ".postgresqlite", ".xlsxx", "?format=json",
+			"/format=csv", "/datasets/", "/dataset", "/view.pdf", "/getfile", "&file=1", "/fulltext", "/cgi/viewcontent.cgi?article=1", "/cgi/viewcontent_cg", "/cgi/viewcontent.c", "/paper\n", " .csv"};
+
+
+	/**
+	 * @return The urls found in the files of the "testData", as they appear there.
+	 */
+	static Set<String> getTestDataUrls() throws IOException
+	{
+		Set<String> urls = new LinkedHashSet<>();
+		File testDataDir = new File(System.getProperty("user.dir") + File.separator + "testData");
+		try ( Stream<java.nio.file.Path> paths = Files.walk(testDataDir.toPath()) ) {
+			for ( java.nio.file.Path path : (Iterable<java.nio.file.Path>) paths.filter(Files::isRegularFile)::iterator ) {
+				String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+				Matcher matcher = URL_PATTERN.matcher(content);
+				while ( matcher.find() )
+					urls.add(matcher.group());
+			}
+		}
+		return urls;
+	}
+
+
+	@Test
+	public void testSameVerdictsWithRegexes() throws IOException
+	{
+		Set<String> corpus = new LinkedHashSet<>();
+		for ( String url : getTestDataUrls() )
+			corpus.add(url.toLowerCase());
+		assertTrue(corpus.size() > 1000, "The testData gave only " + corpus.size() + " urls.");
+
+		List<String> urls = new ArrayList<>(corpus.size() * (urlSuffixes.length + 1));
+		for ( String url : corpus ) {
+			urls.add(url);
+			int queryIndex = url.indexOf('?');
+			String urlWithoutQuery = (queryIndex != -1) ? url.substring(0, queryIndex) : url;
+			for ( String suffix : urlSuffixes )
+				urls.add(urlWithoutQuery + suffix);
+			urls.add(url.substring(url.indexOf("://") + 3));	// Without the protocol, like some internalLinks.
+		}
+		// The keywords at the start of the string need at least one character before them.
+		urls.addAll(Arrays.asList("pdf", "pdfpdf", "xpdf", "document", "dataset/", "xdataset/", ".csv", "x.csv", "format=csv", "xformat=csv", "cgi/viewcontent.cgi", "xcgi/viewcontent.cgi", "", "x", ".", "?csv"));
+
+		int numOfDocUrls = 0, numOfDatasetUrls = 0;
+		for ( String url : urls ) {
+			boolean isDocUrl = LoaderAndChecker.DOC_URL_FILTER.matcher(url).matches();
+			boolean isDatasetUrl = LoaderAndChecker.DATASET_URL_FILTER.matcher(url).matches();
+			assertEquals(isDocUrl, DocOrDatasetUrlClassifier.isPossibleDocUrl(url), "Different doc-verdict for url: " + url);
+			assertEquals(isDatasetUrl, DocOrDatasetUrlClassifier.isPossibleDatasetUrl(url), "Different dataset-verdict for url: " + url);
+			if ( isDocUrl )
+				numOfDocUrls ++;
+			if ( isDatasetUrl )
+				numOfDatasetUrls ++;
+		}
+		// Make sure that both verdicts are actually exercised.
+		assertTrue(numOfDocUrls > 1000);
+		assertTrue(numOfDatasetUrls > 1000);
+	}
+}
@@ -0,0 +1,164 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker;
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker.State;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks the state-machine of the "DomainCircuitBreaker", with a controlled clock.
+ * It checks that the breaker opens at the threshold, that it allows a single probe after the cool-down, that a failed probe escalates the cool-down,
+ * that a successful probe closes the breaker and that the outcomes of the other requests are ignored, while the breaker is half-open.
+ * @author Lampros Smyrnaios
+ */
+public class TestDomainCircuitBreaker {
+
+	private static final long initialCoolDownMillis = 30_000;
+
+	private final AtomicLong currentTimeMillis = new AtomicLong(1_000_000);
+
+
+	@BeforeEach
+	public void setClock()
+	{
+		DomainCircuitBreaker.clock = currentTimeMillis::get;
+	}
+
+
+	@AfterEach
+	public void restoreClock()
+	{
+		DomainCircuitBreaker.clock = System::currentTimeMillis;
+	}
+
+
+	@Test
+	public void testOpensAtTheThreshold()
+	{
+		String domain = "threshold.breaker-test.org";
+		for ( int i = 0; i < 5; i++ )
+			DomainCircuitBreaker.recordSuccess(domain);	// No breaker exists yet, so these are not counted.
+		for ( int i = 1; i < 5; i++ ) {
+			assertFalse(DomainCircuitBreaker.recordFailure(domain), "failure " + i);
+			assertEquals(State.CLOSED, DomainCircuitBreaker.getState(domain));
+			assertTrue(DomainCircuitBreaker.allowRequest(domain));
+		}
+		assertTrue(DomainCircuitBreaker.recordFailure(domain));
+		assertEquals(State.OPEN, DomainCircuitBreaker.getState(domain));
+		assertTrue(DomainCircuitBreaker.isOpen(domain));
+		assertFalse(DomainCircuitBreaker.allowRequest(domain));
+
+		// The failures of the requests which were admitted before the breaker opened, do not affect it.
+		assertFalse(DomainCircuitBreaker.recordFailure(domain));
+		DomainCircuitBreaker.recordSuccess(domain);
+		assertEquals(State.OPEN, DomainCircuitBreaker.getState(domain));
+
+		// The domains which mostly succeed, are not affected by a few errors.
+		String mostlySucceedingDomain = "mostly-succeeding.breaker-test.org";
+		DomainCircuitBreaker.recordFailure(mostlySucceedingDomain);
+		for ( int i = 0; i < 10; i++ )
+			DomainCircuitBreaker.recordSuccess(mostlySucceedingDomain);
+		for ( int i = 0; i < 5; i++ )
+			assertFalse(DomainCircuitBreaker.recordFailure(mostlySucceedingDomain));
+		assertEquals(State.CLOSED, DomainCircuitBreaker.getState(mostlySucceedingDomain));
+
+		// The failures outside the sliding-window are forgotten.
+		String slowlyFailingDomain = "slowly-failing.breaker-test.org";
+		for ( int i = 0; i < 10; i++ ) {
+			assertFalse(DomainCircuitBreaker.recordFailure(slowlyFailingDomain));
+			currentTimeMillis.addAndGet(20_000);
+		}
+		assertEquals(State.CLOSED, DomainCircuitBreaker.getState(slowlyFailingDomain));
+	}
+
+
+	@Test
+	public void testProbes() throws Exception
+	{
+		String domain = "probe.breaker-test.org";
+		openBreaker(domain);
+
+		// It stays open during the cool-down.
+		currentTimeMillis.addAndGet(initialCoolDownMillis - 1);
+		assertFalse(DomainCircuitBreaker.allowRequest(domain));
+		assertEquals(State.OPEN, DomainCircuitBreaker.getState(domain));
+
+		// After the cool-down, only one probe is allowed.
+		currentTimeMillis.addAndGet(1);
+		assertTrue(DomainCircuitBreaker.allowRequest(domain));
+		assertEquals(State.HALF_OPEN, DomainCircuitBreaker.getState(domain));
+		assertFalse(DomainCircuitBreaker.allowRequest(domain));
+		assertFalse(runInOtherThread(() -> DomainCircuitBreaker.allowRequest(domain)));
+		assertTrue(DomainCircuitBreaker.isOpen(domain));
+
+		// The outcomes of the other requests do not affect the half-open breaker.
+		runInOtherThread(() -> { DomainCircuitBreaker.recordSuccess(domain); return true; });
+		assertEquals(State.HALF_OPEN, DomainCircuitBreaker.getState(domain));
+		assertFalse(runInOtherThread(() -> DomainCircuitBreaker.recordFailure(domain)));
+		assertEquals(State.HALF_OPEN, DomainCircuitBreaker.getState(domain));
+
+		// The failed probe re-opens the breaker, with a double cool-down.
+		assertTrue(DomainCircuitBreaker.recordFailure(domain));
+		assertEquals(State.OPEN, DomainCircuitBreaker.getState(domain));
+		currentTimeMillis.addAndGet(initialCoolDownMillis);
+		assertFalse(DomainCircuitBreaker.allowRequest(domain));
+		currentTimeMillis.addAndGet(initialCoolDownMillis);
+		assertTrue(DomainCircuitBreaker.allowRequest(domain));
+		assertEquals(State.HALF_OPEN, DomainCircuitBreaker.getState(domain));
+
+		// The successful probe closes the breaker.
+		DomainCircuitBreaker.recordSuccess(domain);
+		assertEquals(State.CLOSED, DomainCircuitBreaker.getState(domain));
+		assertFalse(DomainCircuitBreaker.isOpen(domain));
+		assertTrue(DomainCircuitBreaker.allowRequest(domain));
+		assertTrue(runInOtherThread(() -> DomainCircuitBreaker.allowRequest(domain)));
+
+		// The window was reset, so it needs the whole threshold of failures again.
+		openBreaker(domain);
+	}
+
+
+	@Test
+	public void testEscalationUpToTheMax()
+	{
+		String domain = "escalation.breaker-test.org";
+		openBreaker(domain);
+		long coolDownMillis = initialCoolDownMillis;
+		for ( int i = 0; i < 8; i++ ) {
+			currentTimeMillis.addAndGet(coolDownMillis - 1);
+			assertFalse(DomainCircuitBreaker.allowRequest(domain), "probe " + i);
+			currentTimeMillis.addAndGet(1);
+			assertTrue(DomainCircuitBreaker.allowRequest(domain), "probe " + i);
+			assertTrue(DomainCircuitBreaker.recordFailure(domain));
+			coolDownMillis = Math.min((coolDownMillis * 2), 600_000);
+		}
+		assertEquals(600_000, coolDownMillis);
+	}
+
+
+	private void openBreaker(String domain)
+	{
+		for ( int i = 1; i < 5; i++ )
+			assertFalse(DomainCircuitBreaker.recordFailure(domain));
+		assertTrue(DomainCircuitBreaker.recordFailure(domain));
+		assertEquals(State.OPEN, DomainCircuitBreaker.getState(domain));
+	}
+
+
+	private static boolean runInOtherThread(BooleanSupplier action) throws InterruptedException
+	{
+		AtomicBoolean result = new AtomicBoolean();
+		Thread thread = new Thread(() -> result.set(action.getAsBoolean()));
+		thread.start();
+		thread.join();
+		return result.get();
+	}
+}
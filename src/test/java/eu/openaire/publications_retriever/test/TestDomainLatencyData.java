@@ -0,0 +1,112 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.DomainLatencyData;
+import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * This class checks the percentiles of the latency-histograms of the "DomainLatencyData" and the adaptive timeouts which "ConnSupportUtils.setTimeouts()" derives from them:
+ * the fall-back to the default timeouts, until there are enough samples, and the bounding of the adaptive timeouts by their floors and ceilings.
+ * The connections are only opened (not connected), in order to check their timeouts.
+ * @author Lampros Smyrnaios
+ */
+public class TestDomainLatencyData {
+
+	private static final int minSamples = 5;	// The same as the "minLatencySamplesForAdaptiveTimeouts" of the "ConnSupportUtils".
+
+
+	@Test
+	public void testPercentiles()
+	{
+		DomainLatencyData domainLatencyData = new DomainLatencyData();
+		for ( int i = 0; i < 19; i++ )
+			domainLatencyData.addConnectLatency(10);
+		domainLatencyData.addConnectLatency(1000);
+
+		// The upper-bound of the bucket is returned: the buckets start from 50ms and grow by 30% each time.
+		assertEquals(50, domainLatencyData.getConnectPercentile(0.5, minSamples));
+		assertEquals(50, domainLatencyData.getConnectPercentile(0.95, minSamples));	// The single slow sample is above the 95th percentile.
+		assertEquals(1164, domainLatencyData.getConnectPercentile(0.96, minSamples));
+		assertEquals(1164, domainLatencyData.getConnectPercentile(1.0, minSamples));
+
+		// Not enough samples.
+		assertEquals(-1, domainLatencyData.getConnectPercentile(0.95, 21));
+		assertEquals(-1, domainLatencyData.getTtfbPercentile(0.95, minSamples));
+
+		// The latencies above the last bucket, are counted in the last bucket.
+		for ( int i = 0; i < minSamples; i++ )
+			domainLatencyData.addTtfbLatency(1_000_000);
+		assertEquals(170299, domainLatencyData.getTtfbPercentile(0.95, minSamples));
+	}
+
+
+	@Test
+	public void testDefaultTimeouts() throws IOException
+	{
+		// No latency-data for the domain.
+		assertTimeouts(null, true, HttpConnUtils.maxConnGETWaitingTime, HttpConnUtils.maxConnGETWaitingTime);
+		assertTimeouts("unknown-domain.latency-test.org", true, HttpConnUtils.maxConnGETWaitingTime, HttpConnUtils.maxConnGETWaitingTime);
+		assertTimeouts("unknown-domain.latency-test.org", false, HttpConnUtils.maxConnHEADWaitingTime, HttpConnUtils.maxConnHEADWaitingTime);
+
+		// Less than the minimum samples.
+		String domain = "few-samples.latency-test.org";
+		DomainLatencyData domainLatencyData = addLatencyData(domain, 10, 10, (minSamples - 1));
+		assertTimeouts(domain, true, HttpConnUtils.maxConnGETWaitingTime, HttpConnUtils.maxConnGETWaitingTime);
+		assertTimeouts(domain, false, HttpConnUtils.maxConnHEADWaitingTime, HttpConnUtils.maxConnHEADWaitingTime);
+
+		// Each phase falls back separately.
+		domainLatencyData.addConnectLatency(10);
+		assertTimeouts(domain, true, 2000, HttpConnUtils.maxConnGETWaitingTime);
+	}
+
+
+	@Test
+	public void testBoundedTimeouts() throws IOException
+	{
+		// The timeout is twice the 95th percentile, plus one second.
+		String domain = "average.latency-test.org";
+		addLatencyData(domain, 5000, 1000, minSamples);
+		assertTimeouts(domain, true, ((2 * 5622) + 1000), ((2 * 1164) + 1000));
+		assertTimeouts(domain, false, ((2 * 5622) + 1000), ((2 * 1164) + 1000));
+
+		// The fast domains get the floors.
+		domain = "fast.latency-test.org";
+		addLatencyData(domain, 10, 10, minSamples);
+		assertTimeouts(domain, true, 2000, 3000);
+		assertTimeouts(domain, false, 2000, 3000);
+
+		// The slow domains get the ceilings, which are twice the default timeouts.
+		domain = "slow.latency-test.org";
+		addLatencyData(domain, 100_000, 100_000, minSamples);
+		assertTimeouts(domain, true, (2 * HttpConnUtils.maxConnGETWaitingTime), (2 * HttpConnUtils.maxConnGETWaitingTime));
+		assertTimeouts(domain, false, (2 * HttpConnUtils.maxConnHEADWaitingTime), (2 * HttpConnUtils.maxConnHEADWaitingTime));
+	}
+
+
+	private static DomainLatencyData addLatencyData(String domain, long connectLatencyMillis, long ttfbLatencyMillis, int numOfSamples)
+	{
+		DomainLatencyData domainLatencyData = ConnSupportUtils.domainsWithLatencyData.computeIfAbsent(domain, k -> new DomainLatencyData());
+		for ( int i = 0; i < numOfSamples; i++ ) {
+			domainLatencyData.addConnectLatency(connectLatencyMillis);
+			domainLatencyData.addTtfbLatency(ttfbLatencyMillis);
+		}
+		return domainLatencyData;
+	}
+
+
+	private static void assertTimeouts(String domain, boolean useHttpGetMethod, int expectedConnectTimeout, int expectedReadTimeout) throws IOException
+	{
+		HttpURLConnection conn = (HttpURLConnection) new URL("http://" + ((domain != null) ? domain : "latency-test.org") + "/").openConnection();
+		ConnSupportUtils.setTimeouts(conn, domain, useHttpGetMethod);
+		assertEquals(expectedConnectTimeout, conn.getConnectTimeout(), "connect-timeout of " + domain);
+		assertEquals(expectedReadTimeout, conn.getReadTimeout(), "read-timeout of " + domain);
+	}
+}
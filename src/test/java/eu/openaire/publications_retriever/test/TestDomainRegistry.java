@@ -0,0 +1,118 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.http.DomainConnectionData;
+import eu.openaire.publications_retriever.util.url.DomainRegistry;
+import eu.openaire.publications_retriever.util.url.DomainSet;
+import eu.openaire.publications_retriever.util.url.ParsedUrl;
+import eu.openaire.publications_retriever.util.url.PublicSuffixes;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the "DomainRegistry" gives a single ID to each domain, even when many threads meet it at the same time,
+ * and that the state kept by that ID (the registrable domain, the flags, the hits and the politeness-data) behaves like the maps it replaced.
+ * @author Lampros Smyrnaios
+ */
+public class TestDomainRegistry {
+
+	@Test
+	public void testConcurrentIds() throws Exception
+	{
+		int numOfThreads = 8, numOfDomains = 5_000;	// More than one chunk of IDs.
+		ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+		List<Future<int[]>> futures = new ArrayList<>(numOfThreads);
+		try {
+			for ( int t = 0; t < numOfThreads; t++ )
+				futures.add(executor.submit(() -> {
+					int[] ids = new int[numOfDomains];
+					for ( int i = 0; i < numOfDomains; i++ )
+						ids[i] = DomainRegistry.getId("concurrent" + i + ".registry-test.org");
+					return ids;
+				}));
+			int[] expectedIds = futures.get(0).get();
+			for ( Future<int[]> future : futures )
+				assertArrayEquals(expectedIds, future.get());
+
+			Set<Integer> distinctIds = new HashSet<>();
+			for ( int i = 0; i < numOfDomains; i++ ) {
+				distinctIds.add(expectedIds[i]);
+				assertEquals("concurrent" + i + ".registry-test.org", DomainRegistry.getDomain(expectedIds[i]));
+			}
+			assertEquals(numOfDomains, distinctIds.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	@Test
+	public void testRegistrableDomains()
+	{
+		String[] domains = {"www.example.co.uk", "example.co.uk", "co.uk", "a.b.example.com", "ox.ac.uk", "users.ox.ac.uk", "192.168.1.1", "localhost"};
+		for ( String domain : domains ) {
+			int id = DomainRegistry.getId(domain);
+			assertEquals(PublicSuffixes.getRegistrableDomain(domain), DomainRegistry.getDomain(DomainRegistry.getRegistrableDomainId(id)), "Different registrable domain for: " + domain);
+		}
+		ParsedUrl parsedUrl = ParsedUrl.parse("https://www.journals.example.ac.uk/article/123.pdf");
+		assertEquals(DomainRegistry.getId("journals.example.ac.uk"), parsedUrl.domainId);
+		assertEquals("example.ac.uk", parsedUrl.getRegistrableDomain());
+		assertEquals(-1, ParsedUrl.parse("not a url").domainId);
+	}
+
+
+	@Test
+	public void testDomainSets()
+	{
+		DomainSet blocked = new DomainSet(DomainRegistry.FLAG_BLOCKED);
+		DomainSet blockedFromMLA = new DomainSet(DomainRegistry.FLAG_BLOCKED_FROM_MLA);
+
+		assertFalse(blocked.contains("never-met.set-test.org"));
+		assertEquals(-1, DomainRegistry.getExistingId("never-met.set-test.org"));	// The "contains()" does not register the domain.
+
+		assertTrue(blocked.add("a.set-test.org"));
+		assertFalse(blocked.add("a.set-test.org"));
+		assertTrue(blocked.add("b.set-test.org"));
+		assertTrue(blockedFromMLA.add("a.set-test.org"));	// The flags of the same domain are independent.
+
+		assertTrue(blocked.contains("a.set-test.org"));
+		assertTrue(blocked.contains("b.set-test.org"));
+		assertTrue(blockedFromMLA.contains("a.set-test.org"));
+		assertFalse(blockedFromMLA.contains("b.set-test.org"));
+		assertFalse(new DomainSet(DomainRegistry.FLAG_SUPPORTS_HTTPS).contains("a.set-test.org"));
+
+		assertEquals(2, blocked.size());
+		assertEquals(1, blockedFromMLA.size());
+		Set<String> blockedDomains = new HashSet<>(blocked);	// The other tests may have set this flag to other domains, in the registry.
+		assertTrue(blockedDomains.contains("a.set-test.org") && blockedDomains.contains("b.set-test.org"));
+	}
+
+
+	@Test
+	public void testHitsAndConnectionData()
+	{
+		assertEquals(0, DomainRegistry.getHits("hits.registry-test.org"));
+		assertEquals(1, DomainRegistry.incrementHits("hits.registry-test.org"));
+		assertEquals(2, DomainRegistry.incrementHits("hits.registry-test.org"));
+		assertEquals(2, DomainRegistry.getHits("hits.registry-test.org"));
+		assertEquals(2, (int) DomainRegistry.getDomainsAndHits().get("hits.registry-test.org"));
+
+		// The sub-domains of the same site share the same politeness-data, which is created only once.
+		boolean[] createdData = new boolean[] {false};
+		DomainConnectionData data = DomainRegistry.getConnectionData("a.politeness-test.org", createdData);
+		assertTrue(createdData[0]);
+		createdData[0] = false;
+		assertSame(data, DomainRegistry.getConnectionData("b.politeness-test.org", createdData));
+		assertFalse(createdData[0]);
+		assertNotSame(data, DomainRegistry.getConnectionData("politeness-test.com", createdData));
+	}
+}
@@ -0,0 +1,183 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.crawler.HtmlLinkTokenizer;
+import eu.openaire.publications_retriever.crawler.LinkElement;
+import eu.openaire.publications_retriever.crawler.PageCrawler;
+import eu.openaire.publications_retriever.crawler.ParsedPage;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the "HtmlLinkTokenizer" gives the same link-elements (href, title, type, data-popup and anchor-text) as the "select()" of Jsoup,
+ * on the pages of the "HtmlPageSamples" and on the nesting edge-cases, and that the pages it reports as malformed, are parsed by Jsoup in the "PageCrawler.parsePage()".
+ * @author Lampros Smyrnaios
+ */
+public class TestHtmlLinkTokenizer {
+
+	@Test
+	public void testSameResultsWithJsoupOnSamples()
+	{
+		for ( Map.Entry<String, String> sample : HtmlPageSamples.getSamples().entrySet() ) {
+			HtmlLinkTokenizer linkTokenizer = new HtmlLinkTokenizer(sample.getValue(), true);
+			List<String> tokenizerLinks = getLinks(linkTokenizer);
+			assertFalse(linkTokenizer.isMalformed(), "The sample was reported as malformed: " + sample.getKey());
+			assertEquals(getJsoupLinks(sample.getValue()), tokenizerLinks, "Different link-elements for sample: " + sample.getKey());
+		}
+	}
+
+
+	@Test
+	public void testAttributesAndText()
+	{
+		assertSameLinksWithJsoup("<a href=\"/f.pdf?a=1&amp;b=2\" title=\"The &quot;full&quot; text\" type=\"application/pdf\" data-popup=\"true\">Full <b>text</b>&nbsp;PDF</a>", false);
+		assertSameLinksWithJsoup("<A HREF='/f.pdf' TITLE=x>A<br>B<div>C</div>D</A><link href=\"/s.pdf\" type=\"application/PDF\" title=\"S\"><link href=\"/s.css\" type=\"text/css\">", false);
+		assertSameLinksWithJsoup("<head><link rel=alternate type=application/pdf href=/h.pdf></head><body><a>no href</a><a href=\"\"> \t\n</a></body>", false);
+		assertSameLinksWithJsoup("<a href=/1>one<img src=x.png>two<hr>three</a><a href=/2><script>var a = '<a href=/3>';</script>four<style>a {}</style></a>", false);
+		assertSameLinksWithJsoup("<a href=/1>x<title>a  &amp;  b</title>y</a><a href=/2>z<textarea>c   d</textarea></a>", false);
+		assertSameLinksWithJsoup("<a href=/1>zero&#8203;width&shy;and&#160;nbsp</a>", false);
+	}
+
+
+	@Test
+	public void testFrameset()
+	{
+		// Jsoup switches to its "frameset"-mode, where it ignores the anchors, or it ignores the "frameset"-tag, depending on what was before it. The tokenizer leaves the decision to Jsoup.
+		assertSameLinksWithJsoup("<frameset><a href=1>x</a></frameset>", true);
+		assertSameLinksWithJsoup("<html><head><title>t</title></head><frameset cols=\"50%,50%\"><frame src=\"/a.html\"><noframes><a href=/2>y</a></noframes></frameset></html>", true);
+		assertSameLinksWithJsoup("<body><p>text</p><frameset><a href=3>z</a></frameset></body>", true);
+		assertTrue(PageCrawler.parsePage("<frameset><a href=1>x</a></frameset>").linkElements.isEmpty());
+	}
+
+
+	@Test
+	public void testPre()
+	{
+		assertSameLinksWithJsoup("<pre><a href=1>x   a   b</a></pre>", false);
+		assertSameLinksWithJsoup("<pre>\n<a href=1>\n  x\ty  \n</a>\n</pre>", false);
+		assertSameLinksWithJsoup("<a href=1>y<pre>\n  z   w\n</pre>v   u</a>", false);
+		assertSameLinksWithJsoup("<a href=1>y<listing>\nz   w</listing></a>", false);
+		assertSameLinksWithJsoup("<pre><a href=1>x&nbsp;&nbsp;&#8203;y</a></pre>", false);
+		// Jsoup looks for the "pre" only up to the 5th ancestor of the text.
+		assertSameLinksWithJsoup("<pre><b><i><u><em><a href=1>x   y</a></em></u></i></b></pre>", false);
+		assertSameLinksWithJsoup("<pre><b><i><u><em><s><a href=1>x   y</a></s></em></u></i></b></pre>", false);
+		assertSameLinksWithJsoup("<pre><b><i><u><em><a href=1>x<s>y   z</s></a></em></u></i></b></pre>", false);
+	}
+
+
+	@Test
+	public void testMisnesting()
+	{
+		assertSameLinksWithJsoup("<div><a href=1>x</div>y<a href=2>z</a>", null);
+		assertSameLinksWithJsoup("<a href=1>x<div>y</a>z</div>", true);	// Jsoup splits the anchor in two.
+		assertSameLinksWithJsoup("<ul><li><a href=1>x<li><a href=2>y</ul>", null);
+		assertSameLinksWithJsoup("<ul><li><a href=1>x</li><li>y</a></li></ul>", null);
+		assertSameLinksWithJsoup("<a href=1>x<a href=2>y</a>z", null);
+		assertSameLinksWithJsoup("<b><a href=1>x</b>y</a>", null);
+		assertSameLinksWithJsoup("<p><a href=1>x<p>y</a>", null);
+		assertSameLinksWithJsoup("<table><tr><td><a href=1>x</td><td>y</a></td></tr></table>", null);
+		assertSameLinksWithJsoup("<table><a href=1>x</a><tr><td>y</td></tr></table>", true);	// Jsoup moves the anchor before the table.
+		assertSameLinksWithJsoup("<select><option><a href=1>x</a></option></select>", true);
+		assertSameLinksWithJsoup("<a href=1><h1>x</h1><h2>y</a></h2>", null);
+		assertSameLinksWithJsoup("<dl><dt><a href=1>x<dd>y</a></dl>", null);
+		assertSameLinksWithJsoup("<form><a href=1>x<form>y</form></a></form>", null);
+	}
+
+
+	@Test
+	public void testMalformedFallsBackToJsoup()
+	{
+		String[] malformedPages = {
+				"<a href=1>x</a><!-- an unclosed comment <a href=2>y</a>",
+				"<a href=\"1>x</a><a href=2>y</a>",	// An unclosed quote.
+				"<a href=1>x<plaintext><a href=2>y</a>",
+				"<a href=1>x<script>var a = '<a href=2>';",	// An unclosed raw-text element.
+				"<a href=1>x<div>y</a>z</div>"
+		};
+		for ( String html : malformedPages ) {
+			HtmlLinkTokenizer linkTokenizer = new HtmlLinkTokenizer(html, true);
+			getLinks(linkTokenizer);
+			assertTrue(linkTokenizer.isMalformed(), "The page was not reported as malformed: " + html);
+			ParsedPage parsedPage = PageCrawler.parsePage(html);
+			assertTrue(parsedPage.wasParsedWithJsoup);
+			assertEquals(getJsoupLinks(html), toStrings(parsedPage.linkElements), "Different link-elements for: " + html);
+		}
+	}
+
+
+	/**
+	 * This method combines random fragments of (well-formed or not) HTML and checks that the tokenizer either gives the same link-elements as Jsoup, or it reports the page as malformed.
+	 */
+	@Test
+	public void testRandomFragments()
+	{
+		String[] fragments = {"<a href=1>", "<a href=2 title=t>", "</a>", "<div>", "</div>", "<p>", "</p>", "<li>", "</li>", "<ul>", "</ul>", "<b>", "</b>", "<i>", "</i>",
+				"<pre>", "</pre>", "\n", "  x  ", "y", "<br>", "<table>", "<tr>", "<td>", "</td>", "</table>", "<span>", "</span>", "<h1>", "</h1>", "<frameset>", "</frameset>",
+				"<link href=3 type=application/pdf>", "<img src=i>", "<em>", "</em>", "<title>t</title>", "<form>", "</form>", "<dd>", "<button>", "</button>", "&amp;", "<!-- c -->"};
+		Random random = new Random(42);
+		int numOfTokenizedPages = 0;
+		for ( int i = 0; i < 20_000; i++ ) {
+			StringBuilder html = new StringBuilder();
+			for ( int j = 0, numOfFragments = (1 + random.nextInt(12)); j < numOfFragments; j++ )
+				html.append(fragments[random.nextInt(fragments.length)]);
+			HtmlLinkTokenizer linkTokenizer = new HtmlLinkTokenizer(html.toString(), true);
+			List<String> tokenizerLinks = getLinks(linkTokenizer);
+			if ( !linkTokenizer.isMalformed() ) {
+				assertEquals(getJsoupLinks(html.toString()), tokenizerLinks, "Different link-elements for: " + html);
+				numOfTokenizedPages ++;
+			}
+		}
+		assertTrue(numOfTokenizedPages > 10_000, "Too many pages were reported as malformed: " + (20_000 - numOfTokenizedPages));
+	}
+
+
+	/**
+	 * @param expectedMalformed whether the page should be reported as malformed by the tokenizer, or "null", if either is acceptable.
+	 */
+	private static void assertSameLinksWithJsoup(String html, Boolean expectedMalformed)
+	{
+		HtmlLinkTokenizer linkTokenizer = new HtmlLinkTokenizer(html, true);
+		List<String> tokenizerLinks = getLinks(linkTokenizer);
+		if ( expectedMalformed != null )
+			assertEquals(expectedMalformed, linkTokenizer.isMalformed(), "Unexpected malformed-state for: " + html);
+		if ( !linkTokenizer.isMalformed() )
+			assertEquals(getJsoupLinks(html), tokenizerLinks, "Different link-elements for: " + html);
+		else	// The "PageCrawler" uses Jsoup for this page.
+			assertEquals(getJsoupLinks(html), toStrings(PageCrawler.parsePage(html).linkElements), "Different link-elements for: " + html);
+	}
+
+
+	private static List<String> getLinks(HtmlLinkTokenizer linkTokenizer)
+	{
+		List<LinkElement> linkElements = new ArrayList<>();
+		while ( linkTokenizer.hasNext() )
+			linkElements.add(linkTokenizer.next());
+		return toStrings(linkElements);
+	}
+
+
+	private static List<String> toStrings(List<LinkElement> linkElements)
+	{
+		List<String> links = new ArrayList<>(linkElements.size());
+		for ( LinkElement el : linkElements )
+			links.add("[" + el.href + "|" + el.title + "|" + el.type + "|" + el.dataPopup + "|" + el.text + "]");
+		return links;
+	}
+
+
+	private static List<String> getJsoupLinks(String html)
+	{
+		List<String> links = new ArrayList<>();
+		for ( Element el : Jsoup.parse(html).select("a, link[href][type*=pdf]") )
+			links.add("[" + el.attr("href") + "|" + el.attr("title") + "|" + el.attr("type") + "|" + el.attr("data-popup") + "|" + el.text() + "]");
+		return links;
+	}
+}
@@ -0,0 +1,187 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.http.HtmlReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the "HtmlReader" detects the charset of a page from its BOM, its "Content-Type" header or its "meta"-tags (in this order),
+ * that it falls back to UTF-8 when there is no charset, that it removes the blank lines and that it stops reading at the size-limit.
+ * @author Lampros Smyrnaios
+ */
+public class TestHtmlReader {
+
+	private static final String greekText = "Ελληνικό κείμενο";
+	private static final String frenchText = "Thèse à télécharger";
+
+
+	@Test
+	public void testCharsetFromBOM() throws IOException
+	{
+		String html = "<html><head><title>" + greekText + "</title></head></html>";
+		byte[] utf8Bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+		assertDecoded(html, StandardCharsets.UTF_8, concat(utf8Bom, html.getBytes(StandardCharsets.UTF_8)), null);
+
+		byte[] utf16BEBom = {(byte) 0xFE, (byte) 0xFF};
+		assertDecoded(html, StandardCharsets.UTF_16BE, concat(utf16BEBom, html.getBytes(StandardCharsets.UTF_16BE)), null);
+
+		byte[] utf16LEBom = {(byte) 0xFF, (byte) 0xFE};
+		assertDecoded(html, StandardCharsets.UTF_16LE, concat(utf16LEBom, html.getBytes(StandardCharsets.UTF_16LE)), null);
+
+		// The BOM takes precedence over the header and the meta-tags.
+		String htmlWithMeta = "<html><head><meta charset=\"iso-8859-1\"><title>" + greekText + "</title></head></html>";
+		assertDecoded(htmlWithMeta, StandardCharsets.UTF_8, concat(utf8Bom, htmlWithMeta.getBytes(StandardCharsets.UTF_8)), "text/html; charset=windows-1252");
+	}
+
+
+	@Test
+	public void testCharsetFromHeader() throws IOException
+	{
+		Charset greekCharset = Charset.forName("ISO-8859-7");
+		String html = "<html><head><title>" + greekText + "</title></head></html>";
+		assertDecoded(html, greekCharset, html.getBytes(greekCharset), "text/html; charset=ISO-8859-7");
+		assertDecoded(html, greekCharset, html.getBytes(greekCharset), "text/html;charset=\"iso-8859-7\"");
+
+		// The header takes precedence over the meta-tags.
+		Charset windows1252 = Charset.forName("windows-1252");
+		String htmlWithMeta = "<html><head><meta charset=\"utf-8\"><title>" + frenchText + "</title></head></html>";
+		assertDecoded(htmlWithMeta, windows1252, htmlWithMeta.getBytes(windows1252), "text/html; charset=windows-1252");
+
+		// An unknown charset in the header is ignored.
+		assertDecoded(html, StandardCharsets.UTF_8, html.getBytes(StandardCharsets.UTF_8), "text/html; charset=unknown-charset");
+	}
+
+
+	@Test
+	public void testCharsetFromMetaTags() throws IOException
+	{
+		Charset windows1252 = Charset.forName("windows-1252");
+		String html = "<html><head><meta charset='windows-1252'><title>" + frenchText + "</title></head></html>";
+		assertDecoded(html, windows1252, html.getBytes(windows1252), "text/html");
+
+		String htmlWithHttpEquiv = "<html><head><META HTTP-EQUIV=\"Content-Type\" CONTENT=\"text/html; charset=ISO-8859-7\"><title>" + greekText + "</title></head></html>";
+		Charset greekCharset = Charset.forName("ISO-8859-7");
+		assertDecoded(htmlWithHttpEquiv, greekCharset, htmlWithHttpEquiv.getBytes(greekCharset), null);
+
+		// A declared UTF-16 without a BOM is ignored, as the declaration itself was readable as ASCII.
+		String htmlWithUtf16 = "<html><head><meta charset=\"utf-16\"><title>" + greekText + "</title></head></html>";
+		assertDecoded(htmlWithUtf16, StandardCharsets.UTF_8, htmlWithUtf16.getBytes(StandardCharsets.UTF_8), null);
+	}
+
+
+	@Test
+	public void testNoCharset() throws IOException
+	{
+		String html = "<html><head><title>" + greekText + "</title></head></html>";
+		assertDecoded(html, StandardCharsets.UTF_8, html.getBytes(StandardCharsets.UTF_8), null);
+		assertDecoded(html, StandardCharsets.UTF_8, html.getBytes(StandardCharsets.UTF_8), "text/html");
+		assertDecoded("", StandardCharsets.UTF_8, new byte[0], null);
+	}
+
+
+	@Test
+	public void testBlankLinesAndHead() throws IOException
+	{
+		String html = "<html>\r\n<head>\n   \n\t\n<title>" + greekText + "</title>\n</head>\n\n<body>\r\n<p>text</p>\n</body>\n</html>";
+		try ( HtmlReader htmlReader = new HtmlReader(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), null) ) {
+			assertEquals("<html><head><title>" + greekText + "</title></head>", htmlReader.readHtml(true));
+			assertEquals("<body><p>text</p></body></html>", htmlReader.readHtml(false));
+		}
+
+		// The tags which only start with "body" do not end the head.
+		html = "<html>\n<head>\n<bodycontent>x</bodycontent>\n<BODYTEXT/>\n</head>\n<body>\n</body>\n</html>";
+		try ( HtmlReader htmlReader = new HtmlReader(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), null) ) {
+			assertEquals("<html><head><bodycontent>x</bodycontent><BODYTEXT/></head>", htmlReader.readHtml(true));
+		}
+
+		// Without a closing "head"-tag, the "body"-tag ends the head, even if it has attributes.
+		for ( String bodyTag : new String[] {"<body>", "<BODY class=\"main\">", "<body\tid=\"b\">", "<body/>", "<body"} ) {
+			html = "<html>\n<title>t</title>\n" + bodyTag + "\n<p>text</p>\n</html>";
+			try ( HtmlReader htmlReader = new HtmlReader(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), null) ) {
+				assertEquals("<html><title>t</title>" + bodyTag, htmlReader.readHtml(true), bodyTag);
+			}
+		}
+	}
+
+
+	@Test
+	public void testSizeLimit() throws IOException
+	{
+		try ( HtmlReader htmlReader = new HtmlReader(new GeneratedHtmlStream(HtmlReader.maxAllowedHtmlSize), null) ) {
+			assertEquals(((HtmlReader.maxAllowedHtmlSize / 64) * 63), htmlReader.readHtml(false).length());	// The terminator of each line is removed.
+		}
+
+		try ( HtmlReader htmlReader = new HtmlReader(new GeneratedHtmlStream(HtmlReader.maxAllowedHtmlSize + 1), null) ) {
+			IOException ioe = assertThrows(IOException.class, () -> htmlReader.readHtml(false));
+			assertTrue(ioe.getMessage().contains("exceeded the max allowed size"), ioe.getMessage());
+		}
+
+		// A stream which never ends, is not read further than the limit.
+		GeneratedHtmlStream endlessStream = new GeneratedHtmlStream(Long.MAX_VALUE);
+		try ( HtmlReader htmlReader = new HtmlReader(endlessStream, null) ) {
+			assertThrows(IOException.class, () -> htmlReader.readHtml(false));
+		}
+		assertTrue(endlessStream.numOfBytesRead <= (HtmlReader.maxAllowedHtmlSize + 16384), "Read " + endlessStream.numOfBytesRead + " bytes.");
+	}
+
+
+	private static void assertDecoded(String expectedHtml, Charset expectedCharset, byte[] bytes, String contentTypeHeader) throws IOException
+	{
+		try ( HtmlReader htmlReader = new HtmlReader(new ByteArrayInputStream(bytes), contentTypeHeader) ) {
+			assertEquals(expectedCharset, htmlReader.getCharset(), "Wrong charset for: " + expectedHtml);
+			assertEquals(expectedHtml, htmlReader.readHtml(false));
+		}
+	}
+
+
+	private static byte[] concat(byte[] bytes1, byte[] bytes2)
+	{
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes1.length + bytes2.length);
+		outputStream.write(bytes1, 0, bytes1.length);
+		outputStream.write(bytes2, 0, bytes2.length);
+		return outputStream.toByteArray();
+	}
+
+
+	/**
+	 * This stream generates the given number of bytes of HTML, as lines of 64 bytes (including the line-terminator), without keeping them in memory.
+	 */
+	private static class GeneratedHtmlStream extends InputStream
+	{
+		private static final byte[] line = "<p>01234567890123456789012345678901234567890123456789012345</p>\n".getBytes(StandardCharsets.US_ASCII);
+
+		private final long size;
+		long numOfBytesRead = 0;
+
+		GeneratedHtmlStream(long size) {
+			this.size = size;
+		}
+
+		@Override
+		public int read() {
+			if ( numOfBytesRead >= size )
+				return -1;
+			return line[(int) (numOfBytesRead++ % line.length)];
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if ( numOfBytesRead >= size )
+				return -1;
+			int numOfBytes = (int) Math.min(length, (size - numOfBytesRead));
+			for ( int i = 0; i < numOfBytes; i++ )
+				bytes[offset + i] = line[(int) ((numOfBytesRead + i) % line.length)];
+			numOfBytesRead += numOfBytes;
+			return numOfBytes;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.crawler.LinkRanker;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * This class checks that the "LinkRanker" prefers the links which are more likely to lead to a docUrl.
+ * @author Lampros Smyrnaios
+ */
+public class TestLinkRanker {
+
+	private static final String pageDomain = "repository.example.org";
+
+
+	@Test
+	public void testPathAndAnchorText()
+	{
+		int bitstreamScore = LinkRanker.scoreLink("https://repository.example.org/bitstream/123/4/thesis.pdf", "", pageDomain, 20, 40);
+		int plainLinkScore = LinkRanker.scoreLink("https://repository.example.org/handle/123/4", "", pageDomain, 20, 40);
+		int downloadTextScore = LinkRanker.scoreLink("https://repository.example.org/handle/123/4/files", "download full text", pageDomain, 20, 40);
+		int loginScore = LinkRanker.scoreLink("https://repository.example.org/login", "log in", pageDomain, 20, 40);
+
+		assertTrue(bitstreamScore > plainLinkScore);
+		assertTrue(downloadTextScore > plainLinkScore);
+		assertTrue(plainLinkScore > loginScore);
+	}
+
+
+	@Test
+	public void testDomainAndPosition()
+	{
+		int sameDomainScore = LinkRanker.scoreLink("https://repository.example.org/record/1", "", pageDomain, 20, 40);
+		int otherDomainScore = LinkRanker.scoreLink("https://other.example.com/record/1", "", pageDomain, 20, 40);
+		int navigationScore = LinkRanker.scoreLink("https://repository.example.org/record/1", "", pageDomain, 1, 40);
+
+		assertTrue(sameDomainScore > otherDomainScore);
+		assertTrue(sameDomainScore > navigationScore);
+	}
+
+
+	@Test
+	public void testPathHistory()
+	{
+		String link = "https://journals.example.net/retrieve-item/5678/paper";
+		int scoreBefore = LinkRanker.scoreLink(link, "", "journals.example.net", 20, 40);
+		LinkRanker.registerDocUrlLink("https://journals.example.net/retrieve-item/1234/paper");
+		int scoreAfter = LinkRanker.scoreLink(link, "", "journals.example.net", 20, 40);
+
+		assertTrue(scoreAfter > scoreBefore);
+		// Another directory of the same domain is not affected.
+		assertTrue(LinkRanker.scoreLink("https://journals.example.net/issue/5678/paper", "", "journals.example.net", 20, 40) < scoreAfter);
+	}
+}
@@ -0,0 +1,52 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.crawler.LinkTemplates;
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the link-templates generalize the docUrl-links of the common repository-software, without matching their other links.
+ * @author Lampros Smyrnaios
+ */
+public class TestLinkTemplates {
+
+	@Test
+	public void testTemplates()
+	{
+		assertEquals("repository\\.example\\.org/bitstream/\\d+/\\d+/[^/?]*\\.pdf\\?sequence\\=\\d+", LinkTemplates.getTemplate("https://repository.example.org/bitstream/123/4/thesis.pdf?sequence=1"));
+		assertEquals("journals\\.example\\.org/index\\.php/journal/article/download/\\d+/\\d+", LinkTemplates.getTemplate("https://journals.example.org/index.php/journal/article/download/123/456"));
+		assertNull(LinkTemplates.getTemplate("https://example.org/"));
+		assertNull(LinkTemplates.getTemplate("example.org/paper.pdf"));
+	}
+
+
+	@Test
+	public void testMatching()
+	{
+		// DSpace
+		assertMatches("https://repository.example.org/bitstream/123/4/thesis.pdf?sequence=1", "repository.example.org/bitstream/5678/90/Article_final.pdf?sequence=2");
+		assertNotMatches("https://repository.example.org/bitstream/123/4/thesis.pdf?sequence=1", "repository.example.org/handle/5678/90");
+		// OJS
+		assertMatches("https://journals.example.org/index.php/journal/article/download/123/456", "journals.example.org/index.php/journal/article/download/7/8910");
+		assertNotMatches("https://journals.example.org/index.php/journal/article/download/123/456", "journals.example.org/index.php/journal/article/view/7/8910");
+		// EPrints
+		assertMatches("http://eprints.example.ac.uk/42/1/thesis.pdf", "eprints.example.ac.uk/1234/3/paper.pdf");
+		assertNotMatches("http://eprints.example.ac.uk/42/1/thesis.pdf", "eprints.example.ac.uk/1234/3/paper.doc");
+	}
+
+
+	private static void assertMatches(String learnedLink, String otherLink)
+	{
+		assertTrue(Pattern.compile(LinkTemplates.getTemplate(learnedLink)).matcher(otherLink).matches(), otherLink);
+	}
+
+
+	private static void assertNotMatches(String learnedLink, String otherLink)
+	{
+		assertFalse(Pattern.compile(LinkTemplates.getTemplate(learnedLink)).matcher(otherLink).matches(), otherLink);
+	}
+}
@@ -0,0 +1,73 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.crawler.MetaTagScanner;
+import eu.openaire.publications_retriever.crawler.PageCrawler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+/**
+ * This class checks that the "MetaTagScanner" gives the same metaDocUrls as the "META_DOC_URL"-regex and that it tolerates the case- and whitespace-variations.
+ * It also checks that the metaDocUrls found by "PageCrawler.parsePage()", along with the link-elements, are the same.
+ * @author Lampros Smyrnaios
+ */
+public class TestMetaTagScanner {
+
+	@Test
+	public void testSameResultsWithRegex()
+	{
+		for ( Map.Entry<String, String> sample : HtmlPageSamples.getSamples().entrySet() ) {
+			String regexMetaDocUrl = MetaDocUrlRegex.findMetaDocUrl(sample.getValue());
+			if ( regexMetaDocUrl != null )	// The regex does not match the case-variations, which are checked separately.
+				assertEquals(regexMetaDocUrl, MetaTagScanner.findMetaDocUrl(sample.getValue()), "Different metaDocUrl for sample: " + sample.getKey());
+		}
+		assertNull(MetaTagScanner.findMetaDocUrl(HtmlPageSamples.getSamples().get("dspaceWithoutPdfMeta")));
+		assertNull(MetaTagScanner.findMetaDocUrl(HtmlPageSamples.getSamples().get("largeMinifiedWithoutMeta")));
+		assertEquals("http://eprints.example.ac.uk/42/1/thesis.pdf", MetaTagScanner.findMetaDocUrl(HtmlPageSamples.getSamples().get("eprintsDocumentUrl")));
+	}
+
+
+	@Test
+	public void testVariations()
+	{
+		String expected = "https://example.org/paper.pdf";
+		assertEquals(expected, MetaTagScanner.findMetaDocUrl("<meta name=\"citation_pdf_url\" content=\"https://example.org/paper.pdf\">"));
+		assertEquals(expected, MetaTagScanner.findMetaDocUrl("<meta content=\"https://example.org/paper.pdf\" name=\"citation_pdf_url\"/>"));
+		assertEquals(expected, MetaTagScanner.findMetaDocUrl("<META\n\tNAME = 'Citation_PDF_URL'  CONTENT = ' https://example.org/paper.pdf ' />"));
+		assertEquals(expected, MetaTagScanner.findMetaDocUrl("<meta name=DC.citation_pdf_url content=https://example.org/paper.pdf>"));
+		assertEquals(expected, MetaTagScanner.findMetaDocUrl("<meta name=\"citation_pdf_url\" content=\"/relative.pdf\"><meta name=\"citation_pdf_url\" content=\"https://example.org/paper.pdf\">"));
+		assertEquals(expected, MetaTagScanner.findMetaDocUrl("<meta name=\"citation_pdf_url\" content=\"https://example.org/<broken.pdf\"<meta name=\"eprints.document_url\" content=\"https://example.org/paper.pdf\">"));
+
+		assertNull(MetaTagScanner.findMetaDocUrl("<metadata name=\"citation_pdf_url\" content=\"https://example.org/paper.pdf\">"));
+		assertNull(MetaTagScanner.findMetaDocUrl("<meta name=\"citation_pdf_url_other\" content=\"https://example.org/paper.pdf\">"));
+		assertNull(MetaTagScanner.findMetaDocUrl("<meta name=\"citation_pdf_url\" content=\"https://example.org/paper.pdf>"));	// The quote never closes.
+		assertNull(MetaTagScanner.findMetaDocUrl("<meta name=\"citation_pdf_url\">"));
+		assertNull(MetaTagScanner.findMetaDocUrl(""));
+	}
+
+
+	@Test
+	public void testSameResultsWithParsedPage()
+	{
+		for ( Map.Entry<String, String> sample : HtmlPageSamples.getSamples().entrySet() )
+			assertEquals(MetaTagScanner.findMetaDocUrl(sample.getValue()), PageCrawler.parsePage(sample.getValue()).metaDocUrl, "Different metaDocUrl for sample: " + sample.getKey());
+
+		String[] variations = {
+				"<meta name=\"citation_pdf_url\" content=\"https://example.org/paper.pdf\">",
+				"<META\n\tNAME = 'Citation_PDF_URL'  CONTENT = ' https://example.org/paper.pdf ' />",
+				"<meta name=DC.citation_pdf_url content=https://example.org/paper.pdf>",
+				"<meta name=\"citation_pdf_url\" content=\"/relative.pdf\"><meta name=\"citation_pdf_url\" content=\"https://example.org/paper.pdf\">",
+				"<meta name=\"citation_pdf_url\" content=\"https://example.org/<broken.pdf\"<meta name=\"eprints.document_url\" content=\"https://example.org/paper.pdf\">",
+				"<body><a href=\"/x\">x</a><meta name=\"citation_pdf_url\" content=\"https://example.org/paper.pdf?a=1&amp;b=2\"></body>",
+				"<meta name content=\"https://example.org/paper.pdf\" name=\"citation_pdf_url\">",
+				"<meta name=\"citation_pdf_url\">"
+		};
+		for ( String html : variations )
+			assertEquals(MetaTagScanner.findMetaDocUrl(html), PageCrawler.parsePage(html).metaDocUrl, "Different metaDocUrl for: " + html);
+	}
+
+}
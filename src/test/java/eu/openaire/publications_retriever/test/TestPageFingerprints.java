@@ -0,0 +1,74 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.crawler.PageCrawler;
+import eu.openaire.publications_retriever.crawler.PageFingerprints;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * This class checks that the "PageFingerprints" recognizes the template-pages which give no docUrls, without affecting the different landing-pages of the same domain.
+ * @author Lampros Smyrnaios
+ */
+public class TestPageFingerprints {
+
+	private static final String loginPage = "<html><head><title>Access denied - Please log in</title></head><body><div class=\"header\"><a href=\"/\">Home</a></div>"
+			+ "<form action=\"/login\"><input name=\"user\"><input name=\"pass\" type=\"password\"><button>Login</button></form><div class=\"footer\"><a href=\"/help\">Help</a></div></body></html>";
+
+
+	private static String getLandingPage(String title)
+	{
+		return "<html><head><title>" + title + "</title></head><body><div class=\"header\"><a href=\"/\">Home</a></div>"
+				+ "<div class=\"record\"><h1>" + title + "</h1><p>Abstract of the paper.</p><ul><li><a href=\"/record/1/files\">Files</a></li><li><a href=\"/record/1/export\">Export</a></li></ul></div>"
+				+ "<div class=\"footer\"><a href=\"/help\">Help</a></div></body></html>";
+	}
+
+
+	@Test
+	public void testFingerprints()
+	{
+		long loginFingerprint = PageCrawler.parsePage(loginPage).fingerprint;
+		assertTrue(loginFingerprint != 0);
+		assertTrue(PageFingerprints.getHammingDistance(loginFingerprint, PageCrawler.parsePage(loginPage.replace("/help", "/help?from=123")).fingerprint) <= 3);
+
+		long landingFingerprint1 = PageCrawler.parsePage(getLandingPage("A study of the coastal erosion in the Aegean sea")).fingerprint;
+		long landingFingerprint2 = PageCrawler.parsePage(getLandingPage("Deep learning methods for protein folding prediction")).fingerprint;
+		assertTrue(PageFingerprints.getHammingDistance(landingFingerprint1, landingFingerprint2) > 3);
+		assertTrue(PageFingerprints.getHammingDistance(loginFingerprint, landingFingerprint1) > 3);
+	}
+
+
+	@Test
+	public void testNoDocUrlTemplates()
+	{
+		String domain = "fingerprints-test.example.org";
+		long loginFingerprint = PageCrawler.parsePage(loginPage).fingerprint;
+		long landingFingerprint = PageCrawler.parsePage(getLandingPage("Some title of a paper")).fingerprint;
+
+		for ( int i = 0; i < 5; i++ ) {
+			assertFalse(PageFingerprints.isKnownNoDocUrlTemplate(domain, loginFingerprint));
+			registerOutcome(domain, loginFingerprint, false);
+		}
+		assertTrue(PageFingerprints.isKnownNoDocUrlTemplate(domain, loginFingerprint));
+		assertFalse(PageFingerprints.isKnownNoDocUrlTemplate("other-" + domain, loginFingerprint));	// The templates are kept per domain.
+
+		// A template which has given a docUrl is never skipped.
+		for ( int i = 0; i < 5; i++ )
+			registerOutcome(domain, landingFingerprint, false);
+		registerOutcome(domain, landingFingerprint, true);
+		assertFalse(PageFingerprints.isKnownNoDocUrlTemplate(domain, landingFingerprint));
+	}
+
+
+	private static void registerOutcome(String domain, long fingerprint, boolean gaveDocUrl)
+	{
+		PageFingerprints.setCurrentPage(domain, fingerprint);
+		if ( gaveDocUrl )
+			PageFingerprints.registerDocUrlOfCurrentPage();
+		else
+			PageFingerprints.registerNoDocUrlOfCurrentPage();
+		PageFingerprints.clearCurrentPage();
+	}
+}
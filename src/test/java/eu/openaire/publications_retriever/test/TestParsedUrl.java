@@ -0,0 +1,121 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.url.ParsedUrl;
+import eu.openaire.publications_retriever.util.url.UrlUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the "ParsedUrl" gives the same "domain", "path" and "docId" as the groups of the "URL_TRIPLE" regex,
+ * on the urls of the "testData" (along with some variations of them) and on some edge-cases of the regex.
+ * @author Lampros Smyrnaios
+ */
+public class TestParsedUrl {
+
+	private static final String[] urlSuffixes = {"", "/", "//", "?id=5", "?", ";", "?=5", "?a^b=5", "?a=b^c", "^", ";jsessionid=ABC?x=1", "/x?y/z", "/x?y=z/w", "/x?y^z/w=1", "#anchor", "?url=http://example.org/a/b"};
+
+	private static final String[] hostVariants = {"www.", "WWW.", "ww2.", "wwwx.", "www", "wwwexample.", "user@", "", "-", "_."};
+
+
+	@Test
+	public void testSameGroupsWithRegex() throws IOException
+	{
+		Set<String> corpus = TestDocOrDatasetUrlClassifier.getTestDataUrls();
+		assertTrue(corpus.size() > 1000, "The testData gave only " + corpus.size() + " urls.");
+
+		List<String> urls = new ArrayList<>(corpus.size() * (urlSuffixes.length + hostVariants.length + 1));
+		for ( String url : corpus ) {
+			urls.add(url);
+			for ( String suffix : urlSuffixes )
+				urls.add(url + suffix);
+			int hostStart = url.indexOf("://") + 3;
+			String urlWithoutWww = url.startsWith("www.", hostStart) ? (url.substring(0, hostStart) + url.substring(hostStart + 4)) : url;
+			for ( String hostVariant : hostVariants )
+				urls.add(urlWithoutWww.substring(0, hostStart) + hostVariant + urlWithoutWww.substring(hostStart));
+		}
+		urls.addAll(Arrays.asList("", "/", "://", "x://", "://example.org/a", "http://", "http:///a", "http://www.", "http://www./a", "http://ww1", "http://example.org:8080",
+				"http://example.org:8080/a/b.pdf", "http://example.org:80x/a", "http://example.org?x=1", "http://example.org/a\nb", "http://example.org/%c3%a9/\u00e9?x=\u00e9",
+				"https://web.archive.org/web/2020/https://example.org/a.pdf", "http://example.org/a b/c d"));
+
+		int numOfMatchingUrls = 0;
+		for ( String url : urls )
+		{
+			String urlToMatch = url.endsWith("/") ? url.substring(0, (url.length() -1)) : url;
+			Matcher matcher = UrlUtils.URL_TRIPLE.matcher(urlToMatch);
+			ParsedUrl parsedUrl = ParsedUrl.parse(url);
+			assertEquals(url, parsedUrl.url);
+			if ( matcher.matches() ) {
+				numOfMatchingUrls ++;
+				assertEquals(emptyToNull(matcher.group(1)), parsedUrl.path, "Different path for url: " + url);
+				assertEquals(emptyToNull((matcher.group(2) != null) ? matcher.group(2).toLowerCase() : null), parsedUrl.domain, "Different domain for url: " + url);
+				assertEquals(emptyToNull(matcher.group(3)), parsedUrl.docId, "Different docId for url: " + url);
+			} else {
+				assertNull(parsedUrl.path, "The url: " + url + " should not be matched.");
+				assertNull(parsedUrl.domain, "The url: " + url + " should not be matched.");
+				assertNull(parsedUrl.docId, "The url: " + url + " should not be matched.");
+			}
+		}
+		assertTrue(numOfMatchingUrls > 1000);
+	}
+
+
+	@Test
+	public void testOtherParts()
+	{
+		ParsedUrl parsedUrl = ParsedUrl.parse("https://user@WWW.Example.org:8080/a/Doc.pdf?x=1&y=2#page=3");
+		assertEquals("https", parsedUrl.scheme);
+		assertEquals("WWW.Example.org", parsedUrl.host);
+		assertEquals("www.example.org", parsedUrl.lowerCaseHost);
+		assertEquals("x=1&y=2", parsedUrl.query);
+		assertEquals("https://user@www.example.org:8080/a/doc.pdf?x=1&y=2#page=3", parsedUrl.getLowerCaseUrl());
+		assertEquals("example.ac.uk", ParsedUrl.parse("http://www.Sub.Example.ac.uk/a").getRegistrableDomain());
+
+		parsedUrl = ParsedUrl.parse("not a url");
+		assertNull(parsedUrl.scheme);
+		assertNull(parsedUrl.host);
+		assertNull(parsedUrl.query);
+		assertNull(parsedUrl.domain);
+		assertNull(parsedUrl.getRegistrableDomain());
+	}
+
+
+	@Test
+	public void testPerThreadReuse()
+	{
+		String url = "https://example.org/a/b";
+		ParsedUrl parsedUrl = UrlUtils.getParsedUrl(url);
+		assertSame(parsedUrl, UrlUtils.getParsedUrl(new String(url)));	// An equal string gives the same object.
+		assertEquals("example.org", UrlUtils.getDomainStr(url, null));
+		assertEquals("https://example.org/a/", UrlUtils.getPathStr(url, null));
+		assertEquals("b", UrlUtils.getDocIdStr(url, null));
+		assertNull(UrlUtils.getParsedUrl(null));
+		assertNull(UrlUtils.getDomainStr("not a url", null));
+
+		// The pinned url (the page being crawled) is kept, while many other urls (its links) are parsed.
+		String pageUrl = "https://example.org/record/1";
+		UrlUtils.pinParsedUrl(pageUrl);
+		ParsedUrl parsedPageUrl = UrlUtils.getParsedUrl(pageUrl);
+		for ( int i = 0; i < 10; i++ )
+			UrlUtils.getParsedUrl("https://example.org/record/1/file" + i + ".pdf");
+		assertSame(parsedPageUrl, UrlUtils.getParsedUrl(pageUrl));
+		UrlUtils.unpinParsedUrl();
+		for ( int i = 0; i < 10; i++ )
+			UrlUtils.getParsedUrl("https://example.org/record/1/file" + i + ".pdf");
+		assertNotSame(parsedPageUrl, UrlUtils.getParsedUrl(pageUrl));
+	}
+
+
+	private static String emptyToNull(String str)
+	{
+		return ((str == null) || str.isEmpty()) ? null : str;
+	}
+}
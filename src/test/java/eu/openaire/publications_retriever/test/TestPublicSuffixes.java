@@ -0,0 +1,78 @@
+package eu.openaire.publications_retriever.test;
+
+import com.google.common.net.InternetDomainName;
+import eu.openaire.publications_retriever.util.url.ParsedUrl;
+import eu.openaire.publications_retriever.util.url.PublicSuffixes;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks the registrable domains given by the "PublicSuffixes", against the "topPrivateDomain()" of the "InternetDomainName" of the "Guava",
+ * on the domains of the "testData" (along with some sub-domains of them) and on some edge-cases of the "Public Suffix List".
+ * @author Lampros Smyrnaios
+ */
+public class TestPublicSuffixes {
+
+	@Test
+	public void testSameDomainsWithGuava() throws IOException
+	{
+		Set<String> domains = new HashSet<>();
+		for ( String url : TestDocOrDatasetUrlClassifier.getTestDataUrls() ) {
+			String domain = ParsedUrl.parse(url).domain;
+			if ( domain != null ) {
+				domains.add(domain);
+				domains.add("x.y." + domain);
+			}
+		}
+		assertTrue(domains.size() > 200, "The testData gave only " + domains.size() + " domains.");
+
+		int numOfCheckedDomains = 0;
+		for ( String domain : domains )
+		{
+			InternetDomainName internetDomainName;
+			try {
+				internetDomainName = InternetDomainName.from(domain);
+			} catch (IllegalArgumentException iae) {
+				continue;	// The "Guava" does not accept it, so there is nothing to compare with.
+			}
+			if ( !internetDomainName.hasPublicSuffix() )
+				continue;	// The "Guava" does not apply the default-rule "*" of the list, for the unknown top-level-domains (the "testRules()" checks them).
+			String expectedDomain = internetDomainName.isUnderPublicSuffix() ? internetDomainName.topPrivateDomain().toString() : domain;
+			assertEquals(expectedDomain, PublicSuffixes.getRegistrableDomain(domain), "Different registrable domain for: \"" + domain + "\"");
+			numOfCheckedDomains ++;
+		}
+		assertTrue(numOfCheckedDomains > 200);
+	}
+
+
+	@Test
+	public void testRules()
+	{
+		assertEquals("ufsc.br", PublicSuffixes.getRegistrableDomain("repositorio.ufsc.br"));
+		assertEquals("usp.br", PublicSuffixes.getRegistrableDomain("www.teses.usp.br"));
+		assertEquals("y.ac.uk", PublicSuffixes.getRegistrableDomain("x.y.ac.uk"));
+		assertEquals("example.com", PublicSuffixes.getRegistrableDomain("journals.example.com"));
+		assertEquals("example.com", PublicSuffixes.getRegistrableDomain("example.com"));
+		assertEquals("example.com.", PublicSuffixes.getRegistrableDomain("a.example.com."));
+		assertEquals("someone.github.io", PublicSuffixes.getRegistrableDomain("www.someone.github.io"));	// A private-suffix.
+		assertEquals("b.a.ck", PublicSuffixes.getRegistrableDomain("c.b.a.ck"));	// The wildcard-rule "*.ck".
+		assertEquals("www.ck", PublicSuffixes.getRegistrableDomain("a.www.ck"));	// The exception-rule "!www.ck".
+		assertEquals("example.unknowntld", PublicSuffixes.getRegistrableDomain("a.example.unknowntld"));	// The default-rule "*".
+		assertEquals("example.公司.cn", PublicSuffixes.getRegistrableDomain("www.example.公司.cn"));	// An internationalized rule, in its unicode form.
+		assertEquals("example.xn--55qx5d.cn", PublicSuffixes.getRegistrableDomain("www.example.xn--55qx5d.cn"));	// The same rule, in its "punycode" form.
+
+		// The domains which have no registrable domain, are returned as they are.
+		assertEquals("ac.uk", PublicSuffixes.getRegistrableDomain("ac.uk"));
+		assertEquals("com", PublicSuffixes.getRegistrableDomain("com"));
+		assertEquals("a.ck", PublicSuffixes.getRegistrableDomain("a.ck"));
+		assertEquals("200.17.137.108", PublicSuffixes.getRegistrableDomain("200.17.137.108"));
+		assertEquals("[::1]", PublicSuffixes.getRegistrableDomain("[::1]"));
+		assertEquals("", PublicSuffixes.getRegistrableDomain(""));
+	}
+}
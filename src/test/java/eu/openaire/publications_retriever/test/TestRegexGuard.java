@@ -0,0 +1,54 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.url.RegexGuard;
+import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
+import eu.openaire.publications_retriever.util.url.UrlUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the "RegexGuard" gives the same results as the plain matching for the usual inputs, while it aborts the pathological ones in time.
+ * @author Lampros Smyrnaios
+ */
+public class TestRegexGuard {
+
+	@Test
+	public void testUsualInputs()
+	{
+		Matcher matcher = UrlUtils.TEMPORAL_IDENTIFIER_FILTER.matcher("");
+		String url = "https://example.org/a/b.pdf?jsessionid=123&x=1";
+		assertEquals(RegexGuard.Result.MATCHED, RegexGuard.matches(matcher, url, RegexGuard.MAX_URL_LENGTH));
+		assertEquals("https://example.org/a/b.pdf", matcher.group(1));
+		assertEquals("&x=1", matcher.group(2));
+		assertEquals(RegexGuard.Result.NOT_MATCHED, RegexGuard.matches(matcher, "https://example.org/a/b.pdf", RegexGuard.MAX_URL_LENGTH));
+
+		assertEquals("https://example.org/a/b.pdf?x=1", UrlUtils.removeTemporalIdentifier(url));
+		assertEquals("https://example.org/a/b.pdf", UrlUtils.removeAnchor("https://example.org/a/b.pdf#page=2"));
+		assertEquals("https://example.org/#/a/b", UrlUtils.removeAnchor("https://example.org/#/a/b"));
+	}
+
+
+	@Test
+	public void testPathologicalInputs()
+	{
+		Matcher matcher = Pattern.compile("(?:.*a){20}").matcher("");
+		String input = new String(new char[40]).replace('\0', 'a') + "!";	// Without the guard, this would take a few hours.
+
+		int deadlineTripsBefore = RegexGuard.numOfMatchingsOverDeadline.get();
+		long startTime = System.nanoTime();
+		assertEquals(RegexGuard.Result.ABORTED, RegexGuard.matches(matcher, input, RegexGuard.MAX_URL_LENGTH));
+		assertTrue((System.nanoTime() - startTime) < (RegexGuard.MAX_MATCHING_NANOS * 20));
+		assertEquals((deadlineTripsBefore + 1), RegexGuard.numOfMatchingsOverDeadline.get());
+
+		int lengthCapTripsBefore = RegexGuard.numOfInputsOverLengthCap.get();
+		String longUrl = "https://example.org/" + new String(new char[RegexGuard.MAX_URL_LENGTH]).replace('\0', 'x');
+		assertEquals(longUrl, UrlUtils.removeAnchor(longUrl));	// It's kept as it is.
+		assertTrue(UrlTypeChecker.shouldNotAcceptPageUrl(longUrl, null));	// It's rejected.
+		assertEquals((lengthCapTripsBefore + 2), RegexGuard.numOfInputsOverLengthCap.get());
+	}
+}
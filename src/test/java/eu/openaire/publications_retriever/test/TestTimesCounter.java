@@ -0,0 +1,71 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.http.TimesCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the "TimesCounter" loses no increments when many threads count the same items and that its threshold-action is called as expected.
+ * @author Lampros Smyrnaios
+ */
+public class TestTimesCounter {
+
+	@Test
+	public void testConcurrentIncrements() throws Exception
+	{
+		int numOfThreads = 8, incrementsPerThread = 50_000, numOfDomains = 10;
+		TimesCounter<String> counter = new TimesCounter<>();
+		ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<>(numOfThreads);
+			for ( int t = 0; t < numOfThreads; t++ )
+				futures.add(executor.submit(() -> {
+					for ( int i = 0; i < incrementsPerThread; i++ )
+						counter.incrementAndGet("domain" + (i % numOfDomains) + ".org");
+				}));
+			for ( Future<?> future : futures )
+				future.get();
+		} finally {
+			executor.shutdownNow();
+		}
+		Map<String, Integer> snapshot = counter.getSnapshot();
+		assertEquals(numOfDomains, snapshot.size());
+		for ( int i = 0; i < numOfDomains; i++ )
+			assertEquals((numOfThreads * incrementsPerThread / numOfDomains), counter.get("domain" + i + ".org"));
+		assertEquals(0, counter.get("other.org"));
+	}
+
+
+	@Test
+	public void testThresholdAction()
+	{
+		TimesCounter<String> counter = new TimesCounter<>();
+		Set<String> blockedDomains = new HashSet<>();
+		AtomicInteger timesActionCalled = new AtomicInteger(0);
+
+		for ( int i = 1; i <= 3; i++ )
+			assertFalse(counter.incrementAndCheckThreshold("example.org", 3, (domain, times) -> { timesActionCalled.incrementAndGet(); return true; }));
+		assertEquals(0, timesActionCalled.get());	// The threshold is not exceeded yet.
+
+		// The action may decide to not block the domain, in which case, it's called again on the next time.
+		assertFalse(counter.incrementAndCheckThreshold("example.org", 3, (domain, times) -> { timesActionCalled.incrementAndGet(); assertEquals(4, times); return false; }));
+		assertEquals(4, counter.get("example.org"));
+		assertTrue(counter.incrementAndCheckThreshold("example.org", 3, (domain, times) -> { timesActionCalled.incrementAndGet(); assertEquals(5, times); return blockedDomains.add(domain); }));
+		assertEquals(2, timesActionCalled.get());
+		assertTrue(blockedDomains.contains("example.org"));
+		assertEquals(0, counter.get("example.org"));	// The counter of a handled item is removed.
+		assertEquals(0, counter.size());
+	}
+}
@@ -0,0 +1,80 @@
+package eu.openaire.publications_retriever.test;
+
+import edu.uci.ics.crawler4j.url.URLCanonicalizer;
+import eu.openaire.publications_retriever.util.url.UrlCanonicalizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the "UrlCanonicalizer" gives the same canonical urls as the "URLCanonicalizer" of the "crawler4j",
+ * on the urls of the "testData" (along with some variations of them) and on relative links of various forms, resolved against those urls.
+ * @author Lampros Smyrnaios
+ */
+public class TestUrlCanonicalizer {
+
+	private static final String[] urlSuffixes = {"", "/", "?b=2&a=1&JSESSIONID=x&phpsessid=y", "?a+b=c d", "?a=%zz", "?a=%c3%a9&b=é", "?=x", "?a==b", "?a&&b", "?a=*~%7E", "?&", "?",
+			"/./x/../y", "/../x", "//x//y", "/%7Ex", "\\x", "/a b", "/a|b", "/a%2", "/a%2G", "/é", "/　", "/a:b", "/.", "/..", "/...", "/.a", ";p=1", "#fragment", " ", "\t"};
+
+	private static final String[] relativeLinks = {"", " ", "a.pdf", " a.pdf ", "../a.pdf", "../../../../a.pdf", "./b/../c", "b/./c/.", "b/c/..", "/x/y", "/../x", "//other.org/z", "?q=1", "#fragment",
+			";p", "..", ".", "a/./b/../c?d=e&jsessionid=1", "a?b#c", "mailto:someone@example.org", "javascript:void(0)", "HTTP://Example.ORG:80/A", "https://example.org:443/", "ftp://example.org/a",
+			"http://", "http:a", "1a:b", "a:b", "x/../../y/./z/..", "/a/b/../../../c", "%7E/a b"};
+
+
+	@Test
+	public void testSameUrlsWithCrawler4j() throws IOException
+	{
+		Set<String> corpus = TestDocOrDatasetUrlClassifier.getTestDataUrls();
+		assertTrue(corpus.size() > 1000, "The testData gave only " + corpus.size() + " urls.");
+
+		int numOfCanonicalUrls = 0;
+		for ( String url : corpus )
+		{
+			for ( String suffix : urlSuffixes )
+				if ( checkSameCanonicalUrl(url + suffix, null) )
+					numOfCanonicalUrls ++;
+
+			int hostStart = url.indexOf("://") + 3;
+			for ( String hostVariant : new String[] {"user@", "WWW.", "x.", ""} )
+				checkSameCanonicalUrl(url.substring(0, hostStart) + hostVariant + url.substring(hostStart), null);
+
+			for ( String relativeLink : relativeLinks )
+				checkSameCanonicalUrl(relativeLink, url);
+		}
+		for ( String url : new String[] {"", " ", "http://example.org:8080/a", "https://example.org:443/a", "http://example.org:80/a", "http://Example.ORG", "http://[::1]:8080/a", "http://example.org:x/a",
+				"http://:80/a", "example.org/a", "unknown://example.org/a", "http:///a", "http://a b.org/c"} )
+			checkSameCanonicalUrl(url, null);
+		assertTrue(numOfCanonicalUrls > 1000);
+	}
+
+
+	private static boolean checkSameCanonicalUrl(String href, String context)
+	{
+		String expectedUrl = URLCanonicalizer.getCanonicalURL(href, context, StandardCharsets.UTF_8);
+		assertEquals(expectedUrl, UrlCanonicalizer.getCanonicalUrl(href, context), "Different canonical url for href: \"" + href + "\" and context: \"" + context + "\"");
+		return (expectedUrl != null);
+	}
+
+
+	@Test
+	public void testReusedCanonicalizations()
+	{
+		String url = "https://Example.org/a/./b?jsessionid=1&x=y";
+		String canonicalUrl = UrlCanonicalizer.getCanonicalUrl(url, null);
+		assertEquals("https://example.org/a/b?x=y", canonicalUrl);
+
+		int reusedBefore = UrlCanonicalizer.numOfCanonicalizationsReused.get();
+		assertSame(canonicalUrl, UrlCanonicalizer.getCanonicalUrl(url, null));
+		assertNull(UrlCanonicalizer.getCanonicalUrl("not a url", null));
+		assertNull(UrlCanonicalizer.getCanonicalUrl("not a url", null));
+		assertEquals((reusedBefore + 2), UrlCanonicalizer.numOfCanonicalizationsReused.get());
+
+		assertEquals("https://example.org/a/c.pdf", UrlCanonicalizer.getCanonicalUrl("../c.pdf", "https://example.org/a/b/page.html"));
+		assertEquals("https://example.org/c.pdf", UrlCanonicalizer.getCanonicalUrl("../c.pdf", "https://example.org/a/page.html"));	// A different context gives a different url.
+	}
+}
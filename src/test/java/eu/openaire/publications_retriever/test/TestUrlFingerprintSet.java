@@ -0,0 +1,73 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.url.HeapUrlSet;
+import eu.openaire.publications_retriever.util.url.UrlFingerprintSet;
+import eu.openaire.publications_retriever.util.url.UrlSet;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the "UrlFingerprintSet" behaves like the "HeapUrlSet", on the urls of the "testData" and on many urls added by many threads at the same time.
+ * @author Lampros Smyrnaios
+ */
+public class TestUrlFingerprintSet {
+
+	@Test
+	public void testSameResultsWithHeapSet() throws IOException
+	{
+		Set<String> corpus = TestDocOrDatasetUrlClassifier.getTestDataUrls();
+		UrlSet heapSet = new HeapUrlSet();
+		UrlSet fingerprintSet = new UrlFingerprintSet(10);	// It will grow.
+
+		for ( String url : corpus ) {
+			assertEquals(heapSet.contains(url), fingerprintSet.contains(url), "Different result for url: " + url);
+			assertEquals(heapSet.add(url), fingerprintSet.add(url), "Different result for url: " + url);
+			assertTrue(fingerprintSet.contains(url));
+			assertFalse(fingerprintSet.add(url));
+			assertFalse(fingerprintSet.contains(url + "/x"));
+		}
+		assertEquals(heapSet.size(), fingerprintSet.size());
+		assertEquals(corpus.size(), fingerprintSet.size());
+	}
+
+
+	@Test
+	public void testConcurrentAdditions() throws Exception
+	{
+		int numOfThreads = 8, urlsPerThread = 100_000;
+		UrlSet fingerprintSet = new UrlFingerprintSet(1000);
+		ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+		try {
+			List<Future<Integer>> futures = new ArrayList<>(numOfThreads);
+			for ( int t = 0; t < numOfThreads; t++ ) {
+				futures.add(executor.submit(() -> {
+					int numOfAdded = 0;
+					for ( int i = 0; i < urlsPerThread; i++ )	// All the threads try to add the same urls.
+						if ( fingerprintSet.add("https://example.org/record/" + i + "/file.pdf") )
+							numOfAdded ++;
+					return numOfAdded;
+				}));
+			}
+			int totalAdded = 0;
+			for ( Future<Integer> future : futures )
+				totalAdded += future.get();
+			assertEquals(urlsPerThread, totalAdded);	// Each url was added by exactly one thread.
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(urlsPerThread, fingerprintSet.size());
+		for ( int i = 0; i < urlsPerThread; i++ )
+			assertTrue(fingerprintSet.contains("https://example.org/record/" + i + "/file.pdf"));
+		assertFalse(fingerprintSet.contains("https://example.org/record/" + urlsPerThread + "/file.pdf"));
+	}
+}
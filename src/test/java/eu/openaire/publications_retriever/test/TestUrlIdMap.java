@@ -0,0 +1,65 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.url.UrlIdMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class checks that the "UrlIdMap" behaves like a plain map, on the urls of the "testData" and on urls with non-ASCII chars.
+ * @author Lampros Smyrnaios
+ */
+public class TestUrlIdMap {
+
+	@Test
+	public void testSameResultsWithHashMap() throws IOException
+	{
+		Set<String> corpus = TestDocOrDatasetUrlClassifier.getTestDataUrls();
+		Map<String, String> expectedMap = new HashMap<>();
+		UrlIdMap urlIdMap = new UrlIdMap();
+
+		int counter = 0;
+		for ( String url : corpus ) {
+			if ( (counter ++ % 2) == 0 ) {	// Map only half of them, to check the missing urls, as well.
+				String id = "50|od_______" + counter + "::" + Integer.toHexString(url.hashCode());
+				expectedMap.put(url, id);
+				urlIdMap.put(url, id);
+			}
+		}
+		for ( String url : corpus ) {
+			assertEquals(expectedMap.containsKey(url), urlIdMap.containsKey(url), "Different result for url: " + url);
+			assertEquals(expectedMap.get(url), urlIdMap.get(url), "Different ID for url: " + url);
+			String shorterUrl = url.substring(0, (url.length() -1));
+			assertEquals(expectedMap.containsKey(shorterUrl), urlIdMap.containsKey(shorterUrl), "Different result for url: " + shorterUrl);
+			assertEquals(expectedMap.containsKey(url + "x"), urlIdMap.containsKey(url + "x"), "Different result for url: " + url + "x");
+		}
+		assertEquals(expectedMap.size(), urlIdMap.size());
+	}
+
+
+	@Test
+	public void testEdgeCases()
+	{
+		UrlIdMap urlIdMap = new UrlIdMap();
+		urlIdMap.put("https://example.org/café.pdf", "id-é");
+		urlIdMap.put("https://example.org/😀.pdf", null);	// A char outside the BMP and a "null" ID.
+		urlIdMap.put("https://example.org/a.pdf", "id1");
+		urlIdMap.put("https://example.org/a.pdf", "id2");	// It replaces the previous ID.
+
+		assertEquals("id-é", urlIdMap.get("https://example.org/café.pdf"));
+		assertFalse(urlIdMap.containsKey("https://example.org/cafe.pdf"));
+		assertFalse(urlIdMap.containsKey("https://example.org/cafè.pdf"));
+		assertTrue(urlIdMap.containsKey("https://example.org/😀.pdf"));
+		assertNull(urlIdMap.get("https://example.org/😀.pdf"));
+		assertEquals("id2", urlIdMap.get("https://example.org/a.pdf"));
+		assertNull(urlIdMap.get("https://example.org/b.pdf"));
+		assertFalse(urlIdMap.containsKey(""));
+		assertEquals(3, urlIdMap.size());
+	}
+}
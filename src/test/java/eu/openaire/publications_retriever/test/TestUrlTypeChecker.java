@@ -0,0 +1,44 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.url.LiteralsMatcher;
+import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * This class checks that the compiled rules of the "UrlTypeChecker" give the same results as the previous chain of "String.contains()" calls and regexes.
+ * @author Lampros Smyrnaios
+ */
+public class TestUrlTypeChecker {
+
+	@Test
+	public void testLiteralsMatcher()
+	{
+		String[] literals = {"he", "she", "his", "hers", "/view/"};
+		LiteralsMatcher literalsMatcher = new LiteralsMatcher(literals);
+		assertThrows(IllegalArgumentException.class, () -> new LiteralsMatcher("δ"));	// Only ASCII literals are supported.
+
+		String[] texts = {"ushers", "ahishers", "shhe", "hx", "", "https://example.org/article/view/123", "https://example.org/δοκιμή/view/"};
+		for ( String text : texts ) {
+			long expectedMatches = 0;
+			for ( int i = 0; i < literals.length; i++ )
+				if ( text.contains(literals[i]) )
+					expectedMatches |= (1L << i);
+			assertEquals(expectedMatches, literalsMatcher.findMatches(text), "Different matches for text: " + text);
+		}
+	}
+
+
+	@Test
+	public void testSameResultsWithChain()
+	{
+		for ( String url : UrlSamples.getUrls() ) {
+			assertEquals(UrlTypeCheckerBenchmark.matchesUnwantedLiteralsWithChain(url), UrlTypeChecker.matchesUnwantedLiterals(url), "Different literal-result for url: " + url);
+			assertEquals(UrlTypeCheckerBenchmark.shouldNotAcceptPageUrlWithChain(url), UrlTypeChecker.shouldNotAcceptPageUrl(url, url), "Different pageUrl-result for url: " + url);
+			assertEquals(UrlTypeCheckerBenchmark.shouldNotAcceptInternalLinkWithChain(url), UrlTypeChecker.shouldNotAcceptInternalLink(url, url), "Different internalLink-result for url: " + url);
+		}
+	}
+}
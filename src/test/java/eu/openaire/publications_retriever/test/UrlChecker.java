@@ -9,6 +9,7 @@ import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import eu.openaire.publications_retriever.util.http.DetectedContentType;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.ParsedUrl;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.junit.jupiter.api.Test;
@@ -20,7 +21,6 @@ import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Set;
-import java.util.regex.Matcher;
 
 
 /**
@@ -521,8 +521,8 @@ public class UrlChecker {
 
 			logger.debug(detConType.detectedContentType + " | " + detConType.firstHtmlLine);
 
-			if ( detConType.bufferedReader != null )
-				ConnSupportUtils.closeBufferedReader(detConType.bufferedReader);
+			if ( detConType.htmlReader != null )
+				ConnSupportUtils.closeHtmlReader(detConType.htmlReader);
 
 		} catch ( Exception e ) {
 			logger.warn("", e);
@@ -605,20 +605,20 @@ public class UrlChecker {
 	{
 		logger.info("Checking \"URL_TRIPLE\"-REGEX on url: \"" + url + "\".");
 
-		Matcher urlMatcher = UrlUtils.getUrlMatcher(url);
-		if ( urlMatcher == null )
+		ParsedUrl parsedUrl = UrlUtils.getParsedUrl(url);
+		if ( (parsedUrl == null) || (parsedUrl.path == null) )
 			return false;
 
 		String urlPart = null;
-		if ( (urlPart = UrlUtils.getDomainStr(url, urlMatcher)) != null )
+		if ( (urlPart = UrlUtils.getDomainStr(url, parsedUrl)) != null )
 			logger.info("\t\tDomain: \"" + urlPart + "\"");
 		
 		urlPart = null;
-		if ( (urlPart = UrlUtils.getPathStr(url, urlMatcher)) != null )
+		if ( (urlPart = UrlUtils.getPathStr(url, parsedUrl)) != null )
 			logger.info("\t\tPath: \"" + urlPart + "\"");
 		
 		urlPart = null;
-		if ( (urlPart = UrlUtils.getDocIdStr(url, urlMatcher)) != null )
+		if ( (urlPart = UrlUtils.getDocIdStr(url, parsedUrl)) != null )
 			logger.info("\t\tDocID: \"" + urlPart + "\"");
 
 		return true;
@@ -0,0 +1,78 @@
+package eu.openaire.publications_retriever.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * This class provides sample urls (in lowerCase) for the tests and the benchmarks of the "UrlTypeChecker". They cover each of its rules, along with wanted pageUrls and docUrls.
+ * @author Lampros Smyrnaios
+ */
+public class UrlSamples {
+
+	private static final List<String> baseUrls = Arrays.asList(
+			"https://www.tandfonline.com/doi/full/10.1080/12345678.2019.1234567",
+			"http://www.persee.fr/doc/rei_0154-3229_1991_num_57_1_1401",
+			"https://www.elsevier.com/about/open-science",
+			"https://journals.elsevier.com/some-journal",
+			"https://linkinghub.elsevier.com/retrieve/pii/s0140673620301830",
+			"https://doaj.org/toc/1234-5678",
+			"http://www.dlib.org/dlib/may19/smith/05smith.html",
+			"https://www.rivisteweb.it/doi/10.1401/12345",
+			"https://research.wur.nl/en/publications/some-title",
+			"https://www.repository.cam.ac.uk/handle/1810/123456",
+			"https://cepr.org/active/publications/discussion_papers/dp.php?dpno=12345",
+			"https://journal.example.org/index.php/journal/article/view/123/456",
+			"https://pubmed.ncbi.nlm.nih.gov/12345678/",
+			"https://doi.org/https://doi.org/10.1594/pangaea.123456",
+			"https://doi.org/10.1594/pangaea.123456",
+			"http://200.17.137.108/handle/123/456",
+			"https://example.org/getsharedsitesession?rc=1&redirect=https%3a%2f%2fexample.org",
+			"https://www.example.org/",
+			"https://www.example.org/en/",
+			"https://www.example.org/index.php?lang=en",
+			"https://www.facebook.com/sharer/sharer.php?u=https://example.org",
+			"https://twitter.com/intent/tweet?url=https://example.org",
+			"https://repository.example.org/login",
+			"https://repository.example.org/discover?query=test",
+			"https://repository.example.org/themes/mirage/images/logo.png",
+			"https://repository.example.org/static/css/style.css",
+			"https://repository.example.org/bitstream/handle/123/456/thesis.docx?sequence=1",
+			"https://repository.example.org/handle/123/456?locale-attribute=en",
+			"https://repository.example.org/handle/123/456?show=full",
+			"https://repository.example.org/bitstream/handle/123/456/thesis.pdf?sequence=1&isallowed=y",
+			"https://repository.example.org/bitstream/handle/123/456/thesis.pdf?sequence=1&isallowed=n",
+			"https://repository.example.org/record/123/export?format=bib",
+			"https://repository.example.org/record/123/files/paper.pdf",
+			"https://repository.example.org/cgi/viewcontent.cgi?article=1234&context=theses",
+			"https://repository.example.org/about.jsp",
+			"https://repository.example.org/linkout?to=https://doi.org/10.1234/5678",
+			"https://proxy.example.edu/login?url=https://doi-org.proxy.example.edu/10.1234/5678",
+			"https://doi-org.proxy.example.edu/10.1234/5678",
+			"https://journal.example.org/article/download/123/456",
+			"https://journal.example.org/article/123/fulltext?site=main",
+			"https://www.ncbi.nlm.nih.gov/pmc/articles/pmc1234567/pdf/main.pdf",
+			"https://arxiv.org/pdf/1234.56789v1",
+			"https://zenodo.org/record/1234567/files/dataset.csv?download=1",
+			"https://www.example.org/rss/feed.xml",
+			"https://www.example.org/news/2019/some-news.html",
+			"https://www.example.org/δοκιμή/άρθρο/123",
+			"https://www.example.org/?ln=el"
+	);
+
+
+	/**
+	 * @return The sample urls, along with a few variations of them.
+	 */
+	public static List<String> getUrls()
+	{
+		List<String> urls = new ArrayList<>(baseUrls.size() * 3);
+		for ( String url : baseUrls ) {
+			urls.add(url);
+			urls.add(url + "?id=123");
+			urls.add(url.replace("https://", "http://www."));
+		}
+		return urls;
+	}
+}
@@ -0,0 +1,114 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This JMH-benchmark compares the compiled rules of the "UrlTypeChecker" (the "LiteralsMatcher" and the "RegexRuleSet"), with the previous chain of "String.contains()" calls and regexes, on the "UrlSamples".
+ * Run it on demand, with its "main()" method (after the test-classes are compiled, so that the JMH-annotation-processor generates the benchmark-code).
+ * @author Lampros Smyrnaios
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlTypeCheckerBenchmark {
+
+	private List<String> urls;
+
+
+	@Setup
+	public void setUp()
+	{
+		urls = UrlSamples.getUrls();
+	}
+
+
+	@Benchmark
+	public void internalLinksChain(Blackhole blackhole)
+	{
+		for ( String url : urls )
+			blackhole.consume(shouldNotAcceptInternalLinkWithChain(url));
+	}
+
+
+	@Benchmark
+	public void internalLinksCompiled(Blackhole blackhole)
+	{
+		for ( String url : urls )
+			blackhole.consume(UrlTypeChecker.shouldNotAcceptInternalLink(url, url));
+	}
+
+
+	@Benchmark
+	public void pageUrlsChain(Blackhole blackhole)
+	{
+		for ( String url : urls )
+			blackhole.consume(matchesUnwantedLiteralsWithChain(url) || shouldNotAcceptPageUrlWithChain(url));
+	}
+
+
+	@Benchmark
+	public void pageUrlsCompiled(Blackhole blackhole)
+	{
+		// The "matchesUnwantedUrlType()" logs the matching urls, so its checks are measured without the logging.
+		for ( String url : urls )
+			blackhole.consume(UrlTypeChecker.matchesUnwantedLiterals(url) || UrlTypeChecker.shouldNotAcceptPageUrl(url, url));
+	}
+
+
+	// The previous implementation of the checks, which is also used by the "TestUrlTypeChecker", to verify that the results are the same.
+
+	static boolean matchesUnwantedLiteralsWithChain(String lowerCaseUrl)
+	{
+		return lowerCaseUrl.contains("tandfonline.com") || lowerCaseUrl.contains("persee.fr") || lowerCaseUrl.contains("documentation.ird.fr")
+				|| lowerCaseUrl.contains("www.elsevier.com") || lowerCaseUrl.contains("journals.elsevier.com")
+				|| lowerCaseUrl.contains("doaj.org/toc/")
+				|| lowerCaseUrl.contains("dlib.org") || lowerCaseUrl.contains("saberes.fcecon.unr.edu.ar") || lowerCaseUrl.contains("eumed.net")
+				|| lowerCaseUrl.contains("rivisteweb.it") || lowerCaseUrl.contains("wur.nl") || lowerCaseUrl.contains("remeri.org.mx")
+				|| lowerCaseUrl.contains("cam.ac.uk") || lowerCaseUrl.contains("scindeks.ceon.rs") || lowerCaseUrl.contains("egms.de")
+				|| lowerCaseUrl.contains("bibliotecadigital.uel.br") || lowerCaseUrl.contains("cepr.org")
+				|| lowerCaseUrl.contains("/view/") || lowerCaseUrl.contains("scielosp.org") || lowerCaseUrl.contains("dk.um.si") || lowerCaseUrl.contains("apospublications.com")
+				|| lowerCaseUrl.contains("jorr.org") || lowerCaseUrl.contains("rwth-aachen.de") || lowerCaseUrl.contains("pubmed.ncbi.nlm.nih.gov")
+				|| (lowerCaseUrl.contains("doi.org/https://doi.org/") && lowerCaseUrl.contains("pangaea."))
+				|| lowerCaseUrl.contains("200.17.137.108")
+				|| lowerCaseUrl.contains("sharedsitesession");
+	}
+
+
+	static boolean shouldNotAcceptPageUrlWithChain(String lowerCaseUrl)
+	{
+		return	UrlTypeChecker.PLAIN_DOMAIN_FILTER.matcher(lowerCaseUrl).matches() || UrlTypeChecker.SPECIFIC_DOMAIN_FILTER.matcher(lowerCaseUrl).matches()
+				|| UrlTypeChecker.URL_DIRECTORY_FILTER.matcher(lowerCaseUrl).matches() || UrlTypeChecker.URL_FILE_EXTENSION_FILTER.matcher(lowerCaseUrl).matches()
+				|| UrlTypeChecker.CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER.matcher(lowerCaseUrl).matches();
+	}
+
+
+	static boolean shouldNotAcceptInternalLinkWithChain(String lowerCaseLink)
+	{
+		return	UrlTypeChecker.URL_DIRECTORY_FILTER.matcher(lowerCaseLink).matches() || UrlTypeChecker.INTERNAL_LINKS_KEYWORDS_FILTER.matcher(lowerCaseLink).matches()
+				|| UrlTypeChecker.SPECIFIC_DOMAIN_FILTER.matcher(lowerCaseLink).matches() || UrlTypeChecker.PLAIN_DOMAIN_FILTER.matcher(lowerCaseLink).matches()
+				|| UrlTypeChecker.URL_FILE_EXTENSION_FILTER.matcher(lowerCaseLink).matches() || UrlTypeChecker.INTERNAL_LINKS_FILE_FORMAT_FILTER.matcher(lowerCaseLink).matches()
+				|| UrlTypeChecker.PLAIN_PAGE_EXTENSION_FILTER.matcher(lowerCaseLink).matches()
+				|| UrlTypeChecker.CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER.matcher(lowerCaseLink).matches();
+	}
+
+
+	public static void main(String[] args) throws RunnerException
+	{
+		Options options = new OptionsBuilder().include(UrlTypeCheckerBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}